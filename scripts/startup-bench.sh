@@ -0,0 +1,39 @@
+#!/bin/sh
+# Startup benchmark: time from JVM start until the main window is shown,
+# with and without the AppCDS archive. Results are appended to
+# bench_output.txt so runs can be compared over time.
+#
+#   scripts/startup-bench.sh [runs]
+#
+# Needs a display (uses xvfb-run when DISPLAY is unset and it is installed)
+# and the jar/archive from `mvn package -Pcds`.
+
+set -e
+
+HERE=$(cd "$(dirname "$0")/.." && pwd)
+RUNS=${1:-10}
+OUT="$HERE/bench_output.txt"
+
+WRAP=""
+if [ -z "$DISPLAY" ] && command -v xvfb-run >/dev/null 2>&1; then
+  WRAP="xvfb-run -a"
+fi
+
+measure() {
+  mode=$1
+  for _ in $(seq "$RUNS"); do
+    VVCNV_CDS=$mode VVCNV_JAVA_OPTS="-Dvvcnv.startup.report=true -Dvvcnv.startup.exitAfterShown=true" \
+      $WRAP "$HERE/scripts/vvcnv-ui" 2>/dev/null | sed -n 's/^startup-ms: //p'
+  done | sort -n | awk -v mode="$mode" '
+    { v[NR] = $1; sum += $1 }
+    END {
+      if (NR == 0) { printf "cds=%s: no samples\n", mode; exit }
+      printf "cds=%s runs=%d median=%dms min=%dms mean=%.0fms\n", mode, NR, v[int((NR + 1) / 2)], v[1], sum / NR
+    }'
+}
+
+{
+  echo "# startup $(date -u +%Y-%m-%dT%H:%M:%SZ) $(git -C "$HERE" rev-parse --short HEAD 2>/dev/null)"
+  measure off
+  measure on
+} | tee -a "$OUT"
@@ -1,6 +1,12 @@
 package wappon28dev.vvcnv_java;
 
+import wappon28dev.vvcnv_java.calibration.Codec;
+import wappon28dev.vvcnv_java.calibration.HostProfile;
+import wappon28dev.vvcnv_java.metrics.EncodeMetrics;
+import wappon28dev.vvcnv_java.metrics.MetricsExporter;
 import wappon28dev.vvcnv_java.modules.*;
+import wappon28dev.vvcnv_java.scheduler.EncodeScheduler;
+import wappon28dev.vvcnv_java.scheduler.Resources;
 import wappon28dev.vvcnv_java.util.Result;
 
 import java.io.IOException;
@@ -8,8 +14,6 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class Main {
 
@@ -18,12 +22,14 @@ public class Main {
 
   public static void main(String[] args) throws IOException {
     System.out.println("Welcome to VVNCV Java!");
+    MetricsExporter.install();
 
     // Ensure output directory exists
     Files.createDirectories(Paths.get(OUTPUT_DIR));
 
     // Initialize video module
     VideoModule videoModule = new VideoModule();
+    Encoder encoder = Encoder.fromSystemProperty(videoModule);
 
     // Get video statistics
     Result<VideoStat, String> statResult = videoModule.stat(INPUT_PATH);
@@ -45,8 +51,12 @@ public class Main {
     List<Integer> fpsList = List.of(30);
     List<Integer> crfList = List.of(20, 40);
 
-    // Create thread pool for parallel processing
-    ExecutorService executor = Executors.newFixedThreadPool(4);
+    // Submit to the shared scheduler (at most 4 of our jobs at a time)
+    EncodeScheduler scheduler = EncodeScheduler.shared();
+    EncodeScheduler.Submitter submitter = scheduler.submitter("cli", 1, 4);
+    int threadsPerJob = scheduler.threadsPerJob();
+    var profile = HostProfile.current();
+    var retries = RetryPolicy.fromSystemProperties();
 
     // Process videos in parallel
     var futures = resolutions.stream()
@@ -54,12 +64,21 @@ public class Main {
             .flatMap(fps -> crfList.stream()
                 .map(crf -> {
                   VideoConfig config = new VideoConfig(res, fps, crf, true);
-                  return CompletableFuture.supplyAsync(() -> processVideo(videoModule, stat, config), executor);
+                  int threads = profile.map(p -> p.threads(Codec.H264, res, threadsPerJob)).orElse(threadsPerJob);
+                  return retries.run(RetryPolicy.Attempt.first(threads), attempt -> {
+                    var resources = Resources.writing(attempt.threads(), Paths.get(outputPathOf(stat, config)),
+                        OutputSizeEstimator.shared().estimate(stat, config))
+                        .withMemory(MemoryEstimator.shared().estimate(stat, config, attempt.threads(),
+                            MemoryEstimator.lookahead(attempt.lowMemory())))
+                        .withWork(config.outputPixelFrames(stat));
+                    return submitter.submit(config.toString(), resources,
+                        () -> processVideo(encoder, stat, config, attempt));
+                  });
                 })))
         .toList();
 
     // Wait for all tasks to complete
-    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
         .thenRun(() -> {
           System.out.println("\n✓ All encoding tasks completed!");
 
@@ -79,22 +98,31 @@ public class Main {
                 System.err.println("Error: " + ((Result.Err<?, String>) result).error());
               });
 
-          executor.shutdown();
+          var stats = submitter.stats();
+          System.out.println("Scheduler: " + scheduler.snapshot()
+              + ", average wait " + stats.averageWait().toMillis() + " ms"
+              + ", max wait " + stats.maxWait().toMillis() + " ms");
+          submitter.close();
+
+          System.out.println("Task metrics:");
+          for (String line : EncodeMetrics.shared().getRecentTasks()) {
+            System.out.println("  " + line);
+          }
         })
         .join();
   }
 
-  private static Result<Void, String> processVideo(VideoModule videoModule, VideoStat stat, VideoConfig config) {
+  private static Result<Encoded, String> processVideo(Encoder encoder, VideoStat stat, VideoConfig config,
+      RetryPolicy.Attempt attempt) {
     try {
-      var fileNameParts = FileModule.getFileName(stat.path());
-      String outputPath = OUTPUT_DIR + "/" + fileNameParts.name() + config.toFileName() + "."
-          + fileNameParts.extension();
+      String outputPath = outputPathOf(stat, config);
 
       System.out
           .println("Starting: " + config.res().getDisplayName() + " FPS:" + config.fps() + " CRF:" + config.crf());
 
-      var params = new VideoModule.VideoProcessParams(outputPath, config);
-      var result = videoModule.processSimple(stat, params);
+      var params = new VideoModule.VideoProcessParams(outputPath, config, attempt.threads(),
+          EncodeOptions.DEFAULT.withLowMemory(attempt.lowMemory()));
+      var result = encoder.encode(stat, params);
 
       if (result.isOk()) {
         // Get output file size
@@ -112,6 +140,11 @@ public class Main {
     }
   }
 
+  private static String outputPathOf(VideoStat stat, VideoConfig config) {
+    var fileNameParts = FileModule.getFileName(stat.path());
+    return OUTPUT_DIR + "/" + fileNameParts.name() + config.toFileName() + "." + fileNameParts.extension();
+  }
+
   private static String formatFileSize(long bytes) {
     if (bytes < 1024)
       return bytes + " B";
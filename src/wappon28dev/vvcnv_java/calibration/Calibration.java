@@ -0,0 +1,207 @@
+package wappon28dev.vvcnv_java.calibration;
+
+import wappon28dev.vvcnv_java.calibration.HostProfile.Setting;
+import wappon28dev.vvcnv_java.modules.MemoryEstimator;
+import wappon28dev.vvcnv_java.modules.VideoConfig;
+import wappon28dev.vvcnv_java.modules.VideoModule;
+import wappon28dev.vvcnv_java.modules.VideoRes;
+import wappon28dev.vvcnv_java.modules.VideoStat;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures which concurrency suits this host and writes a
+ * {@link HostProfile}:
+ *
+ * <pre>
+ * java -cp target/vvcnv-ui.jar wappon28dev.vvcnv_java.calibration.Calibration
+ * </pre>
+ *
+ * For every installed codec backend and a few representative resolutions it
+ * runs short synthetic encodes ({@code testsrc2} into the null muxer, so no
+ * input file and no disk writes) with 1, 2, 4, ... concurrent jobs, each job
+ * getting an equal share of the cores as threads. The setting with the highest
+ * total frame rate wins; within {@link #TIE_TOLERANCE} of it the one with fewer
+ * jobs is preferred, since every job costs memory. Job counts whose estimated
+ * memory does not fit in physical memory are skipped.
+ */
+public final class Calibration {
+
+  /** Resolutions that are measured; the others use the closest one */
+  public static final List<VideoRes> RESOLUTIONS = List.of(VideoRes.R480P, VideoRes.R1080P, VideoRes.R2160P);
+  public static final double TIE_TOLERANCE = 0.03;
+
+  /** Frames of a 1080p calibration encode; other sizes scale by pixel count */
+  private static final int FRAMES_1080P = 60;
+  private static final int MIN_FRAMES = 15;
+  private static final int MAX_FRAMES = 240;
+
+  private Calibration() {
+    // Utility class
+  }
+
+  /**
+   * One measured setting
+   */
+  public record Run(int jobs, int threads, double fps) {
+  }
+
+  public static void main(String[] args) throws IOException {
+    var ffmpegPath = new VideoModule().ffmpegPath();
+    int cores = Runtime.getRuntime().availableProcessors();
+    var profile = new HostProfile(cores, Instant.now());
+    var available = availableEncoders(ffmpegPath);
+
+    for (var codec : Codec.values()) {
+      if (!available.contains(codec.encoder())) {
+        System.out.println(codec.encoder() + ": ffmpeg にないため省略");
+        continue;
+      }
+      for (var res : RESOLUTIONS) {
+        var runs = new ArrayList<Run>();
+        for (int jobs : jobCounts(cores, res, physicalMemory())) {
+          var run = measure(ffmpegPath, codec, res, jobs, threadsPerJob(cores, jobs));
+          if (run == null) {
+            System.out.printf("%s %s: %d ジョブで失敗、以降を省略%n", codec.encoder(), res.getDisplayName(), jobs);
+            break;
+          }
+          System.out.printf("%s %s: %d ジョブ x %d スレッド = %.1f fps%n",
+              codec.encoder(), res.getDisplayName(), run.jobs(), run.threads(), run.fps());
+          runs.add(run);
+        }
+        if (!runs.isEmpty()) {
+          var best = best(runs);
+          profile.put(codec, res, new Setting(best.jobs(), best.threads(), best.fps()));
+        }
+      }
+    }
+
+    var path = HostProfile.path();
+    profile.save(path);
+    System.out.println("ホストプロファイルを保存しました: " + path);
+  }
+
+  /**
+   * 1, 2, 4, ... up to the core count (and the core count itself), as far as
+   * their estimated memory fits
+   */
+  public static List<Integer> jobCounts(int cores, VideoRes res, long memoryBytes) {
+    var candidates = new ArrayList<Integer>();
+    for (int jobs = 1; jobs < cores; jobs *= 2) {
+      candidates.add(jobs);
+    }
+    candidates.add(cores);
+
+    var stat = syntheticStat(res);
+    var config = new VideoConfig(res, 30, 23, false);
+    var counts = new ArrayList<Integer>();
+    for (int jobs : candidates) {
+      long perJob = MemoryEstimator.shared().estimate(stat, config, threadsPerJob(cores, jobs));
+      if (jobs > 1 && jobs * perJob > memoryBytes) {
+        break;
+      }
+      counts.add(jobs);
+    }
+    return counts;
+  }
+
+  public static int threadsPerJob(int cores, int jobs) {
+    return Math.max(1, cores / jobs);
+  }
+
+  /**
+   * Highest frame rate, preferring fewer jobs among near-ties
+   */
+  public static Run best(List<Run> runs) {
+    double top = runs.stream().mapToDouble(Run::fps).max().orElse(0);
+    return runs.stream()
+        .filter(run -> run.fps() >= top * (1 - TIE_TOLERANCE))
+        .min((a, b) -> Integer.compare(a.jobs(), b.jobs()))
+        .orElseThrow();
+  }
+
+  public static int frames(VideoRes res) {
+    double scale = 1920.0 * 1080 / ((double) res.getWidth() * res.getHeight());
+    return (int) Math.max(MIN_FRAMES, Math.min(MAX_FRAMES, FRAMES_1080P * scale));
+  }
+
+  /**
+   * A synthetic encode of {@link #frames} frames into the null muxer
+   */
+  public static List<String> command(String ffmpegPath, Codec codec, VideoRes res, int threads) {
+    var command = new ArrayList<>(List.of(
+        ffmpegPath, "-nostdin", "-v", "error",
+        "-f", "lavfi", "-i", "testsrc2=size=%dx%d:rate=30".formatted(res.getWidth(), res.getHeight()),
+        "-frames:v", Integer.toString(frames(res)),
+        "-c:v", codec.encoder()));
+    command.addAll(codec.options());
+    command.addAll(List.of("-threads", Integer.toString(threads), "-f", "null", "-"));
+    return command;
+  }
+
+  /**
+   * Run {@code jobs} encodes at once; null if any of them fails
+   */
+  private static Run measure(String ffmpegPath, Codec codec, VideoRes res, int jobs, int threads) {
+    var processes = new ArrayList<Process>();
+    long started = System.nanoTime();
+    try {
+      for (int i = 0; i < jobs; i++) {
+        processes.add(new ProcessBuilder(command(ffmpegPath, codec, res, threads))
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.PIPE)
+            .start());
+      }
+      for (var process : processes) {
+        var stderr = new String(process.getErrorStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+        if (process.waitFor() != 0) {
+          System.err.println("較正用エンコード失敗: " + stderr);
+          return null;
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("ffmpeg を起動できません: " + e.getMessage());
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } finally {
+      processes.forEach(Process::destroy);
+    }
+    double seconds = (System.nanoTime() - started) / 1e9;
+    return new Run(jobs, threads, (double) jobs * frames(res) / seconds);
+  }
+
+  private static List<String> availableEncoders(String ffmpegPath) throws IOException {
+    var process = new ProcessBuilder(ffmpegPath, "-hide_banner", "-encoders")
+        .redirectErrorStream(true)
+        .start();
+    var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    var encoders = new ArrayList<String>();
+    for (var line : output.split("\n")) {
+      var fields = line.trim().split("\\s+");
+      if (fields.length >= 2 && fields[0].length() == 6) {
+        encoders.add(fields[1]);
+      }
+    }
+    return encoders;
+  }
+
+  private static VideoStat syntheticStat(VideoRes res) {
+    return new VideoStat("testsrc2", new VideoStat.VideoStreamInfo(res.getWidth(), res.getHeight(), 30, "yuv420p"),
+        List.of(), Duration.ofSeconds(2), 0);
+  }
+
+  private static long physicalMemory() {
+    if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+      return os.getTotalMemorySize();
+    }
+    return Long.MAX_VALUE;
+  }
+}
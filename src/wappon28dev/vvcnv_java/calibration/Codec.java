@@ -0,0 +1,49 @@
+package wappon28dev.vvcnv_java.calibration;
+
+import java.util.List;
+
+/**
+ * Encoder backends behind the UI's encoding choices, with the options a
+ * calibration run encodes with
+ */
+public enum Codec {
+  H264("H.264", "libx264", List.of("-preset", "medium")),
+  VP9("WebM", "libvpx-vp9", List.of("-deadline", "good", "-cpu-used", "4", "-row-mt", "1")),
+  AV1("AV1", "libsvtav1", List.of("-preset", "8"));
+
+  private final String label;
+  private final String encoder;
+  private final List<String> options;
+
+  Codec(String label, String encoder, List<String> options) {
+    this.label = label;
+    this.encoder = encoder;
+    this.options = options;
+  }
+
+  /** Name in the encoding combo box and in presets */
+  public String label() {
+    return label;
+  }
+
+  /** ffmpeg encoder name */
+  public String encoder() {
+    return encoder;
+  }
+
+  public List<String> options() {
+    return options;
+  }
+
+  /**
+   * The codec of an encoding label; H.264 for anything unknown
+   */
+  public static Codec ofLabel(String label) {
+    for (var codec : values()) {
+      if (codec.label.equals(label)) {
+        return codec;
+      }
+    }
+    return H264;
+  }
+}
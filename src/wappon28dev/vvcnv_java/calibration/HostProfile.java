@@ -0,0 +1,228 @@
+package wappon28dev.vvcnv_java.calibration;
+
+import wappon28dev.vvcnv_java.modules.VideoRes;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * What {@link Calibration} measured on this host: for each codec and
+ * resolution, the number of concurrent jobs and threads per job with the
+ * highest total frame rate.
+ *
+ * <p>
+ * Stored as {@code ~/.vvcnv/host-<hostname>.properties} (or under
+ * {@code -Dvvcnv.profile.dir}), so hosts sharing a home directory keep their
+ * own numbers. A profile taken with a different core count (another
+ * container limit, a moved home) is ignored.
+ * </p>
+ */
+public final class HostProfile {
+
+  /**
+   * Best setting of one codec and resolution
+   *
+   * @param fps total frames per second of all jobs together
+   */
+  public record Setting(int jobs, int threads, double fps) {
+  }
+
+  private static final int FORMAT_VERSION = 1;
+
+  private static volatile Optional<HostProfile> current;
+
+  private final int cores;
+  private final Instant calibratedAt;
+  private final Map<Codec, Map<VideoRes, Setting>> settings = new EnumMap<>(Codec.class);
+
+  public HostProfile(int cores, Instant calibratedAt) {
+    this.cores = cores;
+    this.calibratedAt = calibratedAt;
+  }
+
+  public int cores() {
+    return cores;
+  }
+
+  public Instant calibratedAt() {
+    return calibratedAt;
+  }
+
+  public void put(Codec codec, VideoRes res, Setting setting) {
+    settings.computeIfAbsent(codec, key -> new EnumMap<>(VideoRes.class)).put(res, setting);
+  }
+
+  /**
+   * Setting measured for {@code codec} at the resolution closest to
+   * {@code res} in pixel count; empty if the codec was not calibrated
+   */
+  public Optional<Setting> setting(Codec codec, VideoRes res) {
+    var byRes = settings.get(codec);
+    if (byRes == null || byRes.isEmpty()) {
+      return Optional.empty();
+    }
+    var exact = byRes.get(res);
+    if (exact != null) {
+      return Optional.of(exact);
+    }
+    double pixels = Math.log((double) res.getWidth() * res.getHeight());
+    VideoRes nearest = null;
+    for (var candidate : byRes.keySet()) {
+      if (nearest == null || Math.abs(Math.log((double) candidate.getWidth() * candidate.getHeight()) - pixels)
+          < Math.abs(Math.log((double) nearest.getWidth() * nearest.getHeight()) - pixels)) {
+        nearest = candidate;
+      }
+    }
+    return Optional.of(byRes.get(nearest));
+  }
+
+  /**
+   * Concurrent jobs for a sweep that is mostly {@code codec} at {@code res},
+   * or {@code fallback} without a measurement
+   */
+  public int jobs(Codec codec, VideoRes res, int fallback) {
+    return setting(codec, res).map(Setting::jobs).orElse(fallback);
+  }
+
+  /**
+   * Threads per job for {@code codec} at {@code res}, or {@code fallback}
+   * without a measurement
+   */
+  public int threads(Codec codec, VideoRes res, int fallback) {
+    return setting(codec, res).map(Setting::threads).orElse(fallback);
+  }
+
+  // --- storage ---
+
+  /**
+   * {@code -Dvvcnv.profile.dir}, or {@code ~/.vvcnv}
+   */
+  public static Path directory() {
+    var configured = System.getProperty("vvcnv.profile.dir");
+    if (configured != null && !configured.isBlank()) {
+      return Path.of(configured);
+    }
+    return Path.of(System.getProperty("user.home"), ".vvcnv");
+  }
+
+  public static Path path() {
+    return directory().resolve("host-" + hostName() + ".properties");
+  }
+
+  /**
+   * The profile of this host, read once; empty if it has not been calibrated
+   * or was calibrated with another core count
+   */
+  public static Optional<HostProfile> current() {
+    var profile = current;
+    if (profile == null) {
+      synchronized (HostProfile.class) {
+        profile = current;
+        if (profile == null) {
+          profile = load(path()).filter(loaded -> {
+            int cores = Runtime.getRuntime().availableProcessors();
+            if (loaded.cores != cores) {
+              System.err.println("ホストプロファイルのコア数 (%d) が現在 (%d) と異なるため使いません".formatted(loaded.cores, cores));
+              return false;
+            }
+            return true;
+          });
+          current = profile;
+        }
+      }
+    }
+    return profile;
+  }
+
+  /**
+   * Read a profile; empty if the file is missing or unreadable
+   */
+  public static Optional<HostProfile> load(Path file) {
+    if (!Files.isRegularFile(file)) {
+      return Optional.empty();
+    }
+    var properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      properties.load(reader);
+      if (Integer.parseInt(properties.getProperty("version", "0")) != FORMAT_VERSION) {
+        return Optional.empty();
+      }
+      var profile = new HostProfile(Integer.parseInt(properties.getProperty("cores")),
+          Instant.parse(properties.getProperty("calibratedAt")));
+      for (var codec : Codec.values()) {
+        for (var res : VideoRes.values()) {
+          var prefix = key(codec, res);
+          var jobs = properties.getProperty(prefix + ".jobs");
+          if (jobs != null) {
+            profile.put(codec, res, new Setting(Integer.parseInt(jobs),
+                Integer.parseInt(properties.getProperty(prefix + ".threads")),
+                Double.parseDouble(properties.getProperty(prefix + ".fps", "0"))));
+          }
+        }
+      }
+      return Optional.of(profile);
+    } catch (IOException | RuntimeException e) {
+      System.err.println("ホストプロファイルを読めません: " + file + ": " + e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Write the profile, replacing the previous one atomically
+   */
+  public void save(Path file) throws IOException {
+    // Sorted, so the file diffs well between calibrations
+    var lines = new TreeMap<String, String>();
+    lines.put("version", Integer.toString(FORMAT_VERSION));
+    lines.put("cores", Integer.toString(cores));
+    lines.put("calibratedAt", calibratedAt.toString());
+    settings.forEach((codec, byRes) -> byRes.forEach((res, setting) -> {
+      var prefix = key(codec, res);
+      lines.put(prefix + ".jobs", Integer.toString(setting.jobs()));
+      lines.put(prefix + ".threads", Integer.toString(setting.threads()));
+      lines.put(prefix + ".fps", String.format(Locale.ROOT, "%.1f", setting.fps()));
+    }));
+
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    var staging = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+    try (Writer writer = Files.newBufferedWriter(staging, StandardCharsets.UTF_8)) {
+      writer.write("# vvcnv host profile, written by Calibration\n");
+      for (var line : lines.entrySet()) {
+        writer.write(line.getKey() + "=" + line.getValue() + "\n");
+      }
+    }
+    Files.move(staging, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    synchronized (HostProfile.class) {
+      current = null;
+    }
+  }
+
+  private static String key(Codec codec, VideoRes res) {
+    return codec.encoder() + "." + res.name();
+  }
+
+  private static String hostName() {
+    var name = System.getenv("HOSTNAME");
+    if (name == null || name.isBlank()) {
+      try {
+        name = InetAddress.getLocalHost().getHostName();
+      } catch (IOException e) {
+        name = "localhost";
+      }
+    }
+    return name.replaceAll("[^A-Za-z0-9._-]", "_");
+  }
+}
@@ -0,0 +1,50 @@
+package wappon28dev.vvcnv_java.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * One encode, from the start of the metrics recording to its end
+ */
+@Name("wappon28dev.vvcnv.Encode")
+@Label("Encode")
+@Category({ "vvcnv" })
+@Description("An ffmpeg encode with its configuration and resource usage")
+public class EncodeEvent extends Event {
+
+  @Label("Config")
+  public String config;
+
+  @Label("Output")
+  public String output;
+
+  @Label("Submitter")
+  public String submitter;
+
+  @Label("ffmpeg PID")
+  public long pid;
+
+  @Label("Queue Wait")
+  @Timespan
+  public long queueWait;
+
+  @Label("CPU Time")
+  @Timespan
+  public long cpuTime;
+
+  @Label("Peak RSS")
+  @DataAmount
+  public long peakRss;
+
+  @Label("Output Size")
+  @DataAmount
+  public long outputBytes;
+
+  @Label("Success")
+  public boolean success;
+}
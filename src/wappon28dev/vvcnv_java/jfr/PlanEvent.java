@@ -0,0 +1,29 @@
+package wappon28dev.vvcnv_java.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Expansion of a preset into encode tasks
+ */
+@Name("wappon28dev.vvcnv.Plan")
+@Label("Task Planning")
+@Category({ "vvcnv" })
+@Description("Turning a resolution × CRF grid into tasks")
+public class PlanEvent extends Event {
+
+  @Label("Sources")
+  public int sources;
+
+  @Label("Resolutions")
+  public String resolutions;
+
+  @Label("CRF Values")
+  public String crfValues;
+
+  @Label("Tasks")
+  public int tasks;
+}
@@ -0,0 +1,35 @@
+package wappon28dev.vvcnv_java.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One {@code VideoModule.stat} call
+ */
+@Name("wappon28dev.vvcnv.Probe")
+@Label("Video Probe")
+@Category({ "vvcnv" })
+@Description("Reading stream information of a source")
+public class ProbeEvent extends Event {
+
+  @Label("Path")
+  public String path;
+
+  @Label("Requested Mode")
+  public String requestedMode;
+
+  @Label("Answered By")
+  @Description("header, lean or full; empty when every probe failed")
+  public String answeredBy;
+
+  @Label("Success")
+  public boolean success;
+
+  @Label("File Size")
+  @DataAmount
+  public long fileSize;
+}
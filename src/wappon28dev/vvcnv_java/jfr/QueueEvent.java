@@ -0,0 +1,36 @@
+package wappon28dev.vvcnv_java.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Time a job spent queued in the encode scheduler; the event spans enqueue to
+ * dispatch (or cancellation)
+ */
+@Name("wappon28dev.vvcnv.SchedulerQueue")
+@Label("Scheduler Queue")
+@Category({ "vvcnv" })
+@Description("Wait between submitting an encode and getting a slot")
+public class QueueEvent extends Event {
+
+  @Label("Submitter")
+  public String submitter;
+
+  @Label("Job")
+  public String job;
+
+  @Label("Threads")
+  public int threads;
+
+  @Label("Queued Jobs At Submit")
+  public int queuedAtSubmit;
+
+  @Label("Running Jobs At Submit")
+  public int runningAtSubmit;
+
+  @Label("Cancelled")
+  public boolean cancelled;
+}
@@ -0,0 +1,152 @@
+package wappon28dev.vvcnv_java.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summarizes the vvcnv events of a JFR recording:
+ *
+ * <pre>
+ * java -cp target/vvcnv-ui.jar wappon28dev.vvcnv_java.jfr.RecordingAnalyzer recording.jfr
+ * </pre>
+ */
+public final class RecordingAnalyzer {
+
+  private static final int SLOWEST_ENCODES = 10;
+
+  private RecordingAnalyzer() {
+    // Utility class
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: RecordingAnalyzer <recording.jfr>");
+      System.exit(2);
+    }
+    System.out.print(summarize(Path.of(args[0])));
+  }
+
+  /**
+   * Count, total, mean, p95 and max of a set of durations
+   */
+  private static final class Stats {
+    private final List<Long> nanos = new ArrayList<>();
+
+    void add(Duration duration) {
+      nanos.add(duration.toNanos());
+    }
+
+    String format() {
+      if (nanos.isEmpty()) {
+        return "n=0";
+      }
+      var sorted = nanos.stream().sorted().toList();
+      long total = sorted.stream().mapToLong(Long::longValue).sum();
+      long p95 = sorted.get((int) Math.ceil(sorted.size() * 0.95) - 1);
+      return "n=%d total=%s mean=%s p95=%s max=%s".formatted(
+          sorted.size(), seconds(total), seconds(total / sorted.size()), seconds(p95), seconds(sorted.getLast()));
+    }
+  }
+
+  public static String summarize(Path recording) throws IOException {
+    var probes = new TreeMap<String, Stats>();
+    int probeFailures = 0;
+    var plans = new ArrayList<RecordedEvent>();
+    var queueWaits = new TreeMap<String, Stats>();
+    int cancelled = 0;
+    var encodesBySubmitter = new TreeMap<String, Stats>();
+    var encodes = new ArrayList<RecordedEvent>();
+    long cpuNanos = 0;
+    long outputBytes = 0;
+    long peakRss = -1;
+    int encodeFailures = 0;
+
+    for (var event : RecordingFile.readAllEvents(recording)) {
+      switch (event.getEventType().getName()) {
+        case "wappon28dev.vvcnv.Probe" -> {
+          if (event.getBoolean("success")) {
+            probes.computeIfAbsent(event.getString("answeredBy"), k -> new Stats()).add(event.getDuration());
+          } else {
+            probeFailures++;
+          }
+        }
+        case "wappon28dev.vvcnv.Plan" -> plans.add(event);
+        case "wappon28dev.vvcnv.SchedulerQueue" -> {
+          if (event.getBoolean("cancelled")) {
+            cancelled++;
+          } else {
+            queueWaits.computeIfAbsent(event.getString("submitter"), k -> new Stats()).add(event.getDuration());
+          }
+        }
+        case "wappon28dev.vvcnv.Encode" -> {
+          encodes.add(event);
+          encodesBySubmitter.computeIfAbsent(event.getString("submitter"), k -> new Stats()).add(event.getDuration());
+          cpuNanos += event.getLong("cpuTime");
+          outputBytes += event.getLong("outputBytes");
+          peakRss = Math.max(peakRss, event.getLong("peakRss"));
+          if (!event.getBoolean("success")) {
+            encodeFailures++;
+          }
+        }
+        default -> {
+          // Not ours
+        }
+      }
+    }
+
+    var out = new StringBuilder();
+    out.append("== Probe ==\n");
+    section(out, probes);
+    out.append("  failed: ").append(probeFailures).append('\n');
+
+    out.append("== Plan ==\n");
+    for (var plan : plans) {
+      out.append("  %s: %d sources × %s × CRF %s = %d tasks (%s)%n".formatted(
+          plan.getStartTime(), plan.getInt("sources"), plan.getString("resolutions"),
+          plan.getString("crfValues"), plan.getInt("tasks"), seconds(plan.getDuration().toNanos())));
+    }
+
+    out.append("== Scheduler queue wait ==\n");
+    section(out, queueWaits);
+    out.append("  cancelled: ").append(cancelled).append('\n');
+
+    out.append("== Encode ==\n");
+    section(out, encodesBySubmitter);
+    long wallNanos = encodes.stream().mapToLong(event -> event.getDuration().toNanos()).sum();
+    out.append("  failed: %d, cpu=%s (%.1f cores avg), output=%.1f MB, peak RSS=%d MB%n".formatted(
+        encodeFailures, seconds(cpuNanos), wallNanos == 0 ? 0.0 : (double) cpuNanos / wallNanos,
+        outputBytes / (1024.0 * 1024.0), peakRss >> 20));
+
+    out.append("== Slowest encodes ==\n");
+    encodes.stream()
+        .sorted(Comparator.comparing((RecordedEvent event) -> event.getDuration()).reversed())
+        .limit(SLOWEST_ENCODES)
+        .forEach(event -> out.append("  %s %s pid=%d thread=%s wait=%s cpu=%s out=%.1f MB%s%n".formatted(
+            seconds(event.getDuration().toNanos()), event.getString("config"), event.getLong("pid"),
+            event.getThread() == null ? "?" : event.getThread().getJavaName(),
+            seconds(event.getLong("queueWait")), seconds(event.getLong("cpuTime")),
+            event.getLong("outputBytes") / (1024.0 * 1024.0),
+            event.getBoolean("success") ? "" : " FAILED")));
+    return out.toString();
+  }
+
+  private static void section(StringBuilder out, Map<String, Stats> stats) {
+    if (stats.isEmpty()) {
+      out.append("  (no events)\n");
+    }
+    stats.forEach((key, value) -> out.append("  ").append(key).append(": ").append(value.format()).append('\n'));
+  }
+
+  private static String seconds(long nanos) {
+    return "%.2fs".formatted(nanos / 1e9);
+  }
+}
@@ -0,0 +1,377 @@
+package wappon28dev.vvcnv_java.metrics;
+
+import wappon28dev.vvcnv_java.jfr.EncodeEvent;
+import wappon28dev.vvcnv_java.scheduler.EncodeScheduler;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Per-task resource accounting for encodes. A task opens a {@link Recording}
+ * around its ffmpeg run; the ffmpeg process is picked up through
+ * {@link ProcessTracker} and sampled periodically for CPU time
+ * ({@link ProcessHandle.Info#totalCpuDuration()}) and RSS ({@code /proc}).
+ *
+ * <p>
+ * CPU and peak RSS are read while the process is alive, so they can miss up to
+ * one sampling interval at the very end of a run.
+ * </p>
+ *
+ * <p>
+ * The sampler is also the stall watchdog: a process that has not made
+ * progress (see {@link ProcessOutput}) for the stall timeout is killed, and
+ * its recording reports {@link Recording#stalled()}.
+ * </p>
+ *
+ * <p>
+ * Each recording is also committed as a JFR {@link EncodeEvent}.
+ * </p>
+ */
+public final class EncodeMetrics implements EncodeMetricsMXBean {
+
+  private static final Duration SAMPLE_INTERVAL = Duration.ofMillis(250);
+  private static final int RECENT_CAPACITY = 256;
+  private static final long DEFAULT_STALL_SECONDS = 120;
+
+  private static final EncodeMetrics SHARED = new EncodeMetrics();
+
+  private final Set<Recording> running = ConcurrentHashMap.newKeySet();
+  private final ArrayDeque<TaskMetrics> recent = new ArrayDeque<>();
+  private final List<Consumer<TaskMetrics>> listeners = new CopyOnWriteArrayList<>();
+  private final ScheduledExecutorService sampler;
+  private volatile Duration stallTimeout =
+      Duration.ofSeconds(Long.getLong("vvcnv.watchdog.stallSeconds", DEFAULT_STALL_SECONDS));
+
+  // Totals, guarded by this
+  private long succeeded;
+  private long failed;
+  private long queueWaitNanos;
+  private long wallNanos;
+  private long cpuNanos;
+  private long outputBytes;
+  private long peakRssMax = -1;
+
+  private EncodeMetrics() {
+    sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      var thread = new Thread(runnable, "vvcnv-metrics-sampler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sampler.scheduleAtFixedRate(() -> running.forEach(Recording::sample),
+        SAMPLE_INTERVAL.toMillis(), SAMPLE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  public static EncodeMetrics shared() {
+    return SHARED;
+  }
+
+  /**
+   * Start recording a task on the calling thread. Processes launched through
+   * {@link ProcessTracker} on this thread are attributed to it until the
+   * recording is closed.
+   */
+  public Recording start(String label) {
+    return start(label, "");
+  }
+
+  /**
+   * Start recording a task
+   *
+   * @param label  what is being encoded (output path)
+   * @param config encoder settings, recorded in the JFR event
+   */
+  public Recording start(String label, String config) {
+    var job = EncodeScheduler.currentJob();
+    var recording = new Recording(
+        job.map(EncodeScheduler.RunningJob::submitter).orElse("direct"),
+        label,
+        config,
+        job.map(EncodeScheduler.RunningJob::waited).orElse(Duration.ZERO));
+    running.add(recording);
+    ProcessTracker.setListener(recording::attach);
+    return recording;
+  }
+
+  /**
+   * Kill processes that make no progress for {@code timeout}; zero disables
+   * the watchdog. Defaults to {@code -Dvvcnv.watchdog.stallSeconds} (120).
+   */
+  public void setStallTimeout(Duration timeout) {
+    stallTimeout = timeout;
+  }
+
+  public Duration getStallTimeout() {
+    return stallTimeout;
+  }
+
+  /**
+   * Called with every finished task, on the task's thread
+   */
+  public void addListener(Consumer<TaskMetrics> listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Consumer<TaskMetrics> listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Live figures of the tasks that are encoding right now
+   */
+  public List<TaskMetrics> runningTasks() {
+    return running.stream().map(Recording::snapshot).toList();
+  }
+
+  /**
+   * Most recently finished tasks, oldest first
+   */
+  public synchronized List<TaskMetrics> recentTasks() {
+    return List.copyOf(recent);
+  }
+
+  private void finish(Recording recording, TaskMetrics metrics) {
+    running.remove(recording);
+    synchronized (this) {
+      if (metrics.success()) {
+        succeeded++;
+      } else {
+        failed++;
+      }
+      queueWaitNanos += metrics.queueWait().toNanos();
+      wallNanos += metrics.wall().toNanos();
+      cpuNanos += metrics.cpu().toNanos();
+      outputBytes += metrics.outputBytes();
+      peakRssMax = Math.max(peakRssMax, metrics.peakRssBytes());
+      if (recent.size() == RECENT_CAPACITY) {
+        recent.removeFirst();
+      }
+      recent.addLast(metrics);
+    }
+    listeners.forEach(listener -> listener.accept(metrics));
+  }
+
+  // --- EncodeMetricsMXBean ---
+
+  @Override
+  public synchronized long getTasksSucceeded() {
+    return succeeded;
+  }
+
+  @Override
+  public synchronized long getTasksFailed() {
+    return failed;
+  }
+
+  @Override
+  public int getTasksRunning() {
+    return running.size();
+  }
+
+  @Override
+  public synchronized double getQueueWaitSecondsTotal() {
+    return queueWaitNanos / 1e9;
+  }
+
+  @Override
+  public synchronized double getWallSecondsTotal() {
+    return wallNanos / 1e9;
+  }
+
+  @Override
+  public synchronized double getCpuSecondsTotal() {
+    return cpuNanos / 1e9;
+  }
+
+  @Override
+  public synchronized long getOutputBytesTotal() {
+    return outputBytes;
+  }
+
+  @Override
+  public synchronized long getPeakRssBytesMax() {
+    return peakRssMax;
+  }
+
+  @Override
+  public long getRunningRssBytes() {
+    return running.stream().mapToLong(recording -> Math.max(0, recording.currentRss)).sum();
+  }
+
+  @Override
+  public String[] getRecentTasks() {
+    var lines = new ArrayList<String>();
+    runningTasks().forEach(metrics -> lines.add(format(metrics)));
+    recentTasks().reversed().forEach(metrics -> lines.add(format(metrics)));
+    return lines.toArray(String[]::new);
+  }
+
+  static String format(TaskMetrics metrics) {
+    return "%s [%s] %s pid=%d wait=%.1fs wall=%.1fs cpu=%.1fs peakRss=%dMB out=%.2fMB/s".formatted(
+        metrics.running() ? "RUNNING" : metrics.success() ? "OK" : "FAILED",
+        metrics.submitter(), metrics.label(), metrics.pid(),
+        metrics.queueWait().toMillis() / 1000.0, metrics.wall().toMillis() / 1000.0,
+        metrics.cpu().toMillis() / 1000.0, metrics.peakRssBytes() >> 20,
+        metrics.outputBytesPerSecond() / (1024 * 1024));
+  }
+
+  /**
+   * Measurements of one task; close it on the thread that started it
+   */
+  public final class Recording implements AutoCloseable {
+    private final String submitter;
+    private final String label;
+    private final Duration queueWait;
+    private final EncodeEvent event = new EncodeEvent();
+    private final long startNanos = System.nanoTime();
+    private ProcessHandle process;
+    private Process started;
+    private ProcessOutput output;
+    private boolean stalled;
+    private long pid = -1;
+    private long endedCpuNanos;
+    private long processCpuNanos;
+    private long peakRss = -1;
+    private volatile long currentRss = -1;
+    private long outputBytes;
+    private boolean success;
+    private boolean closed;
+
+    private Recording(String submitter, String label, String config, Duration queueWait) {
+      this.submitter = submitter;
+      this.label = label;
+      this.queueWait = queueWait;
+      event.begin();
+      event.config = config;
+      event.output = label;
+      event.submitter = submitter;
+    }
+
+    private synchronized void attach(Process started) {
+      // Earlier processes of the same task (retries) keep their CPU time
+      endedCpuNanos += processCpuNanos;
+      processCpuNanos = 0;
+      this.started = started;
+      output = ProcessTracker.outputOf(started);
+      stalled = false;
+      process = started.toHandle();
+      pid = started.pid();
+      sample();
+    }
+
+    synchronized void sample() {
+      if (process == null || !process.isAlive()) {
+        return;
+      }
+      var timeout = stallTimeout;
+      if (output != null && timeout.isPositive()
+          && System.nanoTime() - output.lastProgressNanos() > timeout.toNanos()) {
+        System.err.println("応答のない ffmpeg を停止します: %s (pid %d, %.1f秒間進捗なし)".formatted(
+            label, pid, timeout.toMillis() / 1000.0));
+        stalled = true;
+        process.destroyForcibly();
+        return;
+      }
+      process.info().totalCpuDuration().ifPresent(cpu -> processCpuNanos = Math.max(processCpuNanos, cpu.toNanos()));
+      var status = ProcStatus.read(pid);
+      currentRss = status.rssBytes();
+      peakRss = Math.max(peakRss, Math.max(status.peakRssBytes(), status.rssBytes()));
+    }
+
+    /**
+     * Mark the task successful with the size of its output
+     */
+    public synchronized void succeeded(long outputBytes) {
+      this.success = true;
+      this.outputBytes = outputBytes;
+    }
+
+    public long pid() {
+      return pid;
+    }
+
+    /**
+     * Ask the task's current process to stop (SIGTERM, so ffmpeg still
+     * closes its output); false if none is running
+     */
+    public synchronized boolean terminate() {
+      return process != null && process.isAlive() && process.destroy();
+    }
+
+    /**
+     * Whether the watchdog killed the current process for making no progress
+     */
+    public synchronized boolean stalled() {
+      return stalled;
+    }
+
+    /**
+     * Exit status of the current process ({@code 128 + signal} when a signal
+     * killed it), or -1 while it runs or if none was started
+     */
+    public synchronized int exitCode() {
+      return started != null && !started.isAlive() ? started.exitValue() : -1;
+    }
+
+    /**
+     * Last lines the current process printed, oldest first
+     */
+    public synchronized List<String> outputTail() {
+      return output != null ? output.tail() : List.of();
+    }
+
+    /**
+     * Frames the current process reported writing, -1 if it reported none
+     */
+    public synchronized long frames() {
+      return output != null ? output.frames() : -1;
+    }
+
+    /**
+     * Highest RSS sampled so far, -1 if never sampled
+     */
+    public synchronized long peakRssBytes() {
+      return peakRss;
+    }
+
+    synchronized TaskMetrics snapshot() {
+      return new TaskMetrics(submitter, label, pid, queueWait,
+          Duration.ofNanos(System.nanoTime() - startNanos),
+          Duration.ofNanos(endedCpuNanos + processCpuNanos),
+          currentRss, peakRss, outputBytes, !closed, success);
+    }
+
+    @Override
+    public void close() {
+      ProcessTracker.clearListener();
+      TaskMetrics metrics;
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        currentRss = -1;
+        metrics = snapshot();
+      }
+      event.end();
+      if (event.shouldCommit()) {
+        event.pid = metrics.pid();
+        event.queueWait = metrics.queueWait().toNanos();
+        event.cpuTime = metrics.cpu().toNanos();
+        event.peakRss = metrics.peakRssBytes();
+        event.outputBytes = metrics.outputBytes();
+        event.success = metrics.success();
+        event.commit();
+      }
+      finish(this, metrics);
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package wappon28dev.vvcnv_java.metrics;
+
+/**
+ * JMX view of {@link EncodeMetrics} ({@code wappon28dev.vvcnv:type=EncodeMetrics})
+ */
+public interface EncodeMetricsMXBean {
+
+  long getTasksSucceeded();
+
+  long getTasksFailed();
+
+  int getTasksRunning();
+
+  double getQueueWaitSecondsTotal();
+
+  double getWallSecondsTotal();
+
+  double getCpuSecondsTotal();
+
+  long getOutputBytesTotal();
+
+  long getPeakRssBytesMax();
+
+  /** Sum of the current RSS of all running ffmpeg processes */
+  long getRunningRssBytes();
+
+  /** One line per running and recently finished task */
+  String[] getRecentTasks();
+}
@@ -0,0 +1,22 @@
+package wappon28dev.vvcnv_java.metrics;
+
+/**
+ * JMX view of the shared scheduler ({@code wappon28dev.vvcnv:type=EncodeScheduler})
+ */
+public interface EncodeSchedulerMXBean {
+
+  int getMaxJobs();
+
+  int getCoreBudget();
+
+  int getRunningJobs();
+
+  int getRunningCores();
+
+  int getQueuedJobs();
+
+  /** One line per submitter: name, weight, queued, running, average/max wait */
+  String[] getSubmitters();
+
+  void setLimits(int maxJobs, int coreBudget);
+}
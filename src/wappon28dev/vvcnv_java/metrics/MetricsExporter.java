@@ -0,0 +1,178 @@
+package wappon28dev.vvcnv_java.metrics;
+
+import wappon28dev.vvcnv_java.scheduler.EncodeScheduler;
+
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Publishes {@link EncodeMetrics} and the shared {@link EncodeScheduler} as
+ * JMX MBeans and, when {@code -Dvvcnv.metrics.port} is set, as a
+ * Prometheus text endpoint on {@code http://127.0.0.1:<port>/metrics}.
+ */
+public final class MetricsExporter {
+
+  public static final String PORT_PROPERTY = "vvcnv.metrics.port";
+
+  private static boolean installed;
+
+  private MetricsExporter() {
+    // Utility class
+  }
+
+  /**
+   * Register the MBeans and start the endpoint; later calls do nothing
+   */
+  public static synchronized void install() {
+    if (installed) {
+      return;
+    }
+    installed = true;
+
+    var metrics = EncodeMetrics.shared();
+    var scheduler = EncodeScheduler.shared();
+    try {
+      var server = ManagementFactory.getPlatformMBeanServer();
+      server.registerMBean(metrics, new ObjectName("wappon28dev.vvcnv:type=EncodeMetrics"));
+      server.registerMBean(new SchedulerBean(scheduler), new ObjectName("wappon28dev.vvcnv:type=EncodeScheduler"));
+    } catch (JMException e) {
+      System.err.println("MBean登録に失敗しました: " + e.getMessage());
+    }
+
+    var port = Integer.getInteger(PORT_PROPERTY);
+    if (port != null) {
+      try {
+        startHttp(port, metrics, scheduler);
+        System.out.println("メトリクス: http://127.0.0.1:" + port + "/metrics");
+      } catch (IOException e) {
+        System.err.println("メトリクスエンドポイントを開始できません: " + e.getMessage());
+      }
+    }
+  }
+
+  private static void startHttp(int port, EncodeMetrics metrics, EncodeScheduler scheduler) throws IOException {
+    var server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/metrics", exchange -> {
+      try (exchange) {
+        var body = prometheusText(metrics, scheduler).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+      }
+    });
+    server.setExecutor(null);
+    server.start();
+  }
+
+  /**
+   * Metrics in the Prometheus text exposition format
+   */
+  public static String prometheusText(EncodeMetrics metrics, EncodeScheduler scheduler) {
+    var out = new StringBuilder();
+    var snapshot = scheduler.snapshot();
+
+    metric(out, "vvcnv_tasks_total", "counter", "Finished encode tasks");
+    sample(out, "vvcnv_tasks_total{result=\"success\"}", metrics.getTasksSucceeded());
+    sample(out, "vvcnv_tasks_total{result=\"failure\"}", metrics.getTasksFailed());
+    metric(out, "vvcnv_task_queue_wait_seconds_total", "counter", "Time finished tasks spent queued");
+    sample(out, "vvcnv_task_queue_wait_seconds_total", metrics.getQueueWaitSecondsTotal());
+    metric(out, "vvcnv_task_wall_seconds_total", "counter", "Encode wall time of finished tasks");
+    sample(out, "vvcnv_task_wall_seconds_total", metrics.getWallSecondsTotal());
+    metric(out, "vvcnv_task_cpu_seconds_total", "counter", "ffmpeg CPU time of finished tasks");
+    sample(out, "vvcnv_task_cpu_seconds_total", metrics.getCpuSecondsTotal());
+    metric(out, "vvcnv_output_bytes_total", "counter", "Bytes written by finished tasks");
+    sample(out, "vvcnv_output_bytes_total", metrics.getOutputBytesTotal());
+    metric(out, "vvcnv_task_peak_rss_bytes_max", "gauge", "Largest ffmpeg peak RSS seen");
+    sample(out, "vvcnv_task_peak_rss_bytes_max", metrics.getPeakRssBytesMax());
+
+    metric(out, "vvcnv_running_tasks", "gauge", "Tasks encoding right now");
+    sample(out, "vvcnv_running_tasks", metrics.getTasksRunning());
+    metric(out, "vvcnv_running_rss_bytes", "gauge", "Current RSS of running ffmpeg processes");
+    sample(out, "vvcnv_running_rss_bytes", metrics.getRunningRssBytes());
+
+    metric(out, "vvcnv_scheduler_queued_jobs", "gauge", "Jobs waiting for a slot");
+    sample(out, "vvcnv_scheduler_queued_jobs", snapshot.queuedJobs());
+    metric(out, "vvcnv_scheduler_running_jobs", "gauge", "Jobs holding a slot");
+    sample(out, "vvcnv_scheduler_running_jobs", snapshot.runningJobs());
+    metric(out, "vvcnv_scheduler_running_cores", "gauge", "Encoder threads of running jobs");
+    sample(out, "vvcnv_scheduler_running_cores", snapshot.runningCores());
+    metric(out, "vvcnv_scheduler_max_jobs", "gauge", "Concurrent job limit");
+    sample(out, "vvcnv_scheduler_max_jobs", snapshot.maxJobs());
+    metric(out, "vvcnv_scheduler_job_limit", "gauge", "Concurrent jobs allowed now (adaptive)");
+    sample(out, "vvcnv_scheduler_job_limit", snapshot.jobLimit());
+    metric(out, "vvcnv_scheduler_core_budget", "gauge", "Encoder thread limit");
+    sample(out, "vvcnv_scheduler_core_budget", snapshot.coreBudget());
+    metric(out, "vvcnv_scheduler_disk_waiting", "gauge", "Submitters waiting for disk space or a writer slot");
+    sample(out, "vvcnv_scheduler_disk_waiting", snapshot.diskWaiting());
+    metric(out, "vvcnv_scheduler_reserved_bytes", "gauge", "Output bytes running jobs are still expected to write");
+    sample(out, "vvcnv_scheduler_reserved_bytes", snapshot.reservedBytes());
+    metric(out, "vvcnv_scheduler_running_memory_bytes", "gauge", "Expected peak memory of running jobs");
+    sample(out, "vvcnv_scheduler_running_memory_bytes", snapshot.runningMemory());
+    metric(out, "vvcnv_scheduler_memory_budget_bytes", "gauge", "Memory budget of running jobs");
+    sample(out, "vvcnv_scheduler_memory_budget_bytes", snapshot.memoryBudget());
+    return out.toString();
+  }
+
+  private static void metric(StringBuilder out, String name, String type, String help) {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(StringBuilder out, String name, double value) {
+    out.append(name).append(' ').append(String.format(Locale.ROOT, "%.3f", value)).append('\n');
+  }
+
+  private static void sample(StringBuilder out, String name, long value) {
+    out.append(name).append(' ').append(value).append('\n');
+  }
+
+  private record SchedulerBean(EncodeScheduler scheduler) implements EncodeSchedulerMXBean {
+
+    @Override
+    public int getMaxJobs() {
+      return scheduler.snapshot().maxJobs();
+    }
+
+    @Override
+    public int getCoreBudget() {
+      return scheduler.snapshot().coreBudget();
+    }
+
+    @Override
+    public int getRunningJobs() {
+      return scheduler.snapshot().runningJobs();
+    }
+
+    @Override
+    public int getRunningCores() {
+      return scheduler.snapshot().runningCores();
+    }
+
+    @Override
+    public int getQueuedJobs() {
+      return scheduler.snapshot().queuedJobs();
+    }
+
+    @Override
+    public String[] getSubmitters() {
+      return scheduler.snapshot().submitters().stream()
+          .map(stats -> "%s weight=%d queued=%d running=%d/%d avgWait=%.1fs maxWait=%.1fs".formatted(
+              stats.name(), stats.weight(), stats.queued(), stats.running(), stats.maxRunning(),
+              stats.averageWait().toMillis() / 1000.0, stats.maxWait().toMillis() / 1000.0))
+          .toArray(String[]::new);
+    }
+
+    @Override
+    public void setLimits(int maxJobs, int coreBudget) {
+      scheduler.setLimits(maxJobs, coreBudget);
+    }
+  }
+}
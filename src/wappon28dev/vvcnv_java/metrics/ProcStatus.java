@@ -0,0 +1,43 @@
+package wappon28dev.vvcnv_java.metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Memory figures from Linux {@code /proc/<pid>/status}; every value is -1 on
+ * other systems or once the process is gone
+ *
+ * @param rssBytes     current resident set size (VmRSS)
+ * @param peakRssBytes peak resident set size (VmHWM)
+ */
+record ProcStatus(long rssBytes, long peakRssBytes) {
+
+  static final ProcStatus UNKNOWN = new ProcStatus(-1, -1);
+
+  static ProcStatus read(long pid) {
+    var path = Path.of("/proc", Long.toString(pid), "status");
+    try {
+      long rss = -1;
+      long hwm = -1;
+      for (var line : Files.readAllLines(path)) {
+        if (line.startsWith("VmRSS:")) {
+          rss = parseKiloBytes(line);
+        } else if (line.startsWith("VmHWM:")) {
+          hwm = parseKiloBytes(line);
+        }
+      }
+      return new ProcStatus(rss, hwm);
+    } catch (IOException | RuntimeException e) {
+      return UNKNOWN;
+    }
+  }
+
+  /**
+   * "VmHWM:     12345 kB" → bytes
+   */
+  static long parseKiloBytes(String line) {
+    var fields = line.substring(line.indexOf(':') + 1).trim().split("\\s+");
+    return Long.parseLong(fields[0]) * 1024;
+  }
+}
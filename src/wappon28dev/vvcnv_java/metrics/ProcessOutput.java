@@ -0,0 +1,140 @@
+package wappon28dev.vvcnv_java.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * What an ffmpeg process has printed: its last lines, and when it last made
+ * progress. Fed by {@link #tee(InputStream)} while bramp drains the process's
+ * output (stderr merged into stdout).
+ *
+ * <p>
+ * ffmpeg rewrites its {@code frame= ...} stats line with {@code \r} every
+ * stats period, even when nothing moves. A stats line therefore only counts
+ * as progress when its frame number grew, and only the latest one is kept so
+ * the tail stays readable. Any other line counts as progress.
+ * </p>
+ *
+ * <p>
+ * bramp runs ffmpeg with {@code -v error}, which prints no stats line unless
+ * {@code -stats} is given as well.
+ * </p>
+ */
+public final class ProcessOutput {
+
+  public static final int TAIL_LINES = 12;
+
+  private static final Pattern FRAME = Pattern.compile("^frame=\\s*(\\d+)");
+  private static final int MAX_LINE_BYTES = 1024;
+
+  private final ArrayDeque<String> tail = new ArrayDeque<>();
+  private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+  private boolean lastIsStats;
+  private long frame = -1;
+  private volatile long lastProgressNanos = System.nanoTime();
+
+  /**
+   * {@code in}, recording everything read from it here
+   */
+  public InputStream tee(InputStream in) {
+    return new FilterInputStream(in) {
+      @Override
+      public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+          accept(new byte[] { (byte) b }, 0, 1);
+        } else {
+          flush();
+        }
+        return b;
+      }
+
+      @Override
+      public int read(byte[] buffer, int offset, int length) throws IOException {
+        int n = super.read(buffer, offset, length);
+        if (n > 0) {
+          accept(buffer, offset, n);
+        } else if (n < 0) {
+          flush();
+        }
+        return n;
+      }
+    };
+  }
+
+  /**
+   * Feed raw output
+   */
+  public synchronized void accept(byte[] bytes, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      byte b = bytes[i];
+      if (b == '\n' || b == '\r') {
+        endLine();
+      } else if (line.size() < MAX_LINE_BYTES) {
+        line.write(b);
+      }
+    }
+  }
+
+  /**
+   * Take a last line that was not terminated
+   */
+  public synchronized void flush() {
+    endLine();
+  }
+
+  /**
+   * The last {@link #TAIL_LINES} lines, oldest first
+   */
+  public synchronized List<String> tail() {
+    return List.copyOf(tail);
+  }
+
+  /**
+   * Frame number of the latest stats line (the frames written, once the
+   * process has ended), or -1 if there was none
+   */
+  public synchronized long frames() {
+    return frame;
+  }
+
+  /**
+   * {@link System#nanoTime()} of the last progress, or of creation
+   */
+  public long lastProgressNanos() {
+    return lastProgressNanos;
+  }
+
+  private void endLine() {
+    var text = line.toString(StandardCharsets.UTF_8).strip();
+    line.reset();
+    if (text.isEmpty()) {
+      return;
+    }
+    var matcher = FRAME.matcher(text);
+    boolean stats = matcher.find();
+    if (stats) {
+      long current = Long.parseLong(matcher.group(1));
+      if (current > frame) {
+        frame = current;
+        lastProgressNanos = System.nanoTime();
+      }
+      if (lastIsStats) {
+        tail.removeLast();
+      }
+    } else {
+      lastProgressNanos = System.nanoTime();
+    }
+    if (tail.size() == TAIL_LINES) {
+      tail.removeFirst();
+    }
+    tail.addLast(text);
+    lastIsStats = stats;
+  }
+}
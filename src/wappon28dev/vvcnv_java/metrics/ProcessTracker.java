@@ -0,0 +1,169 @@
+package wappon28dev.vvcnv_java.metrics;
+
+import wappon28dev.vvcnv_java.scheduler.EncodeScheduler;
+import wappon28dev.vvcnv_java.scheduler.Qos;
+import wappon28dev.vvcnv_java.scheduler.QosLauncher;
+
+import net.bramp.ffmpeg.RunProcessFunction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Process launcher for bramp's FFmpeg that reports every started process to a
+ * per-thread listener. bramp runs the process on the calling thread, so a
+ * listener installed around {@code job.run()} sees exactly that job's ffmpeg.
+ * Processes started inside a scheduler job get that job's {@link Qos}, and
+ * what they print is recorded in a {@link ProcessOutput} on its way to bramp.
+ * {@link #runPiped} starts a process whose stdout carries data instead.
+ */
+public class ProcessTracker extends RunProcessFunction {
+
+  private static final ThreadLocal<Consumer<Process>> LISTENER = new ThreadLocal<>();
+
+  @Override
+  public Process run(List<String> args) throws IOException {
+    return notifyListener(new Tracked(super.run(QosLauncher.wrap(EncodeScheduler.currentQos(), args)), false));
+  }
+
+  /**
+   * Start {@code args} with stderr kept apart, for an ffmpeg writing its
+   * output to {@code pipe:1}. stdout is left untouched for the caller to
+   * read; stderr (the stats lines) is recorded, and must be drained too.
+   */
+  public Process runPiped(List<String> args) throws IOException {
+    var process = new ProcessBuilder(QosLauncher.wrap(EncodeScheduler.currentQos(), args)).start();
+    return notifyListener(new Tracked(process, true));
+  }
+
+  private static Process notifyListener(Process process) {
+    var listener = LISTENER.get();
+    if (listener != null) {
+      listener.accept(process);
+    }
+    return process;
+  }
+
+  /**
+   * Report processes started by the calling thread to {@code listener} until
+   * {@link #clearListener()}
+   */
+  public static void setListener(Consumer<Process> listener) {
+    LISTENER.set(listener);
+  }
+
+  public static void clearListener() {
+    LISTENER.remove();
+  }
+
+  /**
+   * What a process started here has printed, or null for other processes
+   */
+  public static ProcessOutput outputOf(Process process) {
+    return process instanceof Tracked tracked ? tracked.output : null;
+  }
+
+  /**
+   * The started process, with its output (or, when piped, its stderr) teed
+   * into a {@link ProcessOutput}
+   */
+  private static final class Tracked extends Process {
+    private final Process process;
+    private final ProcessOutput output = new ProcessOutput();
+    private final InputStream inputStream;
+    private final InputStream errorStream;
+
+    Tracked(Process process, boolean piped) {
+      this.process = process;
+      this.inputStream = piped ? process.getInputStream() : output.tee(process.getInputStream());
+      this.errorStream = piped ? output.tee(process.getErrorStream()) : process.getErrorStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return process.getOutputStream();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return inputStream;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+      return errorStream;
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+      return process.waitFor();
+    }
+
+    @Override
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+      return process.waitFor(timeout, unit);
+    }
+
+    @Override
+    public int exitValue() {
+      return process.exitValue();
+    }
+
+    @Override
+    public void destroy() {
+      process.destroy();
+    }
+
+    @Override
+    public Process destroyForcibly() {
+      process.destroyForcibly();
+      return this;
+    }
+
+    @Override
+    public boolean supportsNormalTermination() {
+      return process.supportsNormalTermination();
+    }
+
+    @Override
+    public boolean isAlive() {
+      return process.isAlive();
+    }
+
+    @Override
+    public long pid() {
+      return process.pid();
+    }
+
+    @Override
+    public CompletableFuture<Process> onExit() {
+      return process.onExit().thenApply(exited -> this);
+    }
+
+    @Override
+    public ProcessHandle toHandle() {
+      return process.toHandle();
+    }
+
+    @Override
+    public ProcessHandle.Info info() {
+      return process.info();
+    }
+
+    @Override
+    public Stream<ProcessHandle> children() {
+      return process.children();
+    }
+
+    @Override
+    public Stream<ProcessHandle> descendants() {
+      return process.descendants();
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package wappon28dev.vvcnv_java.metrics;
+
+import java.time.Duration;
+
+/**
+ * Resource usage of one encode task
+ *
+ * @param submitter     scheduler submitter that queued the task, or "direct"
+ * @param label         what was encoded (output path)
+ * @param pid           last ffmpeg process of the task, -1 if none started
+ * @param queueWait     time spent queued in the scheduler
+ * @param wall          encode wall time
+ * @param cpu           user + system CPU time of the ffmpeg processes
+ * @param rssBytes      current resident set size of ffmpeg, -1 when unknown or
+ *                      finished
+ * @param peakRssBytes  peak resident set size of ffmpeg, -1 when unknown
+ * @param outputBytes   size of the output file, 0 on failure
+ * @param running       true while the task is still encoding
+ * @param success       whether the encode succeeded (false while running)
+ */
+public record TaskMetrics(
+    String submitter,
+    String label,
+    long pid,
+    Duration queueWait,
+    Duration wall,
+    Duration cpu,
+    long rssBytes,
+    long peakRssBytes,
+    long outputBytes,
+    boolean running,
+    boolean success) {
+
+  /**
+   * Output bytes per second of wall time
+   */
+  public double outputBytesPerSecond() {
+    double seconds = wall.toNanos() / 1e9;
+    return seconds > 0 ? outputBytes / seconds : 0.0;
+  }
+
+  /**
+   * Average cores used by ffmpeg over the wall time
+   */
+  public double cpuUtilization() {
+    return wall.isZero() ? 0.0 : (double) cpu.toNanos() / wall.toNanos();
+  }
+}
@@ -0,0 +1,68 @@
+package wappon28dev.vvcnv_java.modules;
+
+import wappon28dev.vvcnv_java.util.Result;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Pure-Java {@link VideoStatProvider} that reads MP4/MOV {@code moov} atoms and
+ * Matroska/WebM EBML headers directly, without starting ffprobe.
+ *
+ * <p>
+ * Anything it cannot answer completely (fragmented MP4, live WebM without
+ * duration, missing frame rate, other containers) comes back as an Err so the
+ * caller can fall back to ffprobe.
+ */
+public final class ContainerProbe implements VideoStatProvider {
+
+  private static final int EBML_MAGIC = 0x1A45DFA3;
+
+  @Override
+  public Result<VideoStat, String> stat(String inputPath) {
+    try (var channel = FileChannel.open(Path.of(inputPath), StandardOpenOption.READ)) {
+      var head = ByteBuffer.allocate(12);
+      while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+        // Fill the sniffing buffer
+      }
+      head.flip();
+      if (head.remaining() < 8) {
+        return Result.err("File too small: " + inputPath);
+      }
+
+      if (head.getInt(0) == EBML_MAGIC) {
+        return MatroskaHeaderParser.parse(inputPath, channel);
+      }
+      if (Mp4HeaderParser.looksLikeMp4(head)) {
+        return Mp4HeaderParser.parse(inputPath, channel);
+      }
+      return Result.err("Unsupported container: " + inputPath);
+    } catch (IOException | RuntimeException e) {
+      // RuntimeException covers BufferUnderflow etc. on truncated/corrupt headers
+      return Result.err("Container parse failed: " + e);
+    }
+  }
+
+  /**
+   * Snap a measured frame rate to the nearest integer or NTSC (n*1000/1001)
+   * rate when it is within rounding error, so 1e9/33333334 ns reads as 30 and
+   * not 29.9999994 (which would make a 30fps config look like upscaling)
+   */
+  static double snapFrameRate(double fps) {
+    if (fps <= 0) {
+      return 0.0;
+    }
+    double integer = Math.rint(fps);
+    if (Math.abs(fps - integer) < 1e-4 * fps) {
+      return integer;
+    }
+    double ntsc = Math.rint(fps * 1001.0 / 1000.0) * 1000.0 / 1001.0;
+    if (Math.abs(fps - ntsc) < 1e-4 * fps) {
+      return ntsc;
+    }
+    return fps;
+  }
+}
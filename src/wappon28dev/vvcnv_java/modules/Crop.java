@@ -0,0 +1,76 @@
+package wappon28dev.vvcnv_java.modules;
+
+import java.util.Locale;
+
+/**
+ * Picture area of a source without its letterbox or pillarbox bars, in source
+ * pixels
+ *
+ * @param x left edge
+ * @param y top edge
+ */
+public record Crop(int width, int height, int x, int y) {
+
+  public Crop {
+    if (width <= 0 || height <= 0 || x < 0 || y < 0) {
+      throw new IllegalArgumentException("Invalid crop: %d:%d:%d:%d".formatted(width, height, x, y));
+    }
+  }
+
+  /**
+   * Parse ffmpeg's {@code w:h:x:y}
+   */
+  public static Crop parse(String text) {
+    var parts = text.strip().split(":");
+    if (parts.length != 4) {
+      throw new IllegalArgumentException("Invalid crop: " + text);
+    }
+    return new Crop(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+        Integer.parseInt(parts[3]));
+  }
+
+  /**
+   * The smallest area containing both crops, so neither loses picture
+   */
+  public Crop union(Crop other) {
+    int left = Math.min(x, other.x);
+    int top = Math.min(y, other.y);
+    int right = Math.max(x + width, other.x + other.width);
+    int bottom = Math.max(y + height, other.y + other.height);
+    return new Crop(right - left, bottom - top, left, top);
+  }
+
+  /**
+   * Share of the source's pixels this crop keeps
+   */
+  public double areaShare(VideoStat stat) {
+    var video = stat.videoStream();
+    return (double) width * height / Math.max(1L, (long) video.width() * video.height());
+  }
+
+  /**
+   * Output size for {@code res}: the crop scaled to fit inside it with its
+   * aspect kept and never enlarged, both sides even for yuv420p
+   */
+  public int[] fit(VideoRes res) {
+    double scale = Math.min(1.0, Math.min((double) res.getWidth() / width, (double) res.getHeight() / height));
+    return new int[] { even(width * scale, res.getWidth()), even(height * scale, res.getHeight()) };
+  }
+
+  /**
+   * {@code -vf} that crops, then scales to {@link #fit(VideoRes)}
+   */
+  public String filter(VideoRes res) {
+    var size = fit(res);
+    return "crop=%s,scale=%d:%d".formatted(this, size[0], size[1]);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "%d:%d:%d:%d", width, height, x, y);
+  }
+
+  private static int even(double value, int max) {
+    return Math.max(2, Math.min(max, (int) Math.round(value / 2) * 2));
+  }
+}
@@ -0,0 +1,228 @@
+package wappon28dev.vvcnv_java.modules;
+
+import wappon28dev.vvcnv_java.util.Result;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the letterbox / pillarbox bars of a source so every grid cell can
+ * crop them before scaling.
+ *
+ * <p>
+ * {@code cropdetect} runs on a few keyframes spread over the source
+ * ({@code -skip_frame nokey} with input seeking, like the previews), so
+ * detection costs a handful of frame decodes however long the source is. The
+ * crops of all samples are united, so a dark scene in one sample cannot cut
+ * away picture the others show. Results are cached in memory and under
+ * {@link #defaultCacheDir()} by the source's {@link FileModule#fingerprint},
+ * so a source is analysed once however many grids use it.
+ * </p>
+ */
+public class CropDetector {
+
+  /** Seek positions per source */
+  public static final int SAMPLES = 6;
+  /** Keyframes analysed after each seek */
+  public static final int FRAMES_PER_SAMPLE = 2;
+  /** Bars thinner than this share of the frame are not worth a crop */
+  public static final double MIN_TRIM_SHARE = 0.02;
+
+  /** Bump when the detection changes so old cache entries are not reused */
+  private static final String FORMAT_VERSION = "crop-v1";
+  private static final String NO_CROP = "none";
+  private static final Pattern CROP = Pattern.compile("crop=(\\d+:\\d+:\\d+:\\d+)");
+
+  private final String ffmpegPath;
+  private final Path cacheDir;
+  private final Map<String, Optional<Crop>> memory = new ConcurrentHashMap<>();
+
+  public CropDetector(String ffmpegPath, Path cacheDir) {
+    this.ffmpegPath = ffmpegPath;
+    this.cacheDir = cacheDir;
+  }
+
+  /**
+   * {@code -Dvvcnv.crop.dir}, or {@code ~/.cache/vvcnv/crops}
+   */
+  public static Path defaultCacheDir() {
+    var configured = System.getProperty("vvcnv.crop.dir");
+    if (configured != null && !configured.isBlank()) {
+      return Path.of(configured);
+    }
+    return Path.of(System.getProperty("user.home"), ".cache", "vvcnv", "crops");
+  }
+
+  /**
+   * The picture area of {@code stat}, or empty if it has no bars worth
+   * cropping. Blocks while ffmpeg runs on a cache miss.
+   */
+  public Result<Optional<Crop>, String> detect(VideoStat stat) {
+    String key;
+    try {
+      key = FileModule.fingerprint(Path.of(stat.path()), FORMAT_VERSION);
+    } catch (IOException e) {
+      return Result.err("Failed to read source for crop detection: " + e.getMessage());
+    }
+
+    var cached = memory.get(key);
+    if (cached != null) {
+      return Result.ok(cached);
+    }
+    var entry = cacheDir.resolve(key + ".txt");
+    var stored = readEntry(entry);
+    if (stored != null) {
+      memory.put(key, stored);
+      return Result.ok(stored);
+    }
+
+    var output = run(detectCommand(ffmpegPath, stat.path(), sampleTimes(stat.duration())));
+    if (output instanceof Result.Err<List<String>, String> err) {
+      return Result.err(err.error());
+    }
+    var crop = choose(stat, ((Result.Ok<List<String>, String>) output).value());
+    memory.put(key, crop);
+    writeEntry(entry, crop);
+    return Result.ok(crop);
+  }
+
+  /**
+   * Seek positions of the samples: evenly inside the source, never at the
+   * very start or end (titles and credits are often black)
+   */
+  static double[] sampleTimes(Duration duration) {
+    double total = duration.toMillis() / 1000.0;
+    if (total <= 0) {
+      return new double[] { 0.0 };
+    }
+    var times = new double[SAMPLES];
+    for (int i = 0; i < SAMPLES; i++) {
+      times[i] = total * (i + 1) / (SAMPLES + 1);
+    }
+    return times;
+  }
+
+  /**
+   * One ffmpeg process: each sample opens the input with its own seek and
+   * feeds {@value #FRAMES_PER_SAMPLE} keyframes to {@code cropdetect}, whose
+   * findings go to stderr at info level. Nothing is written.
+   */
+  public static List<String> detectCommand(String ffmpegPath, String inputPath, double[] seconds) {
+    var command = new ArrayList<>(List.of(ffmpegPath, "-nostdin", "-nostats", "-hide_banner", "-v", "info"));
+    for (double second : seconds) {
+      command.addAll(List.of(
+          "-skip_frame", "nokey",
+          "-ss", String.format(Locale.ROOT, "%.3f", second),
+          "-i", inputPath));
+    }
+    for (int i = 0; i < seconds.length; i++) {
+      command.addAll(List.of(
+          "-map", i + ":v:0",
+          "-frames:v", String.valueOf(FRAMES_PER_SAMPLE),
+          "-vf", "cropdetect=limit=24:round=2:reset=0",
+          "-threads", "1",
+          "-f", "null", "-"));
+    }
+    return command;
+  }
+
+  /**
+   * The union of the crops {@code cropdetect} printed, or empty if there
+   * were none or they trim less than {@link #MIN_TRIM_SHARE} on both axes
+   */
+  public static Optional<Crop> choose(VideoStat stat, List<String> lines) {
+    Crop union = null;
+    for (var line : lines) {
+      var matcher = CROP.matcher(line);
+      Crop crop = null;
+      while (matcher.find()) {
+        try {
+          crop = Crop.parse(matcher.group(1));
+        } catch (IllegalArgumentException e) {
+          // A black frame reports no area
+        }
+      }
+      if (crop != null) {
+        union = union == null ? crop : union.union(crop);
+      }
+    }
+    if (union == null) {
+      return Optional.empty();
+    }
+
+    var video = stat.videoStream();
+    boolean trimsWidth = union.width() < video.width() * (1 - MIN_TRIM_SHARE);
+    boolean trimsHeight = union.height() < video.height() * (1 - MIN_TRIM_SHARE);
+    if (!trimsWidth && !trimsHeight) {
+      return Optional.empty();
+    }
+    // Keep the full extent of an axis whose bars are too thin to matter
+    return Optional.of(new Crop(
+        trimsWidth ? union.width() : video.width(),
+        trimsHeight ? union.height() : video.height(),
+        trimsWidth ? union.x() : 0,
+        trimsHeight ? union.y() : 0));
+  }
+
+  private static Optional<Crop> readEntry(Path entry) {
+    if (!Files.isRegularFile(entry)) {
+      return null;
+    }
+    try {
+      var text = Files.readString(entry).strip();
+      return NO_CROP.equals(text) ? Optional.empty() : Optional.of(Crop.parse(text));
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println("クロップキャッシュを読めません: " + entry + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  private static void writeEntry(Path entry, Optional<Crop> crop) {
+    try {
+      Files.createDirectories(entry.getParent());
+      var staging = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".tmp");
+      Files.writeString(staging, crop.map(Crop::toString).orElse(NO_CROP));
+      Files.move(staging, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      System.err.println("クロップキャッシュを書けません: " + entry + ": " + e.getMessage());
+    }
+  }
+
+  private Result<List<String>, String> run(List<String> command) {
+    try {
+      var process = new ProcessBuilder(command)
+          .redirectErrorStream(true)
+          .start();
+      var lines = new ArrayList<String>();
+      try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+        for (String line; (line = reader.readLine()) != null;) {
+          lines.add(line);
+        }
+      }
+      int exitCode = process.waitFor();
+      if (exitCode != 0) {
+        var tail = lines.subList(Math.max(0, lines.size() - 3), lines.size());
+        return Result.err("cropdetect failed: ffmpeg exited with " + exitCode + ": " + String.join("\n", tail));
+      }
+      return Result.ok(lines);
+    } catch (IOException e) {
+      return Result.err("Failed to start ffmpeg: " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Result.err("Interrupted while detecting crop");
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package wappon28dev.vvcnv_java.modules;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Why an ffmpeg run failed, read from how its process ended. The error string
+ * of a failed encode starts with the kind's prefix and carries the last lines
+ * ffmpeg printed, so the kind survives the trip through
+ * {@code Result<Void, String>} and {@link #of(String)} can recover it.
+ */
+public enum EncodeFailure {
+  /** Killed by the stall watchdog */
+  STALLED("stalled: "),
+  /** Killed with SIGKILL (the kernel or cgroup OOM killer), or out of memory */
+  OUT_OF_MEMORY("out of memory: "),
+  /** Died on a fatal signal */
+  CRASHED("crashed: "),
+  /** Exited with an error of its own, usually the same on every try */
+  ERROR("Encoding failed: ");
+
+  private static final int SIGNAL_EXIT = 128;
+  private static final int SIGILL = 4;
+  private static final int SIGABRT = 6;
+  private static final int SIGBUS = 7;
+  private static final int SIGFPE = 8;
+  private static final int SIGKILL = 9;
+  private static final int SIGSEGV = 11;
+
+  private final String prefix;
+
+  EncodeFailure(String prefix) {
+    this.prefix = prefix;
+  }
+
+  /**
+   * Kind of a run that ended with {@code exitCode} after printing
+   * {@code tail}
+   *
+   * @param stalled whether the watchdog killed it
+   */
+  public static EncodeFailure classify(boolean stalled, int exitCode, List<String> tail) {
+    if (stalled) {
+      return STALLED;
+    }
+    if (exitCode == SIGNAL_EXIT + SIGKILL || tail.stream().anyMatch(EncodeFailure::outOfMemory)) {
+      return OUT_OF_MEMORY;
+    }
+    return switch (exitCode - SIGNAL_EXIT) {
+      case SIGILL, SIGABRT, SIGBUS, SIGFPE, SIGSEGV -> CRASHED;
+      default -> ERROR;
+    };
+  }
+
+  /**
+   * Kind of a failed encode's error, or null if it is not a failed ffmpeg run
+   * (a rejected configuration, an early abort)
+   */
+  public static EncodeFailure of(String error) {
+    for (var failure : values()) {
+      if (error.startsWith(failure.prefix)) {
+        return failure;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Error string for a run of this kind: a summary line, then {@code tail}
+   */
+  public String error(String summary, List<String> tail) {
+    var text = new StringBuilder(prefix).append(summary);
+    tail.forEach(line -> text.append('\n').append(line));
+    return text.toString();
+  }
+
+  /**
+   * Summary of a run that ended with {@code exitCode}
+   */
+  public static String exitSummary(int exitCode) {
+    if (exitCode > SIGNAL_EXIT) {
+      return "ffmpeg exited with %d (signal %d)".formatted(exitCode, exitCode - SIGNAL_EXIT);
+    }
+    return "ffmpeg exited with " + exitCode;
+  }
+
+  /**
+   * Whether trying again can help: a stall may be transient, and memory or
+   * a crash may go away with fewer threads
+   */
+  public boolean retryable() {
+    return this != ERROR;
+  }
+
+  /**
+   * Whether a retry should ask for less (fewer threads, less lookahead)
+   */
+  public boolean degrades() {
+    return this == OUT_OF_MEMORY || this == CRASHED;
+  }
+
+  private static boolean outOfMemory(String line) {
+    var lower = line.toLowerCase(Locale.ROOT);
+    return lower.contains("cannot allocate memory") || lower.contains("out of memory");
+  }
+}
@@ -0,0 +1,50 @@
+package wappon28dev.vvcnv_java.modules;
+
+/**
+ * How one encode runs, beyond its {@link VideoConfig}. Start from
+ * {@link #DEFAULT} and set what differs with the {@code with…} methods, so
+ * call sites name every option they change.
+ *
+ * @param guard       stops the encode early when its projected size is out
+ *                    of bounds
+ * @param lowMemory   shorten x264's lookahead, for retries after running out
+ *                    of memory
+ * @param remux       copy the source's streams instead of encoding when
+ *                    {@link VideoConfig#canCopy(VideoStat)}
+ * @param crop        picture area to keep before scaling, or null for the
+ *                    whole frame
+ * @param decimate    drop near-duplicate frames and write variable frame
+ *                    rate output
+ * @param measureOnly stream the output to {@link OutputMeter} and write no
+ *                    file
+ */
+public record EncodeOptions(SizeGuard guard, boolean lowMemory, boolean remux, Crop crop, boolean decimate,
+    boolean measureOnly) {
+
+  /** A plain encode to a file, unguarded */
+  public static final EncodeOptions DEFAULT = new EncodeOptions(SizeGuard.NONE, false, false, null, false, false);
+
+  public EncodeOptions withGuard(SizeGuard guard) {
+    return new EncodeOptions(guard, lowMemory, remux, crop, decimate, measureOnly);
+  }
+
+  public EncodeOptions withLowMemory(boolean lowMemory) {
+    return new EncodeOptions(guard, lowMemory, remux, crop, decimate, measureOnly);
+  }
+
+  public EncodeOptions withRemux(boolean remux) {
+    return new EncodeOptions(guard, lowMemory, remux, crop, decimate, measureOnly);
+  }
+
+  public EncodeOptions withCrop(Crop crop) {
+    return new EncodeOptions(guard, lowMemory, remux, crop, decimate, measureOnly);
+  }
+
+  public EncodeOptions withDecimate(boolean decimate) {
+    return new EncodeOptions(guard, lowMemory, remux, crop, decimate, measureOnly);
+  }
+
+  public EncodeOptions withMeasureOnly(boolean measureOnly) {
+    return new EncodeOptions(guard, lowMemory, remux, crop, decimate, measureOnly);
+  }
+}
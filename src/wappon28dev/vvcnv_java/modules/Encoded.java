@@ -0,0 +1,37 @@
+package wappon28dev.vvcnv_java.modules;
+
+/**
+ * What a finished encode produced, beyond the output file itself
+ *
+ * @param frames video frames written, or -1 if unknown
+ * @param bytes  size of the output when it was only measured and no file
+ *               was written, or -1 to read the file
+ * @param digest hex SHA-256 of the measured output ({@link OutputMeter}), or
+ *               null
+ */
+public record Encoded(long frames, long bytes, String digest) {
+
+  public static final Encoded UNKNOWN = new Encoded(-1);
+
+  public Encoded(long frames) {
+    this(frames, -1, null);
+  }
+
+  /**
+   * Whether the output was only measured, without a file
+   */
+  public boolean measured() {
+    return bytes >= 0;
+  }
+
+  /**
+   * Share of {@code expectedFrames} that was not written (dropped as
+   * duplicates), or NaN if either count is unknown
+   */
+  public double frameReduction(long expectedFrames) {
+    if (frames < 0 || expectedFrames <= 0) {
+      return Double.NaN;
+    }
+    return Math.max(0, 1 - (double) frames / expectedFrames);
+  }
+}
@@ -0,0 +1,40 @@
+package wappon28dev.vvcnv_java.modules;
+
+import wappon28dev.vvcnv_java.modules.VideoModule.VideoProcessParams;
+import wappon28dev.vvcnv_java.util.Result;
+
+/**
+ * Something that turns a source into one encoded output. Callers (the CLI and
+ * the cross test window) only see this, so the scheduling and UI layers can
+ * run against {@link SimulatedEncoder} instead of ffmpeg.
+ *
+ * <p>
+ * Implementations block until the output is complete, write it to
+ * {@code params.outputPath()}, stay within {@code params.threads()} and return
+ * what they know about the output, or an Err for anything that went wrong
+ * with this one encode.
+ * </p>
+ *
+ * <p>
+ * The ffmpeg implementation still starts one process per encode. An
+ * in-process backend (libavformat / libavcodec bound through FFM) is an open
+ * follow-up, not done: FFM is a preview API on Java 21, which this build
+ * targets.
+ * </p>
+ */
+@FunctionalInterface
+public interface Encoder {
+
+  Result<Encoded, String> encode(VideoStat stat, VideoProcessParams params);
+
+  /**
+   * {@code ffmpeg}, unless {@code -Dvvcnv.encoder=simulated} selects
+   * {@link SimulatedEncoder#fromSystemProperties()}
+   */
+  static Encoder fromSystemProperty(Encoder ffmpeg) {
+    return switch (System.getProperty("vvcnv.encoder", "ffmpeg").toLowerCase()) {
+      case "simulated" -> SimulatedEncoder.fromSystemProperties();
+      default -> ffmpeg;
+    };
+  }
+}
@@ -2,15 +2,22 @@ package wappon28dev.vvcnv_java.modules;
 
 import wappon28dev.vvcnv_java.util.Result;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 /**
  * File utility module - port of Rust file.rs
  */
 public class FileModule {
 
+  private static final int FINGERPRINT_SAMPLE_BYTES = 64 * 1024;
+
   /**
    * Calculate file size in bytes
    * 
@@ -47,6 +54,39 @@ public class FileModule {
     return new FileNameParts(nameWithoutExt, extension);
   }
 
+  /**
+   * Hash of {@code version}, the file size and its first and last
+   * {@value #FINGERPRINT_SAMPLE_BYTES} bytes; cheap even for multi-GB files,
+   * and a key for caches of things derived from the file's content
+   *
+   * @param version bumped by the cache when what it derives changes
+   */
+  public static String fingerprint(Path file, String version) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is always available", e);
+    }
+
+    long size = Files.size(file);
+    digest.update(version.getBytes(StandardCharsets.UTF_8));
+    digest.update(Long.toString(size).getBytes(StandardCharsets.UTF_8));
+    try (var channel = Files.newByteChannel(file)) {
+      var buffer = ByteBuffer.allocate(FINGERPRINT_SAMPLE_BYTES);
+      for (long position : new long[] { 0, Math.max(0, size - FINGERPRINT_SAMPLE_BYTES) }) {
+        buffer.clear();
+        channel.position(position);
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+          // Fill the sample
+        }
+        buffer.flip();
+        digest.update(buffer);
+      }
+    }
+    return HexFormat.of().formatHex(digest.digest(), 0, 16);
+  }
+
   /**
    * Record to hold filename parts
    * 
@@ -0,0 +1,213 @@
+package wappon28dev.vvcnv_java.modules;
+
+import wappon28dev.vvcnv_java.util.Result;
+import wappon28dev.vvcnv_java.modules.VideoStat.VideoStreamInfo;
+import wappon28dev.vvcnv_java.modules.VideoStat.AudioStreamInfo;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lightweight ffprobe path: asks only for the entries {@link VideoStat} needs
+ * and reads ffprobe's flat {@code key=value} output line by line, without
+ * building the JSON/Gson object graph of {@code FFmpegProbeResult}
+ */
+public final class LeanProbe {
+
+  /**
+   * The only fields VideoStat is built from
+   */
+  static final String SHOW_ENTRIES = "stream=codec_type,codec_name,width,height,r_frame_rate,pix_fmt,sample_rate,channels"
+      + ":format=duration,size";
+
+  private LeanProbe() {
+    // Utility class
+  }
+
+  /**
+   * Build the ffprobe command line
+   */
+  public static List<String> command(String ffprobePath, String inputPath) {
+    return List.of(
+        ffprobePath,
+        "-v", "error",
+        "-show_entries", SHOW_ENTRIES,
+        "-of", "default=noprint_wrappers=0:nokey=0",
+        inputPath);
+  }
+
+  /**
+   * Run ffprobe and stream its output into a VideoStat
+   */
+  public static Result<VideoStat, String> probe(String ffprobePath, String inputPath) {
+    Process process;
+    try {
+      process = new ProcessBuilder(command(ffprobePath, inputPath)).start();
+    } catch (IOException e) {
+      return Result.err("Failed to start ffprobe: " + e.getMessage());
+    }
+
+    // Read stderr alongside stdout: ffprobe blocks once either pipe is full
+    var errors = new ByteArrayOutputStream();
+    var stderrReader = Thread.ofVirtual().name("vvcnv-probe-stderr").start(() -> {
+      try (var in = process.getErrorStream()) {
+        in.transferTo(errors);
+      } catch (IOException e) {
+        // The exit status tells what happened
+      }
+    });
+
+    try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      var result = parse(inputPath, reader);
+      int exitCode = process.waitFor();
+      stderrReader.join();
+      String stderr = errors.toString(StandardCharsets.UTF_8).trim();
+
+      if (exitCode != 0) {
+        return Result.err("ffprobe exited with " + exitCode + (stderr.isEmpty() ? "" : ": " + stderr));
+      }
+      return result;
+    } catch (IOException e) {
+      process.destroyForcibly();
+      return Result.err("Failed to read ffprobe output: " + e.getMessage());
+    } catch (InterruptedException e) {
+      process.destroyForcibly();
+      Thread.currentThread().interrupt();
+      return Result.err("Interrupted while probing: " + inputPath);
+    }
+  }
+
+  /**
+   * Parse {@code -of default} output:
+   *
+   * <pre>
+   * [STREAM]
+   * codec_name=h264
+   * codec_type=video
+   * width=1920
+   * ...
+   * [/STREAM]
+   * [FORMAT]
+   * duration=4.000000
+   * size=8400000
+   * [/FORMAT]
+   * </pre>
+   */
+  public static Result<VideoStat, String> parse(String inputPath, BufferedReader reader) throws IOException {
+    VideoStreamInfo videoInfo = null;
+    List<AudioStreamInfo> audioStreams = new ArrayList<>();
+    Duration duration = Duration.ZERO;
+    long fileSize = 0L;
+
+    // Fields of the section currently being read
+    String codecType = null;
+    String codecName = null;
+    String pixFmt = null;
+    int width = 0;
+    int height = 0;
+    int sampleRate = 0;
+    int channels = 0;
+    double fps = 0.0;
+
+    String line;
+    while ((line = reader.readLine()) != null) {
+      switch (line) {
+        case "[STREAM]" -> {
+          codecType = null;
+          codecName = null;
+          pixFmt = null;
+          width = 0;
+          height = 0;
+          sampleRate = 0;
+          channels = 0;
+          fps = 0.0;
+        }
+        case "[/STREAM]" -> {
+          if ("video".equals(codecType) && videoInfo == null) {
+            videoInfo = new VideoStreamInfo(width, height, fps, pixFmt, codecName);
+          } else if ("audio".equals(codecType)) {
+            audioStreams.add(new AudioStreamInfo(codecName, sampleRate, channels));
+          }
+        }
+        case "[FORMAT]", "[/FORMAT]" -> {
+          // Format fields are read as they come
+        }
+        default -> {
+          int eq = line.indexOf('=');
+          if (eq <= 0) {
+            continue;
+          }
+          String key = line.substring(0, eq);
+          String value = line.substring(eq + 1);
+          if (value.equals("N/A")) {
+            continue;
+          }
+
+          switch (key) {
+            case "codec_type" -> codecType = value;
+            case "codec_name" -> codecName = value;
+            case "pix_fmt" -> pixFmt = value;
+            case "width" -> width = parseInt(value);
+            case "height" -> height = parseInt(value);
+            case "sample_rate" -> sampleRate = parseInt(value);
+            case "channels" -> channels = parseInt(value);
+            case "r_frame_rate" -> fps = parseRational(value);
+            case "duration" -> duration = Duration.ofNanos(Math.round(parseDouble(value) * 1_000_000_000));
+            case "size" -> fileSize = Math.max(0L, parseLong(value));
+            default -> {
+              // Not requested, ignore
+            }
+          }
+        }
+      }
+    }
+
+    if (videoInfo == null) {
+      return Result.err("No video stream found");
+    }
+    if (videoInfo.width() <= 0 || videoInfo.height() <= 0) {
+      return Result.err("Invalid video dimensions: " + videoInfo.width() + "x" + videoInfo.height());
+    }
+
+    return Result.ok(new VideoStat(inputPath, videoInfo, List.copyOf(audioStreams), duration, fileSize));
+  }
+
+  /**
+   * Parse "30000/1001" or "30" into a double (0 on malformed input)
+   */
+  static double parseRational(String value) {
+    int slash = value.indexOf('/');
+    if (slash < 0) {
+      return parseDouble(value);
+    }
+    double num = parseDouble(value.substring(0, slash));
+    double den = parseDouble(value.substring(slash + 1));
+    return den == 0 ? 0.0 : num / den;
+  }
+
+  private static int parseInt(String value) {
+    return (int) parseLong(value);
+  }
+
+  private static long parseLong(String value) {
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return 0L;
+    }
+  }
+
+  private static double parseDouble(String value) {
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      return 0.0;
+    }
+  }
+}
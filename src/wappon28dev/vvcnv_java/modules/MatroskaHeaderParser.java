@@ -0,0 +1,363 @@
+package wappon28dev.vvcnv_java.modules;
+
+import wappon28dev.vvcnv_java.util.Result;
+import wappon28dev.vvcnv_java.modules.VideoStat.VideoStreamInfo;
+import wappon28dev.vvcnv_java.modules.VideoStat.AudioStreamInfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matroska/WebM header reader. Memory-maps the head of the file and reads the
+ * Segment's Info and Tracks elements, stopping at the first Cluster.
+ */
+final class MatroskaHeaderParser {
+
+  /** Info and Tracks live before the first Cluster, well inside this window */
+  private static final long MAX_HEADER_WINDOW = 16L * 1024 * 1024;
+
+  private static final long ID_EBML = 0x1A45DFA3L;
+  private static final long ID_DOCTYPE = 0x4282L;
+  private static final long ID_SEGMENT = 0x18538067L;
+  private static final long ID_INFO = 0x1549A966L;
+  private static final long ID_TIMESTAMP_SCALE = 0x2AD7B1L;
+  private static final long ID_DURATION = 0x4489L;
+  private static final long ID_TRACKS = 0x1654AE6BL;
+  private static final long ID_TRACK_ENTRY = 0xAEL;
+  private static final long ID_TRACK_TYPE = 0x83L;
+  private static final long ID_CODEC_ID = 0x86L;
+  private static final long ID_DEFAULT_DURATION = 0x23E383L;
+  private static final long ID_VIDEO = 0xE0L;
+  private static final long ID_PIXEL_WIDTH = 0xB0L;
+  private static final long ID_PIXEL_HEIGHT = 0xBAL;
+  private static final long ID_AUDIO = 0xE1L;
+  private static final long ID_SAMPLING_FREQUENCY = 0xB5L;
+  private static final long ID_CHANNELS = 0x9FL;
+  private static final long ID_CLUSTER = 0x1F43B675L;
+
+  private static final long UNKNOWN_SIZE = -1;
+
+  private MatroskaHeaderParser() {
+    // Utility class
+  }
+
+  static Result<VideoStat, String> parse(String inputPath, FileChannel channel) throws IOException {
+    long fileSize = channel.size();
+    var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, MAX_HEADER_WINDOW));
+    return parse(inputPath, buffer, fileSize);
+  }
+
+  static Result<VideoStat, String> parse(String inputPath, ByteBuffer buffer, long fileSize) {
+    var reader = new EbmlReader(buffer);
+
+    // EBML header
+    var ebml = reader.next();
+    if (ebml == null || ebml.id() != ID_EBML || ebml.size() == UNKNOWN_SIZE) {
+      return Result.err("Missing EBML header");
+    }
+    String docType = null;
+    for (var child = reader.childReader(ebml); child.hasNext();) {
+      var element = child.next();
+      if (element == null) {
+        break;
+      }
+      if (element.id() == ID_DOCTYPE) {
+        docType = child.string(element);
+      }
+      child.skip(element);
+    }
+    if (!"matroska".equals(docType) && !"webm".equals(docType)) {
+      return Result.err("Unsupported EBML doctype: " + docType);
+    }
+
+    // Segment (size may be unknown for live streams)
+    reader.skip(ebml);
+    var segment = reader.next();
+    if (segment == null || segment.id() != ID_SEGMENT) {
+      return Result.err("Missing Segment");
+    }
+
+    long timestampScale = 1_000_000;
+    double durationTicks = -1;
+    VideoStreamInfo videoInfo = null;
+    List<AudioStreamInfo> audioStreams = new ArrayList<>();
+    boolean tracksSeen = false;
+
+    var segmentReader = reader.childReader(segment);
+    while (segmentReader.hasNext() && !(tracksSeen && durationTicks >= 0)) {
+      var element = segmentReader.next();
+      if (element == null || element.id() == ID_CLUSTER || element.size() == UNKNOWN_SIZE) {
+        break;
+      }
+      boolean needed = element.id() == ID_INFO || element.id() == ID_TRACKS;
+      if (needed && !segmentReader.fits(element)) {
+        return Result.err("Header element extends past mapped window");
+      }
+
+      if (element.id() == ID_INFO) {
+        for (var info = segmentReader.childReader(element); info.hasNext();) {
+          var field = info.next();
+          if (field == null) {
+            break;
+          }
+          if (field.id() == ID_TIMESTAMP_SCALE) {
+            timestampScale = info.uint(field);
+          } else if (field.id() == ID_DURATION) {
+            durationTicks = info.floatValue(field);
+          }
+          info.skip(field);
+        }
+      } else if (element.id() == ID_TRACKS) {
+        tracksSeen = true;
+        for (var tracks = segmentReader.childReader(element); tracks.hasNext();) {
+          var entry = tracks.next();
+          if (entry == null) {
+            break;
+          }
+          if (entry.id() == ID_TRACK_ENTRY) {
+            var track = parseTrackEntry(tracks.childReader(entry));
+            if (track instanceof TrackInfo.Video video && videoInfo == null) {
+              videoInfo = video.info();
+            } else if (track instanceof TrackInfo.Audio audio) {
+              audioStreams.add(audio.info());
+            }
+          }
+          tracks.skip(entry);
+        }
+      }
+      segmentReader.skip(element);
+    }
+
+    if (videoInfo == null) {
+      return Result.err("No video track found");
+    }
+    if (videoInfo.width() <= 0 || videoInfo.height() <= 0 || videoInfo.fps() <= 0) {
+      return Result.err("Video track without size or DefaultDuration");
+    }
+    if (durationTicks <= 0) {
+      return Result.err("Missing segment duration");
+    }
+
+    var duration = Duration.ofNanos(Math.round(durationTicks * timestampScale));
+    return Result.ok(new VideoStat(inputPath, videoInfo, List.copyOf(audioStreams), duration, fileSize));
+  }
+
+  private sealed interface TrackInfo {
+    record Video(VideoStreamInfo info) implements TrackInfo {
+    }
+
+    record Audio(AudioStreamInfo info) implements TrackInfo {
+    }
+
+    record Other() implements TrackInfo {
+    }
+  }
+
+  private static TrackInfo parseTrackEntry(EbmlReader entry) {
+    long trackType = 0;
+    String codecId = "";
+    long defaultDuration = 0;
+    long width = 0;
+    long height = 0;
+    double samplingFrequency = 8000.0;
+    long channels = 1;
+
+    while (entry.hasNext()) {
+      var field = entry.next();
+      if (field == null) {
+        break;
+      }
+      if (field.id() == ID_TRACK_TYPE) {
+        trackType = entry.uint(field);
+      } else if (field.id() == ID_CODEC_ID) {
+        codecId = entry.string(field);
+      } else if (field.id() == ID_DEFAULT_DURATION) {
+        defaultDuration = entry.uint(field);
+      } else if (field.id() == ID_VIDEO) {
+        for (var video = entry.childReader(field); video.hasNext();) {
+          var v = video.next();
+          if (v == null) {
+            break;
+          }
+          if (v.id() == ID_PIXEL_WIDTH) {
+            width = video.uint(v);
+          } else if (v.id() == ID_PIXEL_HEIGHT) {
+            height = video.uint(v);
+          }
+          video.skip(v);
+        }
+      } else if (field.id() == ID_AUDIO) {
+        for (var audio = entry.childReader(field); audio.hasNext();) {
+          var a = audio.next();
+          if (a == null) {
+            break;
+          }
+          if (a.id() == ID_SAMPLING_FREQUENCY) {
+            samplingFrequency = audio.floatValue(a);
+          } else if (a.id() == ID_CHANNELS) {
+            channels = audio.uint(a);
+          }
+          audio.skip(a);
+        }
+      }
+      entry.skip(field);
+    }
+
+    return switch ((int) trackType) {
+      case 1 -> {
+        double fps = defaultDuration > 0 ? ContainerProbe.snapFrameRate(1e9 / defaultDuration) : 0.0;
+        yield new TrackInfo.Video(new VideoStreamInfo((int) width, (int) height, fps, null, videoCodecName(codecId)));
+      }
+      case 2 -> new TrackInfo.Audio(new AudioStreamInfo(
+          audioCodecName(codecId), (int) Math.round(samplingFrequency), (int) channels));
+      default -> new TrackInfo.Other();
+    };
+  }
+
+  /**
+   * ffmpeg's name for a Matroska video codec ID
+   */
+  private static String videoCodecName(String codecId) {
+    return switch (codecId) {
+      case "V_MPEG4/ISO/AVC" -> "h264";
+      case "V_MPEGH/ISO/HEVC" -> "hevc";
+      case "V_VP8" -> "vp8";
+      case "V_VP9" -> "vp9";
+      case "V_AV1" -> "av1";
+      default -> null;
+    };
+  }
+
+  private static String audioCodecName(String codecId) {
+    if (codecId.startsWith("A_AAC")) {
+      return "aac";
+    }
+    return switch (codecId) {
+      case "A_OPUS" -> "opus";
+      case "A_VORBIS" -> "vorbis";
+      case "A_FLAC" -> "flac";
+      case "A_AC3" -> "ac3";
+      case "A_EAC3" -> "eac3";
+      case "A_MPEG/L3" -> "mp3";
+      case "A_PCM/INT/LIT" -> "pcm_s16le";
+      default -> codecId.toLowerCase();
+    };
+  }
+
+  private record Element(long id, long size, int dataStart) {
+  }
+
+  /**
+   * Sequential EBML element reader over a window of the mapped buffer
+   */
+  private static final class EbmlReader {
+    private final ByteBuffer buffer;
+    private final int end;
+    private int pos;
+
+    EbmlReader(ByteBuffer buffer) {
+      this(buffer, 0, buffer.limit());
+    }
+
+    private EbmlReader(ByteBuffer buffer, int start, int end) {
+      this.buffer = buffer;
+      this.pos = start;
+      this.end = end;
+    }
+
+    boolean hasNext() {
+      return pos < end;
+    }
+
+    /**
+     * Read the next element header; null when it does not fit
+     */
+    Element next() {
+      int idLength = vintLength(pos);
+      if (idLength == 0 || idLength > 4 || pos + idLength > end) {
+        return null;
+      }
+      long id = 0;
+      for (int i = 0; i < idLength; i++) {
+        id = (id << 8) | Byte.toUnsignedInt(buffer.get(pos + i));
+      }
+
+      int sizePos = pos + idLength;
+      int sizeLength = vintLength(sizePos);
+      if (sizeLength == 0 || sizePos + sizeLength > end) {
+        return null;
+      }
+      long size = Byte.toUnsignedInt(buffer.get(sizePos)) & (0xFF >> sizeLength);
+      boolean allOnes = size == (0xFF >> sizeLength);
+      for (int i = 1; i < sizeLength; i++) {
+        int b = Byte.toUnsignedInt(buffer.get(sizePos + i));
+        allOnes &= b == 0xFF;
+        size = (size << 8) | b;
+      }
+
+      pos = sizePos + sizeLength;
+      return new Element(id, allOnes ? UNKNOWN_SIZE : size, pos);
+    }
+
+    boolean fits(Element element) {
+      return element.size() != UNKNOWN_SIZE && element.dataStart() + element.size() <= end;
+    }
+
+    /**
+     * Move past an element's data
+     */
+    void skip(Element element) {
+      if (element.size() == UNKNOWN_SIZE) {
+        pos = end;
+      } else {
+        pos = (int) Math.min(end, element.dataStart() + element.size());
+      }
+    }
+
+    EbmlReader childReader(Element element) {
+      int childEnd = element.size() == UNKNOWN_SIZE
+          ? end
+          : (int) Math.min(end, element.dataStart() + element.size());
+      return new EbmlReader(buffer, element.dataStart(), childEnd);
+    }
+
+    long uint(Element element) {
+      long value = 0;
+      for (int i = 0; i < element.size() && i < 8; i++) {
+        value = (value << 8) | Byte.toUnsignedInt(buffer.get(element.dataStart() + i));
+      }
+      return value;
+    }
+
+    double floatValue(Element element) {
+      return switch ((int) element.size()) {
+        case 4 -> buffer.getFloat(element.dataStart());
+        case 8 -> buffer.getDouble(element.dataStart());
+        default -> 0.0;
+      };
+    }
+
+    String string(Element element) {
+      var bytes = new byte[(int) Math.min(element.size(), 256)];
+      buffer.get(element.dataStart(), bytes);
+      int length = bytes.length;
+      while (length > 0 && bytes[length - 1] == 0) {
+        length--;
+      }
+      return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private int vintLength(int at) {
+      if (at >= end) {
+        return 0;
+      }
+      int first = Byte.toUnsignedInt(buffer.get(at));
+      return first == 0 ? 0 : Integer.numberOfLeadingZeros(first) - 23;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package wappon28dev.vvcnv_java.modules;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Predicts the peak RSS of an ffmpeg/libx264 encode so the scheduler can
+ * admit jobs against a memory budget.
+ *
+ * <p>
+ * The model counts the frames both sides keep alive: the decoder holds its
+ * frame threads plus the H.264 reference window at source resolution, and
+ * x264 holds its lookahead, references, B-frames and one frame per thread at
+ * output resolution, each with roughly {@link #X264_BYTES_PER_PIXEL} of
+ * planes, half-resolution copies and motion data. Observed peak RSS then
+ * calibrates the model per output resolution (and overall, for resolutions
+ * that have not run yet), so the estimate converges on what this machine and
+ * ffmpeg build actually use.
+ * </p>
+ */
+public final class MemoryEstimator {
+
+  /** ffmpeg, libraries and codec tables before any frame is allocated */
+  private static final long BASE_BYTES = 48L * 1024 * 1024;
+  /** libx264 defaults of the medium preset, which VideoModule uses */
+  public static final int DEFAULT_LOOKAHEAD = 40;
+  private static final int X264_REFS = 3;
+  private static final int X264_BFRAMES = 3;
+  private static final double X264_BYTES_PER_PIXEL = 3.75;
+  /** x264's lookahead in low-memory retries */
+  public static final int LOW_MEMORY_LOOKAHEAD = 10;
+  /** yuv420p plus padding */
+  private static final double DECODER_BYTES_PER_PIXEL = 1.6;
+  private static final int DECODER_REFS = 16;
+
+  public static final double SAFETY_FACTOR = 1.2;
+  private static final double CALIBRATION_WEIGHT = 0.5;
+  private static final double MIN_CALIBRATION = 0.25;
+  private static final double MAX_CALIBRATION = 4.0;
+
+  private static final MemoryEstimator SHARED = new MemoryEstimator();
+
+  private final Map<VideoRes, Double> calibrationByRes = new EnumMap<>(VideoRes.class);
+  private double calibration = 1.0;
+  private boolean calibrated;
+
+  public static MemoryEstimator shared() {
+    return SHARED;
+  }
+
+  /**
+   * x264's lookahead of an encode, shortened for low-memory retries
+   */
+  public static int lookahead(boolean lowMemory) {
+    return lowMemory ? LOW_MEMORY_LOOKAHEAD : DEFAULT_LOOKAHEAD;
+  }
+
+  /**
+   * Expected peak RSS in bytes of an encode with the default lookahead
+   */
+  public long estimate(VideoStat stat, VideoConfig config, int threads) {
+    return estimate(stat, config, threads, DEFAULT_LOOKAHEAD);
+  }
+
+  /**
+   * Expected peak RSS in bytes, calibrated and padded
+   *
+   * @param threads   encoder threads, or 0 when ffmpeg picks (one per core)
+   * @param lookahead x264's lookahead, see {@link #lookahead(boolean)}
+   */
+  public synchronized long estimate(VideoStat stat, VideoConfig config, int threads, int lookahead) {
+    var factor = calibrationByRes.getOrDefault(config.res(), calibration);
+    return (long) (model(stat, config, threads, lookahead) * factor * SAFETY_FACTOR);
+  }
+
+  /**
+   * Learn from the peak RSS of an encode with the default lookahead
+   */
+  public void record(VideoStat stat, VideoConfig config, int threads, long peakRssBytes) {
+    record(stat, config, threads, DEFAULT_LOOKAHEAD, peakRssBytes);
+  }
+
+  /**
+   * Learn from a finished encode's peak RSS. The model is given the
+   * lookahead the encode ran with, so a low-memory retry calibrates like a
+   * normal encode instead of pulling the estimates down.
+   */
+  public synchronized void record(VideoStat stat, VideoConfig config, int threads, int lookahead,
+      long peakRssBytes) {
+    if (peakRssBytes <= 0) {
+      return;
+    }
+    double observed = clamp(peakRssBytes / model(stat, config, threads, lookahead));
+    calibrationByRes.merge(config.res(), observed, MemoryEstimator::blend);
+    calibration = calibrated ? blend(calibration, observed) : observed;
+    calibrated = true;
+  }
+
+  /**
+   * Uncalibrated estimate in bytes
+   */
+  static double model(VideoStat stat, VideoConfig config, int threads, int lookahead) {
+    int frameThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    var source = stat.videoStream();
+
+    double sourcePixels = (double) source.width() * source.height();
+    double decoder = sourcePixels * DECODER_BYTES_PER_PIXEL * (DECODER_REFS + frameThreads);
+
+    double outputPixels = (double) config.res().getWidth() * config.res().getHeight();
+    double encoder = outputPixels * X264_BYTES_PER_PIXEL
+        * (lookahead + X264_REFS + X264_BFRAMES + frameThreads);
+
+    return BASE_BYTES + decoder + encoder;
+  }
+
+  private static double blend(double current, double observed) {
+    return clamp(current + (observed - current) * CALIBRATION_WEIGHT);
+  }
+
+  private static double clamp(double factor) {
+    return Math.max(MIN_CALIBRATION, Math.min(MAX_CALIBRATION, factor));
+  }
+}
@@ -0,0 +1,400 @@
+package wappon28dev.vvcnv_java.modules;
+
+import wappon28dev.vvcnv_java.util.Result;
+import wappon28dev.vvcnv_java.modules.VideoStat.VideoStreamInfo;
+import wappon28dev.vvcnv_java.modules.VideoStat.AudioStreamInfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MP4/MOV (ISO BMFF / QuickTime) header reader. Walks the top-level atoms with
+ * positional reads, memory-maps only the {@code moov} atom and reads mvhd,
+ * tkhd/mdhd/hdlr and the stsd/stts sample tables from it.
+ */
+final class Mp4HeaderParser {
+
+  /** moov atoms larger than this are not worth mapping; let ffprobe handle them */
+  private static final long MAX_MOOV_SIZE = 64L * 1024 * 1024;
+
+  private Mp4HeaderParser() {
+    // Utility class
+  }
+
+  static boolean looksLikeMp4(ByteBuffer head) {
+    var type = fourcc(head, 4);
+    return switch (type) {
+      case "ftyp", "moov", "mdat", "free", "wide", "skip" -> true;
+      default -> false;
+    };
+  }
+
+  static Result<VideoStat, String> parse(String inputPath, FileChannel channel) throws IOException {
+    long fileSize = channel.size();
+    long position = 0;
+    var header = ByteBuffer.allocate(16);
+
+    while (position + 8 <= fileSize) {
+      header.clear();
+      channel.read(header, position);
+      header.flip();
+      if (header.remaining() < 8) {
+        break;
+      }
+
+      long size = Integer.toUnsignedLong(header.getInt(0));
+      String type = fourcc(header, 4);
+      int headerSize = 8;
+      if (size == 1) {
+        if (header.remaining() < 16) {
+          return Result.err("Truncated 64-bit atom header");
+        }
+        size = header.getLong(8);
+        headerSize = 16;
+      } else if (size == 0) {
+        size = fileSize - position;
+      }
+      if (size < headerSize) {
+        return Result.err("Invalid atom size " + size + " for '" + type + "' at " + position);
+      }
+
+      if (type.equals("moov")) {
+        long bodySize = size - headerSize;
+        if (bodySize > MAX_MOOV_SIZE || position + size > fileSize) {
+          return Result.err("moov atom too large or truncated");
+        }
+        var moov = channel.map(FileChannel.MapMode.READ_ONLY, position + headerSize, bodySize);
+        return parseMoov(inputPath, moov, fileSize);
+      }
+
+      position += size;
+    }
+
+    return Result.err("No moov atom found");
+  }
+
+  /**
+   * Parse the body of a moov atom
+   */
+  static Result<VideoStat, String> parseMoov(String inputPath, ByteBuffer moov, long fileSize) {
+    long movieTimescale = 0;
+    long movieDuration = 0;
+    VideoStreamInfo videoInfo = null;
+    List<AudioStreamInfo> audioStreams = new ArrayList<>();
+
+    for (var box : children(moov)) {
+      switch (box.type()) {
+        case "mvhd" -> {
+          var body = box.body();
+          int version = body.get(0);
+          if (version == 1) {
+            movieTimescale = Integer.toUnsignedLong(body.getInt(20));
+            movieDuration = body.getLong(24);
+          } else {
+            movieTimescale = Integer.toUnsignedLong(body.getInt(12));
+            movieDuration = Integer.toUnsignedLong(body.getInt(16));
+          }
+        }
+        case "mvex" -> {
+          return Result.err("Fragmented MP4 is not supported");
+        }
+        case "trak" -> {
+          var track = parseTrak(box.body());
+          if (track instanceof TrackInfo.Video video && videoInfo == null) {
+            videoInfo = video.info();
+          } else if (track instanceof TrackInfo.Audio audio) {
+            audioStreams.add(audio.info());
+          }
+        }
+        default -> {
+          // udta, meta, iods, ...
+        }
+      }
+    }
+
+    if (videoInfo == null) {
+      return Result.err("No video track found");
+    }
+    if (videoInfo.width() <= 0 || videoInfo.height() <= 0 || videoInfo.fps() <= 0) {
+      return Result.err("Incomplete video track header");
+    }
+    if (movieTimescale == 0 || movieDuration <= 0) {
+      return Result.err("Missing movie duration");
+    }
+
+    var duration = Duration.ofNanos(Math.round(movieDuration * 1_000_000_000.0 / movieTimescale));
+    return Result.ok(new VideoStat(inputPath, videoInfo, List.copyOf(audioStreams), duration, fileSize));
+  }
+
+  private sealed interface TrackInfo {
+    record Video(VideoStreamInfo info) implements TrackInfo {
+    }
+
+    record Audio(AudioStreamInfo info) implements TrackInfo {
+    }
+
+    record Other() implements TrackInfo {
+    }
+  }
+
+  private static TrackInfo parseTrak(ByteBuffer trak) {
+    var mdia = find(trak, "mdia");
+    if (mdia == null) {
+      return new TrackInfo.Other();
+    }
+
+    long timescale = 0;
+    String handler = "";
+    ByteBuffer stbl = null;
+
+    for (var box : children(mdia)) {
+      switch (box.type()) {
+        case "mdhd" -> {
+          var body = box.body();
+          timescale = Integer.toUnsignedLong(body.getInt(body.get(0) == 1 ? 20 : 12));
+        }
+        case "hdlr" -> handler = fourcc(box.body(), 8);
+        case "minf" -> stbl = find(box.body(), "stbl");
+        default -> {
+          // elng, ...
+        }
+      }
+    }
+
+    if (stbl == null) {
+      return new TrackInfo.Other();
+    }
+    var stsd = find(stbl, "stsd");
+    if (stsd == null || stsd.getInt(4) < 1) {
+      return new TrackInfo.Other();
+    }
+
+    // First sample entry: size(4) type(4) reserved(6) data_reference_index(2) ...
+    var entry = stsd.slice(8, stsd.limit() - 8);
+    int entrySize = entry.getInt(0);
+    String format = fourcc(entry, 4);
+    if (entrySize < 36 || entrySize > entry.limit()) {
+      return new TrackInfo.Other();
+    }
+    entry = entry.slice(0, entrySize);
+
+    return switch (handler) {
+      case "vide" -> {
+        int width = Short.toUnsignedInt(entry.getShort(32));
+        int height = Short.toUnsignedInt(entry.getShort(34));
+        double fps = frameRate(find(stbl, "stts"), timescale);
+        var extensions = entry.limit() > 86 ? entry.slice(86, entry.limit() - 86) : ByteBuffer.allocate(0);
+        yield new TrackInfo.Video(
+            new VideoStreamInfo(width, height, fps, pixelFormat(format, extensions), videoCodecName(format)));
+      }
+      case "soun" -> {
+        int soundVersion = Short.toUnsignedInt(entry.getShort(16));
+        int channels;
+        int sampleRate;
+        if (soundVersion == 2) {
+          sampleRate = (int) Double.longBitsToDouble(entry.getLong(40));
+          channels = entry.getInt(48);
+        } else {
+          channels = Short.toUnsignedInt(entry.getShort(24));
+          sampleRate = entry.getInt(32) >>> 16;
+        }
+        int childOffset = switch (soundVersion) {
+          case 1 -> 52;
+          case 2 -> 72;
+          default -> 36;
+        };
+        var extensions = entry.limit() > childOffset
+            ? entry.slice(childOffset, entry.limit() - childOffset)
+            : ByteBuffer.allocate(0);
+        yield new TrackInfo.Audio(new AudioStreamInfo(audioCodecName(format, extensions), sampleRate, channels));
+      }
+      default -> new TrackInfo.Other();
+    };
+  }
+
+  /**
+   * Frame rate from the stts entry covering the most samples (what ffprobe
+   * reports as r_frame_rate for constant frame rate files)
+   */
+  private static double frameRate(ByteBuffer stts, long timescale) {
+    if (stts == null || timescale == 0) {
+      return 0.0;
+    }
+    int entryCount = stts.getInt(4);
+    long bestCount = 0;
+    long bestDelta = 0;
+    for (int i = 0; i < entryCount && 8 + i * 8 + 8 <= stts.limit(); i++) {
+      long count = Integer.toUnsignedLong(stts.getInt(8 + i * 8));
+      long delta = Integer.toUnsignedLong(stts.getInt(12 + i * 8));
+      if (count > bestCount && delta > 0) {
+        bestCount = count;
+        bestDelta = delta;
+      }
+    }
+    return bestDelta == 0 ? 0.0 : ContainerProbe.snapFrameRate((double) timescale / bestDelta);
+  }
+
+  /**
+   * ffmpeg's name for a video sample entry type
+   */
+  private static String videoCodecName(String format) {
+    return switch (format) {
+      case "avc1", "avc3" -> "h264";
+      case "hvc1", "hev1" -> "hevc";
+      case "vp09" -> "vp9";
+      case "av01" -> "av1";
+      case "mp4v" -> "mpeg4";
+      default -> null;
+    };
+  }
+
+  /**
+   * Pixel format implied by the codec profile; null when the header does not
+   * pin it down
+   */
+  private static String pixelFormat(String format, ByteBuffer extensions) {
+    switch (format) {
+      case "avc1", "avc3" -> {
+        var avcC = find(extensions, "avcC");
+        if (avcC == null || avcC.limit() < 2) {
+          return null;
+        }
+        return switch (Byte.toUnsignedInt(avcC.get(1))) {
+          case 66, 77, 88, 100 -> "yuv420p";
+          case 110 -> "yuv420p10le";
+          default -> null;
+        };
+      }
+      case "hvc1", "hev1" -> {
+        var hvcC = find(extensions, "hvcC");
+        if (hvcC == null || hvcC.limit() < 2) {
+          return null;
+        }
+        return switch (hvcC.get(1) & 0x1F) {
+          case 1 -> "yuv420p";
+          case 2 -> "yuv420p10le";
+          default -> null;
+        };
+      }
+      default -> {
+        return null;
+      }
+    }
+  }
+
+  private static String audioCodecName(String format, ByteBuffer extensions) {
+    return switch (format) {
+      case "mp4a" -> mp4aCodecName(find(extensions, "esds"));
+      case "Opus" -> "opus";
+      case "fLaC" -> "flac";
+      case "ac-3" -> "ac3";
+      case "ec-3" -> "eac3";
+      case "alac" -> "alac";
+      case ".mp3" -> "mp3";
+      case "sowt" -> "pcm_s16le";
+      case "twos" -> "pcm_s16be";
+      default -> format.trim().toLowerCase();
+    };
+  }
+
+  /**
+   * mp4a is AAC unless the esds DecoderConfigDescriptor says MPEG audio
+   */
+  private static String mp4aCodecName(ByteBuffer esds) {
+    if (esds == null) {
+      return "aac";
+    }
+    int pos = 4; // version + flags
+    if (pos >= esds.limit() || esds.get(pos) != 0x03) {
+      return "aac";
+    }
+    pos = skipDescriptorLength(esds, pos + 1);
+    if (pos + 3 > esds.limit()) {
+      return "aac";
+    }
+    int flags = Byte.toUnsignedInt(esds.get(pos + 2));
+    pos += 3;
+    if ((flags & 0x80) != 0) {
+      pos += 2; // dependsOn_ES_ID
+    }
+    if ((flags & 0x40) != 0 && pos < esds.limit()) {
+      pos += 1 + Byte.toUnsignedInt(esds.get(pos)); // URL
+    }
+    if ((flags & 0x20) != 0) {
+      pos += 2; // OCR_ES_Id
+    }
+    if (pos >= esds.limit() || esds.get(pos) != 0x04) {
+      return "aac";
+    }
+    pos = skipDescriptorLength(esds, pos + 1);
+    if (pos >= esds.limit()) {
+      return "aac";
+    }
+    return switch (Byte.toUnsignedInt(esds.get(pos))) {
+      case 0x69, 0x6B -> "mp3";
+      default -> "aac";
+    };
+  }
+
+  private static int skipDescriptorLength(ByteBuffer buffer, int pos) {
+    for (int i = 0; i < 4 && pos < buffer.limit(); i++) {
+      if ((buffer.get(pos++) & 0x80) == 0) {
+        break;
+      }
+    }
+    return pos;
+  }
+
+  private record Box(String type, ByteBuffer body) {
+  }
+
+  /**
+   * Split a container body into its child boxes (bodies are zero-copy slices)
+   */
+  private static List<Box> children(ByteBuffer parent) {
+    var boxes = new ArrayList<Box>();
+    int pos = 0;
+    int limit = parent.limit();
+    while (pos + 8 <= limit) {
+      long size = Integer.toUnsignedLong(parent.getInt(pos));
+      String type = fourcc(parent, pos + 4);
+      int headerSize = 8;
+      if (size == 1) {
+        if (pos + 16 > limit) {
+          break;
+        }
+        size = parent.getLong(pos + 8);
+        headerSize = 16;
+      } else if (size == 0) {
+        size = limit - pos;
+      }
+      if (size < headerSize || pos + size > limit) {
+        break;
+      }
+      boxes.add(new Box(type, parent.slice(pos + headerSize, (int) size - headerSize)));
+      pos += (int) size;
+    }
+    return boxes;
+  }
+
+  private static ByteBuffer find(ByteBuffer parent, String type) {
+    for (var box : children(parent)) {
+      if (box.type().equals(type)) {
+        return box.body();
+      }
+    }
+    return null;
+  }
+
+  private static String fourcc(ByteBuffer buffer, int offset) {
+    var chars = new char[4];
+    for (int i = 0; i < 4; i++) {
+      chars[i] = (char) Byte.toUnsignedInt(buffer.get(offset + i));
+    }
+    return new String(chars);
+  }
+}
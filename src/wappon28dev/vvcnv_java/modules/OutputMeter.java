@@ -0,0 +1,179 @@
+package wappon28dev.vvcnv_java.modules;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.LongConsumer;
+
+/**
+ * Counting sink for an encode whose output is only measured: ffmpeg writes to
+ * a pipe and the bytes are counted (and optionally hashed) as they arrive,
+ * then dropped, so a size-only grid does no output disk I/O. MP4 and MOV
+ * cannot be streamed as the file they would be, so they are written to a
+ * scratch file, counted the same way and deleted ({@link #scratchFileOf}).
+ *
+ * <p>
+ * Each thread reads through one direct buffer of {@value #BUFFER_BYTES}
+ * bytes, allocated on its first measurement and reused by every later one, so
+ * draining a long encode allocates nothing per read. The sampled digest
+ * hashes the first {@value #SAMPLE_BYTES} bytes of every
+ * {@value #SAMPLE_STRIDE} bytes plus the length: enough to tell outputs apart
+ * at a fraction of the cost of a full SHA-256.
+ * </p>
+ */
+public final class OutputMeter {
+
+  /** Bytes read from the pipe at a time */
+  public static final int BUFFER_BYTES = 1 << 20;
+  /** Bytes hashed at the start of each stride in {@link Digest#SAMPLED} */
+  public static final int SAMPLE_BYTES = 64 << 10;
+  public static final long SAMPLE_STRIDE = 16L << 20;
+
+  private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal
+      .withInitial(() -> ByteBuffer.allocateDirect(BUFFER_BYTES));
+
+  private OutputMeter() {
+  }
+
+  /**
+   * What is hashed besides counting
+   */
+  public enum Digest {
+    NONE,
+    /** Fixed windows spread over the output, and its length */
+    SAMPLED,
+    FULL;
+
+    /**
+     * {@code -Dvvcnv.measure.digest=none|sampled|full}, default none
+     */
+    public static Digest fromSystemProperty() {
+      var value = System.getProperty("vvcnv.measure.digest", "none");
+      return switch (value.toLowerCase()) {
+        case "sampled" -> SAMPLED;
+        case "full" -> FULL;
+        default -> NONE;
+      };
+    }
+  }
+
+  /**
+   * @param digest hex SHA-256 of what {@link Digest} selects, or null for
+   *               {@link Digest#NONE}
+   */
+  public record Measured(long bytes, String digest) {
+  }
+
+  /**
+   * Read {@code channel} to its end, reporting the bytes counted so far to
+   * {@code progress} after every read
+   */
+  public static Measured drain(ReadableByteChannel channel, Digest digest, LongConsumer progress)
+      throws IOException {
+    var sha = digest == Digest.NONE ? null : sha256();
+    var buffer = BUFFER.get();
+    long total = 0;
+    while (true) {
+      buffer.clear();
+      int n = channel.read(buffer);
+      if (n < 0) {
+        break;
+      }
+      if (n == 0) {
+        continue;
+      }
+      if (sha != null) {
+        buffer.flip();
+        update(sha, digest, buffer, total);
+      }
+      total += n;
+      progress.accept(total);
+    }
+    if (sha == null) {
+      return new Measured(total, null);
+    }
+    if (digest == Digest.SAMPLED) {
+      sha.update(ByteBuffer.allocate(Long.BYTES).putLong(0, total));
+    }
+    return new Measured(total, HexFormat.of().formatHex(sha.digest()));
+  }
+
+  /**
+   * Hash the part of {@code chunk} (starting at output offset {@code offset})
+   * that {@code digest} selects
+   */
+  private static void update(MessageDigest sha, Digest digest, ByteBuffer chunk, long offset) {
+    if (digest == Digest.FULL) {
+      sha.update(chunk);
+      return;
+    }
+    long end = offset + chunk.limit();
+    long position = offset;
+    while (position < end) {
+      long window = position - position % SAMPLE_STRIDE;
+      long sampleEnd = window + SAMPLE_BYTES;
+      if (position < sampleEnd) {
+        long to = Math.min(end, sampleEnd);
+        chunk.limit((int) (to - offset)).position((int) (position - offset));
+        sha.update(chunk);
+        position = to;
+      } else {
+        position = window + SAMPLE_STRIDE;
+      }
+    }
+  }
+
+  /**
+   * Count (and hash) a finished file as {@link #drain} counts a pipe
+   */
+  public static Measured measure(Path file, Digest digest) throws IOException {
+    if (digest == Digest.NONE) {
+      return new Measured(Files.size(file), null);
+    }
+    try (var channel = FileChannel.open(file)) {
+      return drain(channel, digest, bytes -> {
+      });
+    }
+  }
+
+  /**
+   * Where a measurement of {@code outputPath} is written before it is
+   * counted, or null when it is streamed through a pipe. MP4 and MOV write
+   * their moov index after the media, which a pipe cannot seek back to, and
+   * a fragmented stream would count per-fragment headers the real file does
+   * not have. So they are written as the real file in {@link #scratchDir()}.
+   */
+  public static Path scratchFileOf(String outputPath) {
+    return switch (FileModule.getFileName(outputPath).extension().toLowerCase()) {
+      case "mp4", "m4v", "mov" -> scratchDir().resolve("vvcnv-measure-" + Path.of(outputPath).getFileName());
+      default -> null;
+    };
+  }
+
+  /**
+   * {@code -Dvvcnv.measure.dir}, by default {@code /dev/shm} (memory, not
+   * disk) where it exists, else the temp directory
+   */
+  public static Path scratchDir() {
+    var dir = System.getProperty("vvcnv.measure.dir");
+    if (dir != null) {
+      return Path.of(dir);
+    }
+    var shm = Path.of("/dev/shm");
+    return Files.isDirectory(shm) && Files.isWritable(shm) ? shm : Path.of(System.getProperty("java.io.tmpdir"));
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package wappon28dev.vvcnv_java.modules;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Predicts the size of an encode so the scheduler can reserve disk space for
+ * it before it starts.
+ *
+ * <p>
+ * Every finished encode is recorded as bits per pixel per frame at its CRF.
+ * A new estimate takes the sample with the nearest CRF (same source first,
+ * then any source) and scales it by x264's rule of thumb that +6 CRF halves
+ * the bitrate. Before anything has finished, the source's own bits per pixel
+ * are used. The result is padded by {@link #SAFETY_FACTOR} because running
+ * out of space costs far more than reserving a little too much.
+ * </p>
+ *
+ * <p>
+ * A source is known by what was probed, not by its path, so encodes of a
+ * staged copy ({@link SourceStager}) count for the original.
+ * </p>
+ */
+public final class OutputSizeEstimator {
+
+  public static final double SAFETY_FACTOR = 1.5;
+
+  private static final double CRF_PER_HALVING = 6.0;
+  private static final long AUDIO_BITS_PER_SECOND = 128_000;
+  private static final int MAX_SAMPLES_PER_SOURCE = 64;
+
+  private static final OutputSizeEstimator SHARED = new OutputSizeEstimator();
+
+  private record Sample(int crf, double bitsPerPixel) {
+  }
+
+  private record SourceKey(VideoStat.VideoStreamInfo video, Duration duration, long fileSize) {
+
+    static SourceKey of(VideoStat stat) {
+      return new SourceKey(stat.videoStream(), stat.duration(), stat.fileSize());
+    }
+  }
+
+  private final Map<SourceKey, List<Sample>> samplesBySource = new HashMap<>();
+  private final List<Sample> allSamples = new ArrayList<>();
+
+  public static OutputSizeEstimator shared() {
+    return SHARED;
+  }
+
+  /**
+   * Expected output size in bytes, padded; 0 when the source's duration is
+   * unknown
+   */
+  public synchronized long estimate(VideoStat stat, VideoConfig config) {
+    double seconds = stat.duration().toMillis() / 1000.0;
+    if (seconds <= 0) {
+      return 0;
+    }
+
+    double bitsPerPixel;
+    var sample = nearest(samplesBySource.get(SourceKey.of(stat)), config.crf());
+    if (sample == null) {
+      sample = nearest(allSamples, config.crf());
+    }
+    if (sample != null) {
+      bitsPerPixel = sample.bitsPerPixel() * Math.pow(2, (sample.crf() - config.crf()) / CRF_PER_HALVING);
+    } else {
+      bitsPerPixel = sourceBitsPerPixel(stat);
+    }
+
+    double videoBits = bitsPerPixel * pixelsPerSecond(config.res(), Math.min(config.fps(), stat.videoStream().fps()))
+        * seconds;
+    double audioBits = config.hasAudio() && !stat.audioStreams().isEmpty() ? AUDIO_BITS_PER_SECOND * seconds : 0;
+    return (long) ((videoBits + audioBits) / 8 * SAFETY_FACTOR);
+  }
+
+  /**
+   * Learn from a finished encode
+   */
+  public synchronized void record(VideoStat stat, VideoConfig config, long outputBytes) {
+    double seconds = stat.duration().toMillis() / 1000.0;
+    double fps = Math.min(config.fps(), stat.videoStream().fps());
+    if (seconds <= 0 || fps <= 0 || outputBytes <= 0) {
+      return;
+    }
+    double audioBits = config.hasAudio() && !stat.audioStreams().isEmpty() ? AUDIO_BITS_PER_SECOND * seconds : 0;
+    double videoBits = Math.max(0, outputBytes * 8.0 - audioBits);
+    var sample = new Sample(config.crf(), videoBits / (pixelsPerSecond(config.res(), fps) * seconds));
+
+    var samples = samplesBySource.computeIfAbsent(SourceKey.of(stat), key -> new ArrayList<>());
+    if (samples.size() >= MAX_SAMPLES_PER_SOURCE) {
+      samples.removeFirst();
+    }
+    samples.add(sample);
+    if (allSamples.size() >= MAX_SAMPLES_PER_SOURCE) {
+      allSamples.removeFirst();
+    }
+    allSamples.add(sample);
+  }
+
+  private static Sample nearest(List<Sample> samples, int crf) {
+    if (samples == null) {
+      return null;
+    }
+    Sample best = null;
+    for (var sample : samples) {
+      if (best == null || Math.abs(sample.crf() - crf) < Math.abs(best.crf() - crf)) {
+        best = sample;
+      }
+    }
+    return best;
+  }
+
+  private static double sourceBitsPerPixel(VideoStat stat) {
+    var video = stat.videoStream();
+    double seconds = stat.duration().toMillis() / 1000.0;
+    double pixelsPerSecond = (double) video.width() * video.height() * video.fps();
+    if (pixelsPerSecond <= 0) {
+      return 0.1;
+    }
+    return stat.fileSize() * 8.0 / (pixelsPerSecond * seconds);
+  }
+
+  private static double pixelsPerSecond(VideoRes res, double fps) {
+    return (double) res.getWidth() * res.getHeight() * fps;
+  }
+}
@@ -0,0 +1,316 @@
+package wappon28dev.vvcnv_java.modules;
+
+import wappon28dev.vvcnv_java.scheduler.Qos;
+import wappon28dev.vvcnv_java.scheduler.QosLauncher;
+import wappon28dev.vvcnv_java.util.Result;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Thumbnails and a low-resolution proxy clip of an encoded output.
+ *
+ * <p>
+ * Only keyframes are decoded ({@code -skip_frame nokey} with input seeking),
+ * so a preview costs a handful of frame decodes no matter how long or large
+ * the output is. Results are cached under {@link #defaultCacheDir()} by a key
+ * built from the file's size, head and tail bytes, so re-encoding a cell or
+ * reopening a grid reuses the cache while a changed file gets a new entry.
+ * Generation runs one file at a time on a minimum-priority thread, with one
+ * single-threaded ffmpeg process per file started with {@link Qos#IDLE} (nice 19,
+ * idle I/O class), so it only uses cycles the encodes leave over.
+ * </p>
+ */
+public class PreviewModule {
+
+  /** Representative frames per output, spread over its duration */
+  public static final int THUMBNAILS = 3;
+  public static final int THUMBNAIL_WIDTH = 160;
+  public static final int PROXY_HEIGHT = 180;
+
+  /** Bump when the commands change so old cache entries are not reused */
+  private static final String FORMAT_VERSION = "preview-v1";
+
+  /**
+   * Cached preview files of one output
+   */
+  public record Preview(List<Path> thumbnails, Path proxy) {
+  }
+
+  private final String ffmpegPath;
+  private final Path cacheDir;
+  private final ExecutorService executor;
+
+  public PreviewModule(String ffmpegPath, Path cacheDir) {
+    this.ffmpegPath = ffmpegPath;
+    this.cacheDir = cacheDir;
+    this.executor = Executors.newSingleThreadExecutor(runnable -> {
+      var thread = new Thread(runnable, "vvcnv-preview");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+  }
+
+  /**
+   * {@code -Dvvcnv.preview.dir}, or {@code ~/.cache/vvcnv/previews}
+   */
+  public static Path defaultCacheDir() {
+    var configured = System.getProperty("vvcnv.preview.dir");
+    if (configured != null && !configured.isBlank()) {
+      return Path.of(configured);
+    }
+    return Path.of(System.getProperty("user.home"), ".cache", "vvcnv", "previews");
+  }
+
+  /**
+   * Previews can be turned off with {@code -Dvvcnv.preview=false}
+   */
+  public static boolean isEnabled() {
+    return !"false".equalsIgnoreCase(System.getProperty("vvcnv.preview"));
+  }
+
+  /**
+   * Queue preview generation for {@code outputPath}. A cache hit still goes
+   * through the queue but costs only the key computation. Cancelling the
+   * future before it starts skips the work.
+   */
+  public CompletableFuture<Result<Preview, String>> request(String outputPath, Duration duration) {
+    return CompletableFuture.supplyAsync(() -> generate(Path.of(outputPath), duration), executor);
+  }
+
+  /**
+   * Build (or reuse) the preview of {@code output} on the calling thread
+   */
+  public Result<Preview, String> generate(Path output, Duration duration) {
+    String key;
+    try {
+      key = contentKey(output);
+    } catch (IOException e) {
+      return Result.err("Failed to read output for preview: " + e.getMessage());
+    }
+
+    var entry = cacheDir.resolve(key);
+    var cached = cachedPreview(entry);
+    if (cached != null) {
+      return Result.ok(cached);
+    }
+
+    Path staging;
+    try {
+      Files.createDirectories(cacheDir);
+      staging = Files.createTempDirectory(cacheDir, key + ".tmp");
+    } catch (IOException e) {
+      return Result.err("Failed to create preview cache: " + e.getMessage());
+    }
+
+    try {
+      var input = output.toString();
+      var seconds = thumbnailTimes(duration);
+      var thumbnails = new ArrayList<String>();
+      for (int i = 0; i < seconds.length; i++) {
+        thumbnails.add(staging.resolve(thumbnailName(i)).toString());
+      }
+      var proxy = staging.resolve(proxyName()).toString();
+
+      if (run(previewCommand(ffmpegPath, input, seconds, thumbnails, proxy)) instanceof Result.Err<Void, String> err) {
+        // Retry output by output, which also tells which one ffmpeg cannot make
+        System.err.println("プレビュー一括生成失敗、個別に再試行: " + err.error());
+        for (int i = 0; i < seconds.length; i++) {
+          if (run(thumbnailCommand(ffmpegPath, input, seconds[i], thumbnails.get(i)))
+              instanceof Result.Err<Void, String> thumbnailErr) {
+            return Result.err("Thumbnail failed: " + thumbnailErr.error());
+          }
+        }
+        if (run(proxyCommand(ffmpegPath, input, proxy)) instanceof Result.Err<Void, String> proxyErr) {
+          return Result.err("Proxy failed: " + proxyErr.error());
+        }
+      }
+
+      // Publish the whole entry at once so a half-written preview is never read
+      try {
+        Files.move(staging, entry, StandardCopyOption.ATOMIC_MOVE);
+      } catch (FileAlreadyExistsException | AtomicMoveNotSupportedException e) {
+        // Another run published the same content first
+      }
+      var preview = cachedPreview(entry);
+      return preview != null ? Result.ok(preview) : Result.err("Preview cache entry is incomplete: " + entry);
+    } catch (IOException e) {
+      return Result.err("Failed to store preview: " + e.getMessage());
+    } finally {
+      deleteQuietly(staging);
+    }
+  }
+
+  /**
+   * Seek positions of the thumbnails: evenly inside the clip, never at the
+   * very start (often black) or end
+   */
+  static double[] thumbnailTimes(Duration duration) {
+    double total = duration.toMillis() / 1000.0;
+    if (total <= 0) {
+      return new double[] { 0.0 };
+    }
+    var times = new double[THUMBNAILS];
+    for (int i = 0; i < THUMBNAILS; i++) {
+      times[i] = total * (i + 1) / (THUMBNAILS + 1);
+    }
+    return times;
+  }
+
+  /**
+   * All thumbnails and the proxy from one ffmpeg process: each thumbnail
+   * opens the input again with its own seek, the proxy reads it once more, and
+   * the outputs take the same options as {@link #thumbnailCommand} and
+   * {@link #proxyCommand}. One process start, argument parse and stderr pipe
+   * per preview instead of one per file.
+   */
+  public static List<String> previewCommand(String ffmpegPath, String inputPath, double[] seconds,
+      List<String> thumbnailPaths, String proxyPath) {
+    var command = new ArrayList<>(List.of(ffmpegPath, "-nostdin", "-v", "error", "-y"));
+    for (double second : seconds) {
+      command.addAll(List.of(
+          "-skip_frame", "nokey",
+          "-ss", String.format(Locale.ROOT, "%.3f", second),
+          "-i", inputPath));
+    }
+    command.addAll(List.of("-skip_frame", "nokey", "-i", inputPath));
+
+    for (int i = 0; i < seconds.length; i++) {
+      command.addAll(List.of(
+          "-map", i + ":v:0",
+          "-frames:v", "1",
+          "-vf", "scale=%d:-2".formatted(THUMBNAIL_WIDTH),
+          "-q:v", "5",
+          "-threads", "1",
+          thumbnailPaths.get(i)));
+    }
+    command.addAll(List.of(
+        "-map", seconds.length + ":v:0",
+        "-an",
+        "-vf", "scale=-2:%d".formatted(PROXY_HEIGHT),
+        "-fps_mode", "vfr",
+        "-c:v", "libx264", "-preset", "ultrafast", "-crf", "32",
+        "-threads", "1",
+        proxyPath));
+    return command;
+  }
+
+  /**
+   * One keyframe at or after {@code seconds}, scaled to a JPEG thumbnail
+   */
+  public static List<String> thumbnailCommand(String ffmpegPath, String inputPath, double seconds, String outputPath) {
+    return List.of(
+        ffmpegPath,
+        "-nostdin", "-v", "error", "-y",
+        "-skip_frame", "nokey",
+        "-ss", String.format(Locale.ROOT, "%.3f", seconds),
+        "-i", inputPath,
+        "-map", "0:v:0",
+        "-frames:v", "1",
+        "-vf", "scale=%d:-2".formatted(THUMBNAIL_WIDTH),
+        "-q:v", "5",
+        "-threads", "1",
+        outputPath);
+  }
+
+  /**
+   * Keyframes only, downscaled and re-encoded as a small silent clip
+   */
+  public static List<String> proxyCommand(String ffmpegPath, String inputPath, String outputPath) {
+    return List.of(
+        ffmpegPath,
+        "-nostdin", "-v", "error", "-y",
+        "-skip_frame", "nokey",
+        "-i", inputPath,
+        "-map", "0:v:0",
+        "-an",
+        "-vf", "scale=-2:%d".formatted(PROXY_HEIGHT),
+        "-fps_mode", "vfr",
+        "-c:v", "libx264", "-preset", "ultrafast", "-crf", "32",
+        "-threads", "1",
+        outputPath);
+  }
+
+  /**
+   * {@link FileModule#fingerprint} of the output and the preview format
+   */
+  public static String contentKey(Path file) throws IOException {
+    return FileModule.fingerprint(file, FORMAT_VERSION);
+  }
+
+  private static String thumbnailName(int index) {
+    return "thumb_%d.jpg".formatted(index);
+  }
+
+  private static String proxyName() {
+    return "proxy.mp4";
+  }
+
+  private static Preview cachedPreview(Path entry) {
+    var proxy = entry.resolve(proxyName());
+    if (!Files.isRegularFile(proxy)) {
+      return null;
+    }
+    var thumbnails = new ArrayList<Path>();
+    for (int i = 0; Files.isRegularFile(entry.resolve(thumbnailName(i))); i++) {
+      thumbnails.add(entry.resolve(thumbnailName(i)));
+    }
+    return thumbnails.isEmpty() ? null : new Preview(List.copyOf(thumbnails), proxy);
+  }
+
+  private Result<Void, String> run(List<String> command) {
+    try {
+      var process = new ProcessBuilder(QosLauncher.wrap(Qos.IDLE, command))
+          .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+          .start();
+      String stderr;
+      try (InputStream errors = process.getErrorStream()) {
+        stderr = new String(errors.readAllBytes(), StandardCharsets.UTF_8).trim();
+      }
+      int exitCode = process.waitFor();
+      if (exitCode != 0) {
+        return Result.err("ffmpeg exited with " + exitCode + (stderr.isEmpty() ? "" : ": " + stderr));
+      }
+      return Result.ok(null);
+    } catch (IOException e) {
+      return Result.err("Failed to start ffmpeg: " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Result.err("Interrupted while generating preview");
+    }
+  }
+
+  private static void deleteQuietly(Path dir) {
+    if (!Files.exists(dir)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(dir)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+        try {
+          Files.deleteIfExists(path);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (IOException | UncheckedIOException e) {
+      System.err.println("プレビューの一時ファイルを削除できません: " + dir);
+    }
+  }
+}
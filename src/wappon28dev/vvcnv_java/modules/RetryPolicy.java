@@ -0,0 +1,106 @@
+package wappon28dev.vvcnv_java.modules;
+
+import wappon28dev.vvcnv_java.util.Result;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Retries encodes that failed in a way another try can fix (see
+ * {@link EncodeFailure#retryable()}), after an exponential backoff. A retry
+ * after running out of memory or crashing runs degraded: half the threads and
+ * a short x264 lookahead.
+ *
+ * <p>
+ * Each attempt is submitted anew, so the backoff does not hold a scheduler
+ * slot and a degraded attempt reserves only what it needs.
+ * </p>
+ *
+ * @param maxRetries retries after the first attempt
+ * @param backoff    delay before the first retry, doubled for each further one
+ */
+public record RetryPolicy(int maxRetries, Duration backoff) {
+
+  public static final RetryPolicy NONE = new RetryPolicy(0, Duration.ZERO);
+
+  private static final Duration MAX_BACKOFF = Duration.ofMinutes(2);
+
+  /**
+   * One try of an encode
+   *
+   * @param number    0 for the first attempt, then 1, 2, ... for retries
+   * @param threads   encoder threads
+   * @param lowMemory whether to trade some compression for memory
+   */
+  public record Attempt(int number, int threads, boolean lowMemory) {
+
+    public static Attempt first(int threads) {
+      return new Attempt(0, threads, false);
+    }
+
+    /**
+     * The attempt after one that failed with {@code failure}
+     */
+    public Attempt next(EncodeFailure failure) {
+      if (failure.degrades()) {
+        return new Attempt(number + 1, Math.max(1, threads / 2), true);
+      }
+      return new Attempt(number + 1, threads, lowMemory);
+    }
+  }
+
+  /**
+   * {@code -Dvvcnv.retry.max} (default 2) retries, the first after
+   * {@code -Dvvcnv.retry.backoffMs} (default 5000)
+   */
+  public static RetryPolicy fromSystemProperties() {
+    return new RetryPolicy(Integer.getInteger("vvcnv.retry.max", 2),
+        Duration.ofMillis(Long.getLong("vvcnv.retry.backoffMs", 5000L)));
+  }
+
+  /**
+   * Delay before retry {@code number} (1 for the first retry)
+   */
+  public Duration delay(int number) {
+    var delay = backoff.multipliedBy(1L << Math.min(20, Math.max(0, number - 1)));
+    return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+  }
+
+  /**
+   * Whether {@code result} of {@code attempt} is followed by another attempt,
+   * so it is not the final result yet
+   */
+  public boolean willRetry(Attempt attempt, Result<?, String> result) {
+    if (!(result instanceof Result.Err<?, String> err) || attempt.number() >= maxRetries) {
+      return false;
+    }
+    var failure = EncodeFailure.of(err.error());
+    return failure != null && failure.retryable();
+  }
+
+  /**
+   * Run {@code submit} for {@code first} and retry while the policy allows.
+   * {@code submit} may complete with null (the task was stopped), which ends
+   * the attempts.
+   *
+   * @return the last attempt's result
+   */
+  public <T> CompletableFuture<Result<T, String>> run(Attempt first,
+      Function<Attempt, CompletableFuture<Result<T, String>>> submit) {
+    return submit.apply(first).thenCompose(result -> {
+      if (!willRetry(first, result)) {
+        return CompletableFuture.completedFuture(result);
+      }
+      var err = (Result.Err<T, String>) result;
+      var next = first.next(EncodeFailure.of(err.error()));
+      var delay = delay(next.number());
+      System.out.printf("再試行 %d/%d (%.1f秒後, %dスレッド%s): %s%n", next.number(), maxRetries,
+          delay.toMillis() / 1000.0, next.threads(), next.lowMemory() ? ", 省メモリ" : "",
+          err.error().lines().findFirst().orElse(""));
+      var delayed = CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS);
+      return CompletableFuture.supplyAsync(() -> next, delayed).thenCompose(attempt -> run(attempt, submit));
+    });
+  }
+}
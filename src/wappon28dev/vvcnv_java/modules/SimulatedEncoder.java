@@ -0,0 +1,210 @@
+package wappon28dev.vvcnv_java.modules;
+
+import wappon28dev.vvcnv_java.metrics.EncodeMetrics;
+import wappon28dev.vvcnv_java.modules.VideoModule.VideoProcessParams;
+import wappon28dev.vvcnv_java.util.Result;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Encoder that only pretends: it takes a configurable time, keeps its threads
+ * busy for a configurable share of it, writes a (sparse) output of the
+ * expected size and fails at a configurable rate. Thousands of cells go
+ * through the scheduler, metrics and result grid in seconds without ffmpeg.
+ *
+ * <p>
+ * A {@link SizeGuard} sees the final size at once and stops the encode a
+ * tenth of the way in. A remux takes a twentieth of the time and writes the
+ * source's size. Every frame counts as written, decimation or not, and a
+ * measurement writes no file.
+ * </p>
+ *
+ * <p>
+ * Failures are drawn from a seeded generator, so a run with the same profile
+ * and the same task order fails the same cells.
+ * </p>
+ */
+public final class SimulatedEncoder implements Encoder {
+
+  /** Busy/idle cycle of the CPU burn */
+  private static final long SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  /**
+   * An encode stopped by its {@link SizeGuard} ends after its duration
+   * divided by this
+   */
+  private static final int ABORT_DIVISOR = 10;
+  /** A remux takes an encode's duration divided by this */
+  private static final int REMUX_SPEEDUP = 20;
+
+  /**
+   * What a simulated encode does
+   *
+   * @param duration    wall time of one encode
+   * @param cpuLoad     share of that time each thread spends busy, 0 to 1
+   * @param outputBytes size of the output, or 0 for
+   *                    {@link OutputSizeEstimator}'s estimate
+   * @param failureRate probability that an encode fails, 0 to 1
+   * @param seed        seed of the failure draws
+   */
+  public record Profile(Duration duration, double cpuLoad, long outputBytes, double failureRate, long seed) {
+
+    public Profile {
+      if (duration.isNegative()) {
+        throw new IllegalArgumentException("duration must not be negative");
+      }
+      if (cpuLoad < 0 || cpuLoad > 1 || failureRate < 0 || failureRate > 1) {
+        throw new IllegalArgumentException("cpuLoad and failureRate must be 0..1");
+      }
+      outputBytes = Math.max(0, outputBytes);
+    }
+  }
+
+  private final Profile profile;
+  private final SplittableRandom random;
+
+  public SimulatedEncoder(Profile profile) {
+    this.profile = profile;
+    this.random = new SplittableRandom(profile.seed());
+  }
+
+  /**
+   * Profile from {@code -Dvvcnv.sim.durationMs} (default 200),
+   * {@code -Dvvcnv.sim.cpuLoad} (0), {@code -Dvvcnv.sim.outputKB} (0 =
+   * estimated), {@code -Dvvcnv.sim.failureRate} (0) and
+   * {@code -Dvvcnv.sim.seed}
+   */
+  public static SimulatedEncoder fromSystemProperties() {
+    var profile = new Profile(
+        Duration.ofMillis(Long.getLong("vvcnv.sim.durationMs", 200)),
+        Double.parseDouble(System.getProperty("vvcnv.sim.cpuLoad", "0")),
+        Long.getLong("vvcnv.sim.outputKB", 0L) * 1024,
+        Double.parseDouble(System.getProperty("vvcnv.sim.failureRate", "0")),
+        Long.getLong("vvcnv.sim.seed", 0L));
+    System.out.println("シミュレーションエンコーダーを使用: " + profile);
+    return new SimulatedEncoder(profile);
+  }
+
+  public Profile profile() {
+    return profile;
+  }
+
+  @Override
+  public Result<Encoded, String> encode(VideoStat stat, VideoProcessParams params) {
+    var config = params.config();
+    var options = params.options();
+    if (config.checkUpScaling(stat) instanceof Result.Err<Void, String> err) {
+      return Result.err(err.error());
+    }
+
+    boolean fails;
+    synchronized (random) {
+      fails = random.nextDouble() < profile.failureRate();
+    }
+    boolean remux = params.copies(stat);
+    long outputBytes = remux ? stat.fileSize()
+        : profile.outputBytes() > 0 ? profile.outputBytes()
+        : (long) (OutputSizeEstimator.shared().estimate(stat, config) / OutputSizeEstimator.SAFETY_FACTOR);
+
+    // The projection of a real encode settles after about a tenth of it
+    var abort = remux ? null : options.guard().check(outputBytes);
+    var output = Path.of(params.outputPath());
+    try (var recording = EncodeMetrics.shared().start(params.outputPath(), config.toString())) {
+      if (abort != null) {
+        run(Math.max(1, params.threads()), profile.duration().dividedBy(ABORT_DIVISOR));
+        return Result.err(SizeGuard.abortedError(outputBytes, abort));
+      }
+      if (remux) {
+        run(1, profile.duration().dividedBy(REMUX_SPEEDUP));
+      } else {
+        run(Math.max(1, params.threads()), profile.duration());
+      }
+      if (fails) {
+        if (!options.measureOnly()) {
+          Files.deleteIfExists(output);
+        }
+        return Result.err("Simulated failure");
+      }
+      if (!options.measureOnly()) {
+        try (var file = new RandomAccessFile(output.toFile(), "rw")) {
+          // Sparse: the size is real, the disk space is not used
+          file.setLength(outputBytes);
+        }
+      }
+      recording.succeeded(outputBytes);
+      if (!remux) {
+        OutputSizeEstimator.shared().record(stat, config, outputBytes);
+      }
+      long frames = config.outputFrames(stat);
+      return Result.ok(options.measureOnly() ? new Encoded(frames, outputBytes, null) : new Encoded(frames));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Result.err("Encoding interrupted");
+    } catch (IOException e) {
+      return Result.err("Encoding failed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Spend {@code duration} on {@code threads} threads, the calling thread
+   * being one of them
+   */
+  private void run(int threads, Duration duration) throws InterruptedException {
+    long deadline = System.nanoTime() + duration.toNanos();
+    if (profile.cpuLoad() <= 0) {
+      sleepUntil(deadline);
+      return;
+    }
+
+    var helpers = new ArrayList<Thread>();
+    for (int i = 1; i < threads; i++) {
+      helpers.add(Thread.ofPlatform().daemon().name("vvcnv-sim-burn").start(() -> burnUntil(deadline)));
+    }
+    try {
+      burnUntil(deadline);
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedException();
+      }
+    } finally {
+      helpers.forEach(Thread::interrupt);
+      for (var helper : helpers) {
+        helper.join();
+      }
+    }
+  }
+
+  private void burnUntil(long deadline) {
+    long busyNanos = (long) (SLICE_NANOS * profile.cpuLoad());
+    long sink = 0;
+    while (!Thread.currentThread().isInterrupted()) {
+      long now = System.nanoTime();
+      if (now >= deadline) {
+        break;
+      }
+      long busyUntil = Math.min(deadline, now + busyNanos);
+      while (System.nanoTime() < busyUntil) {
+        sink += sink * 31 + 17;
+      }
+      long idleUntil = Math.min(deadline, now + SLICE_NANOS);
+      LockSupport.parkNanos(idleUntil - System.nanoTime());
+    }
+    if (sink == 42) {
+      // Keep the loop from being optimized away
+      System.out.print("");
+    }
+  }
+
+  private static void sleepUntil(long deadline) throws InterruptedException {
+    long remaining = deadline - System.nanoTime();
+    if (remaining > 0) {
+      TimeUnit.NANOSECONDS.sleep(remaining);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package wappon28dev.vvcnv_java.modules;
+
+import java.util.Locale;
+
+/**
+ * Decides from an encode's projected final size whether it is still worth
+ * finishing. Encoders ask it while they run and stop the encode on the first
+ * reason they get back; the encode then fails with
+ * {@link #abortedError(long, String)}.
+ */
+@FunctionalInterface
+public interface SizeGuard {
+
+  /** Prefix of the error of an encode stopped by a guard */
+  String ABORTED = "aborted: ";
+
+  /** Lets every encode finish */
+  SizeGuard NONE = projectedBytes -> null;
+
+  /**
+   * @return why an encode heading for {@code projectedBytes} should stop, or
+   *         null to let it continue
+   */
+  String check(long projectedBytes);
+
+  /**
+   * Stop encodes projected beyond {@code capBytes}; {@link #NONE} for 0
+   */
+  static SizeGuard cap(long capBytes) {
+    if (capBytes <= 0) {
+      return NONE;
+    }
+    return projectedBytes -> projectedBytes > capBytes ? "cap " + megabytes(capBytes) : null;
+  }
+
+  /**
+   * This guard, then {@code other}
+   */
+  default SizeGuard or(SizeGuard other) {
+    if (this == NONE) {
+      return other;
+    }
+    if (other == NONE) {
+      return this;
+    }
+    return projectedBytes -> {
+      var reason = check(projectedBytes);
+      return reason != null ? reason : other.check(projectedBytes);
+    };
+  }
+
+  /**
+   * Error of an encode stopped at {@code projectedBytes} for {@code reason}:
+   * {@code aborted: projected 123.4 MB (cap 50.0 MB)}
+   */
+  static String abortedError(long projectedBytes, String reason) {
+    return ABORTED + "projected " + megabytes(projectedBytes) + " (" + reason + ")";
+  }
+
+  /**
+   * Whether {@code error} is that of an encode stopped by a guard
+   */
+  static boolean isAborted(String error) {
+    return error != null && error.startsWith(ABORTED);
+  }
+
+  /**
+   * {@code aborted: projected 123.4 MB} part of an aborted error
+   */
+  static String summary(String error) {
+    int details = error.indexOf(" (");
+    return details < 0 ? error : error.substring(0, details);
+  }
+
+  static String megabytes(long bytes) {
+    return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+  }
+}
@@ -0,0 +1,310 @@
+package wappon28dev.vvcnv_java.modules;
+
+import wappon28dev.vvcnv_java.util.Result;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Copies sources to fast local storage (an SSD or tmpfs directory) before a
+ * grid reads them.
+ *
+ * <p>
+ * Every cell of a grid is its own ffmpeg process reading the same source at
+ * its own offset. On NFS or a spinning disk that is random I/O, and the
+ * encodes starve for input. A staged copy is read once, front to back, with
+ * {@link FileChannel#transferTo} (which lets the kernel copy without a trip
+ * through the JVM), and the cells then read the local copy.
+ * </p>
+ *
+ * <p>
+ * Copies are named by the source's {@link FileModule#fingerprint}, so a
+ * source staged for one grid is reused by the next. A copy is pinned while a
+ * grid uses it; unpinned copies stay cached and are evicted least recently
+ * used first when a new copy would push the directory past its size bound.
+ * Copies run one at a time on a background thread, so several sources on the
+ * same slow disk are still read one after another.
+ * </p>
+ */
+public final class SourceStager {
+
+  public static final long DEFAULT_MAX_BYTES = 20L << 30;
+
+  /** Bump when the layout changes so old copies are not reused */
+  private static final String FORMAT_VERSION = "stage-v1";
+  /** Bytes per transferTo call, so progress can be logged and interrupted */
+  private static final long COPY_CHUNK_BYTES = 64L << 20;
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private static final SourceStager SHARED = fromSystemProperties();
+
+  private final Path cacheDir;
+  private final long maxBytes;
+  /** Pins per file in {@link #cacheDir}, copies being written included */
+  private final Map<Path, Integer> pins = new HashMap<>();
+  /** Final size of the copies being written, not yet on disk */
+  private long copyingBytes;
+  private final ExecutorService executor;
+
+  public SourceStager(Path cacheDir, long maxBytes) {
+    this.cacheDir = cacheDir;
+    this.maxBytes = maxBytes;
+    this.executor = Executors.newSingleThreadExecutor(runnable -> {
+      var thread = new Thread(runnable, "vvcnv-stage");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * The stager configured by {@link #fromSystemProperties()}
+   */
+  public static SourceStager shared() {
+    return SHARED;
+  }
+
+  /**
+   * {@code -Dvvcnv.stage.dir} (default {@code ~/.cache/vvcnv/staging}; point
+   * it at an SSD or a tmpfs such as {@code /dev/shm}) holding at most
+   * {@code -Dvvcnv.stage.maxMB} (default 20480)
+   */
+  public static SourceStager fromSystemProperties() {
+    var configured = System.getProperty("vvcnv.stage.dir");
+    var dir = configured != null && !configured.isBlank()
+        ? Path.of(configured)
+        : Path.of(System.getProperty("user.home"), ".cache", "vvcnv", "staging");
+    return new SourceStager(dir, Long.getLong("vvcnv.stage.maxMB", DEFAULT_MAX_BYTES >> 20) << 20);
+  }
+
+  public Path cacheDir() {
+    return cacheDir;
+  }
+
+  public long maxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * A pinned local copy of a source; close it when the grid is done with it
+   */
+  public final class Staged implements AutoCloseable {
+    private final Path path;
+    private boolean released;
+
+    private Staged(Path path) {
+      this.path = path;
+    }
+
+    public Path path() {
+      return path;
+    }
+
+    /**
+     * {@code stat} reading this copy instead of the original
+     */
+    public VideoStat apply(VideoStat stat) {
+      return new VideoStat(path.toString(), stat.videoStream(), stat.audioStreams(), stat.duration(),
+          stat.fileSize());
+    }
+
+    /**
+     * Unpin the copy; it stays cached until evicted
+     */
+    @Override
+    public void close() {
+      synchronized (SourceStager.this) {
+        if (!released) {
+          released = true;
+          unpin(path);
+        }
+      }
+    }
+  }
+
+  /**
+   * {@link #stage} on the background thread
+   */
+  public CompletableFuture<Result<Staged, String>> stageAsync(VideoStat stat) {
+    return CompletableFuture.supplyAsync(() -> stage(stat), executor);
+  }
+
+  /**
+   * Pin a local copy of {@code stat}'s file, copying it first unless it is
+   * cached. Fails when the file does not fit the size bound next to the
+   * pinned copies; the caller then reads the original.
+   */
+  public Result<Staged, String> stage(VideoStat stat) {
+    var source = Path.of(stat.path());
+    long size;
+    String key;
+    try {
+      size = Files.size(source);
+      key = FileModule.fingerprint(source, FORMAT_VERSION);
+    } catch (IOException e) {
+      return Result.err("Failed to read source for staging: " + e.getMessage());
+    }
+    if (size > maxBytes) {
+      return Result.err("Source (%s) is larger than the staging cache (%s)".formatted(
+          SizeGuard.megabytes(size), SizeGuard.megabytes(maxBytes)));
+    }
+
+    var extension = FileModule.getFileName(stat.path()).extension();
+    var entry = cacheDir.resolve(extension.isEmpty() ? key : key + "." + extension);
+    Path temp = null;
+    synchronized (this) {
+      try {
+        if (Files.isRegularFile(entry) && Files.size(entry) == size) {
+          Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+          pin(entry);
+          System.out.println("ステージング済みのコピーを使用: " + entry);
+          return Result.ok(new Staged(entry));
+        }
+        Files.createDirectories(cacheDir);
+        // Both pinned before evicting, so neither is taken for room
+        pin(entry);
+        temp = Files.createTempFile(cacheDir, entry.getFileName() + ".", TEMP_SUFFIX);
+        pin(temp);
+        var room = makeRoom(size);
+        if (room != null) {
+          throw new IOException(room);
+        }
+        copyingBytes += size;
+      } catch (IOException e) {
+        unpin(entry);
+        if (temp != null) {
+          unpin(temp);
+          deleteQuietly(temp);
+        }
+        return Result.err("Failed to prepare staging: " + e.getMessage());
+      }
+    }
+
+    try {
+      long started = System.nanoTime();
+      copy(source, temp, size);
+      Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      double seconds = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+      System.out.printf("入力をステージング: %s → %s (%s, %.1f秒, %.0f MB/s)%n", source, entry,
+          SizeGuard.megabytes(size), seconds, size / seconds / (1024 * 1024));
+      return Result.ok(new Staged(entry));
+    } catch (IOException e) {
+      synchronized (this) {
+        unpin(entry);
+      }
+      return Result.err("Failed to stage source: " + e.getMessage());
+    } finally {
+      synchronized (this) {
+        unpin(temp);
+        copyingBytes -= size;
+      }
+      deleteQuietly(temp);
+    }
+  }
+
+  /**
+   * Pins of {@code file}, for tests and diagnostics
+   */
+  public synchronized int pins(Path file) {
+    return pins.getOrDefault(file, 0);
+  }
+
+  /**
+   * Evict unpinned files, least recently used first, until {@code size}
+   * more bytes fit the bound and the file system
+   *
+   * @return why there is no room, or null
+   */
+  private String makeRoom(long size) throws IOException {
+    var files = new ArrayList<Path>();
+    try (Stream<Path> listing = Files.list(cacheDir)) {
+      // Copies being written are counted at their final size instead
+      listing.filter(Files::isRegularFile)
+          .filter(file -> !(file.getFileName().toString().endsWith(TEMP_SUFFIX) && pins.containsKey(file)))
+          .forEach(files::add);
+    }
+    long used = copyingBytes;
+    for (var file : files) {
+      used += Files.size(file);
+    }
+    files.sort(Comparator.comparing(SourceStager::lastModified));
+
+    for (var file : files) {
+      if (used + size <= maxBytes) {
+        break;
+      }
+      if (pins.containsKey(file)) {
+        continue;
+      }
+      long bytes = Files.size(file);
+      Files.deleteIfExists(file);
+      used -= bytes;
+      System.out.println("ステージングのコピーを削除: " + file.getFileName());
+    }
+    if (used + size > maxBytes) {
+      return "Staging cache is full of copies in use (%s of %s)".formatted(
+          SizeGuard.megabytes(used), SizeGuard.megabytes(maxBytes));
+    }
+    if (Files.getFileStore(cacheDir).getUsableSpace() < size) {
+      return "Not enough free space for staging in " + cacheDir;
+    }
+    return null;
+  }
+
+  /**
+   * Sequential copy in large chunks, through the kernel where it can
+   */
+  private static void copy(Path source, Path target, long size) throws IOException {
+    try (var in = FileChannel.open(source, StandardOpenOption.READ);
+        var out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      long position = 0;
+      while (position < size) {
+        if (Thread.currentThread().isInterrupted()) {
+          throw new IOException("Interrupted while staging");
+        }
+        long copied = in.transferTo(position, Math.min(COPY_CHUNK_BYTES, size - position), out);
+        if (copied <= 0) {
+          throw new IOException("Source ended at %d of %d bytes".formatted(position, size));
+        }
+        position += copied;
+      }
+    }
+  }
+
+  private void pin(Path file) {
+    pins.merge(file, 1, Integer::sum);
+  }
+
+  private void unpin(Path file) {
+    pins.computeIfPresent(file, (key, count) -> count > 1 ? count - 1 : null);
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      System.err.println("ステージングの一時ファイルを削除できません: " + file);
+    }
+  }
+
+  private static FileTime lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file);
+    } catch (IOException e) {
+      return FileTime.fromMillis(0);
+    }
+  }
+}
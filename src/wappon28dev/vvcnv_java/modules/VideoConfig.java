@@ -7,6 +7,9 @@ import wappon28dev.vvcnv_java.util.Result;
  */
 public record VideoConfig(VideoRes res, int fps, int crf, boolean hasAudio) {
 
+  /** Frame rates this close count as the same (29.97 for 30) */
+  private static final double FPS_TOLERANCE = 0.01;
+
   /**
    * Default video configuration
    */
@@ -21,6 +24,37 @@ public record VideoConfig(VideoRes res, int fps, int crf, boolean hasAudio) {
     return "--res-" + res.toFileName() + "--fps-" + fps + "--crf-" + crf;
   }
 
+  /**
+   * Output pixels times output frames of encoding {@code stat} with this
+   * configuration; the scheduler's unit of work
+   */
+  public long outputPixelFrames(VideoStat stat) {
+    return (long) ((double) res.getWidth() * res.getHeight() * outputFrames(stat));
+  }
+
+  /**
+   * Frames of encoding {@code stat} at a constant frame rate
+   */
+  public long outputFrames(VideoStat stat) {
+    return (long) (Math.min(fps, stat.videoStream().fps()) * stat.duration().toMillis() / 1000.0);
+  }
+
+  /**
+   * Whether the output would have the source's resolution, frame rate and
+   * codec (H.264), so the source's video stream can be copied instead of
+   * encoded. The CRF is not looked at: a copy keeps the source's quality.
+   */
+  public boolean canCopy(VideoStat stat) {
+    var video = stat.videoStream();
+    return "h264".equals(video.codec())
+        && res.getWidth() == video.width() && res.getHeight() == video.height()
+        && video.fps() > 0 && sameFps(video.fps());
+  }
+
+  private boolean sameFps(double sourceFps) {
+    return Math.abs(fps - sourceFps) <= fps * FPS_TOLERANCE;
+  }
+
   /**
    * Check for upscaling issues
    */
@@ -37,8 +71,8 @@ public record VideoConfig(VideoRes res, int fps, int crf, boolean hasAudio) {
           videoStream.height()));
     }
 
-    // Check FPS upscaling
-    if (fps > videoStream.fps()) {
+    // Check FPS upscaling; 30 from 29.97 is the same rate, not an upscale
+    if (fps > videoStream.fps() && !sameFps(videoStream.fps())) {
       return Result.err(String.format(
           "FPS upscaling detected: %d > %.2f",
           fps,
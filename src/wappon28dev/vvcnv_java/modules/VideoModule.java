@@ -1,5 +1,8 @@
 package wappon28dev.vvcnv_java.modules;
 
+import wappon28dev.vvcnv_java.jfr.ProbeEvent;
+import wappon28dev.vvcnv_java.metrics.EncodeMetrics;
+import wappon28dev.vvcnv_java.metrics.ProcessTracker;
 import wappon28dev.vvcnv_java.util.Result;
 import wappon28dev.vvcnv_java.modules.VideoStat.VideoStreamInfo;
 import wappon28dev.vvcnv_java.modules.VideoStat.AudioStreamInfo;
@@ -8,22 +11,66 @@ import net.bramp.ffmpeg.FFmpeg;
 import net.bramp.ffmpeg.FFmpegExecutor;
 import net.bramp.ffmpeg.FFprobe;
 import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import net.bramp.ffmpeg.builder.FFmpegOutputBuilder;
 import net.bramp.ffmpeg.job.FFmpegJob;
 import net.bramp.ffmpeg.probe.FFmpegProbeResult;
 import net.bramp.ffmpeg.probe.FFmpegStream;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Video processing module - port of Rust video.rs
  */
-public class VideoModule {
+public class VideoModule implements Encoder {
+
+  /**
+   * How {@link #stat(String)} talks to ffprobe
+   */
+  public enum ProbeMode {
+    /** Container headers read in Java, ffprobe only when they are not enough */
+    HEADER,
+    /** Selected entries only, streamed straight into VideoStat */
+    LEAN,
+    /** Full JSON bound by bramp into FFmpegProbeResult */
+    FULL;
+
+    /**
+     * Default mode, overridable with {@code -Dvvcnv.probe=lean|full}
+     */
+    public static ProbeMode fromSystemProperty() {
+      var value = System.getProperty("vvcnv.probe", "header");
+      return switch (value.toLowerCase()) {
+        case "full" -> FULL;
+        case "lean" -> LEAN;
+        default -> HEADER;
+      };
+    }
+  }
+
+  /** A projection needs this much encoded output, and at least this share */
+  private static final long MIN_PROJECTION_NANOS = 5_000_000_000L;
+  private static final double MIN_PROJECTION_SHARE = 0.1;
+  /** How often ffmpeg prints its stats line */
+  private static final int STATS_PERIOD_SECONDS = 1;
+  /** Drops frames that barely differ from the last one kept */
+  private static final String DECIMATE_FILTER = "mpdecimate";
 
   private final FFmpeg ffmpeg;
   private final FFprobe ffprobe;
   private final FFmpegExecutor executor;
+  private final ProcessTracker processTracker = new ProcessTracker();
+  private final VideoStatProvider containerProbe = new ContainerProbe();
+  private final PreviewModule previewModule;
+  private final CropDetector cropDetector;
 
   public VideoModule() throws IOException {
     // Try different FFmpeg installation paths
@@ -47,7 +94,7 @@ public class VideoModule {
     // Try to find ffmpeg
     for (String path : possiblePaths) {
       try {
-        ffmpegTmp = new FFmpeg(path);
+        ffmpegTmp = new FFmpeg(path, processTracker);
         System.out.println("FFmpeg見つかりました: " + path);
         break;
       } catch (IOException e) {
@@ -79,12 +126,87 @@ public class VideoModule {
     this.ffmpeg = ffmpegTmp;
     this.ffprobe = ffprobeTmp;
     this.executor = new FFmpegExecutor(ffmpeg, ffprobe);
+    this.previewModule = new PreviewModule(ffmpegPath(), PreviewModule.defaultCacheDir());
+    this.cropDetector = new CropDetector(ffmpegPath(), CropDetector.defaultCacheDir());
+  }
+
+  /**
+   * The ffmpeg executable that was found
+   */
+  public String ffmpegPath() {
+    return ffmpeg.getPath();
+  }
+
+  /**
+   * Low-priority thumbnail / proxy generation with the same ffmpeg
+   */
+  public PreviewModule previews() {
+    return previewModule;
+  }
+
+  /**
+   * Black-bar detection with the same ffmpeg
+   */
+  public CropDetector crops() {
+    return cropDetector;
   }
 
   /**
    * Get video statistics - port of Rust stat function
    */
   public Result<VideoStat, String> stat(String inputPath) {
+    return stat(inputPath, ProbeMode.fromSystemProperty());
+  }
+
+  /**
+   * Get video statistics with the given probe mode. Each mode falls back to the
+   * next heavier one (header → lean → full) when its answer cannot be used.
+   */
+  public Result<VideoStat, String> stat(String inputPath, ProbeMode mode) {
+    var event = new ProbeEvent();
+    event.begin();
+    event.path = inputPath;
+    event.requestedMode = mode.name().toLowerCase();
+
+    var result = statWithFallback(inputPath, mode, event);
+
+    event.success = result.isOk();
+    if (result instanceof Result.Ok<VideoStat, String> ok) {
+      event.fileSize = ok.value().fileSize();
+    } else {
+      event.answeredBy = "";
+    }
+    event.commit();
+    return result;
+  }
+
+  private Result<VideoStat, String> statWithFallback(String inputPath, ProbeMode mode, ProbeEvent event) {
+    if (mode == ProbeMode.FULL) {
+      event.answeredBy = "full";
+      return statFull(inputPath);
+    }
+
+    if (mode == ProbeMode.HEADER) {
+      var header = containerProbe.stat(inputPath);
+      if (header.isOk()) {
+        event.answeredBy = "header";
+        return header;
+      }
+      header.inspectErr(error -> System.out.println("ヘッダー解析不可、FFprobeを使用: " + error));
+    }
+
+    var lean = LeanProbe.probe(ffprobe.getPath(), inputPath);
+    if (lean.isOk()) {
+      event.answeredBy = "lean";
+      return lean;
+    }
+
+    lean.inspectErr(error -> System.err.println("軽量プローブ失敗、通常プローブで再試行: " + error));
+    event.answeredBy = "full";
+    return statFull(inputPath);
+  }
+
+  private Result<VideoStat, String> statFull(String inputPath) {
     try {
       System.out.println("FFprobe実行中: " + inputPath);
       FFmpegProbeResult probeResult = ffprobe.probe(inputPath);
@@ -164,7 +286,8 @@ public class VideoModule {
             videoStream.width,
             videoStream.height,
             fps,
-            videoStream.pix_fmt);
+            videoStream.pix_fmt,
+            videoStream.codec_name);
       } catch (Exception e) {
         System.err.println("動画ストリーム情報作成エラー: " + e.getMessage());
         e.printStackTrace();
@@ -203,9 +326,7 @@ public class VideoModule {
     System.out.println("Config: " + config);
 
     // Build FFmpeg command
-    var outputBuilder = new FFmpegBuilder()
-        .setInput(stat.path())
-        .overrideOutputFiles(true)
+    var outputBuilder = inputOf(stat)
         .addOutput(outputPath)
         .setVideoCodec("libx264")
         .setVideoResolution(config.res().getWidth(), config.res().getHeight())
@@ -232,8 +353,12 @@ public class VideoModule {
           formatDuration(progress.out_time_ns / 1_000_000_000.0));
     });
 
-    try {
+    try (var recording = EncodeMetrics.shared().start(outputPath, config.toString())) {
       job.run();
+      long outputBytes = Files.size(Paths.get(outputPath));
+      recording.succeeded(outputBytes);
+      OutputSizeEstimator.shared().record(stat, config, outputBytes);
+      MemoryEstimator.shared().record(stat, config, 0, recording.peakRssBytes());
       System.out.println("\n✓ Encoding completed: " + outputPath);
       return Result.ok(null);
     } catch (Exception e) {
@@ -241,48 +366,112 @@ public class VideoModule {
     }
   }
 
+  /**
+   * Encodes with {@link #processSimple}
+   */
+  @Override
+  public Result<Encoded, String> encode(VideoStat stat, VideoProcessParams params) {
+    return processSimple(stat, params);
+  }
+
   /**
    * Process video without progress monitoring (safer for some FFmpeg versions)
    */
-  public Result<Void, String> processSimple(VideoStat stat, VideoProcessParams params) {
+  public Result<Encoded, String> processSimple(VideoStat stat, VideoProcessParams params) {
     try {
       var config = params.config();
       var outputPath = params.outputPath();
+      var options = params.options();
 
       // Check for upscaling
-      var upscalingCheck = config.checkUpScaling(stat);
-      if (upscalingCheck.isErr()) {
-        return upscalingCheck;
+      if (config.checkUpScaling(stat) instanceof Result.Err<Void, String> err) {
+        return Result.err(err.error());
       }
 
-      System.out.println("Starting encoding: " + outputPath);
+      boolean remux = params.copies(stat);
+      boolean measure = options.measureOnly();
+      var scratch = measure ? OutputMeter.scratchFileOf(outputPath) : null;
+      boolean piped = measure && scratch == null;
+      System.out.println((remux ? "Starting remux: " : measure ? "Starting measurement: " : "Starting encoding: ")
+          + outputPath);
       System.out.println("Config: " + config);
+      if (options.crop() != null && !remux) {
+        System.out.println("Crop: " + options.crop());
+      }
 
-      // Build FFmpeg command
-      var outputBuilder = new FFmpegBuilder()
-          .setInput(stat.path())
-          .overrideOutputFiles(true)
-          .addOutput(outputPath)
-          .setVideoCodec("libx264")
-          .setVideoResolution(config.res().getWidth(), config.res().getHeight())
-          .setVideoFrameRate(config.fps())
-          .setConstantRateFactor(config.crf())
-          .setStrict(FFmpegBuilder.Strict.EXPERIMENTAL);
-
-      // Add audio if required
-      if (config.hasAudio() && !stat.audioStreams().isEmpty()) {
-        outputBuilder.setAudioCodec("aac");
+      Encoded encoded;
+      try (var recording = EncodeMetrics.shared().start(outputPath, labelOf(params, remux))) {
+        // Progress is only parsed when a guard needs the projected size
+        var aborted = new AtomicReference<String>();
+        OutputMeter.Measured measured = null;
+        try {
+          if (piped) {
+            measured = runMeasured(stat, params, recording, aborted);
+          } else {
+            FFmpegBuilder builder = builderOf(stat, writing(params, scratch));
+            FFmpegJob job = options.guard() == SizeGuard.NONE || remux
+                ? executor.createJob(builder)
+                : executor.createJob(builder, progress -> {
+                  long projected = projectedBytes(progress.total_size, progress.out_time_ns, stat.duration());
+                  var reason = projected > 0 ? options.guard().check(projected) : null;
+                  if (reason != null && aborted.compareAndSet(null, SizeGuard.abortedError(projected, reason))) {
+                    recording.terminate();
+                  }
+                });
+            job.run();
+            if (scratch != null) {
+              measured = OutputMeter.measure(scratch, OutputMeter.Digest.fromSystemProperty());
+            }
+          }
+        } catch (RuntimeException e) {
+          if (aborted.get() != null) {
+            if (!measure) {
+              Files.deleteIfExists(Paths.get(outputPath));
+            }
+            System.out.println("✗ Encoding aborted: " + outputPath + " (" + aborted.get() + ")");
+            return Result.err(aborted.get());
+          }
+          if (recording.exitCode() < 0) {
+            // ffmpeg never ran
+            throw e;
+          }
+          var tail = recording.outputTail();
+          var failure = EncodeFailure.classify(recording.stalled(), recording.exitCode(), tail);
+          var summary = failure == EncodeFailure.STALLED
+              ? "no progress for %d s".formatted(EncodeMetrics.shared().getStallTimeout().toSeconds())
+              : EncodeFailure.exitSummary(recording.exitCode());
+          System.err.println("✗ Encoding failed: " + outputPath + " (" + failure + ", " + summary + ")");
+          tail.forEach(line -> System.err.println("  " + line));
+          return Result.err(failure.error(summary, tail));
+        } finally {
+          if (scratch != null) {
+            Files.deleteIfExists(scratch);
+          }
+        }
+        long outputBytes = measured != null ? measured.bytes() : Files.size(Paths.get(outputPath));
+        recording.succeeded(outputBytes);
+        encoded = measured != null
+            ? new Encoded(recording.frames(), measured.bytes(), measured.digest())
+            : new Encoded(recording.frames());
+        // A copy says nothing about how this CRF compresses, and the
+        // estimators scale by the full frame at a constant rate, which a
+        // crop or decimation does not encode
+        if (!remux && options.crop() == null && !options.decimate()) {
+          OutputSizeEstimator.shared().record(stat, config, outputBytes);
+          MemoryEstimator.shared().record(stat, config, params.threads(),
+              MemoryEstimator.lookahead(options.lowMemory()), recording.peakRssBytes());
+        }
+      }
+      if (encoded.measured()) {
+        System.out.println("✓ Measurement completed: " + outputPath + " (" + SizeGuard.megabytes(encoded.bytes())
+            + (encoded.digest() != null ? ", sha256 " + encoded.digest() : "") + ")");
       } else {
-        outputBuilder.setAudioCodec("none");
+        System.out.println((remux ? "✓ Remux completed: " : "✓ Encoding completed: ") + outputPath);
       }
-
-      FFmpegBuilder builder = outputBuilder.done();
-
-      // Run without progress monitoring
-      FFmpegJob job = executor.createJob(builder);
-      job.run();
-      System.out.println("✓ Encoding completed: " + outputPath);
-      return Result.ok(null);
+      if (options.decimate() && encoded.frames() >= 0) {
+        System.out.printf("  フレーム間引き: %d → %d%n", config.outputFrames(stat), encoded.frames());
+      }
+      return Result.ok(encoded);
     } catch (Exception e) {
       System.err.println("エンコーディングエラー: " + e.getMessage());
       e.printStackTrace();
@@ -290,6 +479,226 @@ public class VideoModule {
     }
   }
 
+  /**
+   * The ffmpeg command {@link #processSimple} runs for {@code params}
+   */
+  public static List<String> command(String ffmpegPath, VideoStat stat, VideoProcessParams params) {
+    var scratch = params.options().measureOnly() ? OutputMeter.scratchFileOf(params.outputPath()) : null;
+    var command = new ArrayList<String>();
+    command.add(ffmpegPath);
+    command.addAll(builderOf(stat, writing(params, scratch)).build());
+    return command;
+  }
+
+  /**
+   * {@code params} writing the real file to {@code scratch} instead of
+   * measuring a pipe, if there is a scratch file
+   */
+  private static VideoProcessParams writing(VideoProcessParams params, Path scratch) {
+    return scratch == null ? params
+        : new VideoProcessParams(scratch.toString(), params.config(), params.threads(),
+            params.options().withMeasureOnly(false));
+  }
+
+  private static FFmpegBuilder builderOf(VideoStat stat, VideoProcessParams params) {
+    return params.copies(stat) ? remuxBuilder(stat, params) : encodeBuilder(stat, params);
+  }
+
+  /**
+   * ffmpeg reading {@code stat}'s file. bramp runs it with {@code -v error},
+   * which also hides the stats line. The stall watchdog and the frame counts
+   * read that line ({@link wappon28dev.vvcnv_java.metrics.ProcessOutput}),
+   * so it is asked for explicitly, once a second.
+   */
+  private static FFmpegBuilder inputOf(VideoStat stat) {
+    return new FFmpegBuilder()
+        .setInput(stat.path())
+        .overrideOutputFiles(true)
+        .addExtraArgs("-stats", "-stats_period", String.valueOf(STATS_PERIOD_SECONDS));
+  }
+
+  /**
+   * libx264 encode of {@code params.config()}
+   */
+  private static FFmpegBuilder encodeBuilder(VideoStat stat, VideoProcessParams params) {
+    var config = params.config();
+    var options = params.options();
+    var outputBuilder = outputOf(inputOf(stat), params)
+        .setVideoCodec("libx264")
+        .setVideoFrameRate(config.fps())
+        .setConstantRateFactor(config.crf())
+        .setStrict(FFmpegBuilder.Strict.EXPERIMENTAL);
+
+    // Drop duplicates first so they are never scaled, and the bars before
+    // scaling so only the picture is scaled and encoded
+    var filters = new ArrayList<String>();
+    if (options.decimate()) {
+      filters.add(DECIMATE_FILTER);
+    }
+    if (options.crop() != null) {
+      filters.add(options.crop().filter(config.res()));
+    } else if (!filters.isEmpty()) {
+      filters.add("scale=%d:%d".formatted(config.res().getWidth(), config.res().getHeight()));
+    }
+    if (filters.isEmpty()) {
+      outputBuilder.setVideoResolution(config.res().getWidth(), config.res().getHeight());
+    } else {
+      outputBuilder.setVideoFilter(String.join(",", filters));
+    }
+    // Keep the timestamps of the frames left instead of duplicating them
+    // back to a constant rate
+    if (options.decimate()) {
+      outputBuilder.addExtraArgs("-fps_mode", "vfr");
+    }
+
+    // Add audio if required
+    if (config.hasAudio() && !stat.audioStreams().isEmpty()) {
+      outputBuilder.setAudioCodec("aac");
+    } else {
+      outputBuilder.setAudioCodec("none");
+    }
+
+    // Stay within the cores the scheduler reserved for this job
+    if (params.threads() > 0) {
+      outputBuilder.addExtraArgs("-threads", String.valueOf(params.threads()));
+    }
+    if (options.lowMemory()) {
+      outputBuilder.addExtraArgs("-rc-lookahead", String.valueOf(MemoryEstimator.LOW_MEMORY_LOOKAHEAD));
+    }
+
+    return outputBuilder.done();
+  }
+
+  /**
+   * Task label in the metrics: the configuration and what changes its frames
+   */
+  private static String labelOf(VideoProcessParams params, boolean remux) {
+    if (remux) {
+      return params.config() + " (remux)";
+    }
+    var label = new StringBuilder(params.config().toString());
+    var options = params.options();
+    if (options.crop() != null) {
+      label.append(" crop=").append(options.crop());
+    }
+    if (options.decimate()) {
+      label.append(" decimate");
+    }
+    return label.toString();
+  }
+
+  /**
+   * Stream copy of the source's video (and audio, if kept) into the output
+   * container
+   */
+  private static FFmpegBuilder remuxBuilder(VideoStat stat, VideoProcessParams params) {
+    var outputBuilder = outputOf(inputOf(stat), params)
+        .setVideoCodec("copy")
+        .disableSubtitle();
+    if (params.config().hasAudio() && !stat.audioStreams().isEmpty()) {
+      outputBuilder.setAudioCodec("copy");
+    } else {
+      outputBuilder.disableAudio();
+    }
+    return outputBuilder.done();
+  }
+
+  /**
+   * The output file, or for {@link EncodeOptions#measureOnly()} stdout in the
+   * file's container. MP4 / MOV are never measured on a pipe
+   * ({@link OutputMeter#scratchFileOf}).
+   */
+  private static FFmpegOutputBuilder outputOf(FFmpegBuilder builder, VideoProcessParams params) {
+    if (!params.options().measureOnly()) {
+      return builder.addOutput(params.outputPath());
+    }
+    var output = builder.addStdoutOutput();
+    return switch (FileModule.getFileName(params.outputPath()).extension().toLowerCase()) {
+      case "webm" -> output.setFormat("webm");
+      default -> output.setFormat("matroska");
+    };
+  }
+
+  /**
+   * Run {@link #command}'s ffmpeg with its output on a pipe that
+   * {@link OutputMeter} drains. The guard projects from the bytes counted so
+   * far and the frames of the stats lines.
+   *
+   * @throws IllegalStateException when ffmpeg fails, like bramp's jobs
+   */
+  private OutputMeter.Measured runMeasured(VideoStat stat, VideoProcessParams params,
+      EncodeMetrics.Recording recording, AtomicReference<String> aborted) throws IOException, InterruptedException {
+    var process = processTracker.runPiped(command(ffmpeg.getPath(), stat, params));
+    // Only the recording needs stderr, but ffmpeg blocks once its pipe is full
+    var stderr = Thread.ofVirtual().name("vvcnv-measure-stderr").start(() -> {
+      try (var in = process.getErrorStream()) {
+        in.transferTo(OutputStream.nullOutputStream());
+      } catch (IOException e) {
+        // The exit status tells what happened
+      }
+    });
+
+    // Decimation writes fewer frames than the time they cover, which would
+    // make the projection run high
+    double fps = params.config().fps();
+    var options = params.options();
+    boolean guarded = options.guard() != SizeGuard.NONE && !options.decimate() && fps > 0;
+    OutputMeter.Measured measured;
+    try (var channel = Channels.newChannel(process.getInputStream())) {
+      measured = OutputMeter.drain(channel, OutputMeter.Digest.fromSystemProperty(), bytes -> {
+        if (!guarded || aborted.get() != null) {
+          return;
+        }
+        long projected = projectedBytes(bytes, recording.frames(), fps, stat.duration());
+        var reason = projected > 0 ? options.guard().check(projected) : null;
+        if (reason != null && aborted.compareAndSet(null, SizeGuard.abortedError(projected, reason))) {
+          recording.terminate();
+        }
+      });
+    } catch (IOException e) {
+      process.destroyForcibly();
+      throw e;
+    }
+    int exitCode;
+    try {
+      exitCode = process.waitFor();
+    } catch (InterruptedException e) {
+      process.destroyForcibly();
+      throw e;
+    }
+    stderr.join();
+    if (exitCode != 0) {
+      throw new IllegalStateException("ffmpeg exited with " + exitCode);
+    }
+    return measured;
+  }
+
+  /**
+   * Final size extrapolated from {@code writtenBytes} after
+   * {@code encodedNanos} of output, or 0 while too little has been encoded to
+   * tell (the first GOPs are not representative)
+   */
+  public static long projectedBytes(long writtenBytes, long encodedNanos, Duration duration) {
+    long totalNanos = duration.toNanos();
+    if (writtenBytes <= 0 || totalNanos <= 0
+        || encodedNanos < Math.max(MIN_PROJECTION_NANOS, (long) (totalNanos * MIN_PROJECTION_SHARE))) {
+      return 0;
+    }
+    return (long) ((double) writtenBytes * totalNanos / encodedNanos);
+  }
+
+  /**
+   * {@link #projectedBytes(long, long, Duration)} for output that carries no
+   * timestamps, after the {@code frames} of ffmpeg's stats line at
+   * {@code fps}; 0 while there is no stats line yet ({@code frames} -1)
+   */
+  public static long projectedBytes(long writtenBytes, long frames, double fps, Duration duration) {
+    if (frames <= 0 || fps <= 0) {
+      return 0;
+    }
+    return projectedBytes(writtenBytes, (long) (frames * 1e9 / fps), duration);
+  }
+
   private String formatDuration(double seconds) {
     long hours = (long) (seconds / 3600);
     long minutes = (long) ((seconds % 3600) / 60);
@@ -299,7 +708,19 @@ public class VideoModule {
 
   /**
    * Video processing parameters record
+   *
+   * @param threads encoder threads, or 0 to let ffmpeg pick
+   * @param options how the encode runs; with {@link EncodeOptions#measureOnly()}
+   *                nothing is written at {@code outputPath}
    */
-  public record VideoProcessParams(String outputPath, VideoConfig config) {
+  public record VideoProcessParams(String outputPath, VideoConfig config, int threads, EncodeOptions options) {
+
+    /**
+     * Whether {@code stat}'s streams are copied instead of encoded. A crop
+     * or decimation needs an encode.
+     */
+    public boolean copies(VideoStat stat) {
+      return options.remux() && options.crop() == null && !options.decimate() && config.canCopy(stat);
+    }
   }
 }
@@ -15,8 +15,15 @@ public record VideoStat(
 
   /**
    * Video stream information
+   *
+   * @param codec ffmpeg's codec name ({@code h264}, {@code hevc}, ...), or null
+   *              if the probe could not tell
    */
-  public record VideoStreamInfo(int width, int height, double fps, String pixFmt) {
+  public record VideoStreamInfo(int width, int height, double fps, String pixFmt, String codec) {
+
+    public VideoStreamInfo(int width, int height, double fps, String pixFmt) {
+      this(width, height, fps, pixFmt, null);
+    }
   }
 
   /**
@@ -0,0 +1,13 @@
+package wappon28dev.vvcnv_java.modules;
+
+import wappon28dev.vvcnv_java.util.Result;
+
+/**
+ * Something that can build a {@link VideoStat} for a file. An Err means "could
+ * not handle this file", so callers can fall back to the next provider.
+ */
+@FunctionalInterface
+public interface VideoStatProvider {
+
+  Result<VideoStat, String> stat(String inputPath);
+}
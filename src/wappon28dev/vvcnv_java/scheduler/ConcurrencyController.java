@@ -0,0 +1,132 @@
+package wappon28dev.vvcnv_java.scheduler;
+
+/**
+ * AIMD limit on concurrent jobs, driven by measured throughput.
+ *
+ * <p>
+ * Finished jobs report their work (output pixels times frames, so a 2160p
+ * frame counts as much as 36 240p frames). Once per control window the
+ * throughput of that window is compared with the previous one:
+ * </p>
+ * <ul>
+ * <li>the system is overloaded (load average per core above
+ * {@link #OVERLOAD}) or the last increase made throughput drop: the limit is
+ * cut to {@link #DECREASE_FACTOR} of itself (at least by one);</li>
+ * <li>otherwise, if jobs were held back by the limit, it grows by one.</li>
+ * </ul>
+ * A window closes when at least {@link #MIN_WINDOW_NANOS} have passed and as
+ * many jobs have finished as the limit allows at once, so each comparison
+ * covers roughly one full generation of jobs. Overload is acted on without
+ * waiting for completions. Not thread-safe; the scheduler guards it.
+ */
+public final class ConcurrencyController {
+
+  public static final long MIN_WINDOW_NANOS = 5_000_000_000L;
+  public static final double DECREASE_FACTOR = 0.7;
+  /** Throughput drop that counts as "the increase hurt", not noise */
+  public static final double TOLERANCE = 0.05;
+  /** Runnable threads per core at which the machine counts as overloaded */
+  public static final double OVERLOAD = 1.5;
+
+  private final int min;
+  private final int max;
+  private int limit;
+  private long windowStart;
+  private double windowWork;
+  private int windowCompleted;
+  private boolean held;
+  private double previousThroughput = -1;
+  private int previousLimit;
+  private double throughput;
+
+  /**
+   * @param initial first limit, clamped to {@code [min, max]}
+   */
+  public ConcurrencyController(int min, int max, int initial, long nowNanos) {
+    if (min < 1 || max < min) {
+      throw new IllegalArgumentException("need 1 <= min <= max");
+    }
+    this.min = min;
+    this.max = max;
+    this.limit = Math.clamp(initial, min, max);
+    this.previousLimit = limit;
+    this.windowStart = nowNanos;
+  }
+
+  public int limit() {
+    return limit;
+  }
+
+  /**
+   * Work per second over the last closed window
+   */
+  public double throughput() {
+    return throughput;
+  }
+
+  /**
+   * Jobs were waiting while the limit was reached
+   */
+  public void held() {
+    held = true;
+  }
+
+  /**
+   * A job finished after doing {@code work} units
+   */
+  public void completed(double work) {
+    windowWork += Math.max(0, work);
+    windowCompleted++;
+  }
+
+  /**
+   * Close the window if it is due and adjust the limit
+   *
+   * @param loadPerCore system load average per core, negative if unknown
+   * @return true if the limit changed
+   */
+  public boolean update(long nowNanos, double loadPerCore) {
+    long elapsed = nowNanos - windowStart;
+    if (elapsed < MIN_WINDOW_NANOS) {
+      return false;
+    }
+    int before = limit;
+    if (loadPerCore > OVERLOAD) {
+      decrease();
+      closeWindow(nowNanos, before, -1);
+      return limit != before;
+    }
+    if (windowCompleted < limit) {
+      return false;
+    }
+
+    double measured = windowWork * 1e9 / elapsed;
+    boolean increased = before > previousLimit;
+    if (previousThroughput >= 0 && increased && measured < previousThroughput * (1 - TOLERANCE)) {
+      decrease();
+    } else if (held) {
+      limit = Math.min(max, limit + 1);
+    }
+    closeWindow(nowNanos, before, measured);
+    return limit != before;
+  }
+
+  private void decrease() {
+    limit = Math.max(min, Math.min(limit - 1, (int) (limit * DECREASE_FACTOR)));
+  }
+
+  private void closeWindow(long nowNanos, int limitDuringWindow, double measured) {
+    if (measured >= 0) {
+      throughput = measured;
+      previousThroughput = measured;
+    } else {
+      // An overloaded window says nothing about what the new limit will do
+      previousThroughput = -1;
+    }
+    previousLimit = limitDuringWindow;
+    windowStart = nowNanos;
+    windowWork = 0;
+    windowCompleted = 0;
+    held = false;
+  }
+}
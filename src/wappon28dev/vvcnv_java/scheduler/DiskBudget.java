@@ -0,0 +1,209 @@
+package wappon28dev.vvcnv_java.scheduler;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Free-space reservations and writer counts per output file system. Guarded
+ * by the owning {@link EncodeScheduler}, except {@link #read}: free space and
+ * file sizes can take long on a network file system, so each admission round
+ * reads them once, outside the scheduler lock, into a {@link Usage}.
+ *
+ * <p>
+ * A running job holds what it has not written yet: its estimate minus the
+ * current size of its output. So the reservation shrinks as the file grows
+ * and the free space the OS reports is never counted twice.
+ * </p>
+ *
+ * <p>
+ * Like the core and memory budgets, a job whose estimate does not fit still
+ * starts when no other job writes to its file system: nothing would free
+ * space for it, and the estimate is padded.
+ * </p>
+ */
+final class DiskBudget {
+
+  /** Why a job cannot start yet */
+  enum Shortage {
+    SPACE, WRITERS
+  }
+
+  private static final class Device {
+    final List<Resources> writers = new ArrayList<>();
+  }
+
+  /**
+   * What an admission round reads: the file systems of queued jobs and the
+   * outputs being written
+   */
+  record Request(Set<FileStore> stores, List<Path> outputs) {
+  }
+
+  /**
+   * Usable space per file system ({@link Long#MAX_VALUE} if it could not be
+   * read) and current size per output, read for a {@link Request}
+   */
+  record Usage(Map<FileStore, Long> usable, Map<Path, Long> written) {
+  }
+
+  private final Map<FileStore, Device> devices = new HashMap<>();
+  /** Output sizes of the last admission round, for {@link #reservedBytes()} */
+  private Map<Path, Long> lastWritten = Map.of();
+  private long headroomBytes;
+  private int maxWritersPerDevice;
+
+  DiskBudget(long headroomBytes, int maxWritersPerDevice) {
+    setLimits(headroomBytes, maxWritersPerDevice);
+  }
+
+  void setLimits(long headroomBytes, int maxWritersPerDevice) {
+    if (headroomBytes < 0 || maxWritersPerDevice < 1) {
+      throw new IllegalArgumentException("headroomBytes must be >= 0 and maxWritersPerDevice positive");
+    }
+    this.headroomBytes = headroomBytes;
+    this.maxWritersPerDevice = maxWritersPerDevice;
+  }
+
+  long headroomBytes() {
+    return headroomBytes;
+  }
+
+  int maxWritersPerDevice() {
+    return maxWritersPerDevice;
+  }
+
+  /**
+   * File system of a job's output, looked up before it is queued (outside the
+   * scheduler lock). Null when the job writes nothing or the directory cannot
+   * be resolved; such jobs are not held back.
+   */
+  static FileStore storeOf(Resources resources) {
+    if (resources.output() == null) {
+      return null;
+    }
+    var dir = resources.output().toAbsolutePath().getParent();
+    try {
+      return dir == null ? null : Files.getFileStore(dir);
+    } catch (IOException e) {
+      System.err.println("出力先のファイルシステムを取得できません: " + dir + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * What to {@link #read} before admitting jobs that write to {@code queued}
+   */
+  Request request(Collection<FileStore> queued) {
+    var stores = new HashSet<FileStore>(queued);
+    stores.remove(null);
+    var outputs = new ArrayList<Path>();
+    if (!stores.isEmpty()) {
+      for (var device : devices.values()) {
+        device.writers.forEach(writer -> outputs.add(writer.output()));
+      }
+    }
+    return new Request(stores, outputs);
+  }
+
+  /**
+   * Read what {@code request} asks for; call without the scheduler lock
+   */
+  static Usage read(Request request) {
+    var usable = new HashMap<FileStore, Long>();
+    for (var store : request.stores()) {
+      try {
+        usable.put(store, store.getUsableSpace());
+      } catch (IOException e) {
+        usable.put(store, Long.MAX_VALUE);
+      }
+    }
+    var written = new HashMap<Path, Long>();
+    for (var output : request.outputs()) {
+      try {
+        written.put(output, Files.size(output));
+      } catch (IOException e) {
+        // Not created yet
+      }
+    }
+    return new Usage(usable, written);
+  }
+
+  /**
+   * Null if the job fits now, otherwise what it is short of. A file system
+   * missing from {@code usage} (queued after it was read) counts as full
+   * until the next round.
+   */
+  Shortage check(FileStore store, Resources resources, Usage usage) {
+    if (store == null) {
+      return null;
+    }
+    var device = devices.get(store);
+    if (device == null) {
+      return null;
+    }
+    if (device.writers.size() >= maxWritersPerDevice) {
+      return Shortage.WRITERS;
+    }
+
+    lastWritten = usage.written();
+    Long usable = usage.usable().get(store);
+    if (usable == null) {
+      return Shortage.SPACE;
+    }
+    return usable - outstanding(device, lastWritten) - headroomBytes < resources.outputBytes()
+        ? Shortage.SPACE
+        : null;
+  }
+
+  void acquire(FileStore store, Resources resources) {
+    if (store != null) {
+      devices.computeIfAbsent(store, key -> new Device()).writers.add(resources);
+    }
+  }
+
+  void release(FileStore store, Resources resources) {
+    if (store == null) {
+      return;
+    }
+    var device = devices.get(store);
+    if (device != null) {
+      device.writers.remove(resources);
+      if (device.writers.isEmpty()) {
+        devices.remove(store);
+      }
+    }
+  }
+
+  /**
+   * Bytes the running writers on this device are still expected to write;
+   * a writer missing from {@code written} has written nothing yet
+   */
+  private static long outstanding(Device device, Map<Path, Long> written) {
+    long total = 0;
+    for (var resources : device.writers) {
+      total += Math.max(0, resources.outputBytes() - written.getOrDefault(resources.output(), 0L));
+    }
+    return total;
+  }
+
+  /**
+   * Bytes reserved by running writers across all devices, as of the last
+   * admission round
+   */
+  long reservedBytes() {
+    long total = 0;
+    for (var device : devices.values()) {
+      total += outstanding(device, lastWritten);
+    }
+    return total;
+  }
+}
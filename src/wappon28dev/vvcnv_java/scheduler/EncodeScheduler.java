@@ -0,0 +1,685 @@
+package wappon28dev.vvcnv_java.scheduler;
+
+import wappon28dev.vvcnv_java.calibration.Codec;
+import wappon28dev.vvcnv_java.calibration.HostProfile;
+import wappon28dev.vvcnv_java.jfr.QueueEvent;
+import wappon28dev.vvcnv_java.modules.VideoRes;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileStore;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide encode scheduler. Every grid window and batch run registers a
+ * {@link Submitter} and submits its encodes here instead of owning a thread
+ * pool, so the machine is shared however many grids are running.
+ *
+ * <ul>
+ * <li>At most {@code maxJobs} encodes run at once, and the threads they declare
+ * never add up to more than {@code coreBudget} (a single job larger than the
+ * budget is still admitted when nothing else runs).</li>
+ * <li>Free slots go to submitters by stride scheduling: each dispatch advances
+ * the submitter's pass by {@code 1/weight}, and the lowest pass goes next, so a
+ * weight-3 submitter gets three slots for every one of a weight-1 submitter
+ * while both have work queued.</li>
+ * <li>A job that writes a file reserves its estimated size against the free
+ * space of that file system (minus a headroom), and at most
+ * {@code maxWritersPerDevice} jobs write to one file system at once. A job
+ * that does not fit waits, and only its own submitter is held back; waits are
+ * re-checked every {@link #DISK_RECHECK} so freed space is picked up. A job
+ * larger than the free space still runs when nothing else writes there.</li>
+ * <li>The expected peak memory of running jobs stays within
+ * {@code memoryBudget}, like the core budget: large jobs run with fewer
+ * neighbours and small ones pack densely, and a job larger than the budget
+ * still runs alone.</li>
+ * <li>With adaptive concurrency on, a {@link ConcurrencyController} moves the
+ * job limit between 1 and {@code coreBudget} by measured throughput (work of
+ * finished jobs per second) and system load. Above {@code maxJobs} the core
+ * budget grows in proportion, so the extra jobs are an oversubscription that
+ * only stays while it pays.</li>
+ * <li>Each job's processes start with a {@link Qos} (nice / ionice / cgroup
+ * limits): its own if it has one, otherwise the scheduler's default.</li>
+ * <li>{@link #snapshot()} reports queue depth, running jobs and wait times;
+ * each wait is also recorded as a JFR {@link QueueEvent}.</li>
+ * </ul>
+ */
+public final class EncodeScheduler {
+
+  private static final long STRIDE_SCALE = 1L << 20;
+
+  /** How often jobs waiting for disk space are re-checked */
+  public static final Duration DISK_RECHECK = Duration.ofSeconds(2);
+
+  private static final long DEFAULT_DISK_HEADROOM = 256L * 1024 * 1024;
+  private static final int DEFAULT_WRITERS_PER_DEVICE = 8;
+
+  /** How often the adaptive job limit is reconsidered */
+  public static final Duration CONTROL_INTERVAL = Duration.ofSeconds(1);
+
+  private static volatile EncodeScheduler shared;
+
+  private static final ThreadLocal<Job<?>> CURRENT_JOB = new ThreadLocal<>();
+
+  private final ExecutorService workers;
+  private final ScheduledExecutorService recheck;
+  private final DiskBudget disk;
+  private boolean recheckPending;
+  private int diskWaiting;
+  private final List<Submitter> submitters = new ArrayList<>();
+  private final Set<Job<?>> running = new LinkedHashSet<>();
+  private int maxJobs;
+  private int coreBudget;
+  private int runningCores;
+  private long memoryBudget = Long.MAX_VALUE;
+  private long runningMemory;
+  private Qos defaultQos = Qos.NORMAL;
+  private ConcurrencyController controller;
+  private ScheduledFuture<?> controlTask;
+  private long virtualTime;
+
+  public EncodeScheduler(int maxJobs, int coreBudget) {
+    this(maxJobs, coreBudget, DEFAULT_DISK_HEADROOM, DEFAULT_WRITERS_PER_DEVICE);
+  }
+
+  /**
+   * @param diskHeadroomBytes   free space always left on an output file system
+   * @param maxWritersPerDevice concurrent writing jobs per output file system
+   */
+  public EncodeScheduler(int maxJobs, int coreBudget, long diskHeadroomBytes, int maxWritersPerDevice) {
+    setLimitsUnchecked(maxJobs, coreBudget);
+    this.disk = new DiskBudget(diskHeadroomBytes, maxWritersPerDevice);
+    var threadCount = new AtomicInteger();
+    this.workers = Executors.newCachedThreadPool(runnable -> {
+      var thread = new Thread(runnable, "vvcnv-encode-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.recheck = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      var thread = new Thread(runnable, "vvcnv-scheduler-recheck");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * The scheduler shared by the whole process. By default the job count comes
+   * from the host's {@link HostProfile} (H.264 at 1080p), or one job per two
+   * cores without one, and the core budget is every core; override with
+   * {@code -Dvvcnv.scheduler.jobs} and {@code -Dvvcnv.scheduler.cores}. Disk
+   * limits come from {@code -Dvvcnv.scheduler.diskHeadroomMB} (default 256)
+   * and {@code -Dvvcnv.scheduler.writersPerDevice} (default 8), the memory
+   * budget from {@code -Dvvcnv.scheduler.memoryMB} (default 75% of physical
+   * memory) and the default QoS from {@link Qos#fromSystemProperties()}. With
+   * {@code -Dvvcnv.qos.sliceCpuPercent} / {@code -Dvvcnv.qos.sliceMemoryMB},
+   * all encodes together are limited through {@link QosLauncher#SLICE}.
+   * Adaptive concurrency is on unless {@code -Dvvcnv.scheduler.adaptive=false}.
+   */
+  public static EncodeScheduler shared() {
+    var scheduler = shared;
+    if (scheduler == null) {
+      synchronized (EncodeScheduler.class) {
+        scheduler = shared;
+        if (scheduler == null) {
+          int cores = Integer.getInteger("vvcnv.scheduler.cores", Runtime.getRuntime().availableProcessors());
+          int defaultJobs = HostProfile.current()
+              .map(profile -> profile.jobs(Codec.H264, VideoRes.R1080P, Math.max(1, cores / 2)))
+              .orElse(Math.max(1, cores / 2));
+          int jobs = Integer.getInteger("vvcnv.scheduler.jobs", defaultJobs);
+          long headroom = Long.getLong("vvcnv.scheduler.diskHeadroomMB", DEFAULT_DISK_HEADROOM >> 20) << 20;
+          int writers = Integer.getInteger("vvcnv.scheduler.writersPerDevice", DEFAULT_WRITERS_PER_DEVICE);
+          scheduler = new EncodeScheduler(jobs, cores, headroom, writers);
+          scheduler.setMemoryBudget(Long.getLong("vvcnv.scheduler.memoryMB", defaultMemoryBudget() >> 20) << 20);
+          scheduler.setDefaultQos(Qos.fromSystemProperties());
+          scheduler.setAdaptive(!"false".equalsIgnoreCase(System.getProperty("vvcnv.scheduler.adaptive")));
+          int sliceCpu = Integer.getInteger("vvcnv.qos.sliceCpuPercent", 0);
+          long sliceMemory = Long.getLong("vvcnv.qos.sliceMemoryMB", 0L) << 20;
+          if (sliceCpu > 0 || sliceMemory > 0) {
+            QosLauncher.configureSlice(sliceCpu, sliceMemory);
+          }
+          shared = scheduler;
+        }
+      }
+    }
+    return scheduler;
+  }
+
+  /**
+   * Register a submitter
+   *
+   * @param name       shown in {@link #snapshot()}
+   * @param weight     relative share of slots while other submitters are busy
+   * @param maxRunning cap on this submitter's own concurrent jobs
+   */
+  public synchronized Submitter submitter(String name, int weight, int maxRunning) {
+    if (weight < 1 || maxRunning < 1) {
+      throw new IllegalArgumentException("weight and maxRunning must be positive");
+    }
+    var submitter = new Submitter(name, weight, maxRunning);
+    submitters.add(submitter);
+    return submitter;
+  }
+
+  /**
+   * Change the global limits; takes effect at the next dispatch (running jobs
+   * are never stopped)
+   */
+  public void setLimits(int maxJobs, int coreBudget) {
+    synchronized (this) {
+      setLimitsUnchecked(maxJobs, coreBudget);
+      if (controller != null) {
+        // Start over within the new bounds
+        controller = new ConcurrencyController(1, Math.max(maxJobs, coreBudget), maxJobs, System.nanoTime());
+      }
+    }
+    dispatch();
+  }
+
+  /**
+   * Change the disk limits; takes effect at the next dispatch
+   */
+  public void setDiskLimits(long headroomBytes, int maxWritersPerDevice) {
+    synchronized (this) {
+      disk.setLimits(headroomBytes, maxWritersPerDevice);
+    }
+    dispatch();
+  }
+
+  /**
+   * Change the memory budget; takes effect at the next dispatch
+   */
+  public void setMemoryBudget(long bytes) {
+    if (bytes < 1) {
+      throw new IllegalArgumentException("memory budget must be positive");
+    }
+    synchronized (this) {
+      memoryBudget = bytes;
+    }
+    dispatch();
+  }
+
+  /**
+   * Turn adaptive concurrency on or off. Turning it on starts from
+   * {@code maxJobs}; turning it off returns to {@code maxJobs}.
+   */
+  public void setAdaptive(boolean adaptive) {
+    synchronized (this) {
+      if (adaptive == (controller != null)) {
+        return;
+      }
+      if (adaptive) {
+        controller = new ConcurrencyController(1, Math.max(maxJobs, coreBudget), maxJobs, System.nanoTime());
+        long interval = CONTROL_INTERVAL.toMillis();
+        controlTask = recheck.scheduleWithFixedDelay(this::control, interval, interval, TimeUnit.MILLISECONDS);
+      } else {
+        controller = null;
+        controlTask.cancel(false);
+        controlTask = null;
+      }
+    }
+    dispatch();
+  }
+
+  /**
+   * Reconsider the adaptive job limit
+   */
+  private void control() {
+    control(System.nanoTime(), systemLoadPerCore());
+  }
+
+  private void control(long nowNanos, double loadPerCore) {
+    boolean changed;
+    synchronized (this) {
+      if (controller == null) {
+        return;
+      }
+      int before = controller.limit();
+      changed = controller.update(nowNanos, loadPerCore);
+      if (changed) {
+        System.out.printf("並列数を調整: %d → %d (スループット %.1f Mpx/s, 負荷 %.2f/コア)%n",
+            before, controller.limit(), controller.throughput() / 1e6, loadPerCore);
+      }
+    }
+    if (changed) {
+      dispatch();
+    }
+  }
+
+  private static double systemLoadPerCore() {
+    var os = ManagementFactory.getOperatingSystemMXBean();
+    double load = os.getSystemLoadAverage();
+    return load < 0 ? -1 : load / os.getAvailableProcessors();
+  }
+
+  /**
+   * Jobs allowed to run at once right now: the adaptive limit, or
+   * {@code maxJobs}
+   */
+  private int jobLimit() {
+    return controller != null ? controller.limit() : maxJobs;
+  }
+
+  /**
+   * Core budget scaled up with an adaptive limit above {@code maxJobs}
+   */
+  private int effectiveCoreBudget() {
+    int limit = jobLimit();
+    return limit <= maxJobs ? coreBudget : (int) ((long) coreBudget * limit / maxJobs);
+  }
+
+  /**
+   * QoS of jobs submitted without their own; applies to jobs that start after
+   * the call
+   */
+  public synchronized void setDefaultQos(Qos qos) {
+    defaultQos = qos;
+  }
+
+  public synchronized Qos defaultQos() {
+    return defaultQos;
+  }
+
+  /**
+   * Three quarters of physical memory, leaving the rest to the desktop and
+   * this JVM
+   */
+  private static long defaultMemoryBudget() {
+    if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+      return os.getTotalMemorySize() / 4 * 3;
+    }
+    return Long.MAX_VALUE >> 20 << 20;
+  }
+
+  private void setLimitsUnchecked(int maxJobs, int coreBudget) {
+    if (maxJobs < 1 || coreBudget < 1) {
+      throw new IllegalArgumentException("maxJobs and coreBudget must be positive");
+    }
+    this.maxJobs = maxJobs;
+    this.coreBudget = coreBudget;
+  }
+
+  /**
+   * Encoder threads per job so that {@code maxJobs} jobs fill the core budget
+   */
+  public synchronized int threadsPerJob() {
+    return Math.max(1, coreBudget / maxJobs);
+  }
+
+  // --- dispatch ---
+
+  private <T> CompletableFuture<T> enqueue(Submitter submitter, String label, Resources resources, Callable<T> work) {
+    var job = new Job<>(submitter, label, resources, DiskBudget.storeOf(resources), work);
+    synchronized (this) {
+      if (submitter.closed) {
+        job.future.cancel(false);
+        return job.future;
+      }
+      job.queueEvent.queuedAtSubmit = queuedJobs();
+      job.queueEvent.runningAtSubmit = running.size();
+      if (submitter.queue.isEmpty() && submitter.running == 0) {
+        // An idle submitter does not bank credit for the time it was away
+        submitter.pass = Math.max(submitter.pass, virtualTime);
+      }
+      submitter.queue.add(job);
+      submitter.submitted++;
+    }
+    dispatch();
+    return job.future;
+  }
+
+  private void dispatch() {
+    DiskBudget.Request request;
+    synchronized (this) {
+      var queued = new ArrayList<FileStore>();
+      for (var submitter : submitters) {
+        submitter.queue.forEach(job -> queued.add(job.store));
+      }
+      request = disk.request(queued);
+    }
+    var usage = DiskBudget.read(request);
+
+    List<Job<?>> toStart = new ArrayList<>();
+    synchronized (this) {
+      // Submitters whose next job is waiting for disk; the others may go ahead
+      Set<Submitter> waitingForDisk = new HashSet<>();
+      int jobLimit = jobLimit();
+      int cores = effectiveCoreBudget();
+      boolean held = false;
+      while (true) {
+        if (running.size() >= jobLimit) {
+          held = nextSubmitter(waitingForDisk) != null;
+          break;
+        }
+        var submitter = nextSubmitter(waitingForDisk);
+        if (submitter == null) {
+          break;
+        }
+        var job = submitter.queue.peekFirst();
+        if (job.future.isDone()) {
+          // Cancelled while queued
+          submitter.queue.pollFirst();
+          job.commitQueueEvent(true);
+          continue;
+        }
+        if (!running.isEmpty() && runningCores + job.threads > cores) {
+          held = true;
+          break;
+        }
+        if (!running.isEmpty() && runningMemory + job.resources.memoryBytes() > memoryBudget) {
+          break;
+        }
+        if (disk.check(job.store, job.resources, usage) != null) {
+          waitingForDisk.add(submitter);
+          continue;
+        }
+
+        submitter.queue.pollFirst();
+        disk.acquire(job.store, job.resources);
+        virtualTime = submitter.pass;
+        submitter.pass += STRIDE_SCALE / submitter.weight;
+        submitter.running++;
+        running.add(job);
+        runningCores += job.threads;
+        runningMemory += job.resources.memoryBytes();
+        job.qos = job.resources.qos() != null ? job.resources.qos() : defaultQos;
+        job.startedNanos = System.nanoTime();
+        long waited = job.startedNanos - job.queuedNanos;
+        submitter.totalWaitNanos += waited;
+        submitter.maxWaitNanos = Math.max(submitter.maxWaitNanos, waited);
+        job.commitQueueEvent(false);
+        toStart.add(job);
+      }
+      if (held && controller != null) {
+        controller.held();
+      }
+      diskWaiting = waitingForDisk.size();
+      if (diskWaiting > 0 && !recheckPending) {
+        recheckPending = true;
+        recheck.schedule(this::recheckDisk, DISK_RECHECK.toMillis(), TimeUnit.MILLISECONDS);
+      }
+    }
+    toStart.forEach(job -> workers.execute(() -> run(job)));
+  }
+
+  private void recheckDisk() {
+    synchronized (this) {
+      recheckPending = false;
+    }
+    dispatch();
+  }
+
+  private int queuedJobs() {
+    int queued = 0;
+    for (var submitter : submitters) {
+      queued += submitter.queue.size();
+    }
+    return queued;
+  }
+
+  /**
+   * Lowest pass among submitters that have queued work and room under their own
+   * cap; ties go to the earliest registered
+   */
+  private Submitter nextSubmitter(Set<Submitter> skip) {
+    Submitter next = null;
+    for (var submitter : submitters) {
+      if (submitter.queue.isEmpty() || submitter.running >= submitter.maxRunning || skip.contains(submitter)) {
+        continue;
+      }
+      if (next == null || submitter.pass < next.pass) {
+        next = submitter;
+      }
+    }
+    return next;
+  }
+
+  private <T> void run(Job<T> job) {
+    T value = null;
+    Throwable failure = null;
+    CURRENT_JOB.set(job);
+    try {
+      value = job.work.call();
+    } catch (Throwable e) {
+      failure = e;
+    } finally {
+      CURRENT_JOB.remove();
+      // Free the slot before completing, so whoever waits on the future sees it
+      synchronized (this) {
+        running.remove(job);
+        runningCores -= job.threads;
+        runningMemory -= job.resources.memoryBytes();
+        disk.release(job.store, job.resources);
+        job.submitter.running--;
+        job.submitter.completed++;
+        if (controller != null) {
+          controller.completed(job.resources.work());
+        }
+      }
+    }
+    if (failure == null) {
+      job.future.complete(value);
+    } else {
+      job.future.completeExceptionally(failure);
+    }
+    dispatch();
+  }
+
+  // --- introspection ---
+
+  public record SubmitterStats(String name, int weight, int maxRunning, int queued, int running,
+      long submitted, long completed, Duration averageWait, Duration maxWait) {
+  }
+
+  public record RunningJob(String submitter, String label, int threads, Duration waited, Duration elapsed) {
+  }
+
+  /**
+   * @param diskWaiting   submitters whose next job waits for disk space or a
+   *                      writer slot
+   * @param reservedBytes output bytes running jobs are still expected to write
+   * @param runningMemory expected peak memory of the running jobs
+   * @param jobLimit      jobs allowed at once right now; differs from
+   *                      {@code maxJobs} under adaptive concurrency
+   */
+  public record Snapshot(int maxJobs, int coreBudget, int runningJobs, int runningCores, int queuedJobs,
+      List<SubmitterStats> submitters, List<RunningJob> running, int diskWaiting, long reservedBytes,
+      long memoryBudget, long runningMemory, int jobLimit) {
+
+    @Override
+    public String toString() {
+      var text = "実行中 %d/%d (コア %d/%d), 待機 %d".formatted(runningJobs, jobLimit, runningCores, coreBudget, queuedJobs);
+      if (runningMemory > 0) {
+        text += ", メモリ %d/%d MB".formatted(runningMemory >> 20, memoryBudget >> 20);
+      }
+      return diskWaiting > 0 ? text + ", ディスク待ち " + diskWaiting : text;
+    }
+  }
+
+  /**
+   * QoS for processes started on the calling thread: that of the scheduler job
+   * running on it, {@link Qos#NORMAL} outside jobs
+   */
+  public static Qos currentQos() {
+    var job = CURRENT_JOB.get();
+    return job == null ? Qos.NORMAL : job.qos;
+  }
+
+  /**
+   * The job running on the calling thread, if it was started by a scheduler
+   */
+  public static Optional<RunningJob> currentJob() {
+    var job = CURRENT_JOB.get();
+    return job == null ? Optional.empty() : Optional.of(describe(job, System.nanoTime()));
+  }
+
+  private static RunningJob describe(Job<?> job, long now) {
+    return new RunningJob(job.submitter.name, job.label, job.threads,
+        Duration.ofNanos(job.startedNanos - job.queuedNanos),
+        Duration.ofNanos(now - job.startedNanos));
+  }
+
+  public synchronized Snapshot snapshot() {
+    long now = System.nanoTime();
+    int queued = 0;
+    var submitterStats = new ArrayList<SubmitterStats>();
+    for (var submitter : submitters) {
+      queued += submitter.queue.size();
+      submitterStats.add(statsOf(submitter));
+    }
+    var runningJobs = running.stream()
+        .map(job -> describe(job, now))
+        .toList();
+    return new Snapshot(maxJobs, coreBudget, running.size(), runningCores, queued,
+        List.copyOf(submitterStats), runningJobs, diskWaiting, disk.reservedBytes(), memoryBudget, runningMemory,
+        jobLimit());
+  }
+
+  private SubmitterStats statsOf(Submitter submitter) {
+    long started = submitter.completed + submitter.running;
+    return new SubmitterStats(
+        submitter.name, submitter.weight, submitter.maxRunning,
+        submitter.queue.size(), submitter.running, submitter.submitted, submitter.completed,
+        Duration.ofNanos(started == 0 ? 0 : submitter.totalWaitNanos / started),
+        Duration.ofNanos(submitter.maxWaitNanos));
+  }
+
+  // --- submitters and jobs ---
+
+  /**
+   * One source of work (a grid window, a CLI batch). Not thread-confined;
+   * all state is guarded by the owning scheduler.
+   */
+  public final class Submitter implements AutoCloseable {
+    private final String name;
+    private final int weight;
+    private final int maxRunning;
+    private final ArrayDeque<Job<?>> queue = new ArrayDeque<>();
+    private long pass;
+    private int running;
+    private long submitted;
+    private long completed;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private boolean closed;
+
+    private Submitter(String name, int weight, int maxRunning) {
+      this.name = name;
+      this.weight = weight;
+      this.maxRunning = maxRunning;
+    }
+
+    public String name() {
+      return name;
+    }
+
+    public SubmitterStats stats() {
+      synchronized (EncodeScheduler.this) {
+        return statsOf(this);
+      }
+    }
+
+    /**
+     * Queue a job
+     *
+     * @param label   shown in {@link EncodeScheduler#snapshot()}
+     * @param threads encoder threads the job will use, counted against the core
+     *                budget
+     */
+    public <T> CompletableFuture<T> submit(String label, int threads, Callable<T> work) {
+      return submit(label, Resources.cores(threads), work);
+    }
+
+    /**
+     * Queue a job that also needs disk space
+     *
+     * @param label     shown in {@link EncodeScheduler#snapshot()}
+     * @param resources cores and output the job needs while it runs
+     */
+    public <T> CompletableFuture<T> submit(String label, Resources resources, Callable<T> work) {
+      return enqueue(this, label, resources, work);
+    }
+
+    /**
+     * Cancel every job that has not started yet; running jobs finish normally
+     *
+     * @return number of jobs cancelled
+     */
+    public int cancelPending() {
+      List<Job<?>> cancelled;
+      synchronized (EncodeScheduler.this) {
+        cancelled = new ArrayList<>(queue);
+        queue.clear();
+      }
+      cancelled.forEach(job -> {
+        job.future.cancel(false);
+        job.commitQueueEvent(true);
+      });
+      dispatch();
+      return cancelled.size();
+    }
+
+    /**
+     * Cancel pending jobs and unregister; running jobs finish normally
+     */
+    @Override
+    public void close() {
+      synchronized (EncodeScheduler.this) {
+        closed = true;
+      }
+      cancelPending();
+      synchronized (EncodeScheduler.this) {
+        submitters.remove(this);
+      }
+    }
+  }
+
+  private static final class Job<T> {
+    final Submitter submitter;
+    final String label;
+    final Resources resources;
+    final FileStore store;
+    final int threads;
+    final Callable<T> work;
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    final long queuedNanos = System.nanoTime();
+    final QueueEvent queueEvent = new QueueEvent();
+    long startedNanos;
+    /** Resolved when the job is dispatched */
+    Qos qos = Qos.NORMAL;
+
+    Job(Submitter submitter, String label, Resources resources, FileStore store, Callable<T> work) {
+      this.submitter = submitter;
+      this.label = label;
+      this.resources = resources;
+      this.store = store;
+      this.threads = resources.threads();
+      this.work = work;
+      queueEvent.begin();
+    }
+
+    void commitQueueEvent(boolean cancelled) {
+      queueEvent.end();
+      if (queueEvent.shouldCommit()) {
+        queueEvent.submitter = submitter.name;
+        queueEvent.job = label;
+        queueEvent.threads = threads;
+        queueEvent.cancelled = cancelled;
+        queueEvent.commit();
+      }
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package wappon28dev.vvcnv_java.scheduler;
+
+/**
+ * How politely an encode uses the machine: CPU and I/O priority, and
+ * optionally hard cgroup limits. Applied by {@link QosLauncher} when the
+ * ffmpeg process is started.
+ *
+ * @param nice           {@code nice} level, 0 (normal) to 19 (lowest)
+ * @param ioClass        {@code ionice} scheduling class
+ * @param ioPriority     {@code ionice} level within the best-effort class,
+ *                       0 (highest) to 7 (lowest)
+ * @param cpuMaxPercent  cgroup {@code cpu.max} of the job in percent of one
+ *                       core, 0 for no limit
+ * @param memoryMaxBytes cgroup {@code memory.max} of the job, 0 for no limit
+ */
+public record Qos(int nice, IoClass ioClass, int ioPriority, int cpuMaxPercent, long memoryMaxBytes) {
+
+  /**
+   * {@code ionice -c} classes; realtime needs root and is left out
+   */
+  public enum IoClass {
+    /** Leave the I/O priority alone */
+    DEFAULT,
+    BEST_EFFORT,
+    /** Only when no one else uses the disk */
+    IDLE
+  }
+
+  /** Unchanged priorities, no limits */
+  public static final Qos NORMAL = new Qos(0, IoClass.DEFAULT, 4, 0, 0);
+  /** Sweeps that should leave the desktop responsive */
+  public static final Qos BATCH = new Qos(10, IoClass.BEST_EFFORT, 7, 0, 0);
+  /** Background work that should only use idle capacity */
+  public static final Qos IDLE = new Qos(19, IoClass.IDLE, 7, 0, 0);
+
+  public Qos {
+    if (nice < 0 || nice > 19) {
+      throw new IllegalArgumentException("nice must be 0..19 (raising priority needs root)");
+    }
+    if (ioPriority < 0 || ioPriority > 7) {
+      throw new IllegalArgumentException("ioPriority must be 0..7");
+    }
+    if (cpuMaxPercent < 0 || memoryMaxBytes < 0) {
+      throw new IllegalArgumentException("limits must not be negative");
+    }
+  }
+
+  /**
+   * The same priorities with cgroup limits
+   */
+  public Qos withLimits(int cpuMaxPercent, long memoryMaxBytes) {
+    return new Qos(nice, ioClass, ioPriority, cpuMaxPercent, memoryMaxBytes);
+  }
+
+  public boolean hasLimits() {
+    return cpuMaxPercent > 0 || memoryMaxBytes > 0;
+  }
+
+  /**
+   * {@code -Dvvcnv.qos=normal|batch|idle} (default batch), with optional
+   * per-job limits {@code -Dvvcnv.qos.cpuMaxPercent} and
+   * {@code -Dvvcnv.qos.memoryMaxMB}
+   */
+  public static Qos fromSystemProperties() {
+    var base = switch (System.getProperty("vvcnv.qos", "batch").toLowerCase()) {
+      case "normal" -> NORMAL;
+      case "idle" -> IDLE;
+      default -> BATCH;
+    };
+    int cpuMax = Integer.getInteger("vvcnv.qos.cpuMaxPercent", 0);
+    long memoryMax = Long.getLong("vvcnv.qos.memoryMaxMB", 0L) << 20;
+    return base.withLimits(cpuMax, memoryMax);
+  }
+
+  @Override
+  public String toString() {
+    var text = "nice %d, io %s".formatted(nice, switch (ioClass) {
+      case DEFAULT -> "default";
+      case BEST_EFFORT -> "best-effort/" + ioPriority;
+      case IDLE -> "idle";
+    });
+    if (cpuMaxPercent > 0) {
+      text += ", cpu.max %d%%".formatted(cpuMaxPercent);
+    }
+    if (memoryMaxBytes > 0) {
+      text += ", memory.max %d MB".formatted(memoryMaxBytes >> 20);
+    }
+    return text;
+  }
+}
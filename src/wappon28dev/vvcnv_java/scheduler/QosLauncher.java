@@ -0,0 +1,177 @@
+package wappon28dev.vvcnv_java.scheduler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the command line that starts a process with a {@link Qos}:
+ *
+ * <pre>
+ * systemd-run --user --scope --slice=vvcnv.slice -p CPUQuota=.. -p MemoryMax=.. --
+ *     nice -n N ionice -c C [-n L] ffmpeg ...
+ * </pre>
+ *
+ * Every wrapper execs the next one, so the started process keeps the pid that
+ * ffmpeg ends up with and metrics still attribute it correctly. Wrappers that
+ * are not installed are skipped. The cgroup part is only used when the
+ * machine runs cgroup v2 and the user's systemd session can create scopes
+ * (checked once); then every encode lands in {@link #SLICE}, whose combined
+ * limits can be set with {@link #configureSlice(int, long)}.
+ */
+public final class QosLauncher {
+
+  public static final String SLICE = "vvcnv.slice";
+
+  private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(5);
+
+  private static volatile Tools detected;
+  private static volatile boolean sliceConfigured;
+
+  private QosLauncher() {
+    // Utility class
+  }
+
+  /**
+   * Paths of the wrapper tools; null for a tool that cannot be used
+   */
+  public record Tools(String nice, String ionice, String systemdRun) {
+
+    public static final Tools NONE = new Tools(null, null, null);
+
+    /**
+     * Look the tools up on this machine. {@code systemd-run} only counts if
+     * cgroup v2 is mounted and a user scope can actually be started; disable
+     * it with {@code -Dvvcnv.qos.cgroup=false}.
+     */
+    static Tools detect() {
+      var nice = executable("/usr/bin/nice", "/bin/nice");
+      var ionice = executable("/usr/bin/ionice", "/bin/ionice");
+      String systemdRun = null;
+      if (!"false".equalsIgnoreCase(System.getProperty("vvcnv.qos.cgroup"))
+          && Files.exists(Path.of("/sys/fs/cgroup/cgroup.controllers"))) {
+        var candidate = executable("/usr/bin/systemd-run", "/bin/systemd-run");
+        if (candidate != null && succeeds(List.of(candidate, "--user", "--scope", "--quiet", "--collect", "true"))) {
+          systemdRun = candidate;
+        }
+      }
+      return new Tools(nice, ionice, systemdRun);
+    }
+
+    private static String executable(String... paths) {
+      for (var path : paths) {
+        if (Files.isExecutable(Path.of(path))) {
+          return path;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * The tools available on this machine, detected on first use
+   */
+  public static Tools tools() {
+    var tools = detected;
+    if (tools == null) {
+      synchronized (QosLauncher.class) {
+        tools = detected;
+        if (tools == null) {
+          tools = Tools.detect();
+          detected = tools;
+          System.out.println("QoS: nice=%s, ionice=%s, cgroup=%s".formatted(
+              tools.nice() != null, tools.ionice() != null, tools.systemdRun() != null));
+        }
+      }
+    }
+    return tools;
+  }
+
+  /**
+   * {@code command} wrapped for {@code qos} with the tools of this machine
+   */
+  public static List<String> wrap(Qos qos, List<String> command) {
+    if (qos.equals(Qos.NORMAL) && !sliceConfigured) {
+      return command;
+    }
+    return wrap(qos, command, tools());
+  }
+
+  /**
+   * {@code command} wrapped for {@code qos} with the given tools
+   */
+  public static List<String> wrap(Qos qos, List<String> command, Tools tools) {
+    var full = new ArrayList<String>();
+    if (tools.systemdRun() != null && (qos.hasLimits() || sliceConfigured)) {
+      full.addAll(List.of(tools.systemdRun(), "--user", "--scope", "--quiet", "--collect", "--slice=" + SLICE));
+      if (qos.cpuMaxPercent() > 0) {
+        full.addAll(List.of("-p", "CPUQuota=" + qos.cpuMaxPercent() + "%"));
+      }
+      if (qos.memoryMaxBytes() > 0) {
+        full.addAll(List.of("-p", "MemoryMax=" + qos.memoryMaxBytes()));
+      }
+      full.add("--");
+    }
+    if (tools.nice() != null && qos.nice() > 0) {
+      full.addAll(List.of(tools.nice(), "-n", Integer.toString(qos.nice())));
+    }
+    if (tools.ionice() != null) {
+      switch (qos.ioClass()) {
+        case DEFAULT -> {
+          // Inherit
+        }
+        case BEST_EFFORT -> full.addAll(List.of(tools.ionice(), "-c", "2", "-n", Integer.toString(qos.ioPriority())));
+        case IDLE -> full.addAll(List.of(tools.ionice(), "-c", "3"));
+      }
+    }
+    full.addAll(command);
+    return full;
+  }
+
+  /**
+   * Limit all encodes together through {@link #SLICE}: {@code cpu.max} in
+   * percent of one core and {@code memory.max} in bytes (0 for no limit). The
+   * setting lasts until the user session ends.
+   *
+   * @return false if cgroups cannot be used here
+   */
+  public static boolean configureSlice(int cpuMaxPercent, long memoryMaxBytes) {
+    var systemdRun = tools().systemdRun();
+    if (systemdRun == null) {
+      return false;
+    }
+    var systemctl = Path.of(systemdRun).resolveSibling("systemctl").toString();
+    var command = new ArrayList<>(List.of(systemctl, "--user", "set-property", "--runtime", SLICE));
+    command.add("CPUQuota=" + (cpuMaxPercent > 0 ? cpuMaxPercent + "%" : ""));
+    command.add("MemoryMax=" + (memoryMaxBytes > 0 ? Long.toString(memoryMaxBytes) : "infinity"));
+    if (!succeeds(command)) {
+      System.err.println("QoS: スライスの制限を設定できません: " + String.join(" ", command));
+      return false;
+    }
+    sliceConfigured = true;
+    return true;
+  }
+
+  private static boolean succeeds(List<String> command) {
+    try {
+      var process = new ProcessBuilder(command)
+          .redirectErrorStream(true)
+          .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+          .start();
+      if (!process.waitFor(PROBE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+        process.destroyForcibly();
+        return false;
+      }
+      return process.exitValue() == 0;
+    } catch (IOException e) {
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package wappon28dev.vvcnv_java.scheduler;
+
+import java.nio.file.Path;
+
+/**
+ * What a job needs from the machine while it runs
+ *
+ * @param threads     encoder threads, counted against the core budget
+ * @param output      file the job writes, or null if it writes nothing
+ * @param outputBytes expected size of {@code output}, reserved against the
+ *                    free space of its file system until the job ends
+ * @param memoryBytes expected peak memory, counted against the memory budget
+ * @param qos         priority and limits of the job's processes, or null for
+ *                    the scheduler's default
+ * @param work        work the job does (output pixels times frames), counted
+ *                    as throughput when it finishes; 0 if unknown
+ */
+public record Resources(int threads, Path output, long outputBytes, long memoryBytes, Qos qos, long work) {
+
+  public Resources {
+    threads = Math.max(1, threads);
+    outputBytes = Math.max(0, outputBytes);
+    memoryBytes = Math.max(0, memoryBytes);
+    work = Math.max(0, work);
+  }
+
+  /**
+   * A job that only needs cores
+   */
+  public static Resources cores(int threads) {
+    return new Resources(threads, null, 0, 0, null, 0);
+  }
+
+  /**
+   * A job writing about {@code outputBytes} to {@code output}
+   */
+  public static Resources writing(int threads, Path output, long outputBytes) {
+    return new Resources(threads, output, outputBytes, 0, null, 0);
+  }
+
+  /**
+   * The same job, expected to peak at {@code memoryBytes}
+   */
+  public Resources withMemory(long memoryBytes) {
+    return new Resources(threads, output, outputBytes, memoryBytes, qos, work);
+  }
+
+  /**
+   * The same job, started with {@code qos} instead of the scheduler's default
+   */
+  public Resources withQos(Qos qos) {
+    return new Resources(threads, output, outputBytes, memoryBytes, qos, work);
+  }
+
+  /**
+   * The same job, doing {@code work} units
+   */
+  public Resources withWork(long work) {
+    return new Resources(threads, output, outputBytes, memoryBytes, qos, work);
+  }
+}
@@ -1,14 +1,24 @@
 package wappon28dev.vvcnv_ui;
 
+import wappon28dev.vvcnv_ui.utils.StartupProfile;
+import wappon28dev.vvcnv_java.metrics.MetricsExporter;
+
 import javax.swing.*;
 
 /**
  * Main entry point for the VVCNV GUI application
  */
 public class Main {
-  public static void main(String[] args) {
+  public static void main(String[] args) throws Exception {
+    if (StartupProfile.isTraining()) {
+      StartupProfile.runTraining();
+      return;
+    }
+
+    MetricsExporter.install();
     SwingUtilities.invokeLater(() -> {
       var mainWindow = new MainWindow();
+      StartupProfile.reportWhenShown(mainWindow);
       mainWindow.setVisible(true);
     });
   }
@@ -3,13 +3,19 @@ package wappon28dev.vvcnv_ui;
 import wappon28dev.vvcnv_ui.components.FileDropHandler;
 import wappon28dev.vvcnv_ui.dialogs.CrossTestWindow;
 import wappon28dev.vvcnv_ui.dialogs.PresetDialog;
+import wappon28dev.vvcnv_ui.models.ConversionOptions;
 import wappon28dev.vvcnv_ui.models.ConversionParams;
 import wappon28dev.vvcnv_ui.models.Preset;
 import wappon28dev.vvcnv_ui.services.VideoService;
 import wappon28dev.vvcnv_ui.utils.ConversionUtils;
+import wappon28dev.vvcnv_ui.utils.TaskPlanner;
 import wappon28dev.vvcnv_ui.utils.UIUtils;
+import wappon28dev.vvcnv_java.calibration.HostProfile;
+import wappon28dev.vvcnv_java.modules.SourceStager;
 import wappon28dev.vvcnv_java.modules.VideoRes;
 import wappon28dev.vvcnv_java.modules.VideoStat;
+import wappon28dev.vvcnv_java.scheduler.EncodeScheduler;
+import wappon28dev.vvcnv_java.util.Result;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
@@ -19,6 +25,8 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Main window for the VVCNV GUI application
@@ -26,6 +34,8 @@ import java.nio.file.Paths;
 public class MainWindow extends JFrame {
 
   private static final String DEFAULT_OUTPUT_DIR = "output";
+  /** Upper bound of the concurrent-job spinner: one job per core */
+  private static final int MAX_JOBS = Math.max(16, Runtime.getRuntime().availableProcessors());
 
   // UI Components
   private JTextField inputFileField;
@@ -39,15 +49,31 @@ public class MainWindow extends JFrame {
   private JSpinner maxCrfSpinner;
   private JSpinner crfStepsSpinner;
   private JSpinner maxThreadsSpinner;
+  private JSpinner maxOutputSpinner;
+  private JCheckBox remuxCheckBox;
+  private JCheckBox autoCropCheckBox;
+  private JCheckBox decimateCheckBox;
+  private JCheckBox stageSourcesCheckBox;
+  private JCheckBox measureOnlyCheckBox;
   private JButton startButton;
+  private JButton estimateButton;
   private JButton selectInputButton;
   private JButton selectOutputButton;
   private JButton savePresetButton;
   private JButton loadPresetButton;
+  private DefaultListModel<String> sourceListModel;
+  private JList<String> sourceList;
 
   // Services
   private VideoService videoService;
-  private VideoStat currentVideoStat;
+
+  // Source queue (input order); stat and error stay null while probing
+  private record QueuedSource(String path, VideoStat stat, String error) {
+  }
+
+  private final List<QueuedSource> sourceQueue = new ArrayList<>();
+  private SwingWorker<Void, VideoService.SourceLoad> sourceLoader;
+  private List<VideoRes> appliedResolutions = List.of();
 
   public MainWindow() {
     initializeServices();
@@ -110,11 +136,26 @@ public class MainWindow extends JFrame {
 
     selectInputButton = new JButton("ファイル選択");
     selectOutputButton = new JButton("フォルダ選択");
+
+    sourceListModel = new DefaultListModel<>();
+    sourceList = new JList<>(sourceListModel);
+    sourceList.setVisibleRowCount(4);
   }
 
   private void createConfigComponents() {
     audioCheckBox = new JCheckBox("音声を保持", true);
     encodingComboBox = new JComboBox<>(new String[] { "H.264", "WebM", "AV1" });
+    remuxCheckBox = new JCheckBox("再エンコード不要ならコピー", false);
+    remuxCheckBox.setToolTipText("入力と同じ解像度・fps の H.264 セルは, エンコードせずにストリームをコピーする (CRF は効かない)");
+    autoCropCheckBox = new JCheckBox("黒帯を自動カット", false);
+    autoCropCheckBox.setToolTipText("入力ごとに黒帯 (レターボックス / ピラーボックス) を検出し, 縮小の前に切り落とす");
+    decimateCheckBox = new JCheckBox("静止フレームを間引く", false);
+    decimateCheckBox.setToolTipText("直前とほぼ同じフレームを捨て, 可変フレームレートで書き出す (画面収録・講義向け)");
+    stageSourcesCheckBox = new JCheckBox("入力をローカルにコピー", false);
+    stageSourcesCheckBox.setToolTipText("変換の前に入力を一度だけ順に読み, 高速なローカル領域 ("
+        + SourceStager.shared().cacheDir() + ") のコピーから変換する (NFS や HDD 向け)");
+    measureOnlyCheckBox = new JCheckBox("サイズのみ計測", false);
+    measureOnlyCheckBox.setToolTipText("出力をパイプで受けてバイト数だけを数え, ファイルを書かない (プレビュー・再生は不可)");
 
     var resolutions = VideoRes.list169().toArray(new VideoRes[0]);
     minResComboBox = new JComboBox<>(resolutions);
@@ -126,7 +167,11 @@ public class MainWindow extends JFrame {
     minCrfSpinner = new JSpinner(new SpinnerNumberModel(15, 0, 51, 1));
     maxCrfSpinner = new JSpinner(new SpinnerNumberModel(35, 0, 51, 1));
     crfStepsSpinner = new JSpinner(new SpinnerNumberModel(3, 1, 10, 1));
-    maxThreadsSpinner = new JSpinner(new SpinnerNumberModel(4, 1, 16, 1));
+    // 0 = no cap of its own: the scheduler's adaptive limit decides
+    maxThreadsSpinner = new JSpinner(new SpinnerNumberModel(0, 0, MAX_JOBS, 1));
+    maxThreadsSpinner.setToolTipText("0 = 自動 (計測したスループットに合わせてスケジューラが調整)");
+    maxOutputSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 100_000, 10));
+    maxOutputSpinner.setToolTipText("予測サイズがこれを超えたエンコードは途中で中止する (0 = 上限なし)");
   }
 
   private void createActionComponents() {
@@ -134,6 +179,9 @@ public class MainWindow extends JFrame {
     startButton.setFont(startButton.getFont().deriveFont(Font.BOLD, 16f));
     startButton.setPreferredSize(new Dimension(200, 40));
 
+    estimateButton = new JButton("見積もり");
+    estimateButton.setToolTipText("変換せずに, タスク数・CPU 時間・出力サイズの見込みを表示する");
+
     savePresetButton = new JButton("プリセット保存");
     loadPresetButton = new JButton("プリセット読込");
   }
@@ -151,6 +199,7 @@ public class MainWindow extends JFrame {
     var buttonPanel = new JPanel(new FlowLayout());
     buttonPanel.add(loadPresetButton);
     buttonPanel.add(savePresetButton);
+    buttonPanel.add(estimateButton);
     buttonPanel.add(startButton);
 
     mainPanel.add(topPanel, BorderLayout.CENTER);
@@ -170,6 +219,21 @@ public class MainWindow extends JFrame {
     addIORow(panel, gbc, 0, "入力動画:", inputFileField, selectInputButton);
     addIORow(panel, gbc, 1, "出力先:", outputDirField, selectOutputButton);
 
+    gbc.gridy = 2;
+    gbc.gridx = 0;
+    gbc.weightx = 0;
+    gbc.fill = GridBagConstraints.NONE;
+    gbc.anchor = GridBagConstraints.NORTHWEST;
+    panel.add(new JLabel("キュー:"), gbc);
+
+    gbc.gridx = 1;
+    gbc.gridwidth = 2;
+    gbc.weightx = 1.0;
+    gbc.fill = GridBagConstraints.HORIZONTAL;
+    panel.add(new JScrollPane(sourceList), gbc);
+    gbc.gridwidth = 1;
+    gbc.anchor = GridBagConstraints.WEST;
+
     return panel;
   }
 
@@ -217,6 +281,12 @@ public class MainWindow extends JFrame {
     panel.add(new JLabel("エンコーディング:"), gbc);
     gbc.gridx = 2;
     panel.add(encodingComboBox, gbc);
+    gbc.gridx = 3;
+    panel.add(remuxCheckBox, gbc);
+    gbc.gridx = 4;
+    panel.add(autoCropCheckBox, gbc);
+    gbc.gridx = 5;
+    panel.add(decimateCheckBox, gbc);
   }
 
   private void addConfigRow2(JPanel panel, GridBagConstraints gbc) {
@@ -254,22 +324,30 @@ public class MainWindow extends JFrame {
   private void addConfigRow4(JPanel panel, GridBagConstraints gbc) {
     gbc.gridy = 3;
     gbc.gridx = 0;
-    panel.add(new JLabel("最大並列実行数:"), gbc);
+    panel.add(new JLabel("最大並列実行数 (0 = 自動):"), gbc);
     gbc.gridx = 1;
     panel.add(maxThreadsSpinner, gbc);
+    gbc.gridx = 2;
+    panel.add(new JLabel("サイズ上限 MB (0 = なし):"), gbc);
+    gbc.gridx = 3;
+    panel.add(maxOutputSpinner, gbc);
+    gbc.gridx = 4;
+    panel.add(stageSourcesCheckBox, gbc);
+    gbc.gridx = 5;
+    panel.add(measureOnlyCheckBox, gbc);
   }
 
   private void setupDragAndDrop() {
-    new FileDropHandler(inputFileField, this::onInputFileDrop, false);
+    new FileDropHandler(inputFileField, this::onInputFilesDrop);
     new FileDropHandler(outputDirField, this::onOutputDirDrop, true);
   }
 
-  private void onInputFileDrop(File file) {
+  private void onInputFilesDrop(List<File> files) {
     // Auto-generate output directory path
-    String defaultOutputDir = ConversionUtils.generateDefaultOutputDir(file.getAbsolutePath());
+    String defaultOutputDir = ConversionUtils.generateDefaultOutputDir(files.getFirst().getAbsolutePath());
     outputDirField.setText(defaultOutputDir);
 
-    loadVideoStats(file.getAbsolutePath());
+    loadVideoStats(files);
   }
 
   private void onOutputDirDrop(File file) {
@@ -280,6 +358,7 @@ public class MainWindow extends JFrame {
     selectInputButton.addActionListener(e -> selectInputFile());
     selectOutputButton.addActionListener(e -> selectOutputDirectory());
     startButton.addActionListener(e -> startConversion());
+    estimateButton.addActionListener(e -> showEstimate());
     savePresetButton.addActionListener(e -> showSavePresetDialog());
     loadPresetButton.addActionListener(e -> showLoadPresetDialog());
     inputFileField.addPropertyChangeListener("text", e -> updateAudioCheckbox());
@@ -289,16 +368,26 @@ public class MainWindow extends JFrame {
     var fileChooser = new JFileChooser();
     fileChooser.setFileFilter(new FileNameExtensionFilter(
         "動画ファイル", "mp4", "avi", "mov", "mkv", "webm", "m4v"));
+    fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+    fileChooser.setMultiSelectionEnabled(true);
 
     if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
-      var selectedFile = fileChooser.getSelectedFile();
-      inputFileField.setText(selectedFile.getAbsolutePath());
+      var videoFiles = UIUtils.collectVideoFiles(List.of(fileChooser.getSelectedFiles()));
+      if (videoFiles.isEmpty()) {
+        JOptionPane.showMessageDialog(this, "動画ファイルが見つかりませんでした。", "エラー", JOptionPane.ERROR_MESSAGE);
+        return;
+      }
+
+      var firstFile = videoFiles.getFirst();
+      inputFileField.setText(videoFiles.size() == 1
+          ? firstFile.getAbsolutePath()
+          : "%s 他%dファイル".formatted(firstFile.getAbsolutePath(), videoFiles.size() - 1));
 
       // Auto-generate output directory path
-      String defaultOutputDir = ConversionUtils.generateDefaultOutputDir(selectedFile.getAbsolutePath());
+      String defaultOutputDir = ConversionUtils.generateDefaultOutputDir(firstFile.getAbsolutePath());
       outputDirField.setText(defaultOutputDir);
 
-      loadVideoStats(selectedFile.getAbsolutePath());
+      loadVideoStats(videoFiles);
     }
   }
 
@@ -312,38 +401,91 @@ public class MainWindow extends JFrame {
     }
   }
 
-  private void loadVideoStats(String inputPath) {
-    var worker = videoService.loadVideoStatsAsync(inputPath);
-    worker.addPropertyChangeListener(evt -> {
-      if ("state".equals(evt.getPropertyName()) && SwingWorker.StateValue.DONE == evt.getNewValue()) {
-        handleVideoStatsLoaded(worker);
-      }
-    });
-    worker.execute();
+  /**
+   * Replace the source queue and probe every file, a few at a time
+   */
+  private void loadVideoStats(List<File> files) {
+    if (sourceLoader != null) {
+      sourceLoader.cancel(true);
+    }
+    sourceQueue.clear();
+    sourceListModel.clear();
+    appliedResolutions = List.of();
+
+    var paths = files.stream().map(File::getAbsolutePath).toList();
+    for (var path : paths) {
+      var queued = new QueuedSource(path, null, null);
+      sourceQueue.add(queued);
+      sourceListModel.addElement(describeSource(queued));
+    }
+
+    sourceLoader = videoService.loadVideoStatsBatchAsync(paths, this::handleVideoStatsLoaded);
+    sourceLoader.execute();
   }
 
-  private void handleVideoStatsLoaded(SwingWorker<VideoStat, Void> worker) {
-    try {
-      currentVideoStat = worker.get();
-      updateAudioCheckbox();
-      updateResolutionLimits();
+  private void handleVideoStatsLoaded(VideoService.SourceLoad load) {
+    int index = -1;
+    for (int i = 0; i < sourceQueue.size(); i++) {
+      if (sourceQueue.get(i).path().equals(load.path())) {
+        index = i;
+        break;
+      }
+    }
+    if (index < 0) {
+      // Result of a queue that has since been replaced
+      return;
+    }
 
+    var queued = switch (load.result()) {
+      case Result.Ok<VideoStat, String> ok -> new QueuedSource(load.path(), ok.value(), null);
+      case Result.Err<VideoStat, String> err -> new QueuedSource(load.path(), null, err.error());
+    };
+    sourceQueue.set(index, queued);
+    sourceListModel.set(index, describeSource(queued));
+
+    if (queued.stat() != null) {
+      var videoStat = queued.stat();
       var videoInfo = """
-          動画情報を読み込みました:
+          動画情報を読み込みました: %s
           %dx%d @ %.2ffps
           時間: %.2f秒
           """.formatted(
-          currentVideoStat.videoStream().width(),
-          currentVideoStat.videoStream().height(),
-          currentVideoStat.videoStream().fps(),
-          (double) currentVideoStat.duration().toSeconds());
+          videoStat.path(),
+          videoStat.videoStream().width(),
+          videoStat.videoStream().height(),
+          videoStat.videoStream().fps(),
+          (double) videoStat.duration().toSeconds());
 
       System.out.println(videoInfo);
-    } catch (Exception e) {
-      handleVideoStatsError(e);
+      updateAudioCheckbox();
+      updateResolutionLimits();
+    } else if (sourceQueue.size() == 1) {
+      handleVideoStatsError(new RuntimeException("VideoModule.stat() failed: " + queued.error()));
+    } else {
+      System.err.println("動画情報の読み込みに失敗しました: " + load.path() + " (" + queued.error() + ")");
     }
   }
 
+  private static String describeSource(QueuedSource queued) {
+    var name = new File(queued.path()).getName();
+    if (queued.stat() != null) {
+      var videoStream = queued.stat().videoStream();
+      return "✓ %s  (%dx%d @ %.2ffps, %d秒)".formatted(
+          name, videoStream.width(), videoStream.height(), videoStream.fps(), queued.stat().duration().toSeconds());
+    }
+    if (queued.error() != null) {
+      return "✗ %s  (%s)".formatted(name, queued.error());
+    }
+    return "… %s  (読み込み中)".formatted(name);
+  }
+
+  private List<VideoStat> loadedSources() {
+    return sourceQueue.stream()
+        .map(QueuedSource::stat)
+        .filter(stat -> stat != null)
+        .toList();
+  }
+
   private void handleVideoStatsError(Exception e) {
     System.err.println("動画情報の読み込みに失敗しました:");
     e.printStackTrace();
@@ -364,8 +506,9 @@ public class MainWindow extends JFrame {
   }
 
   private void updateAudioCheckbox() {
-    if (currentVideoStat != null) {
-      boolean hasAudio = !currentVideoStat.audioStreams().isEmpty();
+    var loaded = loadedSources();
+    if (!loaded.isEmpty()) {
+      boolean hasAudio = loaded.stream().anyMatch(stat -> !stat.audioStreams().isEmpty());
       audioCheckBox.setEnabled(hasAudio);
       audioCheckBox.setText(hasAudio ? "音声を保持" : "音声を保持 (音声トラックなし)");
       if (!hasAudio) {
@@ -374,16 +517,23 @@ public class MainWindow extends JFrame {
     }
   }
 
+  /**
+   * Limit the resolution range to what the largest queued source can provide
+   */
   private void updateResolutionLimits() {
-    if (currentVideoStat == null)
+    var loaded = loadedSources();
+    if (loaded.isEmpty())
       return;
 
-    var videoStream = currentVideoStat.videoStream();
+    int maxWidth = loaded.stream().mapToInt(stat -> stat.videoStream().width()).max().getAsInt();
+    int maxHeight = loaded.stream().mapToInt(stat -> stat.videoStream().height()).max().getAsInt();
     var validResolutions = VideoRes.list169().stream()
-        .filter(res -> res.getWidth() <= videoStream.width() && res.getHeight() <= videoStream.height())
+        .filter(res -> res.getWidth() <= maxWidth && res.getHeight() <= maxHeight)
         .toList();
 
-    if (!validResolutions.isEmpty()) {
+    // Only reset the selection when the limit actually changes
+    if (!validResolutions.isEmpty() && !validResolutions.equals(appliedResolutions)) {
+      appliedResolutions = validResolutions;
       updateResolutionComboBoxes(validResolutions);
     }
   }
@@ -397,14 +547,63 @@ public class MainWindow extends JFrame {
     maxResComboBox.setSelectedIndex(validResolutions.size() - 1);
   }
 
-  private void startConversion() {
+  /**
+   * Whether every selected source has been probed; tells the user otherwise
+   */
+  private boolean sourcesReady() {
     if (inputFileField.getText().isEmpty()) {
       JOptionPane.showMessageDialog(this, "入力ファイルを選択してください。", "エラー", JOptionPane.ERROR_MESSAGE);
-      return;
+      return false;
+    }
+
+    if (sourceQueue.stream().anyMatch(queued -> queued.stat() == null && queued.error() == null)) {
+      JOptionPane.showMessageDialog(this, "動画情報を読み込み中です。", "エラー", JOptionPane.ERROR_MESSAGE);
+      return false;
     }
 
-    if (currentVideoStat == null) {
+    if (loadedSources().isEmpty()) {
       JOptionPane.showMessageDialog(this, "動画情報を読み込んでください。", "エラー", JOptionPane.ERROR_MESSAGE);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Dry run: plan the cross test and show what it would cost, without
+   * launching anything
+   */
+  private void showEstimate() {
+    if (!sourcesReady()) {
+      return;
+    }
+    var sources = loadedSources();
+    var params = createConversionParams();
+    var plan = TaskPlanner.plan(params, sources);
+    var cost = TaskPlanner.cost(plan, sources, params, HostProfile.current());
+    int cores = EncodeScheduler.shared().snapshot().coreBudget();
+
+    var message = new StringBuilder();
+    message.append("実行: %d件 (%dファイル)%n".formatted(plan.tasks().size(), sources.size()));
+    if (!plan.skipped().isEmpty()) {
+      message.append("対象外: %d件%n".formatted(plan.skipped().size()));
+      plan.skipped().stream().map(TaskPlanner.Skipped::reason).distinct().limit(5)
+          .forEach(reason -> message.append("  ").append(reason).append('\n'));
+    }
+    if (plan.duplicates() > 0) {
+      message.append("重複を除外: %d件%n".formatted(plan.duplicates()));
+    }
+    message.append("%n推定 CPU 時間: %.2f 時間%n".formatted(cost.cpuHours()));
+    message.append("推定出力サイズ: %s%s%n".formatted(UIUtils.formatFileSize(cost.outputBytes()),
+        params.options().measureOnly() ? " (計測のみ, ディスクには書かない)" : ""));
+    message.append("推定所要時間: %.0f 分 (%d コアを使い切った場合)%n".formatted(cost.wallSeconds(cores) / 60, cores));
+    if (HostProfile.current().isEmpty()) {
+      message.append("(未較正のホスト: CPU 時間は目安)");
+    }
+    JOptionPane.showMessageDialog(this, message.toString(), "見積もり", JOptionPane.INFORMATION_MESSAGE);
+  }
+
+  private void startConversion() {
+    if (!sourcesReady()) {
       return;
     }
 
@@ -418,7 +617,7 @@ public class MainWindow extends JFrame {
   }
 
   private void showCrossTestWindow() {
-    var crossTestWindow = new CrossTestWindow(this, currentVideoStat, createConversionParams(), videoService);
+    var crossTestWindow = new CrossTestWindow(this, loadedSources(), createConversionParams(), videoService);
     crossTestWindow.setVisible(true);
   }
 
@@ -434,7 +633,21 @@ public class MainWindow extends JFrame {
         (Integer) minCrfSpinner.getValue(),
         (Integer) maxCrfSpinner.getValue(),
         (Integer) crfStepsSpinner.getValue(),
-        (Integer) maxThreadsSpinner.getValue());
+        (Integer) maxThreadsSpinner.getValue(),
+        (Integer) maxOutputSpinner.getValue(),
+        createConversionOptions());
+  }
+
+  /**
+   * On/off options from the checkboxes
+   */
+  private ConversionOptions createConversionOptions() {
+    return ConversionOptions.NONE
+        .withRemux(remuxCheckBox.isSelected())
+        .withAutoCrop(autoCropCheckBox.isSelected())
+        .withDecimate(decimateCheckBox.isSelected())
+        .withStageSources(stageSourcesCheckBox.isSelected())
+        .withMeasureOnly(measureOnlyCheckBox.isSelected());
   }
 
   /**
@@ -469,7 +682,9 @@ public class MainWindow extends JFrame {
         (Integer) minCrfSpinner.getValue(),
         (Integer) maxCrfSpinner.getValue(),
         (Integer) crfStepsSpinner.getValue(),
-        (Integer) maxThreadsSpinner.getValue());
+        (Integer) maxThreadsSpinner.getValue(),
+        (Integer) maxOutputSpinner.getValue(),
+        createConversionOptions());
   }
 
   /**
@@ -490,7 +705,15 @@ public class MainWindow extends JFrame {
       minCrfSpinner.setValue(preset.minCrf());
       maxCrfSpinner.setValue(preset.maxCrf());
       crfStepsSpinner.setValue(preset.crfSteps());
-      maxThreadsSpinner.setValue(preset.maxThreads());
+      // Presets saved on a larger host may ask for more jobs than fit here
+      maxThreadsSpinner.setValue(Math.min(preset.maxThreads(), MAX_JOBS));
+      maxOutputSpinner.setValue(preset.maxOutputMB());
+      var options = preset.options();
+      remuxCheckBox.setSelected(options.remux());
+      autoCropCheckBox.setSelected(options.autoCrop());
+      decimateCheckBox.setSelected(options.decimate());
+      stageSourcesCheckBox.setSelected(options.stageSources());
+      measureOnlyCheckBox.setSelected(options.measureOnly());
 
       JOptionPane.showMessageDialog(this,
           "プリセット '" + preset.name() + "' を適用しました。",
@@ -1,79 +1,252 @@
 package wappon28dev.vvcnv_ui.components;
 
 import wappon28dev.vvcnv_ui.models.ConversionResult;
+import wappon28dev.vvcnv_ui.models.ResultGridModel;
 import wappon28dev.vvcnv_ui.utils.UIUtils;
 
 import javax.swing.*;
+import javax.swing.border.Border;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.io.File;
 import java.io.IOException;
+import java.util.Objects;
 
 /**
- * Custom table cell renderer for conversion results
+ * Custom table cell renderer for conversion results.
+ *
+ * <p>
+ * The renderer is a flyweight: the success panel, error panel and progress
+ * label are built once and only re-configured per cell, with colors and
+ * borders taken from constants, so painting a cell allocates nothing. Because
+ * a renderer is only a rubber stamp, the "表示" button is handled by
+ * {@link #installOn(JTable)} through the table's mouse events. Tables backed
+ * by a {@link ResultGridModel} also show each cell's preview thumbnail, and a
+ * click on it plays the proxy clip instead of the full output.
+ * </p>
  */
 public class ConversionResultRenderer extends DefaultTableCellRenderer {
 
-  @Override
-  public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
-      boolean hasFocus, int row, int column) {
+  private static final Color SUCCESS_BACKGROUND = Color.WHITE;
+  private static final Color SUCCESS_SELECTED_BACKGROUND = Color.LIGHT_GRAY;
+  private static final Color ERROR_BACKGROUND = new Color(255, 240, 240);
+  private static final Color ERROR_SELECTED_BACKGROUND = new Color(255, 200, 200);
+  private static final Border PADDING_BORDER = BorderFactory.createEmptyBorder(5, 5, 5, 5);
+  private static final Border SELECTED_BORDER = BorderFactory.createLineBorder(Color.BLUE, 2);
 
-    return switch (value) {
-      case ConversionResult result when result.success() -> createSuccessComponent(result, isSelected);
-      case ConversionResult result when !result.success() -> createErrorComponent(result, isSelected);
-      case String str -> createProgressComponent(str, isSelected);
-      default -> super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-    };
+  private final JPanel successPanel = new StampPanel();
+  private final JLabel sizeLabel = new StampLabel();
+  private final JButton viewButton = new JButton("表示");
+
+  private final JPanel errorPanel = new StampPanel();
+  private final JLabel errorLabel = new StampLabel();
+
+  private final JLabel progressLabel = new StampLabel();
+
+  /**
+   * Like {@link DefaultTableCellRenderer}, the stamp components skip the
+   * revalidate / repaint / property-change work that re-configuring them
+   * would otherwise trigger; the renderer pane lays them out and paints them
+   * anyway.
+   */
+  private static final class StampLabel extends JLabel {
+    StampLabel() {
+      setHorizontalAlignment(CENTER);
+    }
+
+    @Override
+    public void revalidate() {
+    }
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+    }
+
+    @Override
+    public void repaint(Rectangle r) {
+    }
+
+    @Override
+    public void repaint() {
+    }
+
+    @Override
+    protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+    }
+
+    @Override
+    public void firePropertyChange(String propertyName, boolean oldValue, boolean newValue) {
+    }
   }
 
-  private JPanel createSuccessComponent(ConversionResult result, boolean isSelected) {
-    var panel = new JPanel(new BorderLayout());
-    panel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+  private static final class StampPanel extends JPanel {
+    StampPanel() {
+      super(new BorderLayout());
+    }
 
-    var sizeLabel = new JLabel(result.fileSize(), JLabel.CENTER);
-    sizeLabel.setFont(sizeLabel.getFont().deriveFont(Font.BOLD));
-    sizeLabel.setForeground(UIUtils.getFileSizeColor(result.fileSizeMB()));
+    @Override
+    public void revalidate() {
+    }
 
-    var viewButton = new JButton("表示");
-    viewButton.setPreferredSize(new Dimension(60, 25));
-    viewButton.addActionListener(e -> openFile(result.outputPath()));
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+    }
 
-    panel.add(sizeLabel, BorderLayout.CENTER);
-    panel.add(viewButton, BorderLayout.SOUTH);
-    panel.setBackground(isSelected ? Color.LIGHT_GRAY : Color.WHITE);
+    @Override
+    public void repaint(Rectangle r) {
+    }
+
+    @Override
+    public void repaint() {
+    }
 
-    if (isSelected) {
-      panel.setBorder(BorderFactory.createLineBorder(Color.BLUE, 2));
+    @Override
+    protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
     }
 
-    return panel;
+    @Override
+    public void firePropertyChange(String propertyName, boolean oldValue, boolean newValue) {
+    }
   }
 
-  private JPanel createErrorComponent(ConversionResult result, boolean isSelected) {
-    var panel = new JPanel(new BorderLayout());
-    panel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+  public ConversionResultRenderer() {
+    sizeLabel.setFont(sizeLabel.getFont().deriveFont(Font.BOLD));
+    sizeLabel.setHorizontalTextPosition(SwingConstants.CENTER);
+    sizeLabel.setVerticalTextPosition(SwingConstants.BOTTOM);
+    viewButton.setPreferredSize(new Dimension(60, 25));
+    successPanel.add(sizeLabel, BorderLayout.CENTER);
+    successPanel.add(viewButton, BorderLayout.SOUTH);
 
-    var errorLabel = new JLabel("失敗", JLabel.CENTER);
+    errorLabel.setText("失敗");
     errorLabel.setForeground(Color.RED);
-    errorLabel.setToolTipText(result.error());
+    errorPanel.add(errorLabel, BorderLayout.CENTER);
+
+    progressLabel.setBackground(Color.LIGHT_GRAY);
+  }
+
+  /**
+   * Use this renderer for {@code table} and open a successful cell's output
+   * when its "表示" button area is clicked, or its proxy clip when the rest of
+   * a cell with a preview is clicked
+   */
+  public void installOn(JTable table) {
+    table.setDefaultRenderer(Object.class, this);
+
+    var handler = new MouseAdapter() {
+      @Override
+      public void mouseClicked(MouseEvent e) {
+        var result = viewButtonHit(table, e.getPoint());
+        if (result != null) {
+          openFile(result.outputPath());
+          return;
+        }
+        var preview = previewAt(table, e.getPoint());
+        if (preview != null) {
+          openFile(preview.proxy().toString());
+        }
+      }
+
+      @Override
+      public void mouseMoved(MouseEvent e) {
+        var clickable = viewButtonHit(table, e.getPoint()) != null || previewAt(table, e.getPoint()) != null;
+        var cursor = clickable
+            ? Cursor.getPredefinedCursor(Cursor.HAND_CURSOR)
+            : Cursor.getDefaultCursor();
+        if (table.getCursor() != cursor) {
+          table.setCursor(cursor);
+        }
+      }
+    };
+    table.addMouseListener(handler);
+    table.addMouseMotionListener(handler);
+  }
+
+  /**
+   * The successful result whose "表示" button is under {@code point}, if any
+   */
+  private ConversionResult viewButtonHit(JTable table, Point point) {
+    int row = table.rowAtPoint(point);
+    int column = table.columnAtPoint(point);
+    if (row < 0 || column < 0) {
+      return null;
+    }
+    if (!(table.getValueAt(row, column) instanceof ConversionResult result && result.success())
+        || result.measured()) {
+      return null;
+    }
+
+    // Lay the stamp out at the cell's size to find where the button is drawn
+    var cell = table.getCellRect(row, column, false);
+    configureSuccess(result, table.isCellSelected(row, column), preview(table, row, column));
+    successPanel.setBounds(0, 0, cell.width, cell.height);
+    successPanel.doLayout();
+    var button = viewButton.getBounds();
+    return button.contains(point.x - cell.x, point.y - cell.y) ? result : null;
+  }
 
-    panel.add(errorLabel, BorderLayout.CENTER);
-    panel.setBackground(isSelected ? new Color(255, 200, 200) : new Color(255, 240, 240));
+  /**
+   * The preview of the successful cell under {@code point}, if any
+   */
+  private ResultGridModel.CellPreview previewAt(JTable table, Point point) {
+    int row = table.rowAtPoint(point);
+    int column = table.columnAtPoint(point);
+    if (row < 0 || column < 0) {
+      return null;
+    }
+    return preview(table, row, column);
+  }
 
-    if (isSelected) {
-      panel.setBorder(BorderFactory.createLineBorder(Color.BLUE, 2));
+  private static ResultGridModel.CellPreview preview(JTable table, int row, int column) {
+    if (!(table.getModel() instanceof ResultGridModel model)) {
+      return null;
     }
+    return model.preview(table.convertRowIndexToModel(row), table.convertColumnIndexToModel(column));
+  }
+
+  @Override
+  public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+      boolean hasFocus, int row, int column) {
 
-    return panel;
+    return switch (value) {
+      case ConversionResult result when result.success() ->
+        configureSuccess(result, isSelected, preview(table, row, column));
+      case ConversionResult result -> configureError(result, isSelected);
+      case String str -> configureProgress(str, isSelected);
+      case null, default -> super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+    };
   }
 
-  private JLabel createProgressComponent(String str, boolean isSelected) {
-    var label = new JLabel(str, JLabel.CENTER);
-    if (isSelected) {
-      label.setOpaque(true);
-      label.setBackground(Color.LIGHT_GRAY);
+  private JPanel configureSuccess(ConversionResult result, boolean isSelected, ResultGridModel.CellPreview preview) {
+    sizeLabel.setText(result.label());
+    var tooltip = result.tooltip();
+    if (!Objects.equals(sizeLabel.getToolTipText(), tooltip)) {
+      sizeLabel.setToolTipText(tooltip);
     }
-    return label;
+    // A measured cell has no file to open
+    viewButton.setVisible(!result.measured());
+    sizeLabel.setIcon(preview != null ? preview.thumbnail() : null);
+    sizeLabel.setForeground(UIUtils.getFileSizeColor(result.fileSizeMB()));
+    successPanel.setBackground(isSelected ? SUCCESS_SELECTED_BACKGROUND : SUCCESS_BACKGROUND);
+    successPanel.setBorder(isSelected ? SELECTED_BORDER : PADDING_BORDER);
+    return successPanel;
+  }
+
+  private JPanel configureError(ConversionResult result, boolean isSelected) {
+    var tooltip = result.tooltip();
+    if (!Objects.equals(errorLabel.getToolTipText(), tooltip)) {
+      errorLabel.setToolTipText(tooltip);
+    }
+    errorPanel.setBackground(isSelected ? ERROR_SELECTED_BACKGROUND : ERROR_BACKGROUND);
+    errorPanel.setBorder(isSelected ? SELECTED_BORDER : PADDING_BORDER);
+    return errorPanel;
+  }
+
+  private JLabel configureProgress(String str, boolean isSelected) {
+    progressLabel.setText(str);
+    progressLabel.setOpaque(isSelected);
+    return progressLabel;
   }
 
   private void openFile(String filePath) {
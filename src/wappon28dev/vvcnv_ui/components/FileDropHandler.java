@@ -17,16 +17,31 @@ public class FileDropHandler implements DropTargetListener {
 
   private final JTextField targetField;
   private final Consumer<File> onValidFileDrop;
+  private final Consumer<List<File>> onVideoFilesDrop;
   private final boolean acceptDirectories;
 
   public FileDropHandler(JTextField targetField, Consumer<File> onValidFileDrop, boolean acceptDirectories) {
     this.targetField = targetField;
     this.onValidFileDrop = onValidFileDrop;
+    this.onVideoFilesDrop = null;
     this.acceptDirectories = acceptDirectories;
 
     new DropTarget(targetField, this);
   }
 
+  /**
+   * Accept any number of video files and folders; folders are searched
+   * recursively and every video file found is passed on in path order
+   */
+  public FileDropHandler(JTextField targetField, Consumer<List<File>> onVideoFilesDrop) {
+    this.targetField = targetField;
+    this.onValidFileDrop = null;
+    this.onVideoFilesDrop = onVideoFilesDrop;
+    this.acceptDirectories = false;
+
+    new DropTarget(targetField, this);
+  }
+
   @Override
   public void dragEnter(DropTargetDragEvent dtde) {
     if (dtde.isDataFlavorSupported(DataFlavor.javaFileListFlavor)) {
@@ -61,7 +76,9 @@ public class FileDropHandler implements DropTargetListener {
         @SuppressWarnings("unchecked")
         List<File> files = (List<File>) transferable.getTransferData(DataFlavor.javaFileListFlavor);
 
-        if (!files.isEmpty()) {
+        if (onVideoFilesDrop != null) {
+          dropVideoFiles(files);
+        } else if (!files.isEmpty()) {
           File file = files.getFirst();
 
           if (acceptDirectories && file.isDirectory()) {
@@ -82,4 +99,17 @@ public class FileDropHandler implements DropTargetListener {
       dtde.dropComplete(false);
     }
   }
+
+  private void dropVideoFiles(List<File> dropped) {
+    var videoFiles = UIUtils.collectVideoFiles(dropped);
+    if (videoFiles.isEmpty()) {
+      JOptionPane.showMessageDialog(null, "動画ファイルが見つかりませんでした。", "エラー", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+
+    targetField.setText(videoFiles.size() == 1
+        ? videoFiles.getFirst().getAbsolutePath()
+        : "%s 他%dファイル".formatted(videoFiles.getFirst().getAbsolutePath(), videoFiles.size() - 1));
+    onVideoFilesDrop.accept(videoFiles);
+  }
 }
@@ -0,0 +1,81 @@
+package wappon28dev.vvcnv_ui.components;
+
+import wappon28dev.vvcnv_java.metrics.EncodeMetrics;
+
+import javax.swing.*;
+import javax.swing.border.TitledBorder;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.File;
+
+/**
+ * Live view of {@link EncodeMetrics}: every running ffmpeg with its CPU and
+ * memory, plus totals over finished tasks. Call {@link #refresh()} from a
+ * Swing timer.
+ */
+public class ResourcePanel extends JPanel {
+
+  private static final String[] COLUMNS = {
+      "ウィンドウ", "出力", "PID", "待ち時間", "経過", "CPU", "RSS", "ピークRSS" };
+
+  private final DefaultTableModel runningModel;
+  private final JLabel totalsLabel;
+
+  public ResourcePanel() {
+    super(new BorderLayout());
+    setBorder(new TitledBorder("リソース"));
+
+    runningModel = new DefaultTableModel(COLUMNS, 0) {
+      @Override
+      public boolean isCellEditable(int row, int column) {
+        return false;
+      }
+    };
+    var runningTable = new JTable(runningModel);
+    runningTable.setPreferredScrollableViewportSize(new Dimension(600, 80));
+
+    totalsLabel = new JLabel(" ");
+
+    add(new JScrollPane(runningTable), BorderLayout.CENTER);
+    add(totalsLabel, BorderLayout.SOUTH);
+  }
+
+  public void refresh() {
+    var metrics = EncodeMetrics.shared();
+    var running = metrics.runningTasks();
+
+    runningModel.setRowCount(running.size());
+    for (int row = 0; row < running.size(); row++) {
+      var task = running.get(row);
+      runningModel.setValueAt(task.submitter(), row, 0);
+      runningModel.setValueAt(new File(task.label()).getName(), row, 1);
+      runningModel.setValueAt(task.pid() < 0 ? "-" : Long.toString(task.pid()), row, 2);
+      runningModel.setValueAt(seconds(task.queueWait().toMillis()), row, 3);
+      runningModel.setValueAt(seconds(task.wall().toMillis()), row, 4);
+      runningModel.setValueAt("%.0f%%".formatted(task.cpuUtilization() * 100), row, 5);
+      runningModel.setValueAt(megaBytes(task.rssBytes()), row, 6);
+      runningModel.setValueAt(megaBytes(task.peakRssBytes()), row, 7);
+    }
+
+    long finished = metrics.getTasksSucceeded() + metrics.getTasksFailed();
+    double wall = metrics.getWallSecondsTotal();
+    totalsLabel.setText(
+        "完了 %d (失敗 %d) / 平均待ち %.1f秒 / CPU合計 %.0f秒 (平均 %.1fコア) / 最大ピークRSS %s / 出力 %.2f MB/s / 実行中RSS %s"
+            .formatted(
+                finished, metrics.getTasksFailed(),
+                finished == 0 ? 0.0 : metrics.getQueueWaitSecondsTotal() / finished,
+                metrics.getCpuSecondsTotal(),
+                wall == 0 ? 0.0 : metrics.getCpuSecondsTotal() / wall,
+                megaBytes(metrics.getPeakRssBytesMax()),
+                wall == 0 ? 0.0 : metrics.getOutputBytesTotal() / wall / (1024 * 1024),
+                megaBytes(metrics.getRunningRssBytes())));
+  }
+
+  private static String seconds(long millis) {
+    return "%.1f秒".formatted(millis / 1000.0);
+  }
+
+  private static String megaBytes(long bytes) {
+    return bytes < 0 ? "-" : "%d MB".formatted(bytes >> 20);
+  }
+}
@@ -1,53 +1,110 @@
 package wappon28dev.vvcnv_ui.dialogs;
 
 import wappon28dev.vvcnv_ui.components.ConversionResultRenderer;
+import wappon28dev.vvcnv_ui.components.ResourcePanel;
 import wappon28dev.vvcnv_ui.models.ConversionParams;
-import wappon28dev.vvcnv_ui.models.ConversionResult;
 import wappon28dev.vvcnv_ui.models.ConversionTask;
+import wappon28dev.vvcnv_ui.models.ResultGridModel;
 import wappon28dev.vvcnv_ui.services.VideoService;
-import wappon28dev.vvcnv_ui.utils.ConversionUtils;
+import wappon28dev.vvcnv_ui.utils.TaskPlanner;
 import wappon28dev.vvcnv_ui.utils.UIUtils;
+import wappon28dev.vvcnv_java.calibration.Codec;
+import wappon28dev.vvcnv_java.calibration.HostProfile;
+import wappon28dev.vvcnv_java.jfr.PlanEvent;
 import wappon28dev.vvcnv_java.modules.*;
+import wappon28dev.vvcnv_java.scheduler.EncodeScheduler;
+import wappon28dev.vvcnv_java.scheduler.Resources;
 import wappon28dev.vvcnv_java.util.Result;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Cross-test window for video conversion
+ * Cross-test window for video conversion. Every source gets its own grid (one
+ * tab per file). Tasks go to the process-wide {@link EncodeScheduler} through
+ * one submitter per window, so {@code maxThreads} caps this window while the
+ * scheduler keeps all open windows within the machine's cores. With
+ * {@code maxThreads} 0 the window has no cap of its own and the scheduler's
+ * adaptive limit decides.
  */
 public class CrossTestWindow extends JDialog {
 
+  /** Inline preview thumbnails are this tall */
+  private static final int THUMBNAIL_HEIGHT = 48;
+  /** Thumbnail, size text and the "表示" button */
+  private static final int PREVIEW_ROW_HEIGHT = 100;
+  /** A finished cell dominates a running one projected this much larger */
+  private static final double DOMINANCE_MARGIN = 1.25;
+
   private final JFrame parent;
-  private final VideoStat videoStat;
+  private final List<SourceGrid> sources;
   private final ConversionParams params;
+  private final TaskPlanner.Plan plan;
   private final VideoService videoService;
 
-  private JTable resultTable;
-  private DefaultTableModel tableModel;
+  private JTabbedPane sourceTabs;
   private JProgressBar overallProgressBar;
   private JLabel statusLabel;
   private JButton stopButton;
-  private ExecutorService executorService;
+  private JLabel schedulerLabel;
+  private ResourcePanel resourcePanel;
+  private Timer schedulerTimer;
+  private EncodeScheduler.Submitter submitter;
   private List<ConversionTask> tasks;
-  private volatile int completedTasks = 0;
+  /** Latest "変換中" text from a worker, shown with the next grid flush */
+  private volatile String runningStatus;
   private volatile boolean isStopped = false;
+  private volatile boolean sourcesReleased = false;
+  /** Preview requests of this window, cancelled when it closes */
+  private final List<CompletableFuture<?>> previewRequests = new CopyOnWriteArrayList<>();
+
+  /**
+   * Result grid of one source file
+   */
+  private static final class SourceGrid {
+    final VideoStat videoStat;
+    final String outputStem;
+    ResultGridModel tableModel;
+    JTable resultTable;
+    /** Picture area without black bars, set before the first encode */
+    volatile Crop crop;
+    /** What the encodes read: the source, or its staged copy */
+    volatile VideoStat input;
+    /** Pinned staged copy, released when the grid is done */
+    SourceStager.Staged staged;
+
+    SourceGrid(VideoStat videoStat, String outputStem) {
+      this.videoStat = videoStat;
+      this.outputStem = outputStem;
+      this.input = videoStat;
+    }
+  }
 
   public CrossTestWindow(JFrame parent, VideoStat videoStat, ConversionParams params, VideoService videoService) {
-    super(parent, "クロステスト実行", true);
+    this(parent, List.of(videoStat), params, videoService);
+  }
+
+  public CrossTestWindow(JFrame parent, List<VideoStat> videoStats, ConversionParams params,
+      VideoService videoService) {
+    super(parent, "クロステスト実行", ModalityType.MODELESS);
     this.parent = parent;
-    this.videoStat = videoStat;
+    this.sources = createSourceGrids(videoStats);
     this.params = params;
+    this.plan = TaskPlanner.plan(params, videoStats);
     this.videoService = videoService;
 
     initializeComponents();
@@ -65,26 +122,23 @@ public class CrossTestWindow extends JDialog {
     var columnNames = generateColumnNames();
     var rowNames = generateRowNames();
 
-    tableModel = new DefaultTableModel(rowNames.length, columnNames.length) {
-      @Override
-      public String getColumnName(int column) {
-        return columnNames[column];
-      }
-
-      @Override
-      public boolean isCellEditable(int row, int column) {
-        return false;
-      }
-    };
+    for (var source : sources) {
+      source.tableModel = new ResultGridModel(columnNames, rowNames.length);
+      // Fires once per coalesced flush, so progress follows the grids' frame rate
+      source.tableModel.addTableModelListener(e -> updateProgress());
 
-    resultTable = new JTable(tableModel);
-    resultTable.setDefaultRenderer(Object.class, new ConversionResultRenderer());
-    resultTable.setRowHeight(60);
+      source.resultTable = new JTable(source.tableModel);
+      new ConversionResultRenderer().installOn(source.resultTable);
+      source.resultTable.setRowHeight(PREVIEW_ROW_HEIGHT);
+    }
 
     overallProgressBar = new JProgressBar(0, 100);
     overallProgressBar.setStringPainted(true);
 
     statusLabel = new JLabel("準備中...");
+    schedulerLabel = new JLabel(" ");
+    resourcePanel = new ResourcePanel();
+    schedulerTimer = new Timer(1000, e -> updateSchedulerStatus());
 
     stopButton = new JButton("停止");
     stopButton.setPreferredSize(new Dimension(80, 30));
@@ -94,10 +148,39 @@ public class CrossTestWindow extends JDialog {
   private void setupLayout() {
     setLayout(new BorderLayout());
 
-    var rowNames = generateRowNames();
-    var rowHeaderList = new JList<>(rowNames);
+    Component resultPane;
+    if (sources.size() == 1) {
+      resultPane = createGridPane(sources.getFirst());
+    } else {
+      sourceTabs = new JTabbedPane(JTabbedPane.TOP, JTabbedPane.SCROLL_TAB_LAYOUT);
+      for (var source : sources) {
+        sourceTabs.addTab(source.outputStem, null, createGridPane(source), source.videoStat.path());
+      }
+      resultPane = sourceTabs;
+    }
+
+    var progressPanel = new JPanel(new BorderLayout());
+    progressPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+    progressPanel.add(statusLabel, BorderLayout.NORTH);
+    progressPanel.add(overallProgressBar, BorderLayout.CENTER);
+    progressPanel.add(schedulerLabel, BorderLayout.SOUTH);
+
+    var buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+    buttonPanel.add(stopButton);
+    progressPanel.add(buttonPanel, BorderLayout.EAST);
+
+    var southPanel = new JPanel(new BorderLayout());
+    southPanel.add(resourcePanel, BorderLayout.CENTER);
+    southPanel.add(progressPanel, BorderLayout.SOUTH);
+
+    add(resultPane, BorderLayout.CENTER);
+    add(southPanel, BorderLayout.SOUTH);
+  }
+
+  private JScrollPane createGridPane(SourceGrid source) {
+    var rowHeaderList = new JList<>(generateRowNames());
     rowHeaderList.setFixedCellWidth(100);
-    rowHeaderList.setFixedCellHeight(resultTable.getRowHeight());
+    rowHeaderList.setFixedCellHeight(source.resultTable.getRowHeight());
     rowHeaderList.setCellRenderer(new DefaultListCellRenderer() {
       @Override
       public Component getListCellRendererComponent(JList<?> list, Object value, int index,
@@ -108,244 +191,497 @@ public class CrossTestWindow extends JDialog {
       }
     });
 
-    var scrollPane = new JScrollPane(resultTable);
+    var scrollPane = new JScrollPane(source.resultTable);
     scrollPane.setRowHeaderView(rowHeaderList);
-    scrollPane.setBorder(new TitledBorder("変換結果"));
-
-    var progressPanel = new JPanel(new BorderLayout());
-    progressPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-    progressPanel.add(statusLabel, BorderLayout.NORTH);
-    progressPanel.add(overallProgressBar, BorderLayout.CENTER);
-
-    var buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-    buttonPanel.add(stopButton);
-    progressPanel.add(buttonPanel, BorderLayout.EAST);
+    scrollPane.setBorder(new TitledBorder("変換結果: " + source.videoStat.path()));
+    return scrollPane;
+  }
 
-    add(scrollPane, BorderLayout.CENTER);
-    add(progressPanel, BorderLayout.SOUTH);
+  /**
+   * Output files are named after the source; sources sharing a base name get a
+   * numeric suffix so their outputs do not overwrite each other.
+   */
+  private static List<SourceGrid> createSourceGrids(List<VideoStat> videoStats) {
+    var grids = new ArrayList<SourceGrid>();
+    Set<String> usedStems = new HashSet<>();
+    for (var videoStat : videoStats) {
+      var baseName = FileModule.getFileName(videoStat.path()).name();
+      var stem = baseName;
+      for (int n = 2; !usedStems.add(stem); n++) {
+        stem = baseName + "_" + n;
+      }
+      grids.add(new SourceGrid(videoStat, stem));
+    }
+    return grids;
   }
 
   private void setupEventHandlers() {
     addWindowListener(new java.awt.event.WindowAdapter() {
       @Override
       public void windowClosing(java.awt.event.WindowEvent windowEvent) {
-        if (executorService != null && !executorService.isShutdown()) {
-          executorService.shutdownNow();
+        isStopped = true;
+        schedulerTimer.stop();
+        if (submitter != null) {
+          submitter.close();
         }
+        previewRequests.forEach(request -> request.cancel(false));
+        releaseStagedSources();
       }
     });
   }
 
   private String[] generateColumnNames() {
-    var resolutions = ConversionUtils.generateResolutions(params.minRes(), params.maxRes(), params.resSteps());
-    return resolutions.stream()
+    return plan.resolutions().stream()
         .map(VideoRes::getDisplayName)
         .toArray(String[]::new);
   }
 
   private String[] generateRowNames() {
-    var crfValues = ConversionUtils.generateCrfValues(params.minCrf(), params.maxCrf(), params.crfSteps());
-    return crfValues.stream()
+    return plan.crfValues().stream()
         .map(crf -> "CRF " + crf)
         .toArray(String[]::new);
   }
 
+  /**
+   * Take the planned tasks and fill in the cells the encoder would reject, so
+   * they never wait for a slot
+   */
   private void generateTasks() {
-    tasks = new ArrayList<>();
-    var resolutions = ConversionUtils.generateResolutions(params.minRes(), params.maxRes(), params.resSteps());
-    var crfValues = ConversionUtils.generateCrfValues(params.minCrf(), params.maxCrf(), params.crfSteps());
-
-    for (int resIndex = 0; resIndex < resolutions.size(); resIndex++) {
-      for (int crfIndex = 0; crfIndex < crfValues.size(); crfIndex++) {
-        var res = resolutions.get(resIndex);
-        var crf = crfValues.get(crfIndex);
-
-        var config = new VideoConfig(res, 30, crf, params.hasAudio());
-        var task = new ConversionTask(config, resIndex, crfIndex);
-        tasks.add(task);
-      }
+    var planEvent = new PlanEvent();
+    planEvent.begin();
+
+    tasks = plan.tasks();
+    for (var skipped : plan.skipped()) {
+      var task = skipped.task();
+      sources.get(task.sourceIndex()).tableModel.markFailed(task.crfIndex(), task.resIndex(), "対象外",
+          skipped.reason(), 0);
+    }
+    if (!plan.skipped().isEmpty() || plan.duplicates() > 0) {
+      System.out.printf("計画: %d件を実行, %d件を対象外, 重複 %d件を除外%n",
+          tasks.size(), plan.skipped().size(), plan.duplicates());
     }
 
-    overallProgressBar.setMaximum(tasks.size());
+    overallProgressBar.setMaximum(plan.cellCount());
+
+    planEvent.end();
+    if (planEvent.shouldCommit()) {
+      planEvent.sources = sources.size();
+      planEvent.resolutions = plan.resolutions().stream().map(VideoRes::getDisplayName).toList().toString();
+      planEvent.crfValues = plan.crfValues().toString();
+      planEvent.tasks = tasks.size();
+      planEvent.commit();
+    }
   }
 
   private void startConversion() {
-    executorService = Executors.newFixedThreadPool(params.maxThreads());
     statusLabel.setText("変換開始...");
 
-    // Initialize table cells
-    for (int row = 0; row < tableModel.getRowCount(); row++) {
-      for (int col = 0; col < tableModel.getColumnCount(); col++) {
-        tableModel.setValueAt("待機中...", row, col);
-      }
-    }
-
     if (tasks.isEmpty()) {
       statusLabel.setText("変換するタスクがありません");
       return;
     }
 
-    System.out.println("変換タスク数: " + tasks.size());
-    System.out.println("最大スレッド数: " + params.maxThreads());
-
+    System.out.println("変換タスク数: %d (%dファイル)".formatted(tasks.size(), sources.size()));
+    System.out.println("最大スレッド数: " + (params.maxThreads() > 0 ? params.maxThreads() : "自動"));
+
+    var scheduler = EncodeScheduler.shared();
+    int threadsPerJob = scheduler.threadsPerJob();
+    var windowName = sources.size() == 1
+        ? sources.getFirst().outputStem
+        : "%s 他%dファイル".formatted(sources.getFirst().outputStem, sources.size() - 1);
+    // 0 leaves the limit to the scheduler's adaptive concurrency
+    int maxRunning = params.maxThreads() > 0 ? params.maxThreads() : Integer.MAX_VALUE;
+    submitter = scheduler.submitter(windowName, 1, maxRunning);
+    System.out.println("スケジューラ: " + scheduler.snapshot() + ", ジョブあたり " + threadsPerJob + "スレッド");
+
+    var profile = HostProfile.current();
+    var codec = Codec.ofLabel(params.encoding());
+    var retries = RetryPolicy.fromSystemProperties();
+    var analyses = sources.stream().map(source -> stage(source).thenCompose(ignored -> analyse(source))).toList();
     var futures = tasks.stream()
-        .map(task -> CompletableFuture.runAsync(() -> processTask(task), executorService))
+        .map(task -> {
+          // Calibrated threads for this resolution, when the host has a profile
+          int threads = profile.map(p -> p.threads(codec, task.config().res(), threadsPerJob)).orElse(threadsPerJob);
+          return analyses.get(task.sourceIndex())
+              .thenCompose(ignored -> retries.run(RetryPolicy.Attempt.first(threads),
+                  attempt -> submitAttempt(task, attempt, retries)))
+              .exceptionally(throwable -> {
+                var cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                if (cause instanceof CancellationException) {
+                  markStopped(task);
+                } else {
+                  SwingUtilities.invokeLater(() -> statusLabel.setText("変換中にエラーが発生しました: " + cause.getMessage()));
+                }
+                return null;
+              });
+        })
         .toList();
 
-    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-        .thenRun(() -> SwingUtilities.invokeLater(this::onAllTasksCompleted))
-        .exceptionally(throwable -> {
-          SwingUtilities.invokeLater(() -> {
-            statusLabel.setText("変換中にエラーが発生しました: " + throwable.getMessage());
-            executorService.shutdown();
-          });
-          return null;
+    schedulerTimer.start();
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+        .thenRun(() -> SwingUtilities.invokeLater(this::onAllTasksCompleted));
+  }
+
+  /**
+   * Copy a source to the staging cache before its cells are queued, so they
+   * read a local copy. A source that cannot be staged is read in place.
+   */
+  private CompletableFuture<Void> stage(SourceGrid source) {
+    if (!params.options().stageSources()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return SourceStager.shared().stageAsync(source.videoStat).thenAccept(result -> {
+      switch (result) {
+        case Result.Ok<SourceStager.Staged, String> ok -> {
+          synchronized (source) {
+            if (sourcesReleased) {
+              // The window closed while copying
+              ok.value().close();
+              return;
+            }
+            source.staged = ok.value();
+          }
+          source.input = ok.value().apply(source.videoStat);
+        }
+        case Result.Err<SourceStager.Staged, String> err ->
+          System.err.println("ステージング失敗、元の入力から変換: " + source.outputStem + ": " + err.error());
+      }
+    });
+  }
+
+  /**
+   * Unpin the staged copies; they stay cached for the next grid until
+   * evicted
+   */
+  private void releaseStagedSources() {
+    sourcesReleased = true;
+    for (var source : sources) {
+      synchronized (source) {
+        if (source.staged != null) {
+          source.staged.close();
+          source.staged = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * Detect the black bars of a source before its cells are queued, as one
+   * single-threaded job. A failed detection leaves the frame uncropped.
+   */
+  private CompletableFuture<Void> analyse(SourceGrid source) {
+    // Simulated encodes have no frames to look at
+    if (!params.options().autoCrop() || !(videoService.getEncoder() instanceof VideoModule videoModule)) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return submitter.submit("黒帯検出 " + source.outputStem, 1, () -> videoModule.crops().detect(source.input))
+        .thenAccept(result -> {
+          switch (result) {
+            case Result.Ok<Optional<Crop>, String> ok -> {
+              source.crop = ok.value().orElse(null);
+              System.out.printf("黒帯検出: %s %s%n", source.outputStem,
+                  source.crop != null ? "crop=" + source.crop : "なし");
+            }
+            case Result.Err<Optional<Crop>, String> err ->
+              System.err.println("黒帯検出失敗、クロップなしで変換: " + source.outputStem + ": " + err.error());
+          }
         });
   }
 
+  /**
+   * Queue one attempt of a task; a retry that comes due after the window was
+   * stopped is not queued
+   */
+  private CompletableFuture<Result<Encoded, String>> submitAttempt(ConversionTask task, RetryPolicy.Attempt attempt,
+      RetryPolicy retries) {
+    if (isStopped) {
+      markStopped(task);
+      return CompletableFuture.completedFuture(null);
+    }
+    return submitter.submit(describeTask(task), resourcesOf(task, attempt),
+        () -> processTask(task, attempt, retries));
+  }
+
+  /**
+   * Cores, output size (reserved against the free space of the disk it is
+   * written to: the output's, a measurement's scratch file's, or none when
+   * measured on a pipe), peak memory (against the scheduler's RAM budget) and
+   * work (for its throughput measurement) of a task
+   */
+  private Resources resourcesOf(ConversionTask task, RetryPolicy.Attempt attempt) {
+    var videoStat = sources.get(task.sourceIndex()).videoStat;
+    var output = params.options().measureOnly()
+        ? OutputMeter.scratchFileOf(outputPathOf(task))
+        : Path.of(outputPathOf(task));
+    if (isRemux(task)) {
+      // A stream copy is one mostly idle thread writing about the source's size
+      return Resources.writing(1, output, videoStat.fileSize());
+    }
+    int threads = attempt.threads();
+    return Resources.writing(threads, output, OutputSizeEstimator.shared().estimate(videoStat, task.config()))
+        .withMemory(MemoryEstimator.shared().estimate(videoStat, task.config(), threads,
+            MemoryEstimator.lookahead(attempt.lowMemory())))
+        .withWork(task.config().outputPixelFrames(videoStat));
+  }
+
+  /**
+   * Stop a task early when its projected size passes the size cap, or when a
+   * finished cell of the same source that is at least as good (resolution and
+   * frame rate not lower, CRF not higher) is clearly smaller. Dominance can
+   * be turned off with {@code -Dvvcnv.abort.dominated=false}.
+   */
+  private SizeGuard guardOf(ConversionTask task) {
+    var guard = SizeGuard.cap((long) params.maxOutputMB() << 20);
+    if ("false".equalsIgnoreCase(System.getProperty("vvcnv.abort.dominated"))) {
+      return guard;
+    }
+    var config = task.config();
+    var tableModel = sources.get(task.sourceIndex()).tableModel;
+    return guard.or(projectedBytes -> {
+      for (var other : tasks) {
+        var better = other.config();
+        if (other == task || other.sourceIndex() != task.sourceIndex()
+            || better.res().getWidth() < config.res().getWidth()
+            || better.res().getHeight() < config.res().getHeight()
+            || better.fps() < config.fps() || better.crf() > config.crf()) {
+          continue;
+        }
+        long bytes = tableModel.outputBytes(other.crfIndex(), other.resIndex());
+        if (bytes > 0 && projectedBytes > bytes * DOMINANCE_MARGIN) {
+          return "dominated by %s CRF%d at %s".formatted(
+              better.res().getDisplayName(), better.crf(), SizeGuard.megabytes(bytes));
+        }
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Whether the task copies the source's streams instead of encoding
+   */
+  private boolean isRemux(ConversionTask task) {
+    var source = sources.get(task.sourceIndex());
+    return params.options().allowsRemux() && source.crop == null
+        && task.config().canCopy(source.videoStat);
+  }
+
+  private String outputPathOf(ConversionTask task) {
+    var source = sources.get(task.sourceIndex());
+    var fileNameParts = FileModule.getFileName(source.videoStat.path());
+    return "%s/%s%s.%s".formatted(
+        params.outputDir(),
+        source.outputStem,
+        task.config().toFileName(),
+        fileNameParts.extension());
+  }
+
+  private String describeTask(ConversionTask task) {
+    return "%s %s CRF%d".formatted(
+        sources.get(task.sourceIndex()).outputStem, task.config().res().getDisplayName(), task.config().crf());
+  }
+
+  private void updateSchedulerStatus() {
+    var snapshot = EncodeScheduler.shared().snapshot();
+    var own = submitter.stats();
+    schedulerLabel.setText("スケジューラ: %s / このウィンドウ: 実行中 %d, 待機 %d, 平均待ち %.1f秒".formatted(
+        snapshot, own.running(), own.queued(), own.averageWait().toMillis() / 1000.0));
+    resourcePanel.refresh();
+  }
+
   private void onAllTasksCompleted() {
     statusLabel.setText("全ての変換が完了しました!");
-    overallProgressBar.setValue(tasks.size());
+    overallProgressBar.setValue(plan.cellCount());
     stopButton.setEnabled(false);
 
-    long successCount = tasks.stream()
-        .mapToLong(task -> {
-          try {
-            var cellValue = tableModel.getValueAt(task.crfIndex(), task.resIndex());
-            return cellValue instanceof ConversionResult result && result.success() ? 1 : 0;
-          } catch (Exception e) {
-            return 0;
-          }
-        })
-        .sum();
+    long successCount = 0;
+    for (int i = 0; i < sources.size(); i++) {
+      var tableModel = sources.get(i).tableModel;
+      tableModel.flush();
+      int succeeded = tableModel.successCount();
+      successCount += succeeded;
+      System.out.printf("変換完了: %s %d成功 / %d%n", sources.get(i).videoStat.path(), succeeded,
+          tableModel.cellCount());
+      if (sourceTabs != null) {
+        sourceTabs.setTitleAt(i, "%s (%d/%d)".formatted(sources.get(i).outputStem, succeeded, tableModel.cellCount()));
+      }
+    }
 
-    var summary = "変換完了: %d成功 / %d全体".formatted(successCount, tasks.size());
+    var summary = "変換完了: %d成功 / %d全体".formatted(successCount, plan.cellCount());
+    if (sources.size() > 1) {
+      summary += " (%dファイル)".formatted(sources.size());
+    }
     statusLabel.setText(summary);
 
-    executorService.shutdown();
+    schedulerTimer.stop();
+    updateSchedulerStatus();
+    submitter.close();
+    releaseStagedSources();
   }
 
-  private void processTask(ConversionTask task) {
+  private void markStopped(ConversionTask task) {
+    sources.get(task.sourceIndex()).tableModel.markStopped(task.crfIndex(), task.resIndex());
+  }
+
+  /**
+   * Run one attempt of a task and record its result in the grid unless it
+   * will be retried
+   *
+   * @return the encode's result, or null if the task was stopped or failed
+   *         outside the encoder (already recorded)
+   */
+  private Result<Encoded, String> processTask(ConversionTask task, RetryPolicy.Attempt attempt, RetryPolicy retries) {
+    var source = sources.get(task.sourceIndex());
+    var tableModel = source.tableModel;
     // 停止フラグをチェック
     if (isStopped) {
-      SwingUtilities.invokeLater(() -> {
-        var conversionResult = new ConversionResult(
-            false, "停止", null, "ユーザーによって停止されました", 0.0);
-        tableModel.setValueAt(conversionResult, task.crfIndex(), task.resIndex());
-        updateProgress();
-      });
-      return;
+      markStopped(task);
+      return null;
     }
 
-    System.out.printf("タスク開始: 解像度=%s, CRF=%d, 位置=(%d,%d)%n",
-        task.config().res().getDisplayName(), task.config().crf(), task.resIndex(), task.crfIndex());
+    System.out.printf("タスク開始: %s 解像度=%s, CRF=%d, 位置=(%d,%d)%n",
+        source.outputStem, task.config().res().getDisplayName(), task.config().crf(), task.resIndex(), task.crfIndex());
 
+    long started = System.nanoTime();
     try {
-      SwingUtilities.invokeLater(() -> {
-        tableModel.setValueAt("変換中...", task.crfIndex(), task.resIndex());
-        statusLabel.setText("変換中: %s CRF%d".formatted(
-            task.config().res().getDisplayName(), task.config().crf()));
-      });
-
-      var fileNameParts = FileModule.getFileName(videoStat.path());
-      var outputPath = "%s/%s%s.%s".formatted(
-          params.outputDir(),
-          fileNameParts.name(),
-          task.config().toFileName(),
-          fileNameParts.extension());
+      tableModel.markRunning(task.crfIndex(), task.resIndex());
+      runningStatus = "変換中: %s %s CRF%d".formatted(
+          source.outputStem, task.config().res().getDisplayName(), task.config().crf());
+
+      var outputPath = outputPathOf(task);
 
       System.out.println("出力パス: " + outputPath);
 
       // 変換実行前に再度停止チェック
       if (isStopped) {
-        SwingUtilities.invokeLater(() -> {
-          var conversionResult = new ConversionResult(
-              false, "停止", null, "ユーザーによって停止されました", 0.0);
-          tableModel.setValueAt(conversionResult, task.crfIndex(), task.resIndex());
-          updateProgress();
-        });
-        return;
+        markStopped(task);
+        return null;
       }
 
-      var processParams = new VideoModule.VideoProcessParams(outputPath, task.config());
-      var result = videoService.getVideoModule().processSimple(videoStat, processParams);
+      var options = EncodeOptions.DEFAULT
+          .withGuard(guardOf(task))
+          .withLowMemory(attempt.lowMemory())
+          .withRemux(isRemux(task))
+          .withCrop(source.crop)
+          .withDecimate(params.options().decimate())
+          .withMeasureOnly(params.options().measureOnly());
+      var processParams = new VideoModule.VideoProcessParams(outputPath, task.config(), attempt.threads(), options);
+      var result = videoService.getEncoder().encode(source.input, processParams);
 
       System.out.printf("変換結果: %s (解像度=%s, CRF=%d)%n",
           result.isOk() ? "成功" : "失敗",
           task.config().res().getDisplayName(), task.config().crf());
 
-      SwingUtilities.invokeLater(() -> updateTaskResult(task, result, outputPath));
+      if (!retries.willRetry(attempt, result)) {
+        updateTaskResult(task, result, outputPath, System.nanoTime() - started);
+      }
+      return result;
 
     } catch (Exception e) {
       System.err.println("タスク処理中にエラーが発生: " + e.getMessage());
       e.printStackTrace();
 
-      SwingUtilities.invokeLater(() -> {
-        var conversionResult = new ConversionResult(
-            false, "エラー", null, "処理エラー: " + e.getMessage(), 0.0);
-        tableModel.setValueAt(conversionResult, task.crfIndex(), task.resIndex());
-        updateProgress();
-      });
+      tableModel.markFailed(task.crfIndex(), task.resIndex(), "エラー", "処理エラー: " + e.getMessage(),
+          System.nanoTime() - started);
+      return null;
     }
   }
 
-  private void updateTaskResult(ConversionTask task, Result<Void, String> result, String outputPath) {
+  /**
+   * Record a finished task in its grid. Runs on the worker thread; the grid
+   * shows it with its next flush.
+   */
+  private void updateTaskResult(ConversionTask task, Result<Encoded, String> result, String outputPath,
+      long elapsedNanos) {
+    var source = sources.get(task.sourceIndex());
+    var tableModel = source.tableModel;
     switch (result) {
-      case Result.Ok<Void, String> ok -> {
+      case Result.Ok<Encoded, String> ok -> {
         try {
+          var encoded = ok.value();
+          // Against the frames a constant-rate encode would have written
+          double frameReduction = params.options().decimate()
+              ? encoded.frameReduction(task.config().outputFrames(source.videoStat))
+              : Double.NaN;
+          if (encoded.measured()) {
+            // Counted off the pipe; there is no file to stat or preview
+            tableModel.markMeasured(task.crfIndex(), task.resIndex(), encoded.bytes(), elapsedNanos,
+                isRemux(task), frameReduction, encoded.digest());
+            System.out.printf("計測サイズ: %.2f MB%n", encoded.bytes() / (1024.0 * 1024.0));
+            return;
+          }
           long fileSize = Files.size(Paths.get(outputPath));
-          double fileSizeMB = fileSize / (1024.0 * 1024.0);
-          var conversionResult = new ConversionResult(
-              true, UIUtils.formatFileSize(fileSize), outputPath, null, fileSizeMB);
-          tableModel.setValueAt(conversionResult, task.crfIndex(), task.resIndex());
-          System.out.printf("ファイルサイズ: %.2f MB (%s)%n", fileSizeMB, UIUtils.formatFileSize(fileSize));
+          tableModel.markSucceeded(task.crfIndex(), task.resIndex(), outputPath, fileSize, elapsedNanos,
+              isRemux(task), frameReduction);
+          System.out.printf("ファイルサイズ: %.2f MB%n", fileSize / (1024.0 * 1024.0));
+          requestPreview(task, outputPath);
         } catch (IOException e) {
           System.err.println("ファイルサイズ取得エラー: " + e.getMessage());
-          var conversionResult = new ConversionResult(
-              false, "エラー", null, "ファイルサイズ取得失敗: " + e.getMessage(), 0.0);
-          tableModel.setValueAt(conversionResult, task.crfIndex(), task.resIndex());
+          tableModel.markFailed(task.crfIndex(), task.resIndex(), "エラー", "ファイルサイズ取得失敗: " + e.getMessage(),
+              elapsedNanos);
         }
       }
-      case Result.Err<Void, String> err -> {
+      case Result.Err<Encoded, String> err -> {
         System.err.println("変換エラー: " + err.error());
-        var conversionResult = new ConversionResult(
-            false, "失敗", null, err.error(), 0.0);
-        tableModel.setValueAt(conversionResult, task.crfIndex(), task.resIndex());
+        var label = SizeGuard.isAborted(err.error()) ? SizeGuard.summary(err.error()) : "失敗";
+        tableModel.markFailed(task.crfIndex(), task.resIndex(), label, err.error(), elapsedNanos);
       }
     }
+  }
 
-    updateProgress();
+  /**
+   * Queue thumbnail / proxy generation for a finished cell. It runs at low
+   * priority next to the encodes and shows up in the grid when ready.
+   */
+  private void requestPreview(ConversionTask task, String outputPath) {
+    // Simulated outputs have no frames to show
+    if (!PreviewModule.isEnabled() || isStopped || !(videoService.getEncoder() instanceof VideoModule)) {
+      return;
+    }
+    var source = sources.get(task.sourceIndex());
+    var request = videoService.getVideoModule().previews().request(outputPath, source.videoStat.duration());
+    // Keep the request itself: cancelling a dependent stage would not stop it
+    previewRequests.add(request);
+    request.thenAccept(result -> {
+      switch (result) {
+        case Result.Ok<PreviewModule.Preview, String> ok -> {
+          var thumbnails = ok.value().thumbnails();
+          var icon = UIUtils.loadThumbnail(thumbnails.get(thumbnails.size() / 2), THUMBNAIL_HEIGHT);
+          source.tableModel.setPreview(task.crfIndex(), task.resIndex(),
+              new ResultGridModel.CellPreview(icon, ok.value().proxy()));
+        }
+        case Result.Err<PreviewModule.Preview, String> err ->
+          System.err.println("プレビュー生成失敗: " + outputPath + ": " + err.error());
+      }
+    });
   }
 
+  /**
+   * Progress bar and running status, refreshed whenever a grid flushes
+   */
   private void updateProgress() {
-    completedTasks++;
+    int completedTasks = 0;
+    for (var source : sources) {
+      completedTasks += source.tableModel.completedCount();
+    }
     overallProgressBar.setValue(completedTasks);
-    overallProgressBar.setString("%d/%d 完了".formatted(completedTasks, tasks.size()));
+    overallProgressBar.setString("%d/%d 完了".formatted(completedTasks, plan.cellCount()));
+
+    var status = runningStatus;
+    if (status != null && !isStopped && completedTasks < plan.cellCount()) {
+      runningStatus = null;
+      statusLabel.setText(status);
+    }
   }
 
   private void stopConversion() {
-    if (executorService != null && !executorService.isShutdown()) {
+    if (submitter != null && !isStopped) {
       isStopped = true;
       statusLabel.setText("変換を停止しています...");
       stopButton.setEnabled(false);
 
-      // 新しいタスクの受け入れを停止
-      executorService.shutdown();
-
-      // 実行中のタスクを強制終了
-      SwingUtilities.invokeLater(() -> {
-        try {
-          // 5秒待機してからタスクを強制終了
-          if (!executorService.awaitTermination(5, java.util.concurrent.TimeUnit.SECONDS)) {
-            executorService.shutdownNow();
-            statusLabel.setText("変換が停止されました");
-          }
-        } catch (InterruptedException e) {
-          executorService.shutdownNow();
-          statusLabel.setText("変換が停止されました");
-          Thread.currentThread().interrupt();
-        }
-      });
+      // 待機中のタスクを取り消し、実行中のタスクは完了を待つ
+      int cancelled = submitter.cancelPending();
+      System.out.println("待機中のタスクを取り消しました: " + cancelled + "件");
     }
   }
 }
@@ -193,7 +193,9 @@ public class PresetDialog extends JDialog {
           currentPreset.minCrf(),
           currentPreset.maxCrf(),
           currentPreset.crfSteps(),
-          currentPreset.maxThreads());
+          currentPreset.maxThreads(),
+          currentPreset.maxOutputMB(),
+          currentPreset.options());
 
       presetService.savePreset(preset);
       loadPresetList();
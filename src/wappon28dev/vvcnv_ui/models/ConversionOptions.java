@@ -0,0 +1,81 @@
+package wappon28dev.vvcnv_ui.models;
+
+import org.json.JSONObject;
+
+/**
+ * On/off options of a conversion, saved with presets. Start from
+ * {@link #NONE} and set what differs with the {@code with…} methods; a new
+ * option is added here and to the main window's checkboxes only.
+ *
+ * @param remux        copy the streams of cells that need no re-encode
+ *                     instead of encoding them
+ * @param autoCrop     crop black bars, detected once per source, before
+ *                     scaling
+ * @param decimate     drop near-duplicate frames and encode at a variable
+ *                     frame rate
+ * @param stageSources copy each source to local staging storage once and
+ *                     encode from the copy
+ * @param measureOnly  stream each output to a counting sink instead of
+ *                     writing files
+ */
+public record ConversionOptions(
+    boolean remux,
+    boolean autoCrop,
+    boolean decimate,
+    boolean stageSources,
+    boolean measureOnly) {
+
+  public static final ConversionOptions NONE = new ConversionOptions(false, false, false, false, false);
+
+  public ConversionOptions withRemux(boolean remux) {
+    return new ConversionOptions(remux, autoCrop, decimate, stageSources, measureOnly);
+  }
+
+  public ConversionOptions withAutoCrop(boolean autoCrop) {
+    return new ConversionOptions(remux, autoCrop, decimate, stageSources, measureOnly);
+  }
+
+  public ConversionOptions withDecimate(boolean decimate) {
+    return new ConversionOptions(remux, autoCrop, decimate, stageSources, measureOnly);
+  }
+
+  public ConversionOptions withStageSources(boolean stageSources) {
+    return new ConversionOptions(remux, autoCrop, decimate, stageSources, measureOnly);
+  }
+
+  public ConversionOptions withMeasureOnly(boolean measureOnly) {
+    return new ConversionOptions(remux, autoCrop, decimate, stageSources, measureOnly);
+  }
+
+  /**
+   * Whether cells may be stream copies: remux is on and no decimation asks
+   * for an encode
+   */
+  public boolean allowsRemux() {
+    return remux && !decimate;
+  }
+
+  /**
+   * Store the options as top-level keys of a preset's JSON
+   */
+  public void putInto(JSONObject json) {
+    json.put("remux", remux);
+    json.put("autoCrop", autoCrop);
+    json.put("decimate", decimate);
+    json.put("stageSources", stageSources);
+    json.put("measureOnly", measureOnly);
+  }
+
+  /**
+   * Options of a preset's JSON; presets saved before an option existed have
+   * it off
+   */
+  public static ConversionOptions fromJson(JSONObject json) {
+    return new ConversionOptions(
+        json.optBoolean("remux", false),
+        json.optBoolean("autoCrop", false),
+        json.optBoolean("decimate", false),
+        json.optBoolean("stageSources", false),
+        json.optBoolean("measureOnly", false));
+  }
+}
@@ -4,6 +4,11 @@ import wappon28dev.vvcnv_java.modules.VideoRes;
 
 /**
  * Parameters for video conversion
+ *
+ * @param maxThreads  concurrent encodes of the window, 0 for automatic
+ * @param maxOutputMB encodes projected beyond this size are stopped early, 0
+ *                    for no cap
+ * @param options     on/off options, saved with presets
  */
 public record ConversionParams(
     String inputPath,
@@ -16,5 +21,7 @@ public record ConversionParams(
     int minCrf,
     int maxCrf,
     int crfSteps,
-    int maxThreads) {
+    int maxThreads,
+    int maxOutputMB,
+    ConversionOptions options) {
 }
@@ -2,11 +2,39 @@ package wappon28dev.vvcnv_ui.models;
 
 /**
  * Conversion result data
+ *
+ * @param remux          whether the output is a stream copy of the source
+ *                       rather than an encode
+ * @param frameReduction share of the frames decimation dropped, or NaN if
+ *                       the output was not decimated
+ * @param digest         hex SHA-256 of a measured output, or null
+ * @param label          cell text, built once when the cell finishes
+ * @param tooltip        cell tooltip, built once when the cell finishes, or
+ *                       null
  */
 public record ConversionResult(
     boolean success,
     String fileSize,
     String outputPath,
     String error,
-    double fileSizeMB) {
+    double fileSizeMB,
+    boolean remux,
+    double frameReduction,
+    String digest,
+    String label,
+    String tooltip) {
+
+  /**
+   * Whether near-duplicate frames were dropped and the reduction is known
+   */
+  public boolean decimated() {
+    return !Double.isNaN(frameReduction);
+  }
+
+  /**
+   * Whether the output was only measured and no file was written
+   */
+  public boolean measured() {
+    return success && outputPath == null;
+  }
 }
@@ -8,5 +8,6 @@ import wappon28dev.vvcnv_java.modules.VideoConfig;
 public record ConversionTask(
     VideoConfig config,
     int resIndex,
-    int crfIndex) {
+    int crfIndex,
+    int sourceIndex) {
 }
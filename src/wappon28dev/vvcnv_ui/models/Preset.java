@@ -16,7 +16,9 @@ public record Preset(
     int minCrf,
     int maxCrf,
     int crfSteps,
-    int maxThreads) {
+    int maxThreads,
+    int maxOutputMB,
+    ConversionOptions options) {
 
   public static Preset fromConversionParams(String name, ConversionParams params) {
     return new Preset(
@@ -29,7 +31,9 @@ public record Preset(
         params.minCrf(),
         params.maxCrf(),
         params.crfSteps(),
-        params.maxThreads());
+        params.maxThreads(),
+        params.maxOutputMB(),
+        params.options());
   }
 
   public JSONObject toJson() {
@@ -44,6 +48,8 @@ public record Preset(
     json.put("maxCrf", maxCrf);
     json.put("crfSteps", crfSteps);
     json.put("maxThreads", maxThreads);
+    json.put("maxOutputMB", maxOutputMB);
+    options.putInto(json);
     return json;
   }
 
@@ -58,7 +64,10 @@ public record Preset(
         json.getInt("minCrf"),
         json.getInt("maxCrf"),
         json.getInt("crfSteps"),
-        json.getInt("maxThreads"));
+        json.getInt("maxThreads"),
+        // Presets saved before the size cap existed have none
+        json.optInt("maxOutputMB", 0),
+        ConversionOptions.fromJson(json));
   }
 
   public ConversionParams toConversionParams(String inputPath, String outputDir) {
@@ -73,6 +82,8 @@ public record Preset(
         minCrf,
         maxCrf,
         crfSteps,
-        maxThreads);
+        maxThreads,
+        maxOutputMB,
+        options);
   }
 }
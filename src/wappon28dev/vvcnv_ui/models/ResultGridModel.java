@@ -0,0 +1,335 @@
+package wappon28dev.vvcnv_ui.models;
+
+import wappon28dev.vvcnv_ui.utils.UIUtils;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table model of one conversion grid (rows = CRF, columns = resolution).
+ *
+ * <p>
+ * Cell state, output size and encode time live in flat arrays indexed by
+ * {@code row * columns + column}. Worker threads update cells without locks
+ * or {@link SwingUtilities#invokeLater}: a cell is claimed with a CAS on its
+ * state, its payload is written, then the terminal state is published, and
+ * the cell is marked dirty. Dirty cells are flushed to the table at most once
+ * per frame, as per-cell events while few cells changed and as one row-range
+ * event otherwise. Success and completion counts are kept as counters, so
+ * summaries never scan the grid. Preview thumbnails arrive later from the
+ * preview thread and are stored and flushed the same way.
+ * </p>
+ */
+public final class ResultGridModel extends AbstractTableModel {
+
+  /** Delay before a batch of worker updates is shown (about one frame) */
+  public static final int FRAME_MILLIS = 16;
+
+  /** Above this many dirty cells a flush fires one row-range event */
+  private static final int MAX_CELL_EVENTS = 32;
+
+  private static final int WAITING = 0;
+  private static final int RUNNING = 1;
+  /** Claimed by a finishing worker whose payload is not published yet */
+  private static final int WRITING = 2;
+  private static final int SUCCEEDED = 3;
+  private static final int FAILED = 4;
+
+  private static final String WAITING_TEXT = "待機中...";
+  private static final String RUNNING_TEXT = "変換中...";
+  private static final String REMUX_TOOLTIP = "再エンコードせず, 入力のストリームをコピーした出力 (CRF は効いていない)";
+  private static final String DECIMATE_TOOLTIP = "重複フレームを %d%% 間引いた出力 (可変フレームレート)";
+  private static final String MEASURED_TOOLTIP = "サイズのみ計測 (ファイルなし)";
+
+  private final String[] columnNames;
+  private final int rows;
+  private final int columns;
+
+  private final AtomicIntegerArray states;
+  private final long[] outputBytes;
+  private final long[] elapsedNanos;
+  /** Render value of finished cells, built once by the finishing worker */
+  private final ConversionResult[] results;
+
+  private final AtomicReferenceArray<CellPreview> previews;
+
+  private final AtomicLongArray dirty;
+  private final AtomicBoolean flushPending = new AtomicBoolean();
+  private final Timer flushTimer;
+
+  private final AtomicInteger succeeded = new AtomicInteger();
+  private final AtomicInteger completed = new AtomicInteger();
+
+  public ResultGridModel(String[] columnNames, int rows) {
+    this.columnNames = columnNames.clone();
+    this.rows = rows;
+    this.columns = columnNames.length;
+
+    int cells = rows * columns;
+    this.states = new AtomicIntegerArray(cells);
+    this.outputBytes = new long[cells];
+    this.elapsedNanos = new long[cells];
+    this.results = new ConversionResult[cells];
+    this.previews = new AtomicReferenceArray<>(cells);
+    this.dirty = new AtomicLongArray((cells + 63) >>> 6);
+
+    this.flushTimer = new Timer(FRAME_MILLIS, e -> flush());
+    this.flushTimer.setRepeats(false);
+  }
+
+  @Override
+  public int getRowCount() {
+    return rows;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return columns;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return columnNames[column];
+  }
+
+  @Override
+  public Object getValueAt(int row, int column) {
+    int cell = cell(row, column);
+    return switch (states.get(cell)) {
+      case WAITING -> WAITING_TEXT;
+      case RUNNING, WRITING -> RUNNING_TEXT;
+      default -> results[cell];
+    };
+  }
+
+  /**
+   * Show a waiting cell as running; returns false if it already left the
+   * waiting state
+   */
+  public boolean markRunning(int row, int column) {
+    int cell = cell(row, column);
+    if (!states.compareAndSet(cell, WAITING, RUNNING)) {
+      return false;
+    }
+    markDirty(cell);
+    return true;
+  }
+
+  /**
+   * Record a finished encode; ignored if the cell already finished
+   */
+  public boolean markSucceeded(int row, int column, String outputPath, long bytes, long elapsedNanos) {
+    return markSucceeded(row, column, outputPath, bytes, elapsedNanos, false);
+  }
+
+  /**
+   * Record a finished encode, or a stream copy if {@code remux}; ignored if
+   * the cell already finished
+   */
+  public boolean markSucceeded(int row, int column, String outputPath, long bytes, long elapsedNanos,
+      boolean remux) {
+    return markSucceeded(row, column, outputPath, bytes, elapsedNanos, remux, Double.NaN);
+  }
+
+  /**
+   * Record a finished encode that dropped {@code frameReduction} of its
+   * frames as duplicates (NaN if it was not decimated); ignored if the cell
+   * already finished
+   */
+  public boolean markSucceeded(int row, int column, String outputPath, long bytes, long elapsedNanos,
+      boolean remux, double frameReduction) {
+    return finish(cell(row, column), SUCCEEDED, succeeded(outputPath, bytes, remux, frameReduction, null), bytes,
+        elapsedNanos);
+  }
+
+  /**
+   * Record a finished encode whose output was only measured, with no file
+   * to open; {@code digest} may be null. Ignored if the cell already
+   * finished.
+   */
+  public boolean markMeasured(int row, int column, long bytes, long elapsedNanos, boolean remux,
+      double frameReduction, String digest) {
+    return finish(cell(row, column), SUCCEEDED, succeeded(null, bytes, remux, frameReduction, digest), bytes,
+        elapsedNanos);
+  }
+
+  /**
+   * Record a failed encode; {@code label} is the short cell text and
+   * {@code error} the tooltip. Ignored if the cell already finished.
+   */
+  public boolean markFailed(int row, int column, String label, String error, long elapsedNanos) {
+    var result = new ConversionResult(false, label, null, error, 0.0, false, Double.NaN, null, label,
+        errorTooltipOf(error));
+    return finish(cell(row, column), FAILED, result, 0, elapsedNanos);
+  }
+
+  public boolean markStopped(int row, int column) {
+    return markFailed(row, column, "停止", "ユーザーによって停止されました", 0);
+  }
+
+  /**
+   * A successful result with its cell text and tooltip, so painting the cell
+   * formats nothing
+   */
+  private static ConversionResult succeeded(String outputPath, long bytes, boolean remux, double frameReduction,
+      String digest) {
+    var size = UIUtils.formatFileSize(bytes);
+    boolean decimated = !Double.isNaN(frameReduction);
+    long percent = decimated ? Math.round(frameReduction * 100) : 0;
+
+    // Remux cells are copies of the source, not results of their CRF
+    var label = remux ? size + " (remux)" : decimated ? "%s (-%d%%)".formatted(size, percent) : size;
+    var tooltip = remux ? REMUX_TOOLTIP : decimated ? DECIMATE_TOOLTIP.formatted(percent) : null;
+    if (outputPath == null) {
+      var measured = digest != null ? MEASURED_TOOLTIP + " SHA-256: " + digest : MEASURED_TOOLTIP;
+      tooltip = tooltip != null ? tooltip + " / " + measured : measured;
+    }
+    return new ConversionResult(true, size, outputPath, null, bytes / (1024.0 * 1024.0), remux, frameReduction,
+        digest, label, tooltip);
+  }
+
+  /**
+   * Multi-line errors (a summary and ffmpeg's last lines) as HTML, since
+   * plain tooltips ignore line breaks
+   */
+  private static String errorTooltipOf(String error) {
+    if (error == null || error.indexOf('\n') < 0) {
+      return error;
+    }
+    var escaped = error.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    var lines = escaped.split("\n", 2);
+    return "<html><b>" + lines[0] + "</b><pre>" + lines[1] + "</pre></html>";
+  }
+
+  private boolean finish(int cell, int state, ConversionResult result, long bytes, long nanos) {
+    // Claim the cell first so two finishers can never interleave payload writes
+    int current;
+    do {
+      current = states.get(cell);
+      if (current >= WRITING) {
+        return false;
+      }
+    } while (!states.compareAndSet(cell, current, WRITING));
+
+    outputBytes[cell] = bytes;
+    elapsedNanos[cell] = nanos;
+    results[cell] = result;
+    // The volatile store publishes the plain writes above to readers of the state
+    states.set(cell, state);
+
+    if (state == SUCCEEDED) {
+      succeeded.incrementAndGet();
+    }
+    completed.incrementAndGet();
+    markDirty(cell);
+    return true;
+  }
+
+  /**
+   * Inline thumbnail of a cell and the proxy clip to play on click
+   */
+  public record CellPreview(Icon thumbnail, Path proxy) {
+  }
+
+  /**
+   * Attach a preview to a cell; callable from any thread
+   */
+  public void setPreview(int row, int column, CellPreview preview) {
+    int cell = cell(row, column);
+    previews.set(cell, preview);
+    markDirty(cell);
+  }
+
+  /**
+   * Preview of a cell, or null while none is ready
+   */
+  public CellPreview preview(int row, int column) {
+    return previews.get(cell(row, column));
+  }
+
+  public int successCount() {
+    return succeeded.get();
+  }
+
+  public int completedCount() {
+    return completed.get();
+  }
+
+  public int cellCount() {
+    return states.length();
+  }
+
+  /**
+   * Output size in bytes of a succeeded cell, 0 otherwise
+   */
+  public long outputBytes(int row, int column) {
+    int cell = cell(row, column);
+    return states.get(cell) == SUCCEEDED ? outputBytes[cell] : 0;
+  }
+
+  /**
+   * Encode time of a finished cell in nanoseconds, 0 otherwise
+   */
+  public long elapsedNanos(int row, int column) {
+    int cell = cell(row, column);
+    return states.get(cell) > WRITING ? elapsedNanos[cell] : 0;
+  }
+
+  private int cell(int row, int column) {
+    return row * columns + column;
+  }
+
+  private void markDirty(int cell) {
+    int word = cell >>> 6;
+    long bit = 1L << cell;
+    if ((dirty.getAndUpdate(word, bits -> bits | bit) & bit) == 0
+        && flushPending.compareAndSet(false, true)) {
+      flushTimer.start();
+    }
+  }
+
+  /**
+   * Tell the table about every cell that changed since the last flush. Runs
+   * on the EDT from the frame timer; may also be called directly there.
+   */
+  public void flush() {
+    // Clear the flag before draining: a cell dirtied after this point either
+    // lands in the words read below or schedules the next flush
+    flushPending.set(false);
+
+    int changed = 0;
+    int firstRow = Integer.MAX_VALUE;
+    int lastRow = -1;
+    var drained = new long[dirty.length()];
+    for (int word = 0; word < drained.length; word++) {
+      long bits = dirty.getAndSet(word, 0);
+      if (bits == 0) {
+        continue;
+      }
+      drained[word] = bits;
+      changed += Long.bitCount(bits);
+      firstRow = Math.min(firstRow, ((word << 6) + Long.numberOfTrailingZeros(bits)) / columns);
+      lastRow = Math.max(lastRow, ((word << 6) + 63 - Long.numberOfLeadingZeros(bits)) / columns);
+    }
+
+    if (changed == 0) {
+      return;
+    }
+    if (changed > MAX_CELL_EVENTS) {
+      fireTableRowsUpdated(firstRow, lastRow);
+      return;
+    }
+    for (int word = 0; word < drained.length; word++) {
+      for (long bits = drained[word]; bits != 0; bits &= bits - 1) {
+        int cell = (word << 6) + Long.numberOfTrailingZeros(bits);
+        fireTableCellUpdated(cell / columns, cell % columns);
+      }
+    }
+  }
+}
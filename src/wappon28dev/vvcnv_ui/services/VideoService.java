@@ -1,21 +1,49 @@
 package wappon28dev.vvcnv_ui.services;
 
+import wappon28dev.vvcnv_java.modules.Encoder;
 import wappon28dev.vvcnv_java.modules.VideoModule;
 import wappon28dev.vvcnv_java.modules.VideoStat;
 import wappon28dev.vvcnv_java.util.Result;
 
 import javax.swing.*;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * Service for video processing operations
  */
 public class VideoService {
 
+  /**
+   * Probes run at most this many at a time (they are I/O bound, but each
+   * ffprobe fallback is still a process)
+   */
+  public static final int PROBE_PARALLELISM = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
   private final VideoModule videoModule;
+  private final Encoder encoder;
+  private final ExecutorService probeExecutor;
 
   public VideoService() throws IOException {
     this.videoModule = new VideoModule();
+    this.encoder = Encoder.fromSystemProperty(videoModule);
+    this.probeExecutor = Executors.newFixedThreadPool(PROBE_PARALLELISM, runnable -> {
+      var thread = new Thread(runnable, "vvcnv-probe");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Result of loading one source of a batch
+   */
+  public record SourceLoad(String path, Result<VideoStat, String> result) {
   }
 
   /**
@@ -42,10 +70,69 @@ public class VideoService {
     };
   }
 
+  /**
+   * Load statistics for many sources with at most {@link #PROBE_PARALLELISM}
+   * probes in flight. {@code onLoaded} is called on the EDT for each source as
+   * soon as it finishes (completion order, not input order). Cancelling the
+   * worker cancels its outstanding probes, and nothing reaches
+   * {@code onLoaded} after the cancel, so a new batch never sees results of
+   * the one it replaced.
+   */
+  public SwingWorker<Void, SourceLoad> loadVideoStatsBatchAsync(List<String> inputPaths, Consumer<SourceLoad> onLoaded) {
+    return new SwingWorker<>() {
+      @Override
+      protected Void doInBackground() throws Exception {
+        System.out.println("動画統計情報を一括読み込み中: " + inputPaths.size() + "件 (並列数 " + PROBE_PARALLELISM + ")");
+        var completion = new ExecutorCompletionService<SourceLoad>(probeExecutor);
+        var probes = new ArrayList<Future<SourceLoad>>(inputPaths.size());
+        for (var path : inputPaths) {
+          probes.add(completion.submit(() -> {
+            try {
+              return new SourceLoad(path, videoModule.stat(path));
+            } catch (RuntimeException e) {
+              return new SourceLoad(path, Result.err("Probe failed: " + e.getMessage()));
+            }
+          }));
+        }
+
+        try {
+          for (int i = 0; i < inputPaths.size(); i++) {
+            if (isCancelled()) {
+              break;
+            }
+            publish(completion.take().get());
+          }
+        } finally {
+          // Free the probe threads for the next batch; a no-op for finished probes
+          probes.forEach(probe -> probe.cancel(true));
+        }
+        return null;
+      }
+
+      @Override
+      protected void process(List<SourceLoad> chunks) {
+        // Chunks published before a cancel are still delivered; cancel() and
+        // process() both run on the EDT, so this drops every one of them
+        if (isCancelled()) {
+          return;
+        }
+        chunks.forEach(onLoaded);
+      }
+    };
+  }
+
   /**
    * Get the video module instance
    */
   public VideoModule getVideoModule() {
     return videoModule;
   }
+
+  /**
+   * The encoder conversions run on: the video module itself, or a simulated
+   * one with {@code -Dvvcnv.encoder=simulated}
+   */
+  public Encoder getEncoder() {
+    return encoder;
+  }
 }
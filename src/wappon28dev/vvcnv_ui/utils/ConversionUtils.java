@@ -13,7 +13,8 @@ public final class ConversionUtils {
   }
 
   /**
-   * Generate resolution list based on parameters
+   * Generate resolution list based on parameters. Steps that round to the same
+   * resolution appear once.
    */
   public static List<VideoRes> generateResolutions(VideoRes minRes, VideoRes maxRes, int resSteps) {
     var allRes = VideoRes.list169();
@@ -27,14 +28,17 @@ public final class ConversionUtils {
     var result = new ArrayList<VideoRes>();
     for (int i = 0; i < resSteps; i++) {
       int index = minIndex + (int) Math.round((double) i * (maxIndex - minIndex) / (resSteps - 1));
-      result.add(allRes.get(index));
+      var res = allRes.get(index);
+      if (!result.contains(res)) {
+        result.add(res);
+      }
     }
     return result;
   }
 
   /**
    * Generate CRF values based on parameters (descending order for better
-   * intuition)
+   * intuition). Steps that round to the same CRF appear once.
    */
   public static List<Integer> generateCrfValues(int minCrf, int maxCrf, int crfSteps) {
     if (crfSteps == 1) {
@@ -43,6 +47,7 @@ public final class ConversionUtils {
 
     return IntStream.range(0, crfSteps)
         .map(i -> maxCrf - (int) Math.round((double) i * (maxCrf - minCrf) / (crfSteps - 1)))
+        .distinct()
         .boxed()
         .toList();
   }
@@ -1,5 +1,9 @@
 package wappon28dev.vvcnv_ui.utils;
 
+import wappon28dev.vvcnv_java.calibration.Codec;
+import wappon28dev.vvcnv_java.calibration.HostProfile;
+import wappon28dev.vvcnv_java.modules.VideoRes;
+import wappon28dev.vvcnv_ui.models.ConversionOptions;
 import wappon28dev.vvcnv_ui.models.Preset;
 
 import java.util.Arrays;
@@ -10,6 +14,18 @@ import java.util.List;
  */
 public class DefaultPresets {
 
+  /**
+   * Concurrent jobs the host profile measured for the preset's codec at its
+   * largest resolution, at most one per core; 0 (automatic) on an
+   * uncalibrated host
+   */
+  private static int jobsFor(String encoding, String maxRes) {
+    return HostProfile.current()
+        .map(profile -> profile.jobs(Codec.ofLabel(encoding), VideoRes.valueOf(maxRes), 0))
+        .map(jobs -> Math.min(jobs, Runtime.getRuntime().availableProcessors()))
+        .orElse(0);
+  }
+
   public static List<Preset> getDefaultPresets() {
     return Arrays.asList(
         new Preset(
@@ -22,7 +38,9 @@ public class DefaultPresets {
             15,
             25,
             3,
-            4),
+            jobsFor("H.264", "R1080P"),
+            0,
+            ConversionOptions.NONE),
         new Preset(
             "標準品質・標準圧縮",
             true,
@@ -33,7 +51,9 @@ public class DefaultPresets {
             20,
             30,
             3,
-            4),
+            jobsFor("H.264", "R1080P"),
+            0,
+            ConversionOptions.NONE),
         new Preset(
             "低品質・高圧縮",
             true,
@@ -44,7 +64,9 @@ public class DefaultPresets {
             25,
             35,
             3,
-            4),
+            jobsFor("H.264", "R720P"),
+            0,
+            ConversionOptions.NONE),
         new Preset(
             "WebM・高品質",
             true,
@@ -55,7 +77,9 @@ public class DefaultPresets {
             15,
             25,
             3,
-            4),
+            jobsFor("WebM", "R1080P"),
+            0,
+            ConversionOptions.NONE),
         new Preset(
             "AV1・次世代高効率",
             true,
@@ -66,7 +90,9 @@ public class DefaultPresets {
             20,
             30,
             3,
-            2),
+            jobsFor("AV1", "R1080P"),
+            0,
+            ConversionOptions.NONE),
         new Preset(
             "フルレンジテスト",
             true,
@@ -77,7 +103,9 @@ public class DefaultPresets {
             15,
             35,
             5,
-            8));
+            jobsFor("H.264", "R2160P"),
+            0,
+            ConversionOptions.NONE));
   }
 
   public static Preset getQuickTestPreset() {
@@ -91,6 +119,8 @@ public class DefaultPresets {
         20,
         25,
         2,
-        2);
+        jobsFor("H.264", "R720P"),
+        0,
+        ConversionOptions.NONE);
   }
 }
@@ -0,0 +1,231 @@
+package wappon28dev.vvcnv_ui.utils;
+
+import net.bramp.ffmpeg.FFprobe;
+import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import wappon28dev.vvcnv_java.modules.VideoConfig;
+import wappon28dev.vvcnv_java.modules.VideoRes;
+import wappon28dev.vvcnv_ui.components.ConversionResultRenderer;
+import wappon28dev.vvcnv_ui.models.Preset;
+import wappon28dev.vvcnv_ui.models.ResultGridModel;
+
+import javax.swing.*;
+import javax.swing.border.TitledBorder;
+import java.awt.*;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Startup helpers for the AppCDS training run and the startup benchmark.
+ *
+ * <p>
+ * {@code -Dvvcnv.cds.training=true} exercises the class graph that a normal
+ * launch loads (Swing, org.json, bramp builder/probe parsing, Gson) without
+ * needing a display or an FFmpeg install, so it can run inside
+ * {@code mvn package -Pcds}. {@code -Dvvcnv.startup.report=true} prints the
+ * time from JVM start until the main window is shown, which is what
+ * {@code scripts/startup-bench.sh} measures.
+ */
+public final class StartupProfile {
+
+  public static final String TRAINING_PROPERTY = "vvcnv.cds.training";
+  public static final String REPORT_PROPERTY = "vvcnv.startup.report";
+  public static final String EXIT_PROPERTY = "vvcnv.startup.exitAfterShown";
+
+  private static final String SAMPLE_VERSION = "ffprobe version 6.1 Copyright (c) 2007-2023 the FFmpeg developers\n";
+
+  private static final String SAMPLE_PROBE_JSON = """
+      {"streams":[
+        {"index":0,"codec_name":"h264","codec_type":"video","width":1920,"height":1080,
+         "pix_fmt":"yuv420p","r_frame_rate":"30/1","avg_frame_rate":"30/1"},
+        {"index":1,"codec_name":"aac","codec_type":"audio","sample_rate":"48000","channels":2}],
+       "format":{"filename":"training.mp4","nb_streams":2,"format_name":"mov,mp4,m4a,3gp,3g2,mj2",
+         "duration":"4.000000","size":"8400000","bit_rate":"16800000"}}
+      """;
+
+  private StartupProfile() {
+    // Utility class
+  }
+
+  public static boolean isTraining() {
+    return Boolean.getBoolean(TRAINING_PROPERTY);
+  }
+
+  /**
+   * Load the classes a normal launch needs, then return so the JVM can dump
+   * the dynamic archive at exit
+   */
+  public static void runTraining() throws Exception {
+    long start = System.nanoTime();
+
+    warmJson();
+    warmFFmpegBuilder();
+    warmProbeParsing();
+    SwingUtilities.invokeAndWait(StartupProfile::warmSwing);
+
+    System.out.printf("CDS training run finished in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /**
+   * Print (and optionally exit) once the window is on screen
+   */
+  public static void reportWhenShown(Window window) {
+    if (!Boolean.getBoolean(REPORT_PROPERTY)) {
+      return;
+    }
+
+    window.addWindowListener(new java.awt.event.WindowAdapter() {
+      @Override
+      public void windowOpened(java.awt.event.WindowEvent e) {
+        // Let the first paint go through before taking the timestamp
+        SwingUtilities.invokeLater(() -> {
+          System.out.println("startup-ms: " + sinceJvmStart().toMillis());
+          if (Boolean.getBoolean(EXIT_PROPERTY)) {
+            System.exit(0);
+          }
+        });
+      }
+    });
+  }
+
+  private static Duration sinceJvmStart() {
+    return ProcessHandle.current().info().startInstant()
+        .map(started -> Duration.between(started, Instant.now()))
+        .orElse(Duration.ZERO);
+  }
+
+  private static void warmJson() {
+    var presets = new JSONArray();
+    for (Preset preset : DefaultPresets.getDefaultPresets()) {
+      presets.put(preset.toJson());
+    }
+
+    var root = new JSONObject();
+    root.put("presets", presets);
+    var parsed = new JSONObject(root.toString(2)).getJSONArray("presets");
+    for (int i = 0; i < parsed.length(); i++) {
+      Preset.fromJson(parsed.getJSONObject(i)).toConversionParams("training.mp4", "output");
+    }
+  }
+
+  private static void warmFFmpegBuilder() {
+    var config = VideoConfig.defaultConfig();
+    new FFmpegBuilder()
+        .setInput("training.mp4")
+        .overrideOutputFiles(true)
+        .addOutput("training" + config.toFileName() + ".mp4")
+        .setVideoCodec("libx264")
+        .setVideoResolution(config.res().getWidth(), config.res().getHeight())
+        .setVideoFrameRate(config.fps())
+        .setConstantRateFactor(config.crf())
+        .setAudioCodec("aac")
+        .setStrict(FFmpegBuilder.Strict.EXPERIMENTAL)
+        .done()
+        .build();
+  }
+
+  /**
+   * Run bramp's probe JSON binding (Gson) against a canned ffprobe output
+   */
+  private static void warmProbeParsing() {
+    try {
+      var ffprobe = new FFprobe("ffprobe", args -> new CannedProcess(
+          args.contains("-version") ? SAMPLE_VERSION : SAMPLE_PROBE_JSON));
+      ffprobe.probe("training.mp4");
+    } catch (Exception e) {
+      System.err.println("CDS training: probe warm-up skipped: " + e.getMessage());
+    }
+  }
+
+  private static void warmSwing() {
+    try {
+      UIManager.setLookAndFeel(UIManager.getLookAndFeel());
+    } catch (UnsupportedLookAndFeelException e) {
+      // The current L&F is always supported
+    }
+
+    var panel = new JPanel(new GridBagLayout());
+    panel.setBorder(new TitledBorder("training"));
+    var gbc = new GridBagConstraints();
+    panel.add(new JLabel("入力動画:"), gbc);
+    panel.add(new JTextField("training.mp4"), gbc);
+    panel.add(new JButton("ファイル選択"), gbc);
+    panel.add(new JCheckBox("音声を保持", true), gbc);
+    panel.add(new JComboBox<>(VideoRes.list169().toArray(new VideoRes[0])), gbc);
+    panel.add(new JSpinner(new SpinnerNumberModel(4, 1, 16, 1)), gbc);
+    panel.add(new JProgressBar(0, 100), gbc);
+
+    var model = new ResultGridModel(new String[] { "720p", "1080p" }, 2);
+    model.markSucceeded(0, 0, "training.mp4", 1_200_000, 1_000_000);
+    model.markFailed(0, 1, "失敗", "training", 1_000_000);
+    model.markRunning(1, 0);
+    model.flush();
+    var table = new JTable(model);
+    var renderer = new ConversionResultRenderer();
+    renderer.installOn(table);
+    for (int row = 0; row < model.getRowCount(); row++) {
+      for (int col = 0; col < model.getColumnCount(); col++) {
+        renderer.getTableCellRendererComponent(table, model.getValueAt(row, col), false, false, row, col);
+      }
+    }
+    var scrollPane = new JScrollPane(table);
+    scrollPane.setRowHeaderView(new JList<>(new String[] { "CRF 23", "CRF 30" }));
+    panel.add(scrollPane, gbc);
+
+    panel.setSize(800, 600);
+    panel.doLayout();
+    var image = new java.awt.image.BufferedImage(800, 600, java.awt.image.BufferedImage.TYPE_INT_RGB);
+    var graphics = image.createGraphics();
+    try {
+      panel.printAll(graphics);
+    } finally {
+      graphics.dispose();
+    }
+  }
+
+  /**
+   * Minimal Process whose stdout is a fixed string
+   */
+  private static final class CannedProcess extends Process {
+    private final InputStream stdout;
+
+    CannedProcess(String output) {
+      this.stdout = new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return OutputStream.nullOutputStream();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return stdout;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+      return InputStream.nullInputStream();
+    }
+
+    @Override
+    public int waitFor() {
+      return 0;
+    }
+
+    @Override
+    public int exitValue() {
+      return 0;
+    }
+
+    @Override
+    public void destroy() {
+      // Nothing to stop
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package wappon28dev.vvcnv_ui.utils;
+
+import wappon28dev.vvcnv_java.calibration.Codec;
+import wappon28dev.vvcnv_java.calibration.HostProfile;
+import wappon28dev.vvcnv_java.modules.OutputSizeEstimator;
+import wappon28dev.vvcnv_java.modules.VideoConfig;
+import wappon28dev.vvcnv_java.modules.VideoRes;
+import wappon28dev.vvcnv_java.modules.VideoStat;
+import wappon28dev.vvcnv_java.util.Result;
+import wappon28dev.vvcnv_ui.models.ConversionParams;
+import wappon28dev.vvcnv_ui.models.ConversionTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Turns {@link ConversionParams} and the sources into the tasks of a cross
+ * test before anything is launched: grid axes without repeated values, and
+ * cells the encoder would reject (upscaling, a frame rate above the source's,
+ * audio the source lacks) set aside with their reason instead of taking a
+ * scheduler slot. {@link #cost} prices a plan for a dry run.
+ */
+public final class TaskPlanner {
+
+  /** Frame rate of every cell */
+  public static final int OUTPUT_FPS = 30;
+
+  /**
+   * libx264 medium encodes roughly 7 fps of 1080p per core; used for hosts
+   * without a calibration profile
+   */
+  private static final double DEFAULT_PIXEL_FRAMES_PER_CPU_SECOND = 15e6;
+
+  private TaskPlanner() {
+    // Utility class
+  }
+
+  /**
+   * A cell that will not be encoded
+   */
+  public record Skipped(ConversionTask task, String reason) {
+  }
+
+  /**
+   * Tasks of a cross test
+   *
+   * @param tasks      cells to encode, in grid order per source
+   * @param skipped    cells the encoder would reject
+   * @param duplicates grid cells dropped because their resolution or CRF
+   *                   repeated another one
+   */
+  public record Plan(List<VideoRes> resolutions, List<Integer> crfValues, List<ConversionTask> tasks,
+      List<Skipped> skipped, int duplicates) {
+
+    /**
+     * Cells in all grids, encoded or skipped
+     */
+    public int cellCount() {
+      return tasks.size() + skipped.size();
+    }
+  }
+
+  /**
+   * Expected cost of encoding a plan
+   *
+   * @param cpuSeconds  CPU time of all encodes together
+   * @param outputBytes size of all outputs together
+   */
+  public record Cost(int tasks, double cpuSeconds, long outputBytes) {
+
+    public double cpuHours() {
+      return cpuSeconds / 3600;
+    }
+
+    /**
+     * Wall time if all {@code cores} were kept busy
+     */
+    public double wallSeconds(int cores) {
+      return cpuSeconds / Math.max(1, cores);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT, "%d tasks, %.2f CPU-hours, %.1f MB", tasks, cpuHours(),
+          outputBytes / (1024.0 * 1024.0));
+    }
+  }
+
+  public static Plan plan(ConversionParams params, List<VideoStat> sources) {
+    var resolutions = ConversionUtils.generateResolutions(params.minRes(), params.maxRes(), params.resSteps());
+    var crfValues = ConversionUtils.generateCrfValues(params.minCrf(), params.maxCrf(), params.crfSteps());
+    int requested = Math.max(1, params.resSteps()) * Math.max(1, params.crfSteps());
+    int duplicates = (requested - resolutions.size() * crfValues.size()) * sources.size();
+
+    var tasks = new ArrayList<ConversionTask>();
+    var skipped = new ArrayList<Skipped>();
+    for (int sourceIndex = 0; sourceIndex < sources.size(); sourceIndex++) {
+      var stat = sources.get(sourceIndex);
+      for (int resIndex = 0; resIndex < resolutions.size(); resIndex++) {
+        for (int crfIndex = 0; crfIndex < crfValues.size(); crfIndex++) {
+          var config = new VideoConfig(resolutions.get(resIndex), OUTPUT_FPS, crfValues.get(crfIndex),
+              params.hasAudio());
+          var task = new ConversionTask(config, resIndex, crfIndex, sourceIndex);
+          if (config.checkUpScaling(stat) instanceof Result.Err<Void, String> err) {
+            skipped.add(new Skipped(task, err.error()));
+          } else {
+            tasks.add(task);
+          }
+        }
+      }
+    }
+    return new Plan(resolutions, crfValues, List.copyOf(tasks), List.copyOf(skipped), Math.max(0, duplicates));
+  }
+
+  /**
+   * CPU time and output size of the plan's tasks. CPU time scales each task's
+   * work (output pixels × frames) by the host's calibrated per-core rate
+   * when there is a profile; output size is the size estimator's prediction
+   * without its safety margin. Remux tasks cost no CPU worth counting and
+   * write about the source's size. Crops and decimation are not known
+   * before the encodes, so their savings are not counted.
+   */
+  public static Cost cost(Plan plan, List<VideoStat> sources, ConversionParams params,
+      Optional<HostProfile> profile) {
+    var codec = Codec.ofLabel(params.encoding());
+    double cpuSeconds = 0;
+    long outputBytes = 0;
+    for (var task : plan.tasks()) {
+      var stat = sources.get(task.sourceIndex());
+      var config = task.config();
+      if (params.options().allowsRemux() && config.canCopy(stat)) {
+        outputBytes += stat.fileSize();
+        continue;
+      }
+      cpuSeconds += config.outputPixelFrames(stat) / pixelFramesPerCpuSecond(codec, config.res(), profile);
+      outputBytes += (long) (OutputSizeEstimator.shared().estimate(stat, config) / OutputSizeEstimator.SAFETY_FACTOR);
+    }
+    return new Cost(plan.tasks().size(), cpuSeconds, outputBytes);
+  }
+
+  private static double pixelFramesPerCpuSecond(Codec codec, VideoRes res, Optional<HostProfile> profile) {
+    return profile.flatMap(p -> p.setting(codec, res))
+        .filter(setting -> setting.fps() > 0)
+        .map(setting -> setting.fps() * res.getWidth() * res.getHeight()
+            / Math.max(1, setting.jobs() * setting.threads()))
+        .orElse(DEFAULT_PIXEL_FRAMES_PER_CPU_SECOND);
+  }
+}
@@ -1,8 +1,18 @@
 package wappon28dev.vvcnv_ui.utils;
 
+import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Stream;
 
 public final class UIUtils {
 
@@ -48,9 +58,59 @@ public final class UIUtils {
         name.endsWith(".mkv") || name.endsWith(".webm") || name.endsWith(".m4v");
   }
 
+  /**
+   * Expand dropped files and folders into the video files they contain.
+   * Folders are walked recursively; the result keeps drop order, with each
+   * folder's files sorted by path and duplicates removed.
+   */
+  public static List<File> collectVideoFiles(List<File> dropped) {
+    var result = new LinkedHashSet<File>();
+    for (var file : dropped) {
+      if (file.isDirectory()) {
+        try (Stream<Path> walk = Files.walk(file.toPath())) {
+          walk.filter(Files::isRegularFile)
+              .map(Path::toFile)
+              .filter(UIUtils::isVideoFile)
+              .sorted()
+              .forEach(f -> result.add(f.getAbsoluteFile()));
+        } catch (IOException | UncheckedIOException e) {
+          System.err.println("フォルダの読み込みに失敗しました: " + file + " (" + e.getMessage() + ")");
+        }
+      } else if (isVideoFile(file)) {
+        result.add(file.getAbsoluteFile());
+      }
+    }
+    return new ArrayList<>(result);
+  }
+
   /**
    * Format file size in human readable format
    */
+  /**
+   * Read an image and scale it to {@code height} for use as an inline icon;
+   * null if it cannot be read
+   */
+  public static Icon loadThumbnail(Path path, int height) {
+    try {
+      var image = ImageIO.read(path.toFile());
+      if (image == null) {
+        return null;
+      }
+      int width = Math.max(1, image.getWidth() * height / image.getHeight());
+      var scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+      var graphics = scaled.createGraphics();
+      try {
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, width, height, null);
+      } finally {
+        graphics.dispose();
+      }
+      return new ImageIcon(scaled);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
   public static String formatFileSize(long bytes) {
     if (bytes < 1024)
       return bytes + " B";
@@ -60,12 +120,23 @@ public final class UIUtils {
   }
 
   /**
-   * Get color based on file size (green for small, red for large)
+   * Green → red ramp, one entry per red level, so the cell renderer can pick a
+   * color without allocating
+   */
+  private static final Color[] FILE_SIZE_COLORS = new Color[256];
+
+  static {
+    for (int red = 0; red < FILE_SIZE_COLORS.length; red++) {
+      FILE_SIZE_COLORS[red] = new Color(red, 255 - red, 0);
+    }
+  }
+
+  /**
+   * Get color based on file size (green for small, red for large, 10 MB and
+   * above fully red)
    */
   public static Color getFileSizeColor(double fileSizeMB) {
-    double ratio = Math.min(fileSizeMB / 10.0, 1.0); // Normalize to 0-1
-    int red = (int) (255 * ratio);
-    int green = (int) (255 * (1.0 - ratio));
-    return new Color(red, green, 0);
+    double ratio = Math.max(0.0, Math.min(fileSizeMB / 10.0, 1.0)); // Normalize to 0-1
+    return FILE_SIZE_COLORS[(int) (255 * ratio)];
   }
 }
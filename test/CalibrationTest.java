@@ -0,0 +1,74 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.calibration.Calibration;
+import wappon28dev.vvcnv_java.calibration.Codec;
+import wappon28dev.vvcnv_java.calibration.HostProfile;
+import wappon28dev.vvcnv_java.modules.VideoRes;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Tests for host calibration and the stored profile
+ */
+public class CalibrationTest {
+
+    @Test
+    void testJobCountsDoubleUpToCores() {
+        assertEquals(List.of(1, 2, 4, 8, 12), Calibration.jobCounts(12, VideoRes.R480P, Long.MAX_VALUE));
+        assertEquals(List.of(1), Calibration.jobCounts(1, VideoRes.R480P, Long.MAX_VALUE));
+        // Jobs that would not fit in memory are not tried; one job always is
+        assertEquals(List.of(1), Calibration.jobCounts(64, VideoRes.R2160P, 1L << 20));
+        assertEquals(16, Calibration.threadsPerJob(16, 1));
+        assertEquals(1, Calibration.threadsPerJob(12, 12));
+    }
+
+    @Test
+    void testBestPrefersFewerJobsAmongNearTies() {
+        var best = Calibration.best(List.of(
+            new Calibration.Run(1, 8, 50), new Calibration.Run(2, 4, 99),
+            new Calibration.Run(4, 2, 100), new Calibration.Run(8, 1, 90)));
+        assertEquals(2, best.jobs());
+    }
+
+    @Test
+    void testCommandEncodesSyntheticInputToNull() {
+        var command = Calibration.command("ffmpeg", Codec.H264, VideoRes.R1080P, 4);
+        assertEquals("lavfi", command.get(command.indexOf("-f") + 1));
+        assertTrue(command.get(command.indexOf("-i") + 1).startsWith("testsrc2=size=1920x1080"));
+        assertEquals("libx264", command.get(command.indexOf("-c:v") + 1));
+        assertEquals("4", command.get(command.indexOf("-threads") + 1));
+        assertEquals(List.of("-f", "null", "-"), command.subList(command.size() - 3, command.size()));
+        assertTrue(Calibration.frames(VideoRes.R240P) > Calibration.frames(VideoRes.R2160P));
+    }
+
+    @Test
+    void testProfileRoundTripAndNearestResolution() throws Exception {
+        var file = Files.createTempDirectory("vvcnv-profile").resolve("host-test.properties");
+        var profile = new HostProfile(32, Instant.parse("2026-01-02T03:04:05Z"));
+        profile.put(Codec.H264, VideoRes.R480P, new HostProfile.Setting(16, 2, 900.5));
+        profile.put(Codec.H264, VideoRes.R2160P, new HostProfile.Setting(4, 8, 40));
+        profile.save(file);
+
+        var loaded = HostProfile.load(file).orElseThrow();
+        assertEquals(32, loaded.cores());
+        assertEquals(profile.calibratedAt(), loaded.calibratedAt());
+        assertEquals(new HostProfile.Setting(16, 2, 900.5), loaded.setting(Codec.H264, VideoRes.R480P).orElseThrow());
+        // 360p is closest to 480p, 1440p closest to 2160p
+        assertEquals(16, loaded.jobs(Codec.H264, VideoRes.R360P, 0));
+        assertEquals(8, loaded.threads(Codec.H264, VideoRes.R1440P, 0));
+        // Uncalibrated codecs fall back
+        assertEquals(3, loaded.jobs(Codec.AV1, VideoRes.R1080P, 3));
+    }
+
+    @Test
+    void testUnreadableProfileIsIgnored() throws Exception {
+        var file = Files.createTempFile("vvcnv-profile", ".properties");
+        Files.writeString(file, "version=1\ncores=oops\n");
+        assertTrue(HostProfile.load(file).isEmpty());
+        assertTrue(HostProfile.load(file.resolveSibling("missing.properties")).isEmpty());
+    }
+}
@@ -0,0 +1,103 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.scheduler.ConcurrencyController;
+import wappon28dev.vvcnv_java.scheduler.EncodeScheduler;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the AIMD concurrency limit
+ */
+public class ConcurrencyControllerTest {
+
+    private static final long WINDOW = ConcurrencyController.MIN_WINDOW_NANOS;
+
+    /**
+     * Run one control window at the current limit with the given throughput
+     */
+    private static boolean window(ConcurrencyController controller, long[] now, double throughput, boolean held) {
+        int jobs = controller.limit();
+        for (int i = 0; i < jobs; i++) {
+            controller.completed(throughput * WINDOW / 1e9 / jobs);
+        }
+        if (held) {
+            controller.held();
+        }
+        now[0] += WINDOW;
+        return controller.update(now[0], 0.5);
+    }
+
+    @Test
+    void testAdditiveIncreaseWhileThroughputGrows() {
+        long[] now = { 0 };
+        var controller = new ConcurrencyController(1, 16, 4, now[0]);
+        assertTrue(window(controller, now, 100, true));
+        assertEquals(5, controller.limit());
+        assertTrue(window(controller, now, 120, true));
+        assertEquals(6, controller.limit());
+        assertEquals(120, controller.throughput(), 1e-6);
+    }
+
+    @Test
+    void testNoIncreaseWithoutWaitingJobs() {
+        long[] now = { 0 };
+        var controller = new ConcurrencyController(1, 16, 4, now[0]);
+        assertFalse(window(controller, now, 100, false));
+        assertEquals(4, controller.limit());
+    }
+
+    @Test
+    void testMultiplicativeDecreaseWhenIncreaseHurts() {
+        long[] now = { 0 };
+        var controller = new ConcurrencyController(1, 16, 9, now[0]);
+        window(controller, now, 100, true);
+        assertEquals(10, controller.limit());
+        // One more job made everything slower: back off hard
+        assertTrue(window(controller, now, 80, true));
+        assertEquals(7, controller.limit());
+        // Then probe upwards again
+        window(controller, now, 90, true);
+        assertEquals(8, controller.limit());
+    }
+
+    @Test
+    void testNoiseWithinToleranceKeepsGrowing() {
+        long[] now = { 0 };
+        var controller = new ConcurrencyController(1, 16, 4, now[0]);
+        window(controller, now, 100, true);
+        window(controller, now, 97, true);
+        assertEquals(6, controller.limit());
+    }
+
+    @Test
+    void testOverloadDecreasesWithoutCompletions() {
+        var controller = new ConcurrencyController(1, 16, 8, 0);
+        assertFalse(controller.update(WINDOW / 2, 3.0), "waits for the window");
+        assertTrue(controller.update(WINDOW, 3.0));
+        assertEquals(5, controller.limit());
+        controller.update(2 * WINDOW, 3.0);
+        controller.update(3 * WINDOW, 3.0);
+        controller.update(4 * WINDOW, 3.0);
+        controller.update(5 * WINDOW, 3.0);
+        assertEquals(1, controller.limit(), "never below the minimum");
+    }
+
+    @Test
+    void testWindowWaitsForAGenerationOfJobs() {
+        var controller = new ConcurrencyController(1, 16, 4, 0);
+        controller.completed(1);
+        controller.held();
+        assertFalse(controller.update(WINDOW * 3, 0.5));
+        assertEquals(4, controller.limit());
+    }
+
+    @Test
+    void testSchedulerStartsAtMaxJobs() {
+        var scheduler = new EncodeScheduler(3, 12);
+        assertEquals(3, scheduler.snapshot().jobLimit());
+        scheduler.setAdaptive(true);
+        assertEquals(3, scheduler.snapshot().jobLimit());
+        scheduler.setAdaptive(false);
+        assertEquals(3, scheduler.snapshot().jobLimit());
+    }
+}
@@ -0,0 +1,186 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.modules.*;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests for the pure-Java MP4 / Matroska header reader, using minimal
+ * hand-built files
+ */
+public class ContainerProbeTest {
+
+    private final ContainerProbe probe = new ContainerProbe();
+
+    @Test
+    void testMp4VideoAndAudioTracks() throws IOException {
+        var mdat = box("mdat", new byte[1000]);
+        var moov = box("moov", concat(
+                mvhd(1000, 4000),
+                videoTrak(1920, 1080, 30000, 1001, 100),
+                audioTrak(48000, 2)));
+        var file = write(concat(box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII)), mdat, moov));
+
+        var result = probe.stat(file.toString());
+
+        assertTrue(result.isOk(), () -> result.toString());
+        var stat = result.unwrap();
+        assertEquals(1920, stat.videoStream().width());
+        assertEquals(1080, stat.videoStream().height());
+        assertEquals(29.97, stat.videoStream().fps(), 0.001);
+        assertEquals("yuv420p", stat.videoStream().pixFmt());
+        assertEquals(4000, stat.duration().toMillis());
+        assertEquals(Files.size(file), stat.fileSize());
+        assertEquals(1, stat.audioStreams().size());
+        assertEquals(new VideoStat.AudioStreamInfo("aac", 48000, 2), stat.audioStreams().getFirst());
+    }
+
+    @Test
+    void testFragmentedMp4FallsBack() throws IOException {
+        var moov = box("moov", concat(mvhd(1000, 0), videoTrak(640, 360, 30, 1, 0), box("mvex", new byte[0])));
+        var file = write(concat(box("ftyp", "iso6".getBytes(StandardCharsets.US_ASCII)), moov));
+
+        assertTrue(probe.stat(file.toString()).isErr());
+    }
+
+    @Test
+    void testWebmVideoAndAudioTracks() throws IOException {
+        var header = ebml(0x1A45DFA3, ebml(0x4282, "webm".getBytes(StandardCharsets.US_ASCII)));
+        var info = ebml(0x1549A966, concat(
+                ebml(0x2AD7B1, uint(1_000_000)),
+                ebml(0x4489, ByteBuffer.allocate(8).putDouble(12_500.0).array())));
+        var video = ebml(0xAE, concat(
+                ebml(0x83, uint(1)),
+                ebml(0x86, "V_VP9".getBytes(StandardCharsets.US_ASCII)),
+                ebml(0x23E383, uint(33_333_334)),
+                ebml(0xE0, concat(ebml(0xB0, uint(1280)), ebml(0xBA, uint(720))))));
+        var audio = ebml(0xAE, concat(
+                ebml(0x83, uint(2)),
+                ebml(0x86, "A_OPUS".getBytes(StandardCharsets.US_ASCII)),
+                ebml(0xE1, concat(
+                        ebml(0xB5, ByteBuffer.allocate(4).putFloat(48000f).array()),
+                        ebml(0x9F, uint(2))))));
+        var tracks = ebml(0x1654AE6B, concat(video, audio));
+        var cluster = ebml(0x1F43B675, new byte[64]);
+        var file = write(concat(header, ebml(0x18538067, concat(info, tracks, cluster))));
+
+        var result = probe.stat(file.toString());
+
+        assertTrue(result.isOk(), () -> result.toString());
+        var stat = result.unwrap();
+        assertEquals(1280, stat.videoStream().width());
+        assertEquals(720, stat.videoStream().height());
+        assertEquals(30.0, stat.videoStream().fps());
+        assertEquals(12_500, stat.duration().toMillis());
+        assertEquals(new VideoStat.AudioStreamInfo("opus", 48000, 2), stat.audioStreams().getFirst());
+    }
+
+    @Test
+    void testWebmWithoutDefaultDurationFallsBack() throws IOException {
+        var header = ebml(0x1A45DFA3, ebml(0x4282, "webm".getBytes(StandardCharsets.US_ASCII)));
+        var info = ebml(0x1549A966, ebml(0x4489, ByteBuffer.allocate(8).putDouble(1000.0).array()));
+        var video = ebml(0xAE, concat(
+                ebml(0x83, uint(1)),
+                ebml(0xE0, concat(ebml(0xB0, uint(640)), ebml(0xBA, uint(360))))));
+        var file = write(concat(header, ebml(0x18538067, concat(info, ebml(0x1654AE6B, video)))));
+
+        assertTrue(probe.stat(file.toString()).isErr());
+    }
+
+    @Test
+    void testUnknownContainerFallsBack() throws IOException {
+        var file = write("RIFF\0\0\0\0AVI LIST".getBytes(StandardCharsets.US_ASCII));
+
+        assertTrue(probe.stat(file.toString()).isErr());
+    }
+
+    // --- MP4 builders ---
+
+    private static byte[] mvhd(int timescale, int duration) {
+        var body = ByteBuffer.allocate(100);
+        body.putInt(0).putInt(0).putInt(0).putInt(timescale).putInt(duration);
+        return box("mvhd", body.array());
+    }
+
+    private static byte[] videoTrak(int width, int height, int timescale, int delta, int samples) {
+        var entry = ByteBuffer.allocate(86);
+        entry.putInt(0).putInt(0); // size/type patched by sampleEntry
+        entry.position(32);
+        entry.putShort((short) width).putShort((short) height);
+        var avcC = box("avcC", new byte[] { 1, 100, 0, 40 });
+        var stsd = box("stsd", concat(new byte[] { 0, 0, 0, 0, 0, 0, 0, 1 }, sampleEntry("avc1", entry.array(), avcC)));
+        var stts = box("stts", ByteBuffer.allocate(16).putInt(0).putInt(1).putInt(samples).putInt(delta).array());
+        return trak(timescale, "vide", concat(stsd, stts));
+    }
+
+    private static byte[] audioTrak(int sampleRate, int channels) {
+        var entry = ByteBuffer.allocate(36);
+        entry.position(24);
+        entry.putShort((short) channels).putShort((short) 16).putInt(0).putInt(sampleRate << 16);
+        var stsd = box("stsd", concat(new byte[] { 0, 0, 0, 0, 0, 0, 0, 1 }, sampleEntry("mp4a", entry.array(), new byte[0])));
+        return trak(sampleRate, "soun", stsd);
+    }
+
+    private static byte[] sampleEntry(String type, byte[] fixedPart, byte[] children) {
+        var entry = concat(fixedPart, children);
+        ByteBuffer.wrap(entry).putInt(entry.length).put(type.getBytes(StandardCharsets.US_ASCII));
+        return entry;
+    }
+
+    private static byte[] trak(int timescale, String handler, byte[] stblChildren) {
+        var mdhd = box("mdhd", ByteBuffer.allocate(24).putInt(0).putInt(0).putInt(0).putInt(timescale).array());
+        var hdlr = box("hdlr", concat(new byte[8], handler.getBytes(StandardCharsets.US_ASCII), new byte[13]));
+        var minf = box("minf", box("stbl", stblChildren));
+        return box("trak", box("mdia", concat(mdhd, hdlr, minf)));
+    }
+
+    private static byte[] box(String type, byte[] body) {
+        return concat(ByteBuffer.allocate(8).putInt(8 + body.length).put(type.getBytes(StandardCharsets.US_ASCII)).array(),
+                body);
+    }
+
+    // --- EBML builders ---
+
+    private static byte[] ebml(int id, byte[] data) {
+        var out = new ByteArrayOutputStream();
+        var idBytes = ByteBuffer.allocate(4).putInt(id).array();
+        int skip = 0;
+        while (skip < 3 && idBytes[skip] == 0) {
+            skip++;
+        }
+        out.write(idBytes, skip, 4 - skip);
+        // 8-byte size vint
+        out.write(0x01);
+        out.write(ByteBuffer.allocate(8).putLong(data.length).array(), 1, 7);
+        out.writeBytes(data);
+        return out.toByteArray();
+    }
+
+    private static byte[] uint(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    // --- helpers ---
+
+    private static byte[] concat(byte[]... parts) {
+        var out = new ByteArrayOutputStream();
+        for (var part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static Path write(byte[] content) throws IOException {
+        var file = Files.createTempFile("container-probe", ".bin");
+        file.toFile().deleteOnExit();
+        Files.write(file, content);
+        return file;
+    }
+}
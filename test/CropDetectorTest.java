@@ -0,0 +1,101 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.modules.Crop;
+import wappon28dev.vvcnv_java.modules.CropDetector;
+import wappon28dev.vvcnv_java.modules.EncodeOptions;
+import wappon28dev.vvcnv_java.modules.FileModule;
+import wappon28dev.vvcnv_java.modules.VideoConfig;
+import wappon28dev.vvcnv_java.modules.VideoModule.VideoProcessParams;
+import wappon28dev.vvcnv_java.modules.VideoRes;
+import wappon28dev.vvcnv_java.modules.VideoStat;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Tests for black-bar detection and the crop applied before scaling
+ */
+public class CropDetectorTest {
+
+    private static final VideoStat STAT = new VideoStat("in.mp4",
+        new VideoStat.VideoStreamInfo(1920, 1080, 30, "yuv420p", "h264"), List.of(), Duration.ofSeconds(60), 1000);
+
+    private static String line(String crop) {
+        return "[Parsed_cropdetect_0 @ 0x600001] x1:0 x2:1919 y1:140 y2:939 w:1920 h:800 x:0 y:140 pts:0 t:0.0 "
+            + "limit:0.094118 crop=" + crop;
+    }
+
+    @Test
+    void testSamplesAreUnited() {
+        var crop = CropDetector.choose(STAT, List.of(
+            line("1920:800:0:140"),
+            "some other line",
+            line("1920:760:0:160"),
+            line("1920:816:0:132")));
+        assertEquals(Optional.of(new Crop(1920, 816, 0, 132)), crop);
+    }
+
+    @Test
+    void testThinBarsAreIgnored() {
+        assertEquals(Optional.empty(), CropDetector.choose(STAT, List.of(line("1916:1076:2:2"))));
+        assertEquals(Optional.empty(), CropDetector.choose(STAT, List.of("no crop printed")));
+
+        // A thin bar on one axis does not come along with a real one on the other
+        var pillarbox = CropDetector.choose(STAT, List.of(line("1440:1076:240:2")));
+        assertEquals(Optional.of(new Crop(1440, 1080, 240, 0)), pillarbox);
+    }
+
+    @Test
+    void testFilterKeepsAspectInsideResolution() {
+        var letterbox = new Crop(1920, 800, 0, 140);
+        assertArrayEquals(new int[] { 1280, 534 }, letterbox.fit(VideoRes.R720P));
+        assertEquals("crop=1920:800:0:140,scale=1280:534", letterbox.filter(VideoRes.R720P));
+
+        var pillarbox = new Crop(1440, 1080, 240, 0);
+        assertArrayEquals(new int[] { 1440, 1080 }, pillarbox.fit(VideoRes.R1080P));
+        assertArrayEquals(new int[] { 960, 720 }, pillarbox.fit(VideoRes.R720P));
+        assertEquals(800.0 * 1920 / (1920 * 1080), letterbox.areaShare(STAT), 1e-9);
+    }
+
+    @Test
+    void testCommandSamplesKeyframesWithoutOutput() {
+        var command = CropDetector.detectCommand("ffmpeg", "in.mp4", new double[] { 10, 20 });
+        assertEquals(2, command.stream().filter("-i"::equals).count());
+        assertEquals(2, command.stream().filter("nokey"::equals).count());
+        assertTrue(command.indexOf("-skip_frame") < command.indexOf("-i"));
+        assertEquals("10.000", command.get(command.indexOf("-ss") + 1));
+        assertEquals(2, command.stream().filter(arg -> arg.startsWith("cropdetect=")).count());
+        assertEquals("-", command.getLast());
+        assertEquals("null", command.get(command.size() - 2));
+    }
+
+    @Test
+    void testCacheHitSkipsFfmpeg() throws Exception {
+        var cacheDir = Files.createTempDirectory("vvcnv-crop-cache");
+        var source = Files.createTempFile("vvcnv-crop", ".mp4");
+        Files.write(source, new byte[] { 1, 2, 3 });
+        var stat = new VideoStat(source.toString(), STAT.videoStream(), List.of(), Duration.ofSeconds(60), 3);
+
+        Files.writeString(cacheDir.resolve(FileModule.fingerprint(source, "crop-v1") + ".txt"), "1920:800:0:140");
+        // A missing ffmpeg would fail any real detection
+        var detector = new CropDetector("/nonexistent/ffmpeg", cacheDir);
+        assertEquals(Optional.of(new Crop(1920, 800, 0, 140)), detector.detect(stat).unwrap());
+
+        Files.write(source, new byte[] { 1, 2, 4 });
+        assertTrue(detector.detect(stat).isErr());
+    }
+
+    @Test
+    void testCropPreventsRemux() {
+        var config = new VideoConfig(VideoRes.R1080P, 30, 23, false);
+        var remux = EncodeOptions.DEFAULT.withRemux(true);
+        var plain = new VideoProcessParams("out.mp4", config, 1, remux);
+        var cropped = new VideoProcessParams("out.mp4", config, 1, remux.withCrop(new Crop(1920, 800, 0, 140)));
+        assertTrue(plain.copies(STAT));
+        assertFalse(cropped.copies(STAT));
+    }
+}
@@ -0,0 +1,156 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.metrics.*;
+import wappon28dev.vvcnv_java.modules.EncodeOptions;
+import wappon28dev.vvcnv_java.modules.VideoConfig;
+import wappon28dev.vvcnv_java.modules.VideoModule;
+import wappon28dev.vvcnv_java.modules.VideoModule.VideoProcessParams;
+import wappon28dev.vvcnv_java.modules.VideoRes;
+import wappon28dev.vvcnv_java.modules.VideoStat;
+import wappon28dev.vvcnv_java.scheduler.EncodeScheduler;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Tests for per-task resource accounting
+ */
+public class EncodeMetricsTest {
+
+    @Test
+    void testRecordingPicksUpTrackedProcess() throws Exception {
+        var metrics = EncodeMetrics.shared();
+        var finished = new AtomicReference<TaskMetrics>();
+        Consumer<TaskMetrics> listener = finished::set;
+        metrics.addListener(listener);
+        long before = metrics.getTasksSucceeded();
+
+        var scheduler = new EncodeScheduler(1, 1);
+        var future = scheduler.submitter("test", 1, 1).submit("busy", 1, () -> {
+            try (var recording = metrics.start("busy-output")) {
+                // Burn a little CPU in a child so there is something to sample
+                var process = new ProcessTracker().run(List.of("sh", "-c", "i=0; while [ $i -lt 200000 ]; do i=$((i+1)); done"));
+                process.waitFor();
+                recording.succeeded(1024);
+                return recording.pid();
+            }
+        });
+
+        long pid = future.get(30, TimeUnit.SECONDS);
+        metrics.removeListener(listener);
+
+        var task = finished.get();
+        assertNotNull(task);
+        assertEquals(pid, task.pid());
+        assertEquals("test", task.submitter());
+        assertTrue(task.success());
+        assertFalse(task.running());
+        assertEquals(1024, task.outputBytes());
+        assertTrue(task.wall().toNanos() > 0);
+        assertTrue(task.outputBytesPerSecond() > 0);
+        assertEquals(before + 1, metrics.getTasksSucceeded());
+        if (System.getProperty("os.name").startsWith("Linux")) {
+            assertTrue(task.peakRssBytes() > 0, task.toString());
+        }
+    }
+
+    @Test
+    void testOutputTailKeepsLatestStatsLine() {
+        var output = new ProcessOutput();
+        var text = "[h264 @ 0x1] error while decoding\nframe=   10 fps=5\rframe=   20 fps=6\rframe=   20 fps=6\rlast";
+        var bytes = text.getBytes(StandardCharsets.UTF_8);
+        output.accept(bytes, 0, bytes.length);
+        output.flush();
+
+        assertEquals(List.of("[h264 @ 0x1] error while decoding", "frame=   20 fps=6", "last"), output.tail());
+        assertEquals(20, output.frames());
+        assertEquals(-1, new ProcessOutput().frames());
+    }
+
+    @Test
+    void testRepeatedStatsLineIsNoProgress() throws Exception {
+        var output = new ProcessOutput();
+        var first = "frame=   20 fps=6\r".getBytes(StandardCharsets.UTF_8);
+        output.accept(first, 0, first.length);
+        long progressed = output.lastProgressNanos();
+        Thread.sleep(5);
+        output.accept(first, 0, first.length);
+        assertEquals(progressed, output.lastProgressNanos());
+
+        var next = "frame=   21 fps=6\r".getBytes(StandardCharsets.UTF_8);
+        output.accept(next, 0, next.length);
+        assertTrue(output.lastProgressNanos() > progressed);
+    }
+
+    @Test
+    void testEveryEncodeCommandAsksForStats() {
+        // bramp adds -v error, which drops the stats lines the watchdog reads
+        var stat = new VideoStat("in.mp4", new VideoStat.VideoStreamInfo(1920, 1080, 30, "yuv420p", "h264"),
+            List.of(), Duration.ofSeconds(60), 1);
+        var config = new VideoConfig(VideoRes.R1080P, 30, 23, false);
+        var remux = EncodeOptions.DEFAULT.withRemux(true);
+        for (var output : List.of("out.mp4", "out.mkv")) {
+            for (var options : List.of(EncodeOptions.DEFAULT, remux, remux.withMeasureOnly(true),
+                    EncodeOptions.DEFAULT.withDecimate(true).withMeasureOnly(true))) {
+                var command = VideoModule.command("ffmpeg", stat, new VideoProcessParams(output, config, 1, options));
+                assertEquals("error", command.get(command.indexOf("-v") + 1));
+                int stats = command.indexOf("-stats");
+                assertTrue(stats > 0 && stats < command.indexOf("-i"), command.toString());
+                assertEquals("1", command.get(command.indexOf("-stats_period") + 1));
+            }
+        }
+    }
+
+    @Test
+    void testWatchdogKillsStalledProcess() throws Exception {
+        var metrics = EncodeMetrics.shared();
+        var timeout = metrics.getStallTimeout();
+        metrics.setStallTimeout(Duration.ofMillis(500));
+        try (var recording = metrics.start("stalled-output")) {
+            var process = new ProcessTracker().run(List.of("sh", "-c", "echo starting >&2; exec sleep 30"));
+            process.getInputStream().transferTo(java.io.OutputStream.nullOutputStream());
+            assertTrue(process.waitFor(10, TimeUnit.SECONDS));
+
+            assertTrue(recording.stalled());
+            assertEquals(128 + 9, recording.exitCode());
+            assertEquals(List.of("starting"), recording.outputTail());
+        } finally {
+            metrics.setStallTimeout(timeout);
+        }
+    }
+
+    @Test
+    void testRecordingWithoutProcess() {
+        var metrics = EncodeMetrics.shared();
+        long failedBefore = metrics.getTasksFailed();
+
+        try (var recording = metrics.start("nothing")) {
+            assertEquals(-1, recording.pid());
+        }
+
+        assertEquals(failedBefore + 1, metrics.getTasksFailed());
+        assertEquals("direct", metrics.recentTasks().getLast().submitter());
+    }
+
+    @Test
+    void testPrometheusTextAndMBeans() throws Exception {
+        MetricsExporter.install();
+
+        var text = MetricsExporter.prometheusText(EncodeMetrics.shared(), EncodeScheduler.shared());
+        assertTrue(text.contains("# TYPE vvcnv_tasks_total counter"), text);
+        assertTrue(text.contains("vvcnv_tasks_total{result=\"success\"} "), text);
+        assertTrue(text.contains("vvcnv_scheduler_queued_jobs "), text);
+
+        var server = ManagementFactory.getPlatformMBeanServer();
+        assertTrue(server.isRegistered(new ObjectName("wappon28dev.vvcnv:type=EncodeMetrics")));
+        assertNotNull(server.getAttribute(new ObjectName("wappon28dev.vvcnv:type=EncodeScheduler"), "MaxJobs"));
+    }
+}
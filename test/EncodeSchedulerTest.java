@@ -0,0 +1,230 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.scheduler.EncodeScheduler;
+import wappon28dev.vvcnv_java.scheduler.Qos;
+import wappon28dev.vvcnv_java.scheduler.Resources;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the shared encode scheduler
+ */
+public class EncodeSchedulerTest {
+
+    @Test
+    void testGlobalLimitAcrossSubmitters() throws Exception {
+        var scheduler = new EncodeScheduler(3, 6);
+        var active = new AtomicInteger();
+        var peak = new AtomicInteger();
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+
+        for (var submitter : List.of(scheduler.submitter("a", 1, 8), scheduler.submitter("b", 1, 8))) {
+            for (int i = 0; i < 10; i++) {
+                futures.add(submitter.submit("job", 2, () -> {
+                    peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                    Thread.sleep(5);
+                    return active.decrementAndGet();
+                }));
+            }
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        assertTrue(peak.get() <= 3, "peak " + peak.get());
+        assertEquals(0, scheduler.snapshot().runningJobs());
+    }
+
+    @Test
+    void testCoreBudgetLimitsConcurrency() throws Exception {
+        var scheduler = new EncodeScheduler(8, 4);
+        var active = new AtomicInteger();
+        var peak = new AtomicInteger();
+        var submitter = scheduler.submitter("a", 1, 8);
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+
+        for (int i = 0; i < 8; i++) {
+            futures.add(submitter.submit("job", 2, () -> {
+                peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.sleep(5);
+                return active.decrementAndGet();
+            }));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        assertEquals(2, peak.get());
+    }
+
+    @Test
+    void testWeightedFairShare() throws Exception {
+        var scheduler = new EncodeScheduler(1, 1);
+        var gate = new CountDownLatch(1);
+        var blocker = scheduler.submitter("gate", 1, 1).submit("gate", 1, () -> {
+            gate.await();
+            return null;
+        });
+
+        var heavy = scheduler.submitter("heavy", 3, 1);
+        var light = scheduler.submitter("light", 1, 1);
+        var order = Collections.synchronizedList(new ArrayList<String>());
+        var futures = new ArrayList<CompletableFuture<Boolean>>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(heavy.submit("h", 1, () -> order.add("h")));
+            futures.add(light.submit("l", 1, () -> order.add("l")));
+        }
+        assertEquals(16, scheduler.snapshot().queuedJobs());
+
+        gate.countDown();
+        blocker.get(10, TimeUnit.SECONDS);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+        var firstEight = order.subList(0, 8);
+        assertEquals(6, Collections.frequency(firstEight, "h"), order.toString());
+        assertEquals(2, Collections.frequency(firstEight, "l"), order.toString());
+    }
+
+    @Test
+    void testCancelPendingKeepsRunningJob() throws Exception {
+        var scheduler = new EncodeScheduler(1, 1);
+        var submitter = scheduler.submitter("a", 1, 1);
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var running = submitter.submit("running", 1, () -> {
+            started.countDown();
+            release.await();
+            return "done";
+        });
+        var pending = submitter.submit("pending", 1, () -> "never");
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        assertEquals(1, submitter.cancelPending());
+        assertTrue(pending.isCancelled());
+        assertEquals(1, scheduler.snapshot().running().size());
+
+        release.countDown();
+        assertEquals("done", running.get(10, TimeUnit.SECONDS));
+        assertEquals(1, submitter.stats().completed());
+    }
+
+    @Test
+    void testWritersPerDeviceCap() throws Exception {
+        var dir = Files.createTempDirectory("vvcnv-writers");
+        var scheduler = new EncodeScheduler(4, 8, 0, 1);
+        var submitter = scheduler.submitter("a", 1, 4);
+        var active = new AtomicInteger();
+        var peak = new AtomicInteger();
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+
+        for (int i = 0; i < 4; i++) {
+            var resources = Resources.writing(1, dir.resolve("out" + i + ".mp4"), 1);
+            futures.add(submitter.submit("job", resources, () -> {
+                peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.sleep(5);
+                return active.decrementAndGet();
+            }));
+        }
+        // A job without output is not held back by the writer cap
+        futures.add(submitter.submit("cpu", 1, () -> 0));
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        assertTrue(peak.get() <= 2, "peak " + peak.get());
+    }
+
+    @Test
+    void testJobWaitsForDiskSpaceInsteadOfFailing() throws Exception {
+        var dir = Files.createTempDirectory("vvcnv-space");
+        long usable = Files.getFileStore(dir).getUsableSpace();
+        var scheduler = new EncodeScheduler(3, 3, 0, 8);
+        var starved = scheduler.submitter("starved", 1, 1);
+        var other = scheduler.submitter("other", 1, 1);
+
+        var writing = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var writer = other.submit("writer", Resources.writing(1, dir.resolve("writer.mp4"), 1), () -> {
+            writing.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        });
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+        var huge = starved.submit("huge", Resources.writing(1, dir.resolve("huge.mp4"), usable + (1L << 40)),
+            () -> "alone");
+        Thread.sleep(EncodeScheduler.DISK_RECHECK.toMillis() + 200);
+        assertFalse(huge.isDone());
+        var snapshot = scheduler.snapshot();
+        assertEquals(1, snapshot.diskWaiting());
+        assertTrue(snapshot.toString().contains("ディスク待ち 1"), snapshot.toString());
+        // Another submitter is not blocked by the waiting job
+        assertEquals("ok", scheduler.submitter("third", 1, 1)
+            .submit("small", Resources.writing(1, dir.resolve("small.mp4"), 1), () -> "ok")
+            .get(10, TimeUnit.SECONDS));
+
+        // Once nothing else writes there, waiting would never end: it runs
+        release.countDown();
+        assertTrue(writer.get(10, TimeUnit.SECONDS));
+        assertEquals("alone", huge.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testOversizedJobRunsAloneOnItsDevice() throws Exception {
+        var dir = Files.createTempDirectory("vvcnv-space");
+        long usable = Files.getFileStore(dir).getUsableSpace();
+        var scheduler = new EncodeScheduler(1, 1, 0, 8);
+        var submitter = scheduler.submitter("a", 1, 1);
+
+        // Alone on the device, a job larger than the disk is not held forever
+        assertEquals("ok", submitter.submit("huge", Resources.writing(1, dir.resolve("huge.mp4"),
+            usable + (1L << 40)), () -> "ok").get(10, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.snapshot().diskWaiting());
+    }
+
+    @Test
+    void testMemoryBudgetPacksBySize() throws Exception {
+        var scheduler = new EncodeScheduler(8, 8);
+        scheduler.setMemoryBudget(1000);
+        var submitter = scheduler.submitter("a", 1, 8);
+        var large = new AtomicInteger();
+        var largePeak = new AtomicInteger();
+        var small = new AtomicInteger();
+        var smallPeak = new AtomicInteger();
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+
+        // Two 600-byte jobs cannot share the budget; four 200-byte jobs can
+        for (long memory : new long[] { 600, 600, 200, 200, 200, 200, 200 }) {
+            var active = memory == 600 ? large : small;
+            var peak = memory == 600 ? largePeak : smallPeak;
+            futures.add(submitter.submit("job", Resources.cores(1).withMemory(memory), () -> {
+                peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                return active.decrementAndGet();
+            }));
+        }
+        // A job over the whole budget still runs, alone
+        futures.add(submitter.submit("huge", Resources.cores(1).withMemory(5000),
+            () -> large.get() + small.get()));
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        assertEquals(1, largePeak.get());
+        assertTrue(smallPeak.get() >= 2 && smallPeak.get() <= 5, "small peak " + smallPeak.get());
+        assertEquals(0, futures.getLast().get());
+        assertEquals(0, scheduler.snapshot().runningMemory());
+    }
+
+    @Test
+    void testJobQosFallsBackToSchedulerDefault() throws Exception {
+        var scheduler = new EncodeScheduler(2, 2);
+        scheduler.setDefaultQos(Qos.BATCH);
+        var submitter = scheduler.submitter("a", 1, 2);
+
+        assertEquals(Qos.BATCH, submitter.submit("default", 1, EncodeScheduler::currentQos).get(5, TimeUnit.SECONDS));
+        assertEquals(Qos.IDLE, submitter.submit("own", Resources.cores(1).withQos(Qos.IDLE),
+            EncodeScheduler::currentQos).get(5, TimeUnit.SECONDS));
+        assertEquals(Qos.NORMAL, EncodeScheduler.currentQos());
+    }
+}
@@ -0,0 +1,115 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.modules.*;
+import wappon28dev.vvcnv_java.util.Result;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/**
+ * Tests for the lean ffprobe output parser
+ */
+public class LeanProbeTest {
+
+    private static Result<VideoStat, String> parse(String output) throws IOException {
+        return LeanProbe.parse("input.mp4", new BufferedReader(new StringReader(output)));
+    }
+
+    @Test
+    void testParseVideoAndAudio() throws IOException {
+        var result = parse("""
+                [STREAM]
+                codec_name=h264
+                codec_type=video
+                width=1920
+                height=1080
+                pix_fmt=yuv420p
+                r_frame_rate=30000/1001
+                [/STREAM]
+                [STREAM]
+                codec_name=aac
+                codec_type=audio
+                sample_rate=48000
+                channels=2
+                r_frame_rate=0/0
+                [/STREAM]
+                [FORMAT]
+                duration=4.004000
+                size=8400000
+                [/FORMAT]
+                """);
+
+        assertTrue(result.isOk());
+        VideoStat stat = result.unwrap();
+        assertEquals("input.mp4", stat.path());
+        assertEquals(1920, stat.videoStream().width());
+        assertEquals(1080, stat.videoStream().height());
+        assertEquals(29.97, stat.videoStream().fps(), 0.01);
+        assertEquals("yuv420p", stat.videoStream().pixFmt());
+        assertEquals("h264", stat.videoStream().codec());
+        assertEquals(1, stat.audioStreams().size());
+        assertEquals(new VideoStat.AudioStreamInfo("aac", 48000, 2), stat.audioStreams().getFirst());
+        assertEquals(4004, stat.duration().toMillis());
+        assertEquals(8400000L, stat.fileSize());
+    }
+
+    @Test
+    void testNotAvailableValuesAreIgnored() throws IOException {
+        var result = parse("""
+                [STREAM]
+                codec_type=video
+                width=640
+                height=360
+                r_frame_rate=25/1
+                [/STREAM]
+                [FORMAT]
+                duration=N/A
+                size=N/A
+                [/FORMAT]
+                """);
+
+        assertTrue(result.isOk());
+        assertEquals(25.0, result.unwrap().videoStream().fps());
+        assertEquals(0, result.unwrap().duration().toMillis());
+        assertTrue(result.unwrap().audioStreams().isEmpty());
+    }
+
+    @Test
+    void testAudioOnlyIsRejected() throws IOException {
+        var result = parse("""
+                [STREAM]
+                codec_name=mp3
+                codec_type=audio
+                sample_rate=44100
+                channels=2
+                [/STREAM]
+                """);
+
+        assertTrue(result.isErr());
+    }
+
+    @Test
+    void testProbeSurvivesFullStderrPipe() throws IOException {
+        // Stands in for an ffprobe that warns more than a pipe buffer holds before printing its stream
+        var ffprobe = Files.createTempFile("vvcnv-ffprobe", ".sh", PosixFilePermissions.asFileAttribute(
+            PosixFilePermissions.fromString("rwx------")));
+        Files.writeString(ffprobe, """
+                #!/bin/sh
+                head -c 262144 /dev/zero | tr '\\0' w >&2
+                printf '[STREAM]\\ncodec_type=video\\nwidth=640\\nheight=360\\nr_frame_rate=25/1\\n[/STREAM]\\n'
+                """);
+        try {
+            var result = LeanProbe.probe(ffprobe.toString(), "input.mp4");
+
+            assertTrue(result.isOk());
+            assertEquals(640, result.unwrap().videoStream().width());
+        } finally {
+            Files.delete(ffprobe);
+        }
+    }
+}
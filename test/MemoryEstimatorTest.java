@@ -0,0 +1,59 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.modules.*;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Tests for peak memory estimates used in memory admission
+ */
+public class MemoryEstimatorTest {
+
+    private static final VideoStat SOURCE = new VideoStat("8k.mp4",
+        new VideoStat.VideoStreamInfo(7680, 4320, 30, "yuv420p"), List.of(), Duration.ofSeconds(60), 1L << 30);
+
+    @Test
+    void testGrowsWithResolutionAndThreads() {
+        var estimator = new MemoryEstimator();
+        long small = estimator.estimate(SOURCE, new VideoConfig(VideoRes.R360P, 30, 23, false), 2);
+        long large = estimator.estimate(SOURCE, new VideoConfig(VideoRes.R4320P, 30, 23, false), 2);
+        long largeWide = estimator.estimate(SOURCE, new VideoConfig(VideoRes.R4320P, 30, 23, false), 16);
+
+        assertTrue(small < large);
+        assertTrue(large < largeWide);
+        // An 8K x264 encode needs gigabytes
+        assertTrue(large > 2L * 1024 * 1024 * 1024, Long.toString(large));
+    }
+
+    @Test
+    void testCalibratesFromPeakRss() {
+        var estimator = new MemoryEstimator();
+        var config = new VideoConfig(VideoRes.R720P, 30, 23, false);
+        long before = estimator.estimate(SOURCE, config, 4);
+
+        // This machine uses half of what the model predicts
+        long observed = (long) (before / MemoryEstimator.SAFETY_FACTOR / 2);
+        estimator.record(SOURCE, config, 4, observed);
+        assertEquals(observed * MemoryEstimator.SAFETY_FACTOR, estimator.estimate(SOURCE, config, 4), before * 0.01);
+
+        // Resolutions that have not run yet follow the overall calibration
+        var other = new VideoConfig(VideoRes.R1080P, 30, 23, false);
+        long uncalibrated = new MemoryEstimator().estimate(SOURCE, other, 4);
+        assertEquals(uncalibrated / 2.0, estimator.estimate(SOURCE, other, 4), uncalibrated * 0.01);
+
+        // A low-memory retry peaks lower, as the model expects, and leaves the
+        // calibration where it was
+        long retried = (long) (estimator.estimate(SOURCE, config, 4, MemoryEstimator.LOW_MEMORY_LOOKAHEAD)
+            / MemoryEstimator.SAFETY_FACTOR);
+        assertTrue(retried < observed);
+        estimator.record(SOURCE, config, 4, MemoryEstimator.LOW_MEMORY_LOOKAHEAD, retried);
+        assertEquals(observed * MemoryEstimator.SAFETY_FACTOR, estimator.estimate(SOURCE, config, 4), before * 0.01);
+
+        // Missing samples are ignored
+        estimator.record(SOURCE, config, 4, -1);
+        assertEquals(observed * MemoryEstimator.SAFETY_FACTOR, estimator.estimate(SOURCE, config, 4), before * 0.01);
+    }
+}
@@ -0,0 +1,117 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.modules.EncodeOptions;
+import wappon28dev.vvcnv_java.modules.OutputMeter;
+import wappon28dev.vvcnv_java.modules.OutputMeter.Digest;
+import wappon28dev.vvcnv_java.modules.VideoConfig;
+import wappon28dev.vvcnv_java.modules.VideoModule;
+import wappon28dev.vvcnv_java.modules.VideoModule.VideoProcessParams;
+import wappon28dev.vvcnv_java.modules.VideoRes;
+import wappon28dev.vvcnv_java.modules.VideoStat;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Tests for the counting sink of size-only measurements
+ */
+public class OutputMeterTest {
+
+    private static byte[] data(int length, long seed) {
+        var bytes = new byte[length];
+        new SplittableRandom(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static OutputMeter.Measured drain(byte[] bytes, Digest digest) throws Exception {
+        return OutputMeter.drain(Channels.newChannel(new ByteArrayInputStream(bytes)), digest, total -> {
+        });
+    }
+
+    @Test
+    void testCountsEveryByte() throws Exception {
+        var bytes = data(3 * OutputMeter.BUFFER_BYTES + 17, 1);
+        var progress = new long[] { 0 };
+        var measured = OutputMeter.drain(Channels.newChannel(new ByteArrayInputStream(bytes)), Digest.NONE,
+            total -> {
+                assertTrue(total > progress[0]);
+                progress[0] = total;
+            });
+        assertEquals(bytes.length, measured.bytes());
+        assertEquals(bytes.length, progress[0]);
+        assertNull(measured.digest());
+        assertEquals(0, drain(new byte[0], Digest.NONE).bytes());
+    }
+
+    @Test
+    void testFullDigestIsSha256OfOutput() throws Exception {
+        var bytes = data(2 * OutputMeter.BUFFER_BYTES + 5, 2);
+        var expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        assertEquals(expected, drain(bytes, Digest.FULL).digest());
+    }
+
+    @Test
+    void testSampledDigestCoversSampleWindowsAndLength() throws Exception {
+        int length = (int) OutputMeter.SAMPLE_STRIDE + 2 * OutputMeter.SAMPLE_BYTES;
+        var bytes = data(length, 3);
+        var digest = drain(bytes, Digest.SAMPLED).digest();
+        assertEquals(digest, drain(bytes.clone(), Digest.SAMPLED).digest());
+
+        // Outside every window: same digest
+        var outside = bytes.clone();
+        outside[OutputMeter.SAMPLE_BYTES + 1] ^= 1;
+        assertEquals(digest, drain(outside, Digest.SAMPLED).digest());
+
+        // Inside the second window: different digest
+        var inside = bytes.clone();
+        inside[(int) OutputMeter.SAMPLE_STRIDE + 10] ^= 1;
+        assertNotEquals(digest, drain(inside, Digest.SAMPLED).digest());
+
+        // Same windows, different length
+        var longer = java.util.Arrays.copyOf(bytes, length + 1);
+        assertNotEquals(digest, drain(longer, Digest.SAMPLED).digest());
+    }
+
+    @Test
+    void testMp4AndMovAreMeasuredAsRealFiles() {
+        var scratch = OutputMeter.scratchFileOf("out/clip--crf-23.mp4");
+        assertEquals(OutputMeter.scratchDir(), scratch.getParent());
+        assertTrue(scratch.getFileName().toString().endsWith("clip--crf-23.mp4"));
+        assertNotNull(OutputMeter.scratchFileOf("clip.MOV"));
+        assertNull(OutputMeter.scratchFileOf("clip.mkv"));
+        assertNull(OutputMeter.scratchFileOf("clip.webm"));
+    }
+
+    @Test
+    void testMeasuredCommandWritesScratchFileOrPipe() {
+        var stat = new VideoStat("in.mp4", new VideoStat.VideoStreamInfo(1920, 1080, 30, "yuv420p"),
+            List.of(), Duration.ofSeconds(60), 1);
+        var config = new VideoConfig(VideoRes.R720P, 30, 23, false);
+        var measure = EncodeOptions.DEFAULT.withMeasureOnly(true);
+
+        var mp4 = VideoModule.command("ffmpeg", stat, new VideoProcessParams("out.mp4", config, 1, measure));
+        assertEquals(OutputMeter.scratchFileOf("out.mp4").toString(), mp4.getLast());
+        assertFalse(mp4.contains("-movflags"));
+        var mkv = VideoModule.command("ffmpeg", stat, new VideoProcessParams("out.mkv", config, 1, measure));
+        assertEquals("-", mkv.getLast());
+        assertEquals("matroska", mkv.get(mkv.lastIndexOf("-f") + 1));
+    }
+
+    @Test
+    void testFileIsMeasuredLikeThePipe() throws Exception {
+        var bytes = data(OutputMeter.BUFFER_BYTES + 3, 4);
+        var file = Files.createTempFile("vvcnv-measure", ".mp4");
+        Files.write(file, bytes);
+        assertEquals(drain(bytes, Digest.FULL), OutputMeter.measure(file, Digest.FULL));
+        assertEquals(new OutputMeter.Measured(bytes.length, null), OutputMeter.measure(file, Digest.NONE));
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,62 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.modules.*;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Tests for output size estimates used in disk admission
+ */
+public class OutputSizeEstimatorTest {
+
+    private static VideoStat stat(String path) {
+        return stat(path, 60L * 1024 * 1024);
+    }
+
+    private static VideoStat stat(String path, long fileSize) {
+        return new VideoStat(path, new VideoStat.VideoStreamInfo(1920, 1080, 30, "yuv420p"), List.of(),
+            Duration.ofSeconds(60), fileSize);
+    }
+
+    @Test
+    void testLearnsFromFinishedEncodes() {
+        var estimator = new OutputSizeEstimator();
+        var source = stat("a.mp4");
+        var config = new VideoConfig(VideoRes.R720P, 30, 23, false);
+
+        // Before any history the source bitrate is scaled to the target pixels
+        long prior = estimator.estimate(source, config);
+        assertTrue(prior > 0);
+
+        estimator.record(source, config, 10L * 1024 * 1024);
+        long same = estimator.estimate(source, config);
+        assertEquals(10L * 1024 * 1024 * OutputSizeEstimator.SAFETY_FACTOR, same, 1024);
+
+        // +6 CRF halves the bitrate
+        long higherCrf = estimator.estimate(source, new VideoConfig(VideoRes.R720P, 30, 29, false));
+        assertEquals(same / 2.0, higherCrf, 1024);
+
+        // Other sources fall back to every sample seen so far
+        assertEquals(same, estimator.estimate(stat("b.mp4", 80L * 1024 * 1024), config), 1024);
+    }
+
+    @Test
+    void testStagedCopyCountsForItsOriginal() {
+        var estimator = new OutputSizeEstimator();
+        var original = stat("/videos/a.mp4");
+        var staged = stat("/dev/shm/vvcnv/0123abcd.mp4");
+        var config = new VideoConfig(VideoRes.R720P, 30, 23, false);
+
+        // Encodes read the staged copy; the grid estimates with the original
+        estimator.record(staged, config, 10L * 1024 * 1024);
+        // A nearer CRF of another source would win the global fallback
+        estimator.record(stat("b.mp4", 80L * 1024 * 1024), new VideoConfig(VideoRes.R720P, 30, 24, false),
+            40L * 1024 * 1024);
+
+        long estimate = estimator.estimate(original, new VideoConfig(VideoRes.R720P, 30, 24, false));
+        assertEquals(10L * 1024 * 1024 * OutputSizeEstimator.SAFETY_FACTOR * Math.pow(2, -1 / 6.0), estimate, 1024);
+    }
+}
@@ -0,0 +1,93 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.modules.PreviewModule;
+import wappon28dev.vvcnv_java.util.Result;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for preview commands and the content-keyed cache
+ */
+public class PreviewModuleTest {
+
+    @Test
+    void testCommandsDecodeKeyframesOnly() {
+        var thumbnail = PreviewModule.thumbnailCommand("ffmpeg", "in.mp4", 12.5, "thumb.jpg");
+        int skip = thumbnail.indexOf("-skip_frame");
+        assertTrue(skip >= 0);
+        assertEquals("nokey", thumbnail.get(skip + 1));
+        // Input options must come before -i to apply to the decoder / demuxer
+        assertTrue(skip < thumbnail.indexOf("-i"));
+        assertTrue(thumbnail.indexOf("-ss") < thumbnail.indexOf("-i"));
+        assertEquals("12.500", thumbnail.get(thumbnail.indexOf("-ss") + 1));
+        assertEquals("1", thumbnail.get(thumbnail.indexOf("-threads") + 1));
+
+        var proxy = PreviewModule.proxyCommand("ffmpeg", "in.mp4", "proxy.mp4");
+        assertTrue(proxy.indexOf("-skip_frame") < proxy.indexOf("-i"));
+        assertTrue(proxy.contains("-an"));
+        assertEquals("proxy.mp4", proxy.getLast());
+    }
+
+    @Test
+    void testPreviewCommandMapsOneInputPerOutput() {
+        var command = PreviewModule.previewCommand("ffmpeg", "in.mp4", new double[] { 2.5, 5.0 },
+            List.of("t0.jpg", "t1.jpg"), "proxy.mp4");
+        assertEquals(3, command.stream().filter("-i"::equals).count());
+        assertEquals(3, command.stream().filter("nokey"::equals).count());
+        assertEquals("2.500", command.get(command.indexOf("-ss") + 1));
+
+        // Every output follows its own -map of the matching input
+        assertEquals("t0.jpg", command.get(command.indexOf("0:v:0") + 9));
+        assertEquals("t1.jpg", command.get(command.indexOf("1:v:0") + 9));
+        int proxyMap = command.indexOf("2:v:0");
+        assertTrue(proxyMap > command.lastIndexOf("-i"));
+        assertTrue(command.subList(proxyMap, command.size()).contains("-an"));
+        assertEquals("proxy.mp4", command.getLast());
+    }
+
+    @Test
+    void testContentKeyFollowsContent() throws Exception {
+        var file = Files.createTempFile("vvcnv-preview", ".mp4");
+        file.toFile().deleteOnExit();
+        Files.write(file, new byte[200_000]);
+
+        var key = PreviewModule.contentKey(file);
+        assertEquals(key, PreviewModule.contentKey(file));
+
+        var bytes = new byte[200_000];
+        bytes[199_999] = 1;
+        Files.write(file, bytes);
+        assertNotEquals(key, PreviewModule.contentKey(file));
+    }
+
+    @Test
+    void testCacheHitSkipsFfmpeg() throws Exception {
+        var cacheDir = Files.createTempDirectory("vvcnv-preview-cache");
+        var output = Files.createTempFile("vvcnv-preview", ".mp4");
+        Files.write(output, new byte[] { 1, 2, 3 });
+
+        var entry = Files.createDirectories(cacheDir.resolve(PreviewModule.contentKey(output)));
+        Files.write(entry.resolve("thumb_0.jpg"), new byte[] { 0 });
+        Files.write(entry.resolve("thumb_1.jpg"), new byte[] { 0 });
+        Files.write(entry.resolve("proxy.mp4"), new byte[] { 0 });
+
+        // A missing ffmpeg would fail any real generation
+        var module = new PreviewModule("/nonexistent/ffmpeg", cacheDir);
+        var result = module.request(output.toString(), Duration.ofSeconds(10)).get(10, TimeUnit.SECONDS);
+
+        var preview = assertInstanceOf(Result.Ok.class, result).value();
+        assertEquals(2, ((PreviewModule.Preview) preview).thumbnails().size());
+        assertEquals(entry.resolve("proxy.mp4"), ((PreviewModule.Preview) preview).proxy());
+
+        Files.write(output, new byte[] { 4, 5, 6 });
+        assertTrue(module.generate(output, Duration.ofSeconds(10)).isErr());
+        try (var leftovers = Files.list(cacheDir)) {
+            assertEquals(1, leftovers.count(), "failed runs must not leave staging directories");
+        }
+    }
+}
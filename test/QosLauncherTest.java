@@ -0,0 +1,74 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.scheduler.Qos;
+import wappon28dev.vvcnv_java.scheduler.QosLauncher;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+/**
+ * Tests for QoS validation and the wrapped command lines
+ */
+public class QosLauncherTest {
+
+    private static final List<String> FFMPEG = List.of("ffmpeg", "-i", "in.mp4", "out.mp4");
+    private static final QosLauncher.Tools ALL = new QosLauncher.Tools("/usr/bin/nice", "/usr/bin/ionice",
+        "/usr/bin/systemd-run");
+
+    @Test
+    void testNormalWithoutToolsIsUnchanged() {
+        assertEquals(FFMPEG, QosLauncher.wrap(Qos.NORMAL, FFMPEG, QosLauncher.Tools.NONE));
+        assertEquals(FFMPEG, QosLauncher.wrap(Qos.IDLE, FFMPEG, QosLauncher.Tools.NONE));
+        assertEquals(FFMPEG, QosLauncher.wrap(Qos.NORMAL, FFMPEG, ALL));
+    }
+
+    @Test
+    void testPrioritiesWrapCommand() {
+        assertEquals(List.of("/usr/bin/nice", "-n", "10", "/usr/bin/ionice", "-c", "2", "-n", "7",
+            "ffmpeg", "-i", "in.mp4", "out.mp4"), QosLauncher.wrap(Qos.BATCH, FFMPEG, ALL));
+        assertEquals(List.of("/usr/bin/nice", "-n", "19", "/usr/bin/ionice", "-c", "3",
+            "ffmpeg", "-i", "in.mp4", "out.mp4"), QosLauncher.wrap(Qos.IDLE, FFMPEG, ALL));
+    }
+
+    @Test
+    void testLimitsStartScopeInSlice() {
+        var command = QosLauncher.wrap(Qos.BATCH.withLimits(150, 512L << 20), FFMPEG, ALL);
+        assertEquals("/usr/bin/systemd-run", command.getFirst());
+        assertTrue(command.contains("--slice=" + QosLauncher.SLICE));
+        assertTrue(command.contains("CPUQuota=150%"));
+        assertTrue(command.contains("MemoryMax=" + (512L << 20)));
+        // systemd-run options end before the wrapped command
+        assertTrue(command.indexOf("--") < command.indexOf("/usr/bin/nice"));
+        assertEquals(FFMPEG, command.subList(command.size() - FFMPEG.size(), command.size()));
+
+        // Without systemd-run the limits are dropped, priorities still apply
+        var noCgroup = new QosLauncher.Tools("/usr/bin/nice", null, null);
+        assertEquals("/usr/bin/nice", QosLauncher.wrap(Qos.BATCH.withLimits(150, 0), FFMPEG, noCgroup).getFirst());
+    }
+
+    @Test
+    void testValidation() {
+        assertThrows(IllegalArgumentException.class, () -> new Qos(-1, Qos.IoClass.DEFAULT, 4, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new Qos(20, Qos.IoClass.DEFAULT, 4, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new Qos(0, Qos.IoClass.BEST_EFFORT, 8, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> Qos.NORMAL.withLimits(-1, 0));
+        assertFalse(Qos.BATCH.hasLimits());
+        assertTrue(Qos.BATCH.withLimits(0, 1).hasLimits());
+    }
+
+    @Test
+    void testFromSystemProperties() {
+        try {
+            System.setProperty("vvcnv.qos", "idle");
+            System.setProperty("vvcnv.qos.memoryMaxMB", "256");
+            assertEquals(Qos.IDLE.withLimits(0, 256L << 20), Qos.fromSystemProperties());
+            System.clearProperty("vvcnv.qos");
+            System.clearProperty("vvcnv.qos.memoryMaxMB");
+            assertEquals(Qos.BATCH, Qos.fromSystemProperties());
+        } finally {
+            System.clearProperty("vvcnv.qos");
+            System.clearProperty("vvcnv.qos.memoryMaxMB");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.jfr.PlanEvent;
+import wappon28dev.vvcnv_java.jfr.RecordingAnalyzer;
+import wappon28dev.vvcnv_java.metrics.EncodeMetrics;
+import wappon28dev.vvcnv_java.scheduler.EncodeScheduler;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import jdk.jfr.Recording;
+
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests that scheduler, encode and plan events reach a recording and the
+ * analyzer
+ */
+public class RecordingAnalyzerTest {
+
+    @Test
+    void testSummarizeRecording() throws Exception {
+        var file = Files.createTempFile("vvcnv", ".jfr");
+        file.toFile().deleteOnExit();
+
+        try (var recording = new Recording()) {
+            recording.enable("wappon28dev.vvcnv.Plan");
+            recording.enable("wappon28dev.vvcnv.SchedulerQueue");
+            recording.enable("wappon28dev.vvcnv.Encode");
+            recording.start();
+
+            var plan = new PlanEvent();
+            plan.sources = 1;
+            plan.resolutions = "[360p, 720p]";
+            plan.crfValues = "[20, 30]";
+            plan.tasks = 4;
+            plan.commit();
+
+            var scheduler = new EncodeScheduler(1, 1);
+            var submitter = scheduler.submitter("grid", 1, 1);
+            var first = submitter.submit("a", 1, () -> {
+                try (var task = EncodeMetrics.shared().start("out/a.mp4", "VideoConfig[crf=20]")) {
+                    task.succeeded(2 * 1024 * 1024);
+                }
+                return null;
+            });
+            var second = submitter.submit("b", 1, () -> null);
+            submitter.submit("c", 1, () -> null).cancel(false);
+            CompletableFuture.allOf(first, second).get(10, TimeUnit.SECONDS);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        var summary = RecordingAnalyzer.summarize(file);
+
+        assertTrue(summary.contains("1 sources × [360p, 720p] × CRF [20, 30] = 4 tasks"), summary);
+        assertTrue(summary.contains("grid: n=2"), summary);
+        assertTrue(summary.contains("cancelled: 1"), summary);
+        assertTrue(summary.contains("VideoConfig[crf=20]"), summary);
+        assertTrue(summary.contains("output=2.0 MB"), summary);
+    }
+}
@@ -0,0 +1,156 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.modules.Encoded;
+import wappon28dev.vvcnv_ui.models.ConversionResult;
+import wappon28dev.vvcnv_ui.models.ResultGridModel;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests for the grid model's lock-free updates and coalesced flushes
+ */
+public class ResultGridModelTest {
+
+    @Test
+    void testConcurrentUpdatesAreCountedOnce() throws Exception {
+        var model = new ResultGridModel(new String[] { "360p", "720p", "1080p", "1440p" }, 16);
+        int cells = model.cellCount();
+        var start = new CountDownLatch(1);
+        var workers = new ArrayList<Thread>();
+
+        // Two workers race to finish every cell; only the first may count
+        for (int w = 0; w < 2; w++) {
+            boolean succeed = w == 0;
+            workers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int cell = 0; cell < cells; cell++) {
+                    int row = cell / 4;
+                    int column = cell % 4;
+                    model.markRunning(row, column);
+                    if (succeed) {
+                        model.markSucceeded(row, column, "out.mp4", 1024, 1);
+                    } else {
+                        model.markFailed(row, column, "失敗", "error", 1);
+                    }
+                }
+            }));
+        }
+        start.countDown();
+        for (var worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(cells, model.completedCount());
+        int succeeded = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            var value = (ConversionResult) model.getValueAt(cell / 4, cell % 4);
+            if (value.success()) {
+                succeeded++;
+                assertEquals(1024, model.outputBytes(cell / 4, cell % 4));
+            }
+        }
+        assertEquals(succeeded, model.successCount());
+        assertFalse(model.markStopped(0, 0));
+    }
+
+    @Test
+    void testFlushCoalescesEvents() throws Exception {
+        var model = new ResultGridModel(new String[] { "360p", "720p" }, 40);
+        List<TableModelEvent> events = Collections.synchronizedList(new ArrayList<>());
+        model.addTableModelListener(events::add);
+
+        // Mark on the EDT so the frame timer cannot flush halfway through
+        assertEquals("待機中...", model.getValueAt(0, 0));
+        SwingUtilities.invokeAndWait(() -> {
+            model.markRunning(0, 0);
+            model.markRunning(0, 0);
+            model.markSucceeded(3, 1, "out.mp4", 2048, 1);
+            model.flush();
+        });
+        assertEquals("変換中...", model.getValueAt(0, 0));
+        assertEquals(2, events.size());
+        assertEquals(0, events.get(0).getFirstRow());
+        assertEquals(0, events.get(0).getColumn());
+        assertEquals(3, events.get(1).getFirstRow());
+        assertEquals(1, events.get(1).getColumn());
+
+        // Many dirty cells collapse into one row-range event
+        events.clear();
+        SwingUtilities.invokeAndWait(() -> {
+            for (int row = 5; row < 30; row++) {
+                model.markStopped(row, 0);
+                model.markStopped(row, 1);
+            }
+            model.flush();
+        });
+        assertEquals(1, events.size());
+        assertEquals(5, events.get(0).getFirstRow());
+        assertEquals(29, events.get(0).getLastRow());
+        assertEquals(TableModelEvent.ALL_COLUMNS, events.get(0).getColumn());
+
+        // The pending frame timer finds nothing left to flush
+        events.clear();
+        Thread.sleep(ResultGridModel.FRAME_MILLIS * 4L);
+        SwingUtilities.invokeAndWait(() -> {
+        });
+        assertTrue(events.isEmpty(), events.toString());
+        assertEquals(51, model.completedCount());
+        assertEquals(1, model.successCount());
+        assertEquals(1, model.elapsedNanos(3, 1));
+    }
+
+    @Test
+    void testDecimatedCellKeepsFrameReduction() throws Exception {
+        var model = new ResultGridModel(new String[] { "720p" }, 2);
+        model.markSucceeded(0, 0, "a.mp4", 1024, 1);
+        model.markSucceeded(1, 0, "b.mp4", 1024, 1, false, new Encoded(450).frameReduction(1800));
+        SwingUtilities.invokeAndWait(model::flush);
+
+        var plain = (ConversionResult) model.getValueAt(0, 0);
+        assertFalse(plain.decimated());
+        var decimated = (ConversionResult) model.getValueAt(1, 0);
+        assertTrue(decimated.decimated());
+        assertEquals(0.75, decimated.frameReduction(), 1e-9);
+
+        assertTrue(Double.isNaN(Encoded.UNKNOWN.frameReduction(1800)));
+        assertEquals(0, new Encoded(1900).frameReduction(1800));
+    }
+
+    @Test
+    void testCellTextIsBuiltWhenTheCellFinishes() throws Exception {
+        var model = new ResultGridModel(new String[] { "720p" }, 4);
+        model.markSucceeded(0, 0, "a.mp4", 1024, 1);
+        model.markSucceeded(1, 0, "b.mp4", 1024, 1, true);
+        model.markMeasured(2, 0, 1024, 1, false, 0.75, "ab12");
+        model.markFailed(3, 0, "失敗", "exit 1\n[error] broken <pipe>", 1);
+        SwingUtilities.invokeAndWait(model::flush);
+
+        var plain = (ConversionResult) model.getValueAt(0, 0);
+        assertEquals(plain.fileSize(), plain.label());
+        assertNull(plain.tooltip());
+        assertSame(plain, model.getValueAt(0, 0));
+
+        var remux = (ConversionResult) model.getValueAt(1, 0);
+        assertEquals(remux.fileSize() + " (remux)", remux.label());
+        assertTrue(remux.tooltip().startsWith("再エンコードせず"));
+
+        var measured = (ConversionResult) model.getValueAt(2, 0);
+        assertEquals(measured.fileSize() + " (-75%)", measured.label());
+        assertTrue(measured.tooltip().endsWith("SHA-256: ab12"));
+
+        var failed = (ConversionResult) model.getValueAt(3, 0);
+        assertEquals("失敗", failed.label());
+        assertEquals("<html><b>exit 1</b><pre>[error] broken &lt;pipe&gt;</pre></html>", failed.tooltip());
+    }
+}
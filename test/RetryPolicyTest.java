@@ -0,0 +1,91 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.modules.EncodeFailure;
+import wappon28dev.vvcnv_java.modules.RetryPolicy;
+import wappon28dev.vvcnv_java.modules.SizeGuard;
+import wappon28dev.vvcnv_java.util.Result;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for failure classification and retries
+ */
+public class RetryPolicyTest {
+
+    @Test
+    void testClassifiesHowProcessEnded() {
+        assertEquals(EncodeFailure.STALLED, EncodeFailure.classify(true, 137, List.of()));
+        assertEquals(EncodeFailure.OUT_OF_MEMORY, EncodeFailure.classify(false, 137, List.of()));
+        assertEquals(EncodeFailure.OUT_OF_MEMORY,
+            EncodeFailure.classify(false, 1, List.of("Error while filtering: Cannot allocate memory")));
+        assertEquals(EncodeFailure.CRASHED, EncodeFailure.classify(false, 139, List.of()));
+        assertEquals(EncodeFailure.CRASHED, EncodeFailure.classify(false, 134, List.of()));
+        assertEquals(EncodeFailure.ERROR, EncodeFailure.classify(false, 1, List.of("No such file or directory")));
+    }
+
+    @Test
+    void testErrorCarriesKindAndTail() {
+        var error = EncodeFailure.CRASHED.error(EncodeFailure.exitSummary(139), List.of("line 1", "line 2"));
+        assertEquals("crashed: ffmpeg exited with 139 (signal 11)\nline 1\nline 2", error);
+        assertEquals(EncodeFailure.CRASHED, EncodeFailure.of(error));
+        assertEquals(EncodeFailure.ERROR, EncodeFailure.of("Encoding failed: boom"));
+        assertNull(EncodeFailure.of(SizeGuard.abortedError(1 << 20, "cap")));
+    }
+
+    @Test
+    void testDegradedAttemptAndBackoff() {
+        var first = RetryPolicy.Attempt.first(8);
+        assertEquals(new RetryPolicy.Attempt(1, 8, false), first.next(EncodeFailure.STALLED));
+        var degraded = first.next(EncodeFailure.OUT_OF_MEMORY);
+        assertEquals(new RetryPolicy.Attempt(1, 4, true), degraded);
+        assertEquals(new RetryPolicy.Attempt(2, 2, true), degraded.next(EncodeFailure.CRASHED));
+        assertEquals(1, new RetryPolicy.Attempt(3, 1, true).next(EncodeFailure.CRASHED).threads());
+
+        var policy = new RetryPolicy(3, Duration.ofSeconds(5));
+        assertEquals(Duration.ofSeconds(5), policy.delay(1));
+        assertEquals(Duration.ofSeconds(10), policy.delay(2));
+        assertEquals(Duration.ofMinutes(2), policy.delay(10));
+    }
+
+    @Test
+    void testRetriesUntilSuccess() throws Exception {
+        var policy = new RetryPolicy(2, Duration.ofMillis(10));
+        var attempts = new ArrayList<RetryPolicy.Attempt>();
+        var result = policy.<Void>run(RetryPolicy.Attempt.first(4), attempt -> {
+            attempts.add(attempt);
+            Result<Void, String> outcome = attempt.number() == 0
+                ? Result.err(EncodeFailure.OUT_OF_MEMORY.error("ffmpeg exited with 137", List.of()))
+                : Result.ok(null);
+            return CompletableFuture.completedFuture(outcome);
+        }).get(10, TimeUnit.SECONDS);
+
+        assertTrue(result.isOk());
+        assertEquals(List.of(RetryPolicy.Attempt.first(4), new RetryPolicy.Attempt(1, 2, true)), attempts);
+    }
+
+    @Test
+    void testGivesUpOnPermanentErrorsAndAfterMaxRetries() throws Exception {
+        var policy = new RetryPolicy(2, Duration.ofMillis(1));
+        var permanent = new ArrayList<RetryPolicy.Attempt>();
+        var failed = policy.<Void>run(RetryPolicy.Attempt.first(1), attempt -> {
+            permanent.add(attempt);
+            return CompletableFuture.completedFuture(Result.err("Encoding failed: ffmpeg exited with 1"));
+        }).get(10, TimeUnit.SECONDS);
+        assertTrue(failed.isErr());
+        assertEquals(1, permanent.size());
+
+        var stalls = new ArrayList<RetryPolicy.Attempt>();
+        var stalled = policy.<Void>run(RetryPolicy.Attempt.first(1), attempt -> {
+            stalls.add(attempt);
+            return CompletableFuture.completedFuture(Result.err(EncodeFailure.STALLED.error("no progress", List.of())));
+        }).get(10, TimeUnit.SECONDS);
+        assertEquals(EncodeFailure.STALLED, EncodeFailure.of(((Result.Err<Void, String>) stalled).error()));
+        assertEquals(3, stalls.size());
+    }
+}
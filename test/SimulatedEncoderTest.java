@@ -0,0 +1,127 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.modules.EncodeOptions;
+import wappon28dev.vvcnv_java.modules.Encoded;
+import wappon28dev.vvcnv_java.modules.SimulatedEncoder;
+import wappon28dev.vvcnv_java.modules.VideoConfig;
+import wappon28dev.vvcnv_java.modules.VideoModule.VideoProcessParams;
+import wappon28dev.vvcnv_java.modules.VideoRes;
+import wappon28dev.vvcnv_java.modules.VideoStat;
+import wappon28dev.vvcnv_java.scheduler.EncodeScheduler;
+import wappon28dev.vvcnv_java.scheduler.Resources;
+import wappon28dev.vvcnv_java.util.Result;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the simulated encoder backend
+ */
+public class SimulatedEncoderTest {
+
+    private static final VideoStat STAT = new VideoStat("in.mp4",
+        new VideoStat.VideoStreamInfo(1920, 1080, 30, "yuv420p"), List.of(), Duration.ofSeconds(60), 50_000_000);
+    private static final VideoConfig CONFIG = new VideoConfig(VideoRes.R720P, 30, 23, false);
+
+    @Test
+    void testWritesOutputOfProfileSize() throws Exception {
+        var dir = Files.createTempDirectory("vvcnv-sim");
+        var encoder = new SimulatedEncoder(new SimulatedEncoder.Profile(Duration.ofMillis(20), 0.5, 123_456, 0, 1));
+        var output = dir.resolve("out.mp4");
+
+        long started = System.nanoTime();
+        var result = encoder.encode(STAT, new VideoProcessParams(output.toString(), CONFIG, 2, EncodeOptions.DEFAULT));
+        assertTrue(result.isOk());
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(123_456, Files.size(output));
+        assertEquals(60 * 30, result.unwrap().frames());
+        Files.delete(output);
+    }
+
+    @Test
+    void testRemuxWritesSourceSize() throws Exception {
+        var dir = Files.createTempDirectory("vvcnv-sim");
+        var encoder = new SimulatedEncoder(new SimulatedEncoder.Profile(Duration.ofMillis(20), 0.5, 123_456, 0, 1));
+        var stat = new VideoStat("in.mp4", new VideoStat.VideoStreamInfo(1280, 720, 30, "yuv420p", "h264"),
+            List.of(), Duration.ofSeconds(60), 4_000_000);
+        var output = dir.resolve("out.mp4");
+
+        var result = encoder.encode(stat, new VideoProcessParams(output.toString(), CONFIG, 2,
+            EncodeOptions.DEFAULT.withRemux(true)));
+        assertTrue(result.isOk());
+        assertEquals(4_000_000, Files.size(output));
+        Files.delete(output);
+    }
+
+    @Test
+    void testMeasurementWritesNoFile() throws Exception {
+        var dir = Files.createTempDirectory("vvcnv-sim");
+        var encoder = new SimulatedEncoder(new SimulatedEncoder.Profile(Duration.ZERO, 0, 123_456, 0, 1));
+        var output = dir.resolve("out.mp4");
+
+        var params = new VideoProcessParams(output.toString(), CONFIG, 2,
+            EncodeOptions.DEFAULT.withMeasureOnly(true));
+        var encoded = encoder.encode(STAT, params).unwrap();
+        assertTrue(encoded.measured());
+        assertEquals(123_456, encoded.bytes());
+        assertFalse(Files.exists(output));
+    }
+
+    @Test
+    void testRejectsUpscalingLikeFfmpegBackend() {
+        var encoder = new SimulatedEncoder(new SimulatedEncoder.Profile(Duration.ZERO, 0, 1, 0, 1));
+        var config = new VideoConfig(VideoRes.R2160P, 30, 23, false);
+        var params = new VideoProcessParams("unused.mp4", config, 1, EncodeOptions.DEFAULT);
+        assertTrue(encoder.encode(STAT, params).isErr());
+    }
+
+    @Test
+    void testFailureRateIsSeeded() throws Exception {
+        var dir = Files.createTempDirectory("vvcnv-sim");
+        var profile = new SimulatedEncoder.Profile(Duration.ZERO, 0, 1, 0.3, 7);
+        var first = failures(new SimulatedEncoder(profile), dir);
+        var second = failures(new SimulatedEncoder(profile), dir);
+        assertEquals(first, second);
+        long failed = first.stream().filter(failure -> failure).count();
+        assertTrue(failed > 30 && failed < 90, "failed " + failed);
+    }
+
+    @Test
+    void testThousandsOfTasksThroughScheduler() throws Exception {
+        var dir = Files.createTempDirectory("vvcnv-sim");
+        var encoder = new SimulatedEncoder(new SimulatedEncoder.Profile(Duration.ofMillis(1), 0, 1024, 0.1, 3));
+        var scheduler = new EncodeScheduler(16, 16);
+        var submitter = scheduler.submitter("load", 1, 16);
+        var futures = new ArrayList<CompletableFuture<Result<Encoded, String>>>();
+
+        for (int i = 0; i < 2000; i++) {
+            var output = dir.resolve(i + ".mp4");
+            futures.add(submitter.submit("sim", Resources.writing(1, output, 1024),
+                () -> encoder.encode(STAT,
+                    new VideoProcessParams(output.toString(), CONFIG, 1, EncodeOptions.DEFAULT))));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        submitter.close();
+
+        long succeeded = futures.stream().filter(future -> future.join().isOk()).count();
+        assertTrue(succeeded > 1700 && succeeded < 1900, "succeeded " + succeeded);
+        assertEquals(0, scheduler.snapshot().reservedBytes());
+    }
+
+    private static List<Boolean> failures(SimulatedEncoder encoder, Path dir) {
+        var failures = new ArrayList<Boolean>();
+        for (int i = 0; i < 200; i++) {
+            var output = dir.resolve(i + ".mp4").toString();
+            var params = new VideoProcessParams(output, CONFIG, 1, EncodeOptions.DEFAULT);
+            failures.add(encoder.encode(STAT, params).isErr());
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,93 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.metrics.ProcessOutput;
+import wappon28dev.vvcnv_java.modules.SimulatedEncoder;
+import wappon28dev.vvcnv_java.modules.EncodeOptions;
+import wappon28dev.vvcnv_java.modules.SizeGuard;
+import wappon28dev.vvcnv_java.modules.VideoConfig;
+import wappon28dev.vvcnv_java.modules.VideoModule;
+import wappon28dev.vvcnv_java.modules.VideoModule.VideoProcessParams;
+import wappon28dev.vvcnv_java.modules.VideoRes;
+import wappon28dev.vvcnv_java.modules.VideoStat;
+import wappon28dev.vvcnv_java.util.Result;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Tests for size projection and early abort
+ */
+public class SizeGuardTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    void testProjectionWaitsForRepresentativeOutput() {
+        var duration = Duration.ofSeconds(100);
+        // Under 10% of the clip (and under 5 s) nothing is projected
+        assertEquals(0, VideoModule.projectedBytes(5 * MB, Duration.ofSeconds(4).toNanos(), duration));
+        assertEquals(0, VideoModule.projectedBytes(5 * MB, Duration.ofSeconds(9).toNanos(), duration));
+        assertEquals(50 * MB, VideoModule.projectedBytes(10 * MB, Duration.ofSeconds(20).toNanos(), duration));
+        assertEquals(0, VideoModule.projectedBytes(10 * MB, Duration.ofSeconds(20).toNanos(), Duration.ZERO));
+    }
+
+    @Test
+    void testMeasuredProjectionReadsStatsFrames() {
+        // A measured encode has only the bytes on its pipe and the stats line
+        var output = new ProcessOutput();
+        var stats = "frame=  600 fps=120 q=28.0 size=   10240kB time=00:00:20.00 bitrate=4194.3kbits/s speed=4x    \r"
+            .getBytes(StandardCharsets.UTF_8);
+        output.accept(stats, 0, stats.length);
+        var duration = Duration.ofSeconds(100);
+        assertEquals(50 * MB, VideoModule.projectedBytes(10 * MB, output.frames(), 30, duration));
+
+        assertEquals(0, VideoModule.projectedBytes(10 * MB, new ProcessOutput().frames(), 30, duration));
+        assertEquals(0, VideoModule.projectedBytes(10 * MB, 600, 0, duration));
+        assertEquals(0, VideoModule.projectedBytes(10 * MB, 60, 30, duration));
+    }
+
+    @Test
+    void testCapAndCombination() {
+        var cap = SizeGuard.cap(50 * MB);
+        assertNull(cap.check(50 * MB));
+        assertEquals("cap 50.0 MB", cap.check(51 * MB));
+        assertSame(SizeGuard.NONE, SizeGuard.cap(0));
+        assertSame(cap, cap.or(SizeGuard.NONE));
+
+        SizeGuard dominated = projected -> projected > 20 * MB ? "dominated" : null;
+        var both = cap.or(dominated);
+        assertEquals("dominated", both.check(30 * MB));
+        assertEquals("cap 50.0 MB", both.check(60 * MB));
+        assertNull(both.check(10 * MB));
+    }
+
+    @Test
+    void testAbortedErrorSummary() {
+        var error = SizeGuard.abortedError(123 * MB, "cap 50.0 MB");
+        assertEquals("aborted: projected 123.0 MB (cap 50.0 MB)", error);
+        assertTrue(SizeGuard.isAborted(error));
+        assertFalse(SizeGuard.isAborted("Encoding failed: boom"));
+        assertEquals("aborted: projected 123.0 MB", SizeGuard.summary(error));
+    }
+
+    @Test
+    void testSimulatedEncodeStopsEarly() throws Exception {
+        var stat = new VideoStat("in.mp4", new VideoStat.VideoStreamInfo(1920, 1080, 30, "yuv420p"),
+            List.of(), Duration.ofSeconds(60), 50 * MB);
+        var config = new VideoConfig(VideoRes.R1080P, 30, 15, false);
+        var output = Files.createTempDirectory("vvcnv-guard").resolve("out.mp4");
+        var encoder = new SimulatedEncoder(new SimulatedEncoder.Profile(Duration.ofSeconds(2), 0, 80 * MB, 0, 1));
+
+        long started = System.nanoTime();
+        var result = encoder.encode(stat, new VideoProcessParams(output.toString(), config, 1,
+            EncodeOptions.DEFAULT.withGuard(SizeGuard.cap(50 * MB))));
+        var error = assertInstanceOf(Result.Err.class, result).error();
+        assertEquals("aborted: projected 80.0 MB (cap 50.0 MB)", error);
+        assertTrue(System.nanoTime() - started < Duration.ofSeconds(1).toNanos());
+        assertFalse(Files.exists(output));
+    }
+}
@@ -0,0 +1,85 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.modules.SourceStager;
+import wappon28dev.vvcnv_java.modules.VideoStat;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Tests for the size-bounded staging cache of sources
+ */
+public class SourceStagerTest {
+
+    private static VideoStat source(Path dir, String name, int bytes, byte fill) throws Exception {
+        var path = dir.resolve(name);
+        var content = new byte[bytes];
+        java.util.Arrays.fill(content, fill);
+        Files.write(path, content);
+        return new VideoStat(path.toString(), new VideoStat.VideoStreamInfo(1920, 1080, 30, "yuv420p"), List.of(),
+            Duration.ofSeconds(10), bytes);
+    }
+
+    @Test
+    void testCopyIsReusedWhileSourceIsUnchanged() throws Exception {
+        var dir = Files.createTempDirectory("vvcnv-stage-src");
+        var stager = new SourceStager(Files.createTempDirectory("vvcnv-stage"), 10_000_000);
+        var stat = source(dir, "in.mp4", 3_000_000, (byte) 7);
+
+        try (var staged = stager.stage(stat).unwrap()) {
+            assertTrue(staged.path().startsWith(stager.cacheDir()));
+            assertTrue(staged.path().toString().endsWith(".mp4"));
+            assertArrayEquals(Files.readAllBytes(Path.of(stat.path())), Files.readAllBytes(staged.path()));
+            assertEquals(staged.path().toString(), staged.apply(stat).path());
+            assertEquals(stat.fileSize(), staged.apply(stat).fileSize());
+            assertEquals(1, stager.pins(staged.path()));
+
+            // A second grid on the same source pins the same copy
+            try (var again = stager.stage(stat).unwrap()) {
+                assertEquals(staged.path(), again.path());
+                assertEquals(2, stager.pins(staged.path()));
+            }
+            assertEquals(1, stager.pins(staged.path()));
+        }
+
+        try (var listing = Files.list(stager.cacheDir())) {
+            assertEquals(1, listing.count(), "no temporary files are left behind");
+        }
+    }
+
+    @Test
+    void testLeastRecentlyUsedUnpinnedCopyIsEvicted() throws Exception {
+        var dir = Files.createTempDirectory("vvcnv-stage-src");
+        var stager = new SourceStager(Files.createTempDirectory("vvcnv-stage"), 2_500);
+        var first = stager.stage(source(dir, "a.mp4", 1_000, (byte) 1)).unwrap();
+        var second = stager.stage(source(dir, "b.mp4", 1_000, (byte) 2)).unwrap();
+        Files.setLastModifiedTime(first.path(), FileTime.fromMillis(1_000));
+        Files.setLastModifiedTime(second.path(), FileTime.fromMillis(2_000));
+        first.close();
+        second.close();
+
+        var third = stager.stage(source(dir, "c.mp4", 1_000, (byte) 3)).unwrap();
+        assertFalse(Files.exists(first.path()));
+        assertTrue(Files.exists(second.path()));
+        assertTrue(Files.exists(third.path()));
+        third.close();
+    }
+
+    @Test
+    void testPinnedCopiesAreNotEvicted() throws Exception {
+        var dir = Files.createTempDirectory("vvcnv-stage-src");
+        var stager = new SourceStager(Files.createTempDirectory("vvcnv-stage"), 1_500);
+        try (var pinned = stager.stage(source(dir, "a.mp4", 1_000, (byte) 1)).unwrap()) {
+            assertTrue(stager.stage(source(dir, "b.mp4", 1_000, (byte) 2)).isErr());
+            assertTrue(Files.exists(pinned.path()));
+        }
+
+        // Larger than the whole cache: read in place
+        assertTrue(stager.stage(source(dir, "big.mp4", 2_000, (byte) 3)).isErr());
+    }
+}
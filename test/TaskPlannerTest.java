@@ -0,0 +1,143 @@
+package wappon28dev.vvcnv_java.test;
+
+import wappon28dev.vvcnv_java.calibration.Codec;
+import wappon28dev.vvcnv_java.calibration.HostProfile;
+import wappon28dev.vvcnv_java.modules.VideoConfig;
+import wappon28dev.vvcnv_java.modules.VideoRes;
+import wappon28dev.vvcnv_java.modules.VideoStat;
+import wappon28dev.vvcnv_ui.models.ConversionOptions;
+import wappon28dev.vvcnv_ui.models.ConversionParams;
+import wappon28dev.vvcnv_ui.utils.ConversionUtils;
+import wappon28dev.vvcnv_ui.utils.TaskPlanner;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Tests for planning cross tests before they run
+ */
+public class TaskPlannerTest {
+
+    private static VideoStat source(int width, int height, double fps) {
+        return new VideoStat("in.mp4", new VideoStat.VideoStreamInfo(width, height, fps, "yuv420p"),
+            List.of(), Duration.ofSeconds(60), 50L << 20);
+    }
+
+    private static ConversionParams params(VideoRes minRes, VideoRes maxRes, int resSteps, int minCrf, int maxCrf,
+            int crfSteps) {
+        return params(minRes, maxRes, resSteps, minCrf, maxCrf, crfSteps, false);
+    }
+
+    private static ConversionParams params(VideoRes minRes, VideoRes maxRes, int resSteps, int minCrf, int maxCrf,
+            int crfSteps, boolean remux) {
+        return new ConversionParams("in.mp4", "out", false, "H.264", minRes, maxRes, resSteps, minCrf, maxCrf,
+            crfSteps, 0, 0, ConversionOptions.NONE.withRemux(remux));
+    }
+
+    @Test
+    void testAxesHaveNoRepeatedValues() {
+        assertEquals(List.of(VideoRes.R720P, VideoRes.R1080P),
+            ConversionUtils.generateResolutions(VideoRes.R720P, VideoRes.R1080P, 5));
+        assertEquals(List.of(22, 21, 20), ConversionUtils.generateCrfValues(20, 22, 5));
+        assertEquals(List.of(40, 30, 20), ConversionUtils.generateCrfValues(20, 40, 3));
+    }
+
+    @Test
+    void testPlanDropsDuplicatesAndSkipsUpscaling() {
+        var plan = TaskPlanner.plan(params(VideoRes.R720P, VideoRes.R2160P, 6, 20, 22, 5),
+            List.of(source(1920, 1080, 30)));
+
+        // 720p, 1080p, 1440p, 2160p × CRF 22, 21, 20
+        assertEquals(4, plan.resolutions().size());
+        assertEquals(List.of(22, 21, 20), plan.crfValues());
+        assertEquals(6 * 5 - 4 * 3, plan.duplicates());
+        assertEquals(12, plan.cellCount());
+        assertEquals(6, plan.tasks().size());
+        assertEquals(6, plan.skipped().size());
+        assertTrue(plan.skipped().stream()
+            .allMatch(skipped -> skipped.task().config().res().getHeight() > 1080
+                && skipped.reason().startsWith("Resolution upscaling")));
+    }
+
+    @Test
+    void testPlanSkipsFrameRateAboveSource() {
+        var plan = TaskPlanner.plan(params(VideoRes.R720P, VideoRes.R720P, 1, 23, 23, 1),
+            List.of(source(1920, 1080, 24), source(1920, 1080, 60)));
+
+        assertEquals(1, plan.tasks().size());
+        assertEquals(1, plan.tasks().getFirst().sourceIndex());
+        assertTrue(plan.skipped().getFirst().reason().startsWith("FPS upscaling"));
+    }
+
+    @Test
+    void testCostUsesCalibratedRate() {
+        var sources = List.of(source(1920, 1080, 30));
+        var params = params(VideoRes.R1080P, VideoRes.R1080P, 1, 23, 23, 1);
+        var plan = TaskPlanner.plan(params, sources);
+
+        // 60 s × 30 fps of 1080p; calibrated at 60 fps on 2 jobs × 4 threads = 7.5 fps per core
+        var profile = new HostProfile(8, Instant.now());
+        profile.put(Codec.H264, VideoRes.R1080P, new HostProfile.Setting(2, 4, 60));
+        var cost = TaskPlanner.cost(plan, sources, params, Optional.of(profile));
+        assertEquals(1, cost.tasks());
+        assertEquals(1800 / 7.5, cost.cpuSeconds(), 1e-6);
+        assertEquals(cost.cpuSeconds() / 8, cost.wallSeconds(8), 1e-6);
+        assertTrue(cost.outputBytes() > 0);
+
+        var uncalibrated = TaskPlanner.cost(plan, sources, params, Optional.empty());
+        assertTrue(uncalibrated.cpuSeconds() > 0);
+    }
+
+    @Test
+    void testCanCopyNeedsSameH264Stream() {
+        var h264 = new VideoStat("in.mp4", new VideoStat.VideoStreamInfo(1920, 1080, 30, "yuv420p", "h264"),
+            List.of(), Duration.ofSeconds(60), 50L << 20);
+        var vp9 = new VideoStat("in.webm", new VideoStat.VideoStreamInfo(1920, 1080, 30, "yuv420p", "vp9"),
+            List.of(), Duration.ofSeconds(60), 50L << 20);
+        var config = new VideoConfig(VideoRes.R1080P, 30, 23, false);
+        assertTrue(config.canCopy(h264));
+        assertFalse(config.canCopy(vp9));
+        assertFalse(config.canCopy(source(1920, 1080, 30)));
+        assertFalse(new VideoConfig(VideoRes.R720P, 30, 23, false).canCopy(h264));
+        assertFalse(new VideoConfig(VideoRes.R1080P, 24, 23, false).canCopy(h264));
+    }
+
+    @Test
+    void testNtscSourceIsCopiedAtItsNominalRate() {
+        var ntsc = new VideoStat("in.mp4", new VideoStat.VideoStreamInfo(1920, 1080, 30000 / 1001.0, "yuv420p", "h264"),
+            List.of(), Duration.ofSeconds(60), 50L << 20);
+        var config = new VideoConfig(VideoRes.R1080P, 30, 23, false);
+        assertTrue(config.checkUpScaling(ntsc).isOk());
+        assertTrue(config.canCopy(ntsc));
+        var params = params(VideoRes.R1080P, VideoRes.R1080P, 1, 23, 23, 1, true);
+        var plan = TaskPlanner.plan(params, List.of(ntsc));
+        assertEquals(1, plan.tasks().size());
+        assertTrue(plan.skipped().isEmpty());
+
+        // 30 is still an upscale of 25
+        assertTrue(config.checkUpScaling(source(1920, 1080, 25)).isErr());
+    }
+
+    @Test
+    void testRemuxCellsCostNoCpu() {
+        var remuxSources = List.of(new VideoStat("in.mp4",
+            new VideoStat.VideoStreamInfo(1920, 1080, 30, "yuv420p", "h264"), List.of(), Duration.ofSeconds(60),
+            50L << 20));
+        var params = params(VideoRes.R1080P, VideoRes.R1080P, 1, 23, 23, 1, true);
+        var cost = TaskPlanner.cost(TaskPlanner.plan(params, remuxSources), remuxSources, params, Optional.empty());
+        assertEquals(0, cost.cpuSeconds());
+        assertEquals(50L << 20, cost.outputBytes());
+
+        // Sources of unknown or other codecs are encoded as usual
+        var encodedSources = List.of(source(1920, 1080, 30), new VideoStat("in.webm",
+            new VideoStat.VideoStreamInfo(1920, 1080, 30, "yuv420p", "vp9"), List.of(), Duration.ofSeconds(60),
+            50L << 20));
+        var encoded = TaskPlanner.cost(TaskPlanner.plan(params, encodedSources), encodedSources, params,
+            Optional.empty());
+        assertTrue(encoded.cpuSeconds() > 0);
+    }
+}
@@ -1,5 +1,6 @@
 package wappon28dev.vvcnv_java.test;
 
+import wappon28dev.vvcnv_java.metrics.ProcessTracker;
 import wappon28dev.vvcnv_java.modules.*;
 import wappon28dev.vvcnv_java.util.Result;
 import org.junit.jupiter.api.Test;
@@ -7,6 +8,8 @@ import org.junit.jupiter.api.BeforeEach;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 
 /**
  * Tests for video processing functionality
@@ -48,6 +51,46 @@ public class VideoModuleTest {
         System.out.println("  Audio streams: " + stat.audioStreams().size());
     }
 
+    @Test
+    void testStatsLinesReachProcessOutput() throws Exception {
+        var stat = generatedSource("testsrc2=size=640x360:rate=30:duration=2");
+        var output = Files.createTempDirectory("vvcnv-stats").resolve("out.mp4");
+        var params = new VideoModule.VideoProcessParams(output.toString(),
+                new VideoConfig(VideoRes.R360P, 30, 30, false), 1, EncodeOptions.DEFAULT);
+
+        var process = new ProcessTracker().run(VideoModule.command(videoModule.ffmpegPath(), stat, params));
+        process.getInputStream().transferTo(OutputStream.nullOutputStream());
+        assertEquals(0, process.waitFor());
+        assertEquals(60, ProcessTracker.outputOf(process).frames());
+    }
+
+    @Test
+    void testMeasuredEncodeStopsEarly() throws Exception {
+        // Long enough that ffmpeg prints stats lines before it finishes
+        var stat = generatedSource("testsrc2=size=640x360:rate=30:duration=60");
+        var params = new VideoModule.VideoProcessParams("measured.mp4",
+                new VideoConfig(VideoRes.R360P, 30, 18, false), 1,
+                EncodeOptions.DEFAULT.withMeasureOnly(true).withGuard(SizeGuard.cap(1024)));
+
+        var result = videoModule.processSimple(stat, params);
+        var error = assertInstanceOf(Result.Err.class, result).error().toString();
+        assertTrue(SizeGuard.isAborted(error), error);
+    }
+
+    @Test
+    void testDecimatedEncodeReportsFramesWritten() throws Exception {
+        // A still picture: every frame after the first is a duplicate
+        var stat = generatedSource("color=c=gray:size=640x360:rate=30:duration=4");
+        var output = Files.createTempDirectory("vvcnv-decimate").resolve("out.mkv");
+        var config = new VideoConfig(VideoRes.R360P, 30, 23, false);
+        var params = new VideoModule.VideoProcessParams(output.toString(), config, 1,
+                EncodeOptions.DEFAULT.withDecimate(true));
+
+        var encoded = videoModule.processSimple(stat, params).unwrap();
+        assertTrue(encoded.frames() > 0, encoded.toString());
+        assertTrue(encoded.frameReduction(config.outputFrames(stat)) > 0.5, encoded.toString());
+    }
+
     @Test
     void testVideoResolutionConversion() {
         // Test VideoRes functionality
@@ -110,6 +153,20 @@ public class VideoModuleTest {
         System.out.println("FileModule tests passed");
     }
 
+    /**
+     * A silent clip made by ffmpeg from a lavfi source
+     */
+    private VideoStat generatedSource(String lavfi) throws Exception {
+        var source = Files.createTempFile("vvcnv-source", ".mp4");
+        var process = new ProcessBuilder(videoModule.ffmpegPath(), "-y", "-v", "error",
+                "-f", "lavfi", "-i", lavfi, "-pix_fmt", "yuv420p", source.toString())
+                .redirectErrorStream(true)
+                .start();
+        process.getInputStream().transferTo(OutputStream.nullOutputStream());
+        assertEquals(0, process.waitFor());
+        return videoModule.stat(source.toString()).unwrap();
+    }
+
     @Test
     void testResultType() {
         // Test Result<T, E> functionality